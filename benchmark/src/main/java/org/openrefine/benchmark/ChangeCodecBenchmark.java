@@ -0,0 +1,170 @@
+/*******************************************************************************
+ * Copyright (C) 2024, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package org.openrefine.benchmark;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.refine.history.HistoryEntry;
+import com.google.refine.io.FileHistoryEntryManager;
+import com.google.refine.model.Cell;
+import com.google.refine.model.Project;
+import com.google.refine.model.changes.CellChange;
+import com.google.refine.model.changes.MassCellChange;
+
+/**
+ * Measures the latency of saving a {@link MassCellChange} changing one cell in each row of a project, and of undoing
+ * and redoing it once it has to be read back from its change file, in the line-based and in the binary change format.
+ * The {@link #main} method prints the size of the change file and the latency of each step:
+ *
+ * <pre>
+ * java -cp openrefine-benchmarks.jar org.openrefine.benchmark.ChangeCodecBenchmark 1000000
+ * </pre>
+ */
+public class ChangeCodecBenchmark {
+
+    /**
+     * Exposes the file-based methods of the history entry manager.
+     */
+    static class ChangeFiles extends FileHistoryEntryManager {
+
+        void save(HistoryEntry entry, File file) throws Exception {
+            saveChange(entry, file);
+        }
+
+        void load(HistoryEntry entry, File file) throws Exception {
+            loadChange(entry, file);
+        }
+    }
+
+    static MassCellChange generateChange(Project project) {
+        List<CellChange> cellChanges = new ArrayList<>(project.rows.size());
+        for (int r = 0; r < project.rows.size(); r++) {
+            Cell oldCell = project.rows.get(r).getCell(2);
+            cellChanges.add(new CellChange(r, 2, oldCell, new Cell(((String) oldCell.value).toUpperCase(), null)));
+        }
+        return new MassCellChange(cellChanges, "city", false);
+    }
+
+    static File save(ChangeFiles files, HistoryEntry entry, String format) throws Exception {
+        FileHistoryEntryManager.s_binaryChanges = "binary".equals(format);
+        File file = File.createTempFile("benchmark", ".change.zip");
+        file.deleteOnExit();
+        files.save(entry, file);
+        return file;
+    }
+
+    @State(Scope.Benchmark)
+    public static class ExecutionPlan {
+
+        @Param({ "1000000" })
+        public int rowCount;
+
+        @Param({ "text", "binary" })
+        public String format;
+
+        public Project project;
+        public HistoryEntry entry;
+        public ChangeFiles files;
+        public File file;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            project = ProjectSerializationBenchmark.generateProject(rowCount);
+            entry = new HistoryEntry(HistoryEntry.allocateID(), project, "benchmark", null, generateChange(project));
+            files = new ChangeFiles();
+            file = save(files, entry, format);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+    @Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+    @Fork(1)
+    public File save(ExecutionPlan plan) throws Exception {
+        File file = save(plan.files, plan.entry, plan.format);
+        file.delete();
+        return file;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+    @Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+    @Fork(1)
+    public Project loadAndUndo(ExecutionPlan plan) throws Exception {
+        plan.files.load(plan.entry, plan.file);
+        plan.entry.getLoadedChange().apply(plan.project);
+        plan.entry.getLoadedChange().revert(plan.project);
+        return plan.project;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int rowCount = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        Project project = ProjectSerializationBenchmark.generateProject(rowCount);
+        ChangeFiles files = new ChangeFiles();
+        for (String format : new String[] { "text", "binary", "text", "binary" }) {
+            HistoryEntry entry = new HistoryEntry(HistoryEntry.allocateID(), project, "benchmark", null,
+                    generateChange(project));
+
+            long start = System.nanoTime();
+            File file = save(files, entry, format);
+            long saved = System.nanoTime();
+            files.load(entry, file);
+            long loaded = System.nanoTime();
+            entry.getLoadedChange().apply(project);
+            long applied = System.nanoTime();
+            entry.getLoadedChange().revert(project);
+            long reverted = System.nanoTime();
+
+            System.out.printf("%-6s %,d cells: %,d bytes, save %,d ms, load %,d ms, apply %,d ms, undo %,d ms%n",
+                    format, rowCount, Files.size(file.toPath()), (saved - start) / 1000000, (loaded - saved) / 1000000,
+                    (applied - loaded) / 1000000, (reverted - applied) / 1000000);
+            file.delete();
+        }
+    }
+}
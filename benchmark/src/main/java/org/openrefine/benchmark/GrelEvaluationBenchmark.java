@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * Copyright (C) 2024, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package org.openrefine.benchmark;
+
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.google.refine.expr.Evaluable;
+import com.google.refine.expr.ExpressionUtils;
+import com.google.refine.expr.ParsingException;
+import com.google.refine.grel.Parser;
+import com.google.refine.grel.compiler.GrelCompiler;
+import com.google.refine.model.Project;
+
+/**
+ * Compares evaluating GREL expressions by walking their syntax tree with evaluating them once compiled by
+ * {@link GrelCompiler}, over a column of generated strings. The {@link #main} method prints the time taken by both to
+ * transform the given number of cells:
+ *
+ * <pre>
+ * java -cp openrefine-benchmarks.jar org.openrefine.benchmark.GrelEvaluationBenchmark 10000000
+ * </pre>
+ */
+public class GrelEvaluationBenchmark {
+
+    static final String[] EXPRESSIONS = {
+            "value.trim().toLowercase().replace('a', 'b')",
+            "value.length() * 2 + 1 > 20",
+            "if(value.startsWith(' '), value.trim(), value + '!')",
+            "value.match(' *Category (.) of item ([0-9]+) *')[1]",
+            "forEach(value.split(' '), w, w + value.trim().length()).join(',')",
+    };
+
+    static final int CELL_COUNT = 100000;
+
+    static String[] generateValues(int count) {
+        Random rnd = new Random(1234);
+        String[] values = new String[count];
+        for (int i = 0; i < count; i++) {
+            String padding = rnd.nextBoolean() ? " " : "";
+            values[i] = padding + "Category " + (char) ('A' + rnd.nextInt(26)) + " of item " + rnd.nextInt(1000) + padding;
+        }
+        return values;
+    }
+
+    static Evaluable parse(String expression, String backend) throws ParsingException {
+        Evaluable parsed = new Parser(expression).getExpression();
+        return "compiled".equals(backend) ? GrelCompiler.compile(parsed) : parsed;
+    }
+
+    @State(Scope.Thread)
+    public static class ExecutionPlan {
+
+        @Param({ "0", "1", "2", "3", "4" })
+        public int expression;
+
+        @Param({ "interpreted", "compiled" })
+        public String backend;
+
+        public Evaluable evaluable;
+        public String[] values;
+        public Properties bindings;
+
+        @Setup(Level.Trial)
+        public void setUp() throws ParsingException {
+            evaluable = parse(EXPRESSIONS[expression], backend);
+            values = generateValues(CELL_COUNT);
+            bindings = ExpressionUtils.createBindings(new Project());
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+    @Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+    @Fork(1)
+    public void evaluateColumn(ExecutionPlan plan, Blackhole blackhole) {
+        for (String value : plan.values) {
+            plan.bindings.put("value", value);
+            blackhole.consume(plan.evaluable.evaluate(plan.bindings));
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int cellCount = args.length > 0 ? Integer.parseInt(args[0]) : 10000000;
+        String[] values = generateValues(CELL_COUNT);
+        Properties bindings = ExpressionUtils.createBindings(new Project());
+        for (String expression : EXPRESSIONS) {
+            for (String backend : new String[] { "interpreted", "compiled", "interpreted", "compiled" }) {
+                Evaluable evaluable = parse(expression, backend);
+                long hash = 0;
+                long start = System.nanoTime();
+                for (int i = 0; i < cellCount; i++) {
+                    bindings.put("value", values[i % CELL_COUNT]);
+                    hash += evaluable.evaluate(bindings).hashCode();
+                }
+                long elapsed = System.nanoTime() - start;
+                System.out.printf("%-11s %s: %,d cells in %,d ms (%,.0f ns/cell) [%d]%n",
+                        backend, expression, cellCount, elapsed / 1000000, elapsed / (double) cellCount, hash);
+            }
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*******************************************************************************
+ * Copyright (C) 2024, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package org.openrefine.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import edu.mit.simile.vicino.distances.LevenshteinDistance;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.google.refine.clustering.knn.BitParallelLevenshteinDistance;
+import com.google.refine.clustering.knn.SimilarityDistance;
+import com.google.refine.clustering.knn.VicinoDistance;
+
+/**
+ * Measures the time taken by the Levenshtein distances to compare pairs of person or organization names, as kNN
+ * clustering does within its blocks: the distance of Vicino, the bit-parallel one, and the bit-parallel one bounded by
+ * the default radius of the clusterer.
+ */
+public class LevenshteinDistanceBenchmark {
+
+    static final String[] FIRST_NAMES = { "John", "Mary", "Jean-Pierre", "Maria José", "Muhammad", "Anne-Sophie",
+            "Wolfgang", "Aleksandra", "Christopher", "Elisabeth" };
+    static final String[] LAST_NAMES = { "Smith", "O'Connor", "García Márquez", "Müller", "van der Berg", "Nakamura",
+            "Kowalczyk", "Delacroix", "Johansson", "Okonkwo" };
+    static final String[] ORGANIZATIONS = { "University of California, Berkeley", "Massachusetts Institute of Technology",
+            "Bibliothèque nationale de France", "International Business Machines Corporation",
+            "Deutsche Forschungsgemeinschaft e.V.", "World Health Organization" };
+
+    /**
+     * Generates a name, with a typo once in a while.
+     */
+    static String generateName(Random random, boolean organization) {
+        String name = organization ? ORGANIZATIONS[random.nextInt(ORGANIZATIONS.length)]
+                : FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " " + LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+        StringBuilder builder = new StringBuilder(name);
+        if (random.nextInt(3) == 0) {
+            int position = random.nextInt(builder.length());
+            switch (random.nextInt(3)) {
+                case 0:
+                    builder.deleteCharAt(position);
+                    break;
+                case 1:
+                    builder.insert(position, (char) ('a' + random.nextInt(26)));
+                    break;
+                default:
+                    builder.setCharAt(position, Character.toUpperCase(builder.charAt(position)));
+            }
+        }
+        return builder.toString();
+    }
+
+    @State(Scope.Benchmark)
+    public static class ExecutionPlan {
+
+        @Param({ "persons", "organizations" })
+        public String names;
+
+        public String[] left = new String[1024];
+        public String[] right = new String[1024];
+
+        public SimilarityDistance vicino = new VicinoDistance(new LevenshteinDistance());
+        public SimilarityDistance bitParallel = new BitParallelLevenshteinDistance();
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            Random random = new Random(42);
+            boolean organizations = "organizations".equals(names);
+            for (int i = 0; i < left.length; i++) {
+                left[i] = generateName(random, organizations);
+                right[i] = generateName(random, organizations);
+            }
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+    @Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+    @Fork(1)
+    public void vicino(ExecutionPlan plan, Blackhole blackhole) {
+        for (int i = 0; i < plan.left.length; i++) {
+            blackhole.consume(plan.vicino.compute(plan.left[i], plan.right[i]));
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+    @Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+    @Fork(1)
+    public void bitParallel(ExecutionPlan plan, Blackhole blackhole) {
+        for (int i = 0; i < plan.left.length; i++) {
+            blackhole.consume(plan.bitParallel.compute(plan.left[i], plan.right[i]));
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+    @Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+    @Fork(1)
+    public void bitParallelBounded(ExecutionPlan plan, Blackhole blackhole) {
+        for (int i = 0; i < plan.left.length; i++) {
+            blackhole.consume(plan.bitParallel.compute(plan.left[i], plan.right[i], 1.0));
+        }
+    }
+}
@@ -0,0 +1,261 @@
+/*******************************************************************************
+ * Copyright (C) 2024, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package org.openrefine.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.google.refine.ProjectManager;
+import com.google.refine.ProjectMetadata;
+import com.google.refine.history.HistoryEntryManager;
+import com.google.refine.model.Project;
+import com.google.refine.model.Row;
+
+/**
+ * Measures how many requests reading rows, like {@code GetRowsCommand}, are served while a large project is being
+ * autosaved over and over. The {@code striped} manager is the {@link ProjectManager} as it is, which only serializes
+ * the operations on a given project; the {@code global} one funnels all of them through a single monitor, as the
+ * project manager used to. The {@link #main} method prints the throughput of both:
+ *
+ * <pre>
+ * java -cp openrefine-benchmarks.jar org.openrefine.benchmark.ProjectManagerContentionBenchmark 8 500000
+ * </pre>
+ */
+public class ProjectManagerContentionBenchmark {
+
+    static final int SMALL_PROJECTS = 16;
+    static final int SMALL_PROJECT_ROWS = 1000;
+    static final int PAGE_SIZE = 50;
+
+    /**
+     * Keeps its projects in memory and "saves" them by serializing them to nowhere, without marking them as saved so
+     * that the next autosave saves them again.
+     */
+    static class InMemoryProjectManager extends ProjectManager {
+
+        final long[] smallProjectIds = new long[SMALL_PROJECTS];
+
+        @Override
+        public boolean loadProjectMetadata(long projectID) {
+            return false;
+        }
+
+        @Override
+        protected Project loadProject(long id) {
+            return null;
+        }
+
+        @Override
+        public void importProject(long projectID, InputStream inputStream, boolean gziped) {
+        }
+
+        @Override
+        public void exportProject(long projectId, TarArchiveOutputStream tos) {
+        }
+
+        @Override
+        public void saveMetadata(ProjectMetadata metadata, long projectId) {
+        }
+
+        @Override
+        protected void saveProject(Project project) throws IOException {
+            synchronized (project) {
+                project.saveToBinaryStream(OutputStream.nullOutputStream());
+            }
+        }
+
+        @Override
+        protected void saveWorkspace() {
+        }
+
+        @Override
+        public HistoryEntryManager getHistoryEntryManager() {
+            return null;
+        }
+
+        @Override
+        public void deleteProject(long projectID) {
+            removeProject(projectID);
+        }
+    }
+
+    /**
+     * Takes the same monitor for all projects, including to look them up.
+     */
+    static class GlobalLockProjectManager extends InMemoryProjectManager {
+
+        @Override
+        protected Object lockFor(long id) {
+            return this;
+        }
+
+        @Override
+        public Project getProject(long id) {
+            synchronized (this) {
+                return super.getProject(id);
+            }
+        }
+    }
+
+    static InMemoryProjectManager createManager(String lockMode, int largeProjectRows) throws Exception {
+        InMemoryProjectManager manager = "global".equals(lockMode) ? new GlobalLockProjectManager()
+                : new InMemoryProjectManager();
+        for (int i = 0; i < SMALL_PROJECTS; i++) {
+            manager.smallProjectIds[i] = register(manager, SMALL_PROJECT_ROWS);
+        }
+        register(manager, largeProjectRows);
+        return manager;
+    }
+
+    private static long register(ProjectManager manager, int rowCount) throws Exception {
+        Project project = ProjectSerializationBenchmark.generateProject(rowCount);
+        // the metadata is modified after the project is created, so every autosave saves it
+        manager.registerProject(project, new ProjectMetadata());
+        return project.id;
+    }
+
+    /**
+     * Serves a page of rows of one of the small projects.
+     */
+    static void getRows(InMemoryProjectManager manager, Blackhole blackhole) {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        Project project = manager.getProject(manager.smallProjectIds[rnd.nextInt(SMALL_PROJECTS)]);
+        int start = rnd.nextInt(project.rows.size() - PAGE_SIZE);
+        for (int i = start; i < start + PAGE_SIZE; i++) {
+            Row row = project.rows.get(i);
+            blackhole.consume(row.getCellValue(0));
+        }
+    }
+
+    /**
+     * Runs autosaves back to back until it is interrupted.
+     */
+    static Thread startAutosave(ProjectManager manager, AtomicLong saves) {
+        Thread thread = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                manager.save(true);
+                saves.incrementAndGet();
+            }
+        }, "autosave");
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    @State(Scope.Benchmark)
+    public static class ExecutionPlan {
+
+        @Param({ "500000" })
+        public int largeProjectRows;
+
+        @Param({ "striped", "global" })
+        public String lockMode;
+
+        public InMemoryProjectManager manager;
+        public Thread autosave;
+        public AtomicLong saves = new AtomicLong();
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            manager = createManager(lockMode, largeProjectRows);
+            autosave = startAutosave(manager, saves);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws InterruptedException {
+            autosave.interrupt();
+            autosave.join();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+    @Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+    @Fork(1)
+    @Threads(8)
+    public void getRowsDuringAutosave(ExecutionPlan plan, Blackhole blackhole) {
+        getRows(plan.manager, blackhole);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int largeProjectRows = args.length > 1 ? Integer.parseInt(args[1]) : 500000;
+        Blackhole blackhole = new Blackhole(
+                "Today's password is swordfish. I understand instantiating Blackholes directly is dangerous.");
+        for (String lockMode : new String[] { "global", "striped", "global", "striped" }) {
+            InMemoryProjectManager manager = createManager(lockMode, largeProjectRows);
+            AtomicLong saves = new AtomicLong();
+            AtomicLong requests = new AtomicLong();
+            AtomicLong maxLatency = new AtomicLong();
+            Thread autosave = startAutosave(manager, saves);
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            Thread[] readers = new Thread[threads];
+            for (int t = 0; t < threads; t++) {
+                readers[t] = new Thread(() -> {
+                    while (System.nanoTime() < deadline) {
+                        long start = System.nanoTime();
+                        getRows(manager, blackhole);
+                        maxLatency.accumulateAndGet(System.nanoTime() - start, Math::max);
+                        requests.incrementAndGet();
+                    }
+                });
+                readers[t].start();
+            }
+            for (Thread reader : readers) {
+                reader.join();
+            }
+            autosave.interrupt();
+            autosave.join();
+            System.out.printf("%-7s %d readers: %,d requests/s, max latency %,d ms, %d autosaves%n",
+                    lockMode, threads, requests.get() / 5, maxLatency.get() / 1000000, saves.get());
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*******************************************************************************
+ * Copyright (C) 2024, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package org.openrefine.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.refine.ProjectManager;
+import com.google.refine.io.FileProjectManager;
+import com.google.refine.model.Column;
+import com.google.refine.model.ModelException;
+import com.google.refine.model.Project;
+import com.google.refine.util.Pool;
+
+/**
+ * Compares the throughput of saving and loading the rows of a project in the line-based JSON format and in the binary
+ * format, loaded either eagerly or lazily from a memory-mapped copy. They are measured without the zip compression
+ * applied to data.zip. The {@link #main} method prints the size of each format, its throughput in rows per second and
+ * the heap retained by the loaded project:
+ *
+ * <pre>
+ * java -cp openrefine-benchmarks.jar org.openrefine.benchmark.ProjectSerializationBenchmark 1000000
+ * </pre>
+ */
+public class ProjectSerializationBenchmark {
+
+    static Project generateProject(int rowCount) throws ModelException, IOException {
+        if (ProjectManager.singleton == null) {
+            // loading a project looks up its metadata
+            FileProjectManager.initialize(Files.createTempDirectory("openrefine-benchmark").toFile());
+        }
+        Project project = new Project();
+        String[] names = { "id", "category", "city", "status", "count", "amount" };
+        for (int i = 0; i < names.length; i++) {
+            project.columnModel.addColumn(i, new Column(i, names[i]), true);
+        }
+        RowStorageBenchmark.fill(project.rows, rowCount);
+        return project;
+    }
+
+    static byte[] save(Project project, String format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (!"json".equals(format)) {
+            project.saveToBinaryStream(out);
+        } else {
+            project.saveToOutputStream(out, new Pool());
+        }
+        return out.toByteArray();
+    }
+
+    static Project load(byte[] bytes, String format) throws IOException {
+        if ("binary".equals(format)) {
+            return Project.loadFromBinaryStream(new ByteArrayInputStream(bytes), 1L);
+        } else if ("lazy".equals(format)) {
+            File rowFile = File.createTempFile("rows", ".tmp");
+            rowFile.deleteOnExit();
+            return Project.loadLazilyFromBinaryStream(new ByteArrayInputStream(bytes), 1L, rowFile);
+        } else {
+            return Project.loadFromInputStream(new ByteArrayInputStream(bytes), 1L, new Pool());
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class ExecutionPlan {
+
+        @Param({ "100000" })
+        public int rowCount;
+
+        @Param({ "json", "binary", "lazy" })
+        public String format;
+
+        public Project project;
+        public byte[] saved;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            project = generateProject(rowCount);
+            saved = save(project, format);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+    @Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+    @Fork(1)
+    public byte[] save(ExecutionPlan plan) throws IOException {
+        return save(plan.project, plan.format);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+    @Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+    @Fork(1)
+    public Project load(ExecutionPlan plan) throws IOException {
+        return load(plan.saved, plan.format);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int rowCount = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        Project project = generateProject(rowCount);
+        for (String format : new String[] { "json", "binary", "lazy", "json", "binary", "lazy" }) {
+            long start = System.nanoTime();
+            byte[] bytes = save(project, format);
+            long saved = System.nanoTime();
+            long heapBefore = RowStorageBenchmark.usedHeap();
+            Project loaded = load(bytes, format);
+            long loadedAt = System.nanoTime();
+            long retained = RowStorageBenchmark.usedHeap() - heapBefore;
+            System.out.printf(
+                    "%-6s %,d rows: %,d bytes, save %,d ms (%,.0f rows/s), load %,d ms (%,.0f rows/s), %,d MB retained%n",
+                    format, loaded.rows.size(), bytes.length,
+                    (saved - start) / 1000000, rowCount / ((saved - start) / 1e9),
+                    (loadedAt - saved) / 1000000, rowCount / ((loadedAt - saved) / 1e9), retained >> 20);
+            loaded.dispose();
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*******************************************************************************
+ * Copyright (C) 2024, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package org.openrefine.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.google.refine.model.Cell;
+import com.google.refine.model.Row;
+import com.google.refine.model.columnar.ColumnarRowStore;
+
+/**
+ * Compares the default {@link ArrayList} of {@link Row}s with the {@link ColumnarRowStore}. The JMH benchmarks measure
+ * the time to fill and scan both layouts (run with {@code -prof gc} to see allocation rates); the {@link #main} method
+ * measures the heap retained by each layout:
+ *
+ * <pre>
+ * java -cp openrefine-benchmarks.jar org.openrefine.benchmark.RowStorageBenchmark 1000000
+ * </pre>
+ */
+public class RowStorageBenchmark {
+
+    static final int COLUMNS = 6;
+
+    /**
+     * Generates rows looking like a typical import: a unique identifier, a few low-cardinality string columns, an
+     * integer and a decimal column.
+     */
+    static Row generateRow(Random rnd, int index) {
+        Row row = new Row(COLUMNS);
+        row.setCell(0, new Cell("id-" + index, null));
+        row.setCell(1, new Cell("category " + rnd.nextInt(20), null));
+        row.setCell(2, new Cell("city " + rnd.nextInt(500), null));
+        row.setCell(3, rnd.nextInt(10) == 0 ? null : new Cell("status " + rnd.nextInt(3), null));
+        row.setCell(4, new Cell((long) rnd.nextInt(100000), null));
+        row.setCell(5, new Cell(rnd.nextDouble() * 1000, null));
+        return row;
+    }
+
+    static void fill(List<Row> rows, int count) {
+        Random rnd = new Random(1234);
+        for (int i = 0; i < count; i++) {
+            rows.add(generateRow(rnd, i));
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class ExecutionPlan {
+
+        @Param({ "100000" })
+        public int rowCount;
+
+        @Param({ "list", "columnar" })
+        public String layout;
+
+        public List<Row> rows;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            rows = newRows(layout);
+            fill(rows, rowCount);
+        }
+    }
+
+    static List<Row> newRows(String layout) {
+        return "columnar".equals(layout) ? new ColumnarRowStore() : new ArrayList<>();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+    @Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+    @Fork(1)
+    public void fill(ExecutionPlan plan, Blackhole blackhole) {
+        List<Row> rows = newRows(plan.layout);
+        fill(rows, plan.rowCount);
+        blackhole.consume(rows);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+    @Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+    @Fork(1)
+    public void scanColumn(ExecutionPlan plan, Blackhole blackhole) {
+        List<Row> rows = plan.rows;
+        for (int i = 0; i < rows.size(); i++) {
+            blackhole.consume(rows.get(i).getCellValue(2));
+        }
+    }
+
+    static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    public static void main(String[] args) {
+        int rowCount = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        for (String layout : new String[] { "list", "columnar" }) {
+            long before = usedHeap();
+            List<Row> rows = newRows(layout);
+            fill(rows, rowCount);
+            long retained = usedHeap() - before;
+            System.out.printf("%-9s %,d rows: %,d bytes retained (%.1f bytes/row)%n",
+                    layout, rows.size(), retained, retained / (double) rows.size());
+            rows = null;
+        }
+    }
+}
@@ -74,6 +74,9 @@ public class JythonEvaluable implements Evaluable {
 
     private final String s_functionName;
 
+    // held directly, as another expression hashing to the same name would redefine it in the interpreter
+    private final PyFunction _function;
+
     private static PythonInterpreter _engine;
 
     // FIXME(SM): this initialization logic depends on the fact that the JVM's
@@ -123,13 +126,14 @@ public class JythonEvaluable implements Evaluable {
         }
 
         _engine.exec(sb.toString());
+        _function = (PyFunction) _engine.get(s_functionName);
     }
 
     @Override
     public Object evaluate(Properties bindings) {
         try {
             // call the temporary PyFunction directly
-            Object result = ((PyFunction) _engine.get(s_functionName)).__call__(
+            Object result = _function.__call__(
                     new PyObject[] {
                             Py.java2py(bindings.get("value")),
                             new JythonHasFieldsWrapper((HasFields) bindings.get("cell"), bindings),
@@ -144,6 +148,12 @@ public class JythonEvaluable implements Evaluable {
         }
     }
 
+    @Override
+    public boolean isStateless() {
+        // the function is defined once, and the interpreter is already shared by all expressions
+        return true;
+    }
+
     protected Object unwrap(Object result) {
         if (result != null) {
             if (result instanceof JythonObjectWrapper) {
@@ -39,10 +39,18 @@ import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
@@ -93,7 +101,7 @@ public abstract class ProjectManager {
     /**
      * Flag for heavy operations like creating or importing projects. Workspace saves are skipped while it's set.
      */
-    transient protected int _busy = 0;
+    transient protected final AtomicInteger _busy = new AtomicInteger();
 
     /**
      * While each project's metadata is loaded completely at start-up, each project's raw data is loaded only when the
@@ -102,13 +110,44 @@ public abstract class ProjectManager {
      */
     transient protected Map<Long, Project> _projects;
 
+    /**
+     * Loads of projects in progress, shared by all callers asking for the same project.
+     */
+    transient protected Map<Long, CompletableFuture<Project>> _loadingProjects;
+
+    /**
+     * Keeps the loaded projects within the heap budget.
+     */
+    transient protected ProjectResidency _residency = new ProjectResidency();
+
+    static private final int PROJECT_LOCK_STRIPES = 64;
+
+    /**
+     * Striped locks serializing the saving and removal of each project, so that projects which don't share a stripe
+     * never wait for each other. The maps of projects are concurrent, so lookups and loads don't take any lock.
+     */
+    transient private final Object[] _projectLocks = new Object[PROJECT_LOCK_STRIPES];
+
+    /**
+     * The number of projects loaded at the same time. Set the {@code refine.projectLoaderThreads} system property to
+     * change it.
+     */
+    static public final int PROJECT_LOADER_THREADS = Integer.getInteger("refine.projectLoaderThreads",
+            Math.max(2, Runtime.getRuntime().availableProcessors() / 2));
+
+    static private ExecutorService s_loaderPool;
+
     static public ProjectManager singleton;
 
     protected ProjectManager() {
-        _projectsMetadata = new HashMap<Long, ProjectMetadata>();
+        _projectsMetadata = new ConcurrentHashMap<Long, ProjectMetadata>();
         _preferenceStore = new PreferenceStore();
-        _projects = new HashMap<Long, Project>();
-        _projectsTags = new HashMap<>();
+        _projects = new ConcurrentHashMap<Long, Project>();
+        _loadingProjects = new ConcurrentHashMap<>();
+        _projectsTags = new ConcurrentHashMap<>();
+        for (int i = 0; i < _projectLocks.length; i++) {
+            _projectLocks[i] = new Object();
+        }
 
         preparePreferenceStore(_preferenceStore);
     }
@@ -133,11 +172,12 @@ public abstract class ProjectManager {
      * @param projectMetadata
      */
     public void registerProject(Project project, ProjectMetadata projectMetadata) {
-        synchronized (this) {
+        synchronized (lockFor(project.id)) {
             // Row count is duplicated in metadata, so make sure it is up-to-date
             projectMetadata.setRowCount(project.rows.size());
             _projects.put(project.id, project);
             _projectsMetadata.put(project.id, projectMetadata);
+            _residency.touch(project.id);
             addProjectTags(projectMetadata.getTags());
         }
     }
@@ -183,7 +223,9 @@ public abstract class ProjectManager {
      * @param id
      */
     public void ensureProjectSaved(long id) {
-        synchronized (this) {
+        // load the project before taking its lock, so that the lock is not held while reading it
+        Project project = getProject(id);
+        synchronized (lockFor(id)) {
             ProjectMetadata metadata = this.getProjectMetadata(id);
             if (metadata != null) {
                 try {
@@ -193,7 +235,6 @@ public abstract class ProjectManager {
                 }
             } // FIXME what should be the behaviour if metadata is null? i.e. not found
 
-            Project project = getProject(id);
             if (project != null && metadata != null && metadata.getModified().isAfter(project.getLastSave())) {
                 try {
                     saveProject(project);
@@ -229,7 +270,7 @@ public abstract class ProjectManager {
      * @param allModified
      */
     public void save(boolean allModified) {
-        if (allModified || _busy == 0) {
+        if (allModified || _busy.get() == 0) {
             saveProjects(allModified);
             saveWorkspace();
         }
@@ -265,31 +306,29 @@ public abstract class ProjectManager {
         Instant startTimeOfSave = Instant.now();
         Instant quicksaveDeadline = startTimeOfSave.plus(QUICK_SAVE_MAX_TIME);
 
-        synchronized (this) {
-            for (long id : _projectsMetadata.keySet()) {
-                ProjectMetadata metadata = getProjectMetadata(id);
-                Project project = _projects.get(id); // don't call getProject() as that will load the project.
-
-                if (project != null) {
-                    // We use after or equals to avoid the case where a newly created project
-                    // has the same modified and last save times, resulting in the project not getting
-                    // saved at all.
-                    boolean hasUnsavedChanges = metadata.getModified().isAfter(project.getLastSave())
-                            || metadata.getModified().equals(project.getLastSave());
-
-                    if (hasUnsavedChanges) {
-                        long msecsOverdue = Duration.between(startTimeOfSave, project.getLastSave()).toMillis();
-                        records.add(new SaveRecord(project, msecsOverdue));
-
-                    } else if (!project.getProcessManager().hasPending()
-                            && project.getLastSave().plus(PROJECT_FLUSH_DELAY).isBefore(startTimeOfSave)) {
-
-                        /*
-                         * It's been a while since the project was last saved, and it hasn't been modified. We can
-                         * safely remove it from the cache to save some memory.
-                         */
-                        _projects.remove(id).dispose();
-                    }
+        for (long id : _projectsMetadata.keySet()) {
+            ProjectMetadata metadata = getProjectMetadata(id);
+            Project project = _projects.get(id); // don't call getProject() as that will load the project.
+
+            if (project != null && metadata != null) {
+                // We use after or equals to avoid the case where a newly created project
+                // has the same modified and last save times, resulting in the project not getting
+                // saved at all.
+                boolean hasUnsavedChanges = metadata.getModified().isAfter(project.getLastSave())
+                        || metadata.getModified().equals(project.getLastSave());
+
+                if (hasUnsavedChanges) {
+                    long msecsOverdue = Duration.between(startTimeOfSave, project.getLastSave()).toMillis();
+                    records.add(new SaveRecord(project, msecsOverdue));
+
+                } else if (!project.getProcessManager().hasPending()
+                        && project.getLastSave().plus(PROJECT_FLUSH_DELAY).isBefore(startTimeOfSave)) {
+
+                    /*
+                     * It's been a while since the project was last saved, and it hasn't been modified. We can safely
+                     * remove it from the cache to save some memory.
+                     */
+                    evict(project, this::isSavedAndIdle);
                 }
             }
         }
@@ -306,7 +345,12 @@ public abstract class ProjectManager {
                     break;
                 }
                 try {
-                    saveProject(record.project);
+                    // projects are saved one at a time, but the others stay available meanwhile
+                    synchronized (lockFor(record.project.id)) {
+                        if (_projects.get(record.project.id) == record.project) {
+                            saveProject(record.project);
+                        }
+                    }
                 } catch (Exception e) {
                     logger.error("Error when saving projects. Attempting to free memory", e);
                     // In case we're running low on memory, free as much as we can
@@ -314,21 +358,80 @@ public abstract class ProjectManager {
                 }
             }
         }
+        // projects just saved can be evicted
+        enforceHeapBudget(0);
+    }
+
+    /**
+     * Evicts the least recently used saved projects from memory while the loaded projects exceed the heap budget (see
+     * {@link ProjectResidency}).
+     *
+     * @param keepID
+     *            the id of a project which must stay loaded, or 0
+     */
+    protected void enforceHeapBudget(long keepID) {
+        List<Long> evicted = _residency.selectEvictions(_projects, keepID, this::isSavedAndIdle);
+        for (long id : evicted) {
+            Project project = _projects.get(id);
+            if (project != null && evict(project, this::isSavedAndIdle)) {
+                logger.info("Evicted project {} from memory to stay within the heap budget", id);
+            }
+        }
+    }
+
+    /**
+     * @return whether the project is saved and not in use: no process is pending, no entry of its history is being
+     *         applied, and it was not accessed recently, since requests which got it may still be about to modify it
+     */
+    private boolean isSavedAndIdle(Project project) {
+        ProjectMetadata metadata = _projectsMetadata.get(project.id);
+        return metadata != null && !project.getProcessManager().hasPending()
+                && project.getLastSave().isAfter(metadata.getModified())
+                && _residency.isIdle(project.id) && (project.history == null || !project.history.isChanging());
+    }
+
+    /**
+     * Removes a project from memory and disposes it, unless it was replaced or removed meanwhile or no longer passes
+     * the given check, which is made again under the project's lock.
+     *
+     * @return whether the project was evicted
+     */
+    private boolean evict(Project project, Predicate<Project> check) {
+        synchronized (lockFor(project.id)) {
+            if (_projects.get(project.id) != project || !check.test(project)) {
+                return false;
+            }
+            _projects.remove(project.id);
+            _residency.forget(project.id);
+        }
+        project.dispose();
+        return true;
+    }
+
+    /**
+     * @return the lock serializing the registration, saving, eviction and removal of the project with the given id.
+     *         Loads do not take it, so that opening a project never waits for a project being saved.
+     */
+    protected Object lockFor(long id) {
+        int hash = Long.hashCode(id);
+        return _projectLocks[(hash ^ (hash >>> 16)) & (PROJECT_LOCK_STRIPES - 1)];
+    }
+
+    /**
+     * @return the tracker of the heap used by loaded projects, with up-to-date size estimates
+     */
+    @JsonIgnore
+    public ProjectResidency getResidency() {
+        _residency.estimate(_projects);
+        return _residency;
     }
 
     /**
      * Flush all unmodified projects from memory.
      */
     protected void disposeUnmodifiedProjects() {
-        synchronized (this) {
-            for (long id : _projectsMetadata.keySet()) {
-                ProjectMetadata metadata = getProjectMetadata(id);
-                Project project = _projects.get(id);
-                if (project != null && !project.getProcessManager().hasPending()
-                        && project.getLastSave().isAfter(metadata.getModified())) {
-                    _projects.remove(id).dispose();
-                }
-            }
+        for (Project project : _projects.values()) {
+            evict(project, this::isSavedAndIdle);
         }
     }
 
@@ -494,11 +597,7 @@ public abstract class ProjectManager {
     public void addProjectTags(String[] tags) {
         if (tags != null) {
             for (String tag : tags) {
-                if (_projectsTags.containsKey(tag)) {
-                    _projectsTags.put(tag, _projectsTags.get(tag) + 1);
-                } else {
-                    _projectsTags.put(tag, 1);
-                }
+                _projectsTags.merge(tag, 1, Integer::sum);
             }
         }
     }
@@ -511,14 +610,7 @@ public abstract class ProjectManager {
      */
     public void removeProjectTags(String[] tags) {
         for (String tag : tags) {
-            if (_projectsTags.containsKey(tag)) {
-                int occurrence = _projectsTags.get(tag);
-                if (occurrence <= 1)
-                    _projectsTags.remove(tag);
-                else {
-                    _projectsTags.put(tag, occurrence - 1);
-                }
-            }
+            _projectsTags.computeIfPresent(tag, (t, occurrence) -> occurrence <= 1 ? null : occurrence - 1);
         }
     }
 
@@ -552,19 +644,86 @@ public abstract class ProjectManager {
      * @return the project with the matching id, or null if it can't be found
      */
     public Project getProject(long id) {
-        synchronized (this) {
-            if (_projects.containsKey(id)) {
-                return _projects.get(id);
-            } else {
-                Project project = loadProject(id);
-                if (project != null) {
+        _residency.touch(id);
+        Project loaded = _projects.get(id);
+        if (loaded != null) {
+            return loaded;
+        }
+        // no project lock is taken, so that opening a project never waits for a project being saved
+        CompletableFuture<Project> created = new CompletableFuture<>();
+        CompletableFuture<Project> future = _loadingProjects.putIfAbsent(id, created);
+        if (future == null) {
+            // loads publish their project before removing their future, so one may have completed meanwhile
+            loaded = _projects.get(id);
+            if (loaded != null) {
+                _loadingProjects.remove(id, created);
+                created.complete(loaded);
+                return loaded;
+            }
+            future = created;
+            getLoaderPool().execute(() -> load(id, created));
+        }
+
+        // other projects remain available while this one loads
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private void load(long id, CompletableFuture<Project> future) {
+        try {
+            Project project = loadProject(id);
+            if (project != null) {
+                boolean published = false;
+                if (_loadingProjects.get(id) == future) {
                     _projects.put(id, project);
+                    published = true;
                 }
-                return project;
+                if (!_loadingProjects.remove(id, future)) {
+                    // the project was removed while it was loading, which disposed of it if it was already published
+                    if (!published || _projects.remove(id, project)) {
+                        project.dispose();
+                    }
+                    project = null;
+                }
+            } else {
+                _loadingProjects.remove(id, future);
+            }
+            if (project != null) {
+                enforceHeapBudget(id);
             }
+            future.complete(project);
+        } catch (Throwable e) {
+            _loadingProjects.remove(id, future);
+            future.completeExceptionally(e);
         }
     }
 
+    /**
+     * @return the bounded pool on which projects and their metadata are loaded
+     */
+    static protected synchronized ExecutorService getLoaderPool() {
+        if (s_loaderPool == null) {
+            AtomicInteger threadCount = new AtomicInteger();
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(PROJECT_LOADER_THREADS, PROJECT_LOADER_THREADS,
+                    60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+                        Thread thread = new Thread(r, "project-loader-" + threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            pool.allowCoreThreadTimeOut(true);
+            s_loaderPool = pool;
+        }
+        return s_loaderPool;
+    }
+
     /**
      * Gets the preference store
      * 
@@ -615,10 +774,17 @@ public abstract class ProjectManager {
      * @param projectID
      */
     protected void removeProject(long projectID) {
-        if (_projects.containsKey(projectID)) {
-            _projects.remove(projectID).dispose();
+        Project project;
+        synchronized (lockFor(projectID)) {
+            project = _projects.remove(projectID);
+            _residency.forget(projectID);
+            // a load in progress will discard the project it loads
+            _loadingProjects.remove(projectID);
+            _projectsMetadata.remove(projectID);
+        }
+        if (project != null) {
+            project.dispose();
         }
-        _projectsMetadata.remove(projectID);
     }
 
     /**
@@ -627,12 +793,10 @@ public abstract class ProjectManager {
      * @param busy
      */
     public void setBusy(boolean busy) {
-        synchronized (this) {
-            if (busy) {
-                _busy++;
-            } else {
-                _busy--;
-            }
+        if (busy) {
+            _busy.incrementAndGet();
+        } else {
+            _busy.decrementAndGet();
         }
     }
 
@@ -642,8 +806,9 @@ public abstract class ProjectManager {
      * @param s
      */
     public void addLatestExpression(String s) {
-        synchronized (this) {
-            ((TopList) _preferenceStore.get("scripting.expressions")).add(s);
+        TopList expressions = (TopList) _preferenceStore.get("scripting.expressions");
+        synchronized (expressions) {
+            expressions.add(s);
         }
     }
 
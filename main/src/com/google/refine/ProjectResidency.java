@@ -0,0 +1,258 @@
+/*******************************************************************************
+ * Copyright (C) 2024, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import com.google.refine.history.History;
+import com.google.refine.model.Project;
+
+/**
+ * Keeps the projects loaded in memory within a heap budget. It tracks when each project was last accessed and estimates
+ * how much heap it retains; when the loaded projects exceed the budget, the least recently used ones which can be
+ * reloaded from disk are chosen for eviction. The estimates and the last evictions are reported as JSON by
+ * {@link com.google.refine.commands.workspace.GetProjectResidencyCommand}.
+ */
+public class ProjectResidency {
+
+    /**
+     * The heap budget for loaded projects, in bytes. Set the {@code refine.projectHeapBudget} system property to change
+     * it. Defaults to half the maximum heap size.
+     */
+    static public long s_heapBudget = Long.getLong("refine.projectHeapBudget", Runtime.getRuntime().maxMemory() / 2);
+
+    /**
+     * How long a project must not have been accessed before it can be evicted, since the requests which accessed it may
+     * still be using it. Set the {@code refine.projectMinIdleSeconds} system property to change it.
+     */
+    static public Duration s_minIdleTime = Duration.ofSeconds(Long.getLong("refine.projectMinIdleSeconds", 300));
+
+    static final private int MAX_EVICTIONS_REPORTED = 100;
+
+    /**
+     * A loaded project, as reported in the stats.
+     */
+    static public class ResidentProject {
+
+        @JsonProperty("id")
+        public final long id;
+        @JsonProperty("estimatedBytes")
+        public final long estimatedBytes;
+        @JsonProperty("lastAccess")
+        public final Instant lastAccess;
+        @JsonProperty("history")
+        @JsonInclude(Include.NON_NULL)
+        public final History.MemoryUsage history;
+
+        ResidentProject(long id, long estimatedBytes, Instant lastAccess, History.MemoryUsage history) {
+            this.id = id;
+            this.estimatedBytes = estimatedBytes;
+            this.lastAccess = lastAccess;
+            this.history = history;
+        }
+    }
+
+    /**
+     * A project evicted from memory, as reported in the stats.
+     */
+    static public class Eviction {
+
+        @JsonProperty("id")
+        public final long id;
+        @JsonProperty("estimatedBytes")
+        public final long estimatedBytes;
+        @JsonProperty("time")
+        public final Instant time;
+        @JsonProperty("totalBytesBefore")
+        public final long totalBytesBefore;
+
+        Eviction(long id, long estimatedBytes, long totalBytesBefore) {
+            this.id = id;
+            this.estimatedBytes = estimatedBytes;
+            this.time = Instant.now();
+            this.totalBytesBefore = totalBytesBefore;
+        }
+    }
+
+    private final AtomicLong clock = new AtomicLong();
+    // logical clock, to order accesses made within the same millisecond
+    private final Map<Long, Long> lastAccess = new ConcurrentHashMap<>();
+    private final Map<Long, Instant> lastAccessTime = new ConcurrentHashMap<>();
+    private final Map<Long, Long> estimates = new ConcurrentHashMap<>();
+    private final Map<Long, History.MemoryUsage> historyUsage = new ConcurrentHashMap<>();
+    private final Deque<Eviction> evictions = new ArrayDeque<>();
+
+    /**
+     * Records that a project was accessed.
+     */
+    public void touch(long projectID) {
+        lastAccess.put(projectID, clock.incrementAndGet());
+        lastAccessTime.put(projectID, Instant.now());
+    }
+
+    /**
+     * @return whether the project was not accessed for at least the minimum idle time
+     */
+    public boolean isIdle(long projectID) {
+        Instant accessed = lastAccessTime.get(projectID);
+        return accessed == null || !accessed.isAfter(Instant.now().minus(s_minIdleTime));
+    }
+
+    /**
+     * Forgets about a project which is no longer loaded.
+     */
+    public void forget(long projectID) {
+        lastAccess.remove(projectID);
+        lastAccessTime.remove(projectID);
+        estimates.remove(projectID);
+        historyUsage.remove(projectID);
+    }
+
+    /**
+     * Estimates the heap retained by each of the loaded projects, including the changes of their history held in
+     * memory. Projects being changed keep their last estimate.
+     *
+     * @return the total estimated size of the loaded projects, in bytes
+     */
+    public long estimate(Map<Long, Project> loaded) {
+        long total = 0;
+        for (Project project : loaded.values()) {
+            if (project.history != null && project.history.isChanging()) {
+                // measuring the project would wait for the change, which only makes it grow, so the last estimate is
+                // kept
+                total += estimates.getOrDefault(project.id, 0L);
+                continue;
+            }
+            long bytes = project.estimateRetainedBytes();
+            estimates.put(project.id, bytes);
+            historyUsage.put(project.id, project.history.getMemoryUsage());
+            total += bytes;
+        }
+        return total;
+    }
+
+    /**
+     * If the heap in use exceeds the budget, estimates the size of the loaded projects and, if they exceed it too,
+     * chooses the projects to evict, least recently used first. The caller is expected to evict them.
+     *
+     * @param loaded
+     *            the loaded projects
+     * @param keepID
+     *            a project which must not be evicted, such as the one just loaded, or 0
+     * @param evictable
+     *            whether a project can be evicted, which it can only be if it is saved
+     * @return the ids of the projects to evict
+     */
+    public List<Long> selectEvictions(Map<Long, Project> loaded, long keepID, Predicate<Project> evictable) {
+        List<Long> selected = new ArrayList<>();
+        Runtime runtime = Runtime.getRuntime();
+        // the heap in use, including garbage, is an upper bound of what the projects retain
+        if (runtime.totalMemory() - runtime.freeMemory() <= s_heapBudget) {
+            return selected;
+        }
+        long total = estimate(loaded);
+        if (total <= s_heapBudget) {
+            return selected;
+        }
+
+        List<Project> candidates = new ArrayList<>(loaded.values());
+        candidates.sort(Comparator.comparingLong(project -> lastAccess.getOrDefault(project.id, 0L)));
+        long remaining = total;
+        for (Project project : candidates) {
+            if (remaining <= s_heapBudget) {
+                break;
+            }
+            if (project.id == keepID || !evictable.test(project)) {
+                continue;
+            }
+            long bytes = estimates.getOrDefault(project.id, 0L);
+            synchronized (evictions) {
+                evictions.addLast(new Eviction(project.id, bytes, total));
+                if (evictions.size() > MAX_EVICTIONS_REPORTED) {
+                    evictions.removeFirst();
+                }
+            }
+            selected.add(project.id);
+            remaining -= bytes;
+        }
+        return selected;
+    }
+
+    @JsonProperty("heapBudget")
+    public long getHeapBudget() {
+        return s_heapBudget;
+    }
+
+    @JsonProperty("maxHeap")
+    public long getMaxHeap() {
+        return Runtime.getRuntime().maxMemory();
+    }
+
+    @JsonProperty("estimatedBytes")
+    public long getEstimatedBytes() {
+        return estimates.values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    /**
+     * @return the loaded projects with their size estimated at the last check, most recently used first
+     */
+    @JsonProperty("projects")
+    public List<ResidentProject> getProjects() {
+        List<ResidentProject> projects = new ArrayList<>();
+        List<Long> ids = new ArrayList<>(estimates.keySet());
+        ids.sort(Comparator.comparingLong((Long id) -> lastAccess.getOrDefault(id, 0L)).reversed());
+        for (long id : ids) {
+            projects.add(new ResidentProject(id, estimates.getOrDefault(id, 0L), lastAccessTime.get(id), historyUsage.get(id)));
+        }
+        return projects;
+    }
+
+    /**
+     * @return the last projects evicted to stay within the budget, oldest first
+     */
+    @JsonProperty("evictions")
+    public List<Eviction> getEvictions() {
+        synchronized (evictions) {
+            return new ArrayList<>(evictions);
+        }
+    }
+}
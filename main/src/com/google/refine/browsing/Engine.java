@@ -33,6 +33,7 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package com.google.refine.browsing;
 
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
@@ -40,13 +41,19 @@ import java.util.stream.Collectors;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonProcessingException;
 
 import com.google.refine.browsing.facets.Facet;
+import com.google.refine.browsing.facets.FacetConfig;
 import com.google.refine.browsing.util.ConjunctiveFilteredRecords;
 import com.google.refine.browsing.util.ConjunctiveFilteredRows;
+import com.google.refine.browsing.util.FailureCountFilteredRows;
 import com.google.refine.browsing.util.FilteredRecordsAsFilteredRows;
+import com.google.refine.browsing.util.ParallelRowVisiting;
+import com.google.refine.browsing.util.RowFilterBitmapCache;
 import com.google.refine.model.Project;
 import com.google.refine.model.Row;
+import com.google.refine.util.ParsingUtilities;
 
 /**
  * Faceted browsing engine.
@@ -99,6 +106,16 @@ public class Engine {
 
             @Override
             public void accept(Project project, RowVisitor visitor) {
+                if (ParallelRowVisiting.canVisitInParallel(project, visitor, Collections.emptyList())) {
+                    ParallelRowVisiting.visit(project, (MergeableRowVisitor) visitor, (from, to, partial) -> {
+                        for (int rowIndex = from; rowIndex < to; rowIndex++) {
+                            if (partial.visit(project, rowIndex, project.rows.get(rowIndex))) {
+                                break;
+                            }
+                        }
+                    });
+                    return;
+                }
                 try {
                     visitor.start(project);
 
@@ -180,6 +197,21 @@ public class Engine {
         throw new InternalError("This method should not be called when the engine is not in record mode.");
     }
 
+    /**
+     * @return a string identifying the filter of the facet at the given index, or null if it cannot be determined
+     */
+    protected String getFacetCacheKey(int facetIndex) {
+        List<FacetConfig> facetConfigs = _config.getFacetConfigs();
+        if (facetConfigs.size() != _facets.size()) {
+            return null;
+        }
+        try {
+            return ParsingUtilities.mapper.writeValueAsString(facetConfigs.get(facetIndex));
+        } catch (JsonProcessingException e) {
+            return null;
+        }
+    }
+
     public void initializeFromConfig(EngineConfig config) {
         _config = config;
         _facets = config.getFacetConfigs().stream()
@@ -189,10 +221,22 @@ public class Engine {
 
     public void computeFacets() {
         if (_config.getMode().equals(Mode.RowBased)) {
-            for (Facet facet : _facets) {
-                FilteredRows filteredRows = getFilteredRows(facet);
+            // Evaluate each facet's filter once per row (or reuse it from the cache if the facet did not change)
+            // and count how many facets each row fails, instead of running all other facets' filters for each facet.
+            // Filters which depend on more than the project, such as cross() or now(), are evaluated every time.
+            int rowCount = _project.rows.size();
+            BitSet[] matchingRows = new BitSet[_facets.size()];
+            for (int i = 0; i < matchingRows.length; i++) {
+                RowFilter rowFilter = _facets.get(i).getRowFilter(_project);
+                if (rowFilter != null) {
+                    String cacheKey = rowFilter.isCacheable() ? getFacetCacheKey(i) : null;
+                    matchingRows[i] = RowFilterBitmapCache.getMatchingRows(_project, cacheKey, rowFilter);
+                }
+            }
+            byte[] failures = FailureCountFilteredRows.countFailures(rowCount, matchingRows);
 
-                facet.computeChoices(_project, filteredRows);
+            for (int i = 0; i < matchingRows.length; i++) {
+                _facets.get(i).computeChoices(_project, new FailureCountFilteredRows(failures, matchingRows[i]));
             }
         } else if (_config.getMode().equals(Mode.RecordBased)) {
             for (Facet facet : _facets) {
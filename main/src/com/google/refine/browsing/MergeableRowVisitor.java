@@ -0,0 +1,61 @@
+/*******************************************************************************
+ * Copyright (C) 2024, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.browsing;
+
+/**
+ * A {@link RowVisitor} whose work can be split across partitions of the rows, so that it can be run on several threads.
+ * Each partition is visited by its own partial visitor, obtained from {@link #createPartialVisitor()}, and the partial
+ * results are then combined into this visitor in row order.
+ * <p>
+ * When visited in parallel, the value returned by {@link #visit} only stops the visit of the current partition, so
+ * visitors which rely on aborting the visit early should not implement this interface.
+ */
+public interface MergeableRowVisitor extends RowVisitor {
+
+    /**
+     * @return a visitor with the same configuration as this one and empty results, to visit one partition of the rows
+     */
+    public MergeableRowVisitor createPartialVisitor();
+
+    /**
+     * Adds the results of a partial visitor to the results of this one. Partial visitors are combined in the order of
+     * the partitions they visited.
+     *
+     * @param partial
+     *            a visitor obtained from {@link #createPartialVisitor()}, which has visited its partition
+     */
+    public void combine(MergeableRowVisitor partial);
+
+    /**
+     * @return true if partial visitors can visit their partitions concurrently, for instance because the expressions
+     *         they evaluate are thread-safe.
+     */
+    default public boolean isParallelizable() {
+        return true;
+    }
+}
@@ -43,4 +43,20 @@ import com.google.refine.model.Row;
 public interface RowFilter {
 
     public boolean filterRow(Project project, int rowIndex, Row row);
+
+    /**
+     * @return true if this filter can be called concurrently on different rows
+     */
+    default public boolean isThreadSafe() {
+        return false;
+    }
+
+    /**
+     * @return true if the rows matched by this filter only depend on the cells of the project, so that they can be
+     *         cached until the project changes. Filters on expressions reading other projects, the current time or
+     *         random numbers must return false.
+     */
+    default public boolean isCacheable() {
+        return false;
+    }
 }
@@ -94,6 +94,17 @@ abstract public class DualExpressionsNumberComparisonRowFilter implements RowFil
         return checkValue(x_value, y_value);
     }
 
+    @Override
+    public boolean isThreadSafe() {
+        return _x_evaluable.isThreadSafe() && _y_evaluable.isThreadSafe();
+    }
+
+    @Override
+    public boolean isCacheable() {
+        return _x_evaluable.getColumnDependencies(_x_columnName) != null
+                && _y_evaluable.getColumnDependencies(_y_columnName) != null;
+    }
+
     protected boolean checkValue(Object vx, Object vy) {
         if (ExpressionUtils.isError(vx) || ExpressionUtils.isError(vy)) {
             return false;
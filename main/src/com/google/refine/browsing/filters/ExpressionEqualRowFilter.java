@@ -34,15 +34,14 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 package com.google.refine.browsing.filters;
 
 import java.util.Collection;
-import java.util.Properties;
 
 import com.fasterxml.jackson.databind.node.ArrayNode;
 
 import com.google.refine.browsing.RowFilter;
+import com.google.refine.expr.CachedColumnEvaluator;
 import com.google.refine.expr.Evaluable;
 import com.google.refine.expr.ExpressionUtils;
 import com.google.refine.expr.util.JsonValueConverter;
-import com.google.refine.model.Cell;
 import com.google.refine.model.Project;
 import com.google.refine.model.Row;
 
@@ -60,6 +59,8 @@ public class ExpressionEqualRowFilter implements RowFilter {
                                     // -1 if based on no column in particular,
                                     // for expression such as "row.starred".
 
+    final protected CachedColumnEvaluator _evaluator;
+
     final protected Object[] _matches;
     final protected boolean _selectBlank;
     final protected boolean _selectError;
@@ -76,6 +77,7 @@ public class ExpressionEqualRowFilter implements RowFilter {
         _evaluable = evaluable;
         _columnName = columnName;
         _cellIndex = cellIndex;
+        _evaluator = new CachedColumnEvaluator(evaluable, columnName, cellIndex);
         _matches = matches;
         _selectBlank = selectBlank;
         _selectError = selectError;
@@ -87,13 +89,18 @@ public class ExpressionEqualRowFilter implements RowFilter {
         return _invert ? internalInvertedFilterRow(project, rowIndex, row) : internalFilterRow(project, rowIndex, row);
     }
 
-    public boolean internalFilterRow(Project project, int rowIndex, Row row) {
-        Cell cell = _cellIndex < 0 ? null : row.getCell(_cellIndex);
+    @Override
+    public boolean isThreadSafe() {
+        return _evaluable.isThreadSafe();
+    }
 
-        Properties bindings = ExpressionUtils.createBindings(project);
-        ExpressionUtils.bind(bindings, row, rowIndex, _columnName, cell);
+    @Override
+    public boolean isCacheable() {
+        return _evaluable.getColumnDependencies(_columnName) != null;
+    }
 
-        Object value = _evaluable.evaluate(bindings);
+    public boolean internalFilterRow(Project project, int rowIndex, Row row) {
+        Object value = _evaluator.evaluate(project, rowIndex, row, null);
         if (value != null) {
             if (value.getClass().isArray()) {
                 Object[] a = (Object[]) value;
@@ -127,12 +134,7 @@ public class ExpressionEqualRowFilter implements RowFilter {
     }
 
     public boolean internalInvertedFilterRow(Project project, int rowIndex, Row row) {
-        Cell cell = _cellIndex < 0 ? null : row.getCell(_cellIndex);
-
-        Properties bindings = ExpressionUtils.createBindings(project);
-        ExpressionUtils.bind(bindings, row, rowIndex, _columnName, cell);
-
-        Object value = _evaluable.evaluate(bindings);
+        Object value = _evaluator.evaluate(project, rowIndex, row, null);
         if (value != null) {
             if (value.getClass().isArray()) {
                 Object[] a = (Object[]) value;
@@ -108,6 +108,16 @@ abstract public class ExpressionNumberComparisonRowFilter implements RowFilter {
         return checkValue(value);
     }
 
+    @Override
+    public boolean isThreadSafe() {
+        return _rowEvaluable.isThreadSafe();
+    }
+
+    @Override
+    public boolean isCacheable() {
+        return _rowEvaluable.isCacheable();
+    }
+
     protected boolean checkValue(Object v) {
         if (ExpressionUtils.isError(v)) {
             return _selectError;
@@ -106,5 +106,15 @@ abstract public class ExpressionStringComparisonRowFilter implements RowFilter {
         return invert;
     }
 
+    @Override
+    public boolean isThreadSafe() {
+        return _evaluable.isThreadSafe();
+    }
+
+    @Override
+    public boolean isCacheable() {
+        return _evaluable.getColumnDependencies(_columnName) != null;
+    }
+
     abstract protected boolean checkValue(String s);
 }
@@ -37,6 +37,7 @@ import java.util.LinkedList;
 import java.util.List;
 
 import com.google.refine.browsing.FilteredRows;
+import com.google.refine.browsing.MergeableRowVisitor;
 import com.google.refine.browsing.RowFilter;
 import com.google.refine.browsing.RowVisitor;
 import com.google.refine.model.Project;
@@ -56,6 +57,19 @@ public class ConjunctiveFilteredRows implements FilteredRows {
 
     @Override
     public void accept(Project project, RowVisitor visitor) {
+        if (ParallelRowVisiting.canVisitInParallel(project, visitor, _rowFilters)) {
+            ParallelRowVisiting.visit(project, (MergeableRowVisitor) visitor, (from, to, partial) -> {
+                for (int rowIndex = from; rowIndex < to; rowIndex++) {
+                    Row row = project.rows.get(rowIndex);
+                    if (matchRow(project, rowIndex, row)) {
+                        if (visitRow(project, partial, rowIndex, row)) {
+                            break;
+                        }
+                    }
+                }
+            });
+            return;
+        }
         try {
             visitor.start(project);
 
@@ -65,4 +65,14 @@ public class ExpressionBasedRowEvaluable implements RowEvaluable {
 
         return _eval.evaluate(bindings);
     }
+
+    @Override
+    public boolean isThreadSafe() {
+        return _eval.isThreadSafe();
+    }
+
+    @Override
+    public boolean isCacheable() {
+        return _eval.getColumnDependencies(_columnName) != null;
+    }
 }
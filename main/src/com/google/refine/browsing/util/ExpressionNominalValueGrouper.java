@@ -36,17 +36,18 @@ package com.google.refine.browsing.util;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 
 import com.google.refine.browsing.DecoratedValue;
+import com.google.refine.browsing.MergeableRowVisitor;
 import com.google.refine.browsing.RecordVisitor;
-import com.google.refine.browsing.RowVisitor;
 import com.google.refine.browsing.facets.NominalFacetChoice;
+import com.google.refine.expr.CachedColumnEvaluator;
 import com.google.refine.expr.Evaluable;
 import com.google.refine.expr.ExpressionUtils;
-import com.google.refine.model.Cell;
 import com.google.refine.model.Project;
 import com.google.refine.model.Record;
 import com.google.refine.model.Row;
@@ -55,7 +56,7 @@ import com.google.refine.util.StringUtils;
 /**
  * Visit matched rows or records and group them into facet choices based on the values computed from a given expression.
  */
-public class ExpressionNominalValueGrouper implements RowVisitor, RecordVisitor {
+public class ExpressionNominalValueGrouper implements MergeableRowVisitor, RecordVisitor {
 
     static public class IndexedNominalFacetChoice extends NominalFacetChoice {
 
@@ -73,11 +74,12 @@ public class ExpressionNominalValueGrouper implements RowVisitor, RecordVisitor
     final protected Evaluable _evaluable;
     final protected String _columnName;
     final protected int _cellIndex;
+    final protected CachedColumnEvaluator _evaluator;
 
     /*
      * Computed results
      */
-    final public Map<Object, IndexedNominalFacetChoice> choices = new HashMap<Object, IndexedNominalFacetChoice>();
+    final public Map<Object, IndexedNominalFacetChoice> choices;
     public int blankCount = 0;
     public int errorCount = 0;
 
@@ -88,14 +90,53 @@ public class ExpressionNominalValueGrouper implements RowVisitor, RecordVisitor
     protected boolean hasError;
 
     public ExpressionNominalValueGrouper(Evaluable evaluable, String columnName, int cellIndex) {
+        this(evaluable, columnName, cellIndex, new CachedColumnEvaluator(evaluable, columnName, cellIndex),
+                new HashMap<Object, IndexedNominalFacetChoice>());
+    }
+
+    protected ExpressionNominalValueGrouper(Evaluable evaluable, String columnName, int cellIndex,
+            CachedColumnEvaluator evaluator, Map<Object, IndexedNominalFacetChoice> choices) {
         _evaluable = evaluable;
         _columnName = columnName;
         _cellIndex = cellIndex;
+        _evaluator = evaluator;
+        this.choices = choices;
+    }
+
+    @Override
+    public boolean isParallelizable() {
+        // subclasses would need to override createPartialVisitor() too
+        return getClass() == ExpressionNominalValueGrouper.class && _evaluable.isThreadSafe();
+    }
+
+    @Override
+    public MergeableRowVisitor createPartialVisitor() {
+        // keep choices in insertion order, so that combining the partial results
+        // inserts them in the same order as a sequential visit would
+        return new ExpressionNominalValueGrouper(_evaluable, _columnName, _cellIndex, _evaluator,
+                new LinkedHashMap<Object, IndexedNominalFacetChoice>());
+    }
+
+    @Override
+    public void combine(MergeableRowVisitor partial) {
+        ExpressionNominalValueGrouper grouper = (ExpressionNominalValueGrouper) partial;
+        for (Map.Entry<Object, IndexedNominalFacetChoice> entry : grouper.choices.entrySet()) {
+            IndexedNominalFacetChoice choice = choices.get(entry.getKey());
+            if (choice == null) {
+                choices.put(entry.getKey(), entry.getValue());
+            } else {
+                choice.count += entry.getValue().count;
+                choice._latestIndex = Math.max(choice._latestIndex, entry.getValue()._latestIndex);
+            }
+        }
+        blankCount += grouper.blankCount;
+        errorCount += grouper.errorCount;
     }
 
     @Override
     public void start(Project project) {
-        // nothing to do
+        // evaluate cached results up front rather than from the first partial visitor
+        _evaluator.prepare(project);
     }
 
     @Override
@@ -165,11 +206,7 @@ public class ExpressionNominalValueGrouper implements RowVisitor, RecordVisitor
     }
 
     protected Object evalRow(Project project, int rowIndex, Row row, Properties bindings) {
-        Cell cell = _cellIndex < 0 ? null : row.getCell(_cellIndex);
-
-        ExpressionUtils.bind(bindings, row, rowIndex, _columnName, cell);
-
-        return _evaluable.evaluate(bindings);
+        return _evaluator.evaluate(project, rowIndex, row, bindings);
     }
 
     protected void processValue(Object value, int index) {
@@ -0,0 +1,112 @@
+/*******************************************************************************
+ * Copyright (C) 2024, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.browsing.util;
+
+import java.util.BitSet;
+import java.util.Collections;
+
+import com.google.refine.browsing.FilteredRows;
+import com.google.refine.browsing.MergeableRowVisitor;
+import com.google.refine.browsing.RowVisitor;
+import com.google.refine.model.Project;
+import com.google.refine.model.Row;
+
+/**
+ * The rows seen by one facet when computing its choices: the rows matched by all other facets. These are the rows which
+ * fail no facet at all, plus the rows failing only this facet.
+ */
+public class FailureCountFilteredRows implements FilteredRows {
+
+    /**
+     * Counts, for each row, how many of the given row sets do not contain it. Counts saturate at 2, since facets only
+     * need to distinguish rows failing zero, one or more facets.
+     *
+     * @param matchingRows
+     *            the rows matched by each facet, or null for facets which do not filter rows
+     */
+    static public byte[] countFailures(int rowCount, BitSet[] matchingRows) {
+        byte[] failures = new byte[rowCount];
+        for (BitSet matches : matchingRows) {
+            if (matches == null) {
+                continue;
+            }
+            for (int r = matches.nextClearBit(0); r < rowCount; r = matches.nextClearBit(r + 1)) {
+                if (failures[r] < 2) {
+                    failures[r]++;
+                }
+            }
+        }
+        return failures;
+    }
+
+    final protected byte[] _failures;
+    final protected BitSet _ownMatches;
+
+    /**
+     * @param failures
+     *            failure counts computed by {@link #countFailures(int, BitSet[])}
+     * @param ownMatches
+     *            the rows matched by the facet itself, or null if it does not filter rows
+     */
+    public FailureCountFilteredRows(byte[] failures, BitSet ownMatches) {
+        _failures = failures;
+        _ownMatches = ownMatches;
+    }
+
+    protected boolean matchRow(int rowIndex) {
+        byte failures = _failures[rowIndex];
+        return failures == 0 || (failures == 1 && _ownMatches != null && !_ownMatches.get(rowIndex));
+    }
+
+    @Override
+    public void accept(Project project, RowVisitor visitor) {
+        if (ParallelRowVisiting.canVisitInParallel(project, visitor, Collections.emptyList())) {
+            ParallelRowVisiting.visit(project, (MergeableRowVisitor) visitor, (from, to, partial) -> {
+                visitRange(project, partial, from, to);
+            });
+            return;
+        }
+        try {
+            visitor.start(project);
+            visitRange(project, visitor, 0, project.rows.size());
+        } finally {
+            visitor.end(project);
+        }
+    }
+
+    private void visitRange(Project project, RowVisitor visitor, int from, int to) {
+        for (int rowIndex = from; rowIndex < to; rowIndex++) {
+            if (matchRow(rowIndex)) {
+                Row row = project.rows.get(rowIndex);
+                if (visitor.visit(project, rowIndex, row)) {
+                    break;
+                }
+            }
+        }
+    }
+}
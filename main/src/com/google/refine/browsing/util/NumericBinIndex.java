@@ -71,6 +71,15 @@ abstract public class NumericBinIndex {
 
     abstract protected void iterate(Project project, RowEvaluable rowEvaluable, List<Double> allValues);
 
+    /**
+     * Creates an empty index, used to accumulate the statistics of a partition of the rows before they are merged into
+     * the complete index with {@link #mergePartition(NumericBinIndex)}.
+     */
+    protected NumericBinIndex() {
+        _min = Double.POSITIVE_INFINITY;
+        _max = Double.NEGATIVE_INFINITY;
+    }
+
     public NumericBinIndex(Project project, RowEvaluable rowEvaluable) {
         _min = Double.POSITIVE_INFINITY;
         _max = Double.NEGATIVE_INFINITY;
@@ -233,6 +242,20 @@ abstract public class NumericBinIndex {
         }
     }
 
+    /**
+     * Adds the statistics accumulated by an index created with {@link #NumericBinIndex()} to this one. The numeric
+     * values themselves are collected separately by the caller.
+     */
+    protected void mergePartition(NumericBinIndex partition) {
+        _totalValueCount += partition._totalValueCount;
+        _min = Math.min(_min, partition._min);
+        _max = Math.max(_max, partition._max);
+        _numericRowCount += partition._numericRowCount;
+        _nonNumericRowCount += partition._nonNumericRowCount;
+        _blankRowCount += partition._blankRowCount;
+        _errorRowCount += partition._errorRowCount;
+    }
+
     protected void preprocessing() {
         _hasBlank = false;
         _hasError = false;
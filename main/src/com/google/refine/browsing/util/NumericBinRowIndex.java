@@ -33,6 +33,7 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package com.google.refine.browsing.util;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
 
@@ -42,18 +43,44 @@ import com.google.refine.model.Row;
 
 public class NumericBinRowIndex extends NumericBinIndex {
 
+    // values collected by an index covering a single partition of the rows
+    private List<Double> partitionValues;
+
     public NumericBinRowIndex(Project project, RowEvaluable rowEvaluable) {
 
         super(project, rowEvaluable);
     }
 
+    private NumericBinRowIndex() {
+        super();
+    }
+
     @Override
     protected void iterate(
             Project project, RowEvaluable rowEvaluable, List<Double> allValues) {
 
+        if (rowEvaluable.isThreadSafe() && ParallelRowVisiting.isWorthParallelizing(project.rows.size())) {
+            List<NumericBinRowIndex> partitions = ParallelRowVisiting.runOnPartitions(project.rows.size(), (from, to) -> {
+                NumericBinRowIndex partition = new NumericBinRowIndex();
+                partition.partitionValues = new ArrayList<>();
+                partition.iterate(project, rowEvaluable, partition.partitionValues, from, to);
+                return partition;
+            });
+            for (NumericBinRowIndex partition : partitions) {
+                mergePartition(partition);
+                allValues.addAll(partition.partitionValues);
+            }
+        } else {
+            iterate(project, rowEvaluable, allValues, 0, project.rows.size());
+        }
+    }
+
+    private void iterate(
+            Project project, RowEvaluable rowEvaluable, List<Double> allValues, int fromRowIndex, int toRowIndex) {
+
         Properties bindings = ExpressionUtils.createBindings(project);
 
-        for (int i = 0; i < project.rows.size(); i++) {
+        for (int i = fromRowIndex; i < toRowIndex; i++) {
             Row row = project.rows.get(i);
 
             preprocessing();
@@ -0,0 +1,179 @@
+/*******************************************************************************
+ * Copyright (C) 2024, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.browsing.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import com.google.refine.browsing.MergeableRowVisitor;
+import com.google.refine.browsing.RowFilter;
+import com.google.refine.browsing.RowVisitor;
+import com.google.refine.model.Project;
+
+/**
+ * Splits the rows of a project into contiguous partitions and processes them on a shared fork-join pool.
+ * <p>
+ * The number of threads is set by the {@code refine.parallel.threads} system property (defaults to the number of
+ * processors, 1 disables parallel processing) and projects with fewer rows than twice
+ * {@code refine.parallel.minPartitionSize} are always processed sequentially.
+ */
+public class ParallelRowVisiting {
+
+    static final public int MIN_PARTITION_SIZE = Math.max(1, Integer.getInteger("refine.parallel.minPartitionSize", 16384));
+
+    static private int s_parallelism = Integer.getInteger("refine.parallel.threads", Runtime.getRuntime().availableProcessors());
+    static private ForkJoinPool s_pool;
+
+    /**
+     * Processes one partition of the rows.
+     */
+    public interface PartitionTask<T> {
+
+        /**
+         * @param fromRowIndex
+         *            first row of the partition, inclusive
+         * @param toRowIndex
+         *            last row of the partition, exclusive
+         * @return the result for this partition
+         */
+        public T run(int fromRowIndex, int toRowIndex);
+    }
+
+    /**
+     * Visits the rows of a given partition with the given partial visitor.
+     */
+    public interface PartitionVisit {
+
+        public void visit(int fromRowIndex, int toRowIndex, RowVisitor partialVisitor);
+    }
+
+    static synchronized public int getParallelism() {
+        return Math.max(1, s_parallelism);
+    }
+
+    /**
+     * Changes the number of threads used to process partitions. Tasks already submitted complete on the previous pool.
+     */
+    static synchronized public void setParallelism(int parallelism) {
+        s_parallelism = parallelism;
+        if (s_pool != null) {
+            s_pool.shutdown();
+            s_pool = null;
+        }
+    }
+
+    /**
+     * @return the pool partitions are processed on, which other parallel computations over the project data can share
+     */
+    static synchronized public ForkJoinPool getPool() {
+        if (s_pool == null) {
+            s_pool = new ForkJoinPool(getParallelism());
+        }
+        return s_pool;
+    }
+
+    /**
+     * @return true if a project with this many rows is worth processing in parallel
+     */
+    static public boolean isWorthParallelizing(int rowCount) {
+        return getParallelism() > 1 && rowCount >= 2 * MIN_PARTITION_SIZE;
+    }
+
+    /**
+     * @return true if the given visitor can be run in parallel over the rows of the project, with the given filters
+     */
+    static public boolean canVisitInParallel(Project project, RowVisitor visitor, Collection<RowFilter> rowFilters) {
+        if (!(visitor instanceof MergeableRowVisitor) || !((MergeableRowVisitor) visitor).isParallelizable()) {
+            return false;
+        }
+        for (RowFilter rowFilter : rowFilters) {
+            if (!rowFilter.isThreadSafe()) {
+                return false;
+            }
+        }
+        return isWorthParallelizing(project.rows.size());
+    }
+
+    /**
+     * Runs a task on each partition of [0, rowCount) in parallel.
+     *
+     * @return the results of the tasks, in the order of the partitions
+     */
+    static public <T> List<T> runOnPartitions(int rowCount, PartitionTask<T> task) {
+        int partitionCount = Math.max(1, Math.min(getParallelism() * 4, rowCount / MIN_PARTITION_SIZE));
+        int partitionSize = (rowCount + partitionCount - 1) / partitionCount;
+
+        List<ForkJoinTask<T>> tasks = new ArrayList<>(partitionCount);
+        ForkJoinPool pool = getPool();
+        for (int from = 0; from < rowCount; from += partitionSize) {
+            final int fromRowIndex = from;
+            final int toRowIndex = Math.min(rowCount, from + partitionSize);
+            tasks.add(pool.submit(() -> task.run(fromRowIndex, toRowIndex)));
+        }
+
+        List<T> results = new ArrayList<>(tasks.size());
+        try {
+            for (ForkJoinTask<T> forkJoinTask : tasks) {
+                results.add(forkJoinTask.join());
+            }
+        } finally {
+            for (ForkJoinTask<T> forkJoinTask : tasks) {
+                forkJoinTask.cancel(false);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Visits all rows of a project with partial visitors created from the given one, and combines their results into
+     * it. The given visitor is started before and ended after all partial visits.
+     */
+    static public void visit(Project project, MergeableRowVisitor visitor, PartitionVisit partitionVisit) {
+        visitor.start(project);
+        try {
+            List<MergeableRowVisitor> partials = runOnPartitions(project.rows.size(), (from, to) -> {
+                MergeableRowVisitor partial = visitor.createPartialVisitor();
+                partial.start(project);
+                try {
+                    partitionVisit.visit(from, to, partial);
+                } finally {
+                    partial.end(project);
+                }
+                return partial;
+            });
+            for (MergeableRowVisitor partial : partials) {
+                visitor.combine(partial);
+            }
+        } finally {
+            visitor.end(project);
+        }
+    }
+}
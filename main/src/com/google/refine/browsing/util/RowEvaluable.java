@@ -35,10 +35,25 @@ package com.google.refine.browsing.util;
 
 import java.util.Properties;
 
+import com.google.refine.expr.Evaluable;
 import com.google.refine.model.Project;
 import com.google.refine.model.Row;
 
 public interface RowEvaluable {
 
     public Object eval(Project project, int rowIndex, Row row, Properties bindings);
+
+    /**
+     * @return true if this can be evaluated concurrently on different rows, each thread using its own bindings
+     */
+    default public boolean isThreadSafe() {
+        return false;
+    }
+
+    /**
+     * @return true if the result only depends on the cells of the project (see {@link Evaluable#getColumnDependencies})
+     */
+    default public boolean isCacheable() {
+        return false;
+    }
 }
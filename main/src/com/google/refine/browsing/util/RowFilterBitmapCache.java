@@ -0,0 +1,154 @@
+/*******************************************************************************
+ * Copyright (C) 2024, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.browsing.util;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.refine.browsing.RowFilter;
+import com.google.refine.model.Project;
+
+/**
+ * Caches the set of rows matched by facet filters, so that refreshing facets only evaluates the filters of the facets
+ * whose configuration changed. Entries are keyed by the project, the last history entry applied to it and a key
+ * describing the filter (typically the serialized facet configuration), so any change to the project data or to the
+ * facet yields a different key. The cache is bounded by the {@code refine.facets.filterCacheMB} system property (in
+ * megabytes, 64 by default).
+ */
+public class RowFilterBitmapCache {
+
+    final static Logger logger = LoggerFactory.getLogger("row_filter_bitmap_cache");
+
+    static final private long MAX_WEIGHT = Long.getLong("refine.facets.filterCacheMB", 64L) * 1024 * 1024;
+
+    static final private Cache<Key, BitSet> s_cache = CacheBuilder.newBuilder()
+            .maximumWeight(MAX_WEIGHT)
+            .weigher((Key key, BitSet bitmap) -> bitmap.size() / 8 + key.filterKey.length())
+            .build();
+
+    static private class Key {
+
+        final long projectId;
+        final long lastDoneEntryId;
+        final int rowCount;
+        final String filterKey;
+
+        Key(long projectId, long lastDoneEntryId, int rowCount, String filterKey) {
+            this.projectId = projectId;
+            this.lastDoneEntryId = lastDoneEntryId;
+            this.rowCount = rowCount;
+            this.filterKey = filterKey;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return projectId == other.projectId && lastDoneEntryId == other.lastDoneEntryId && rowCount == other.rowCount
+                    && filterKey.equals(other.filterKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(projectId, lastDoneEntryId, rowCount, filterKey);
+        }
+    }
+
+    /**
+     * Returns the rows of the project matched by the given filter, computing them if they are not cached yet.
+     *
+     * @param filterKey
+     *            a key which uniquely describes the filter for this project, or null not to use the cache
+     */
+    static public BitSet getMatchingRows(Project project, String filterKey, RowFilter rowFilter) {
+        if (filterKey == null) {
+            return computeMatchingRows(project, rowFilter);
+        }
+        Key key = new Key(project.id, project.history.getLastDoneEntryID(), project.rows.size(), filterKey);
+        try {
+            return s_cache.get(key, () -> computeMatchingRows(project, rowFilter));
+        } catch (ExecutionException e) {
+            logger.warn("Failed to compute rows matching a filter", e);
+            return computeMatchingRows(project, rowFilter);
+        }
+    }
+
+    /**
+     * Evaluates the filter on all rows of the project, in parallel partitions if the filter is thread-safe.
+     */
+    static public BitSet computeMatchingRows(Project project, RowFilter rowFilter) {
+        int rowCount = project.rows.size();
+        if (rowFilter.isThreadSafe() && ParallelRowVisiting.isWorthParallelizing(rowCount)) {
+            List<BitSet> partitions = ParallelRowVisiting.runOnPartitions(rowCount, (from, to) -> {
+                BitSet bitmap = new BitSet(to);
+                filter(project, rowFilter, from, to, bitmap);
+                return bitmap;
+            });
+            BitSet result = new BitSet(rowCount);
+            for (BitSet partition : partitions) {
+                result.or(partition);
+            }
+            return result;
+        } else {
+            BitSet result = new BitSet(rowCount);
+            filter(project, rowFilter, 0, rowCount, result);
+            return result;
+        }
+    }
+
+    static private void filter(Project project, RowFilter rowFilter, int from, int to, BitSet bitmap) {
+        for (int rowIndex = from; rowIndex < to; rowIndex++) {
+            if (rowFilter.filterRow(project, rowIndex, project.rows.get(rowIndex))) {
+                bitmap.set(rowIndex);
+            }
+        }
+    }
+
+    /**
+     * Drops the cached rows of a project, for instance when it is unloaded.
+     */
+    static public void invalidate(long projectId) {
+        s_cache.asMap().keySet().removeIf(key -> key.projectId == projectId);
+    }
+
+    /**
+     * Drops all cached rows.
+     */
+    static public void invalidateAll() {
+        s_cache.invalidateAll();
+    }
+}
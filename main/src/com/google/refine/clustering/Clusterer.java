@@ -44,6 +44,20 @@ public abstract class Clusterer {
 
     public abstract void computeClusters(Engine engine);
 
+    /**
+     * Asks the computation of clusters in progress to stop, in which case {@link #computeClusters} throws a
+     * {@link java.util.concurrent.CancellationException}. Clusterers which are quick enough can ignore it.
+     */
+    public void cancel() {
+    }
+
+    /**
+     * @return the percentage of the computation of clusters done so far, or -1 if it is not known
+     */
+    public int getProgress() {
+        return -1;
+    }
+
     protected void initializeFromConfig(Project project, ClustererConfig c) {
         _project = project;
 
@@ -38,10 +38,12 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
@@ -54,11 +56,12 @@ import org.slf4j.LoggerFactory;
 
 import com.google.refine.browsing.Engine;
 import com.google.refine.browsing.FilteredRows;
-import com.google.refine.browsing.RowVisitor;
+import com.google.refine.browsing.MergeableRowVisitor;
 import com.google.refine.clustering.ClusteredEntry;
 import com.google.refine.clustering.Clusterer;
 import com.google.refine.clustering.ClustererConfig;
 import com.google.refine.model.Cell;
+import com.google.refine.model.Column;
 import com.google.refine.model.Project;
 import com.google.refine.model.Row;
 
@@ -121,24 +124,66 @@ public class BinningClusterer extends Clusterer {
         public int ngramSize = 0;
     }
 
+    /**
+     * Maximum number of distinct values whose keys are remembered for each column and keyer.
+     */
+    static public int s_keyMemoSize = Integer.getInteger("refine.clustering.keyMemoSize", 1000000);
+
     protected Keyer _keyer;
+    protected String _keyerName;
     protected BinningParameters _parameters;
 
     final static Logger logger = LoggerFactory.getLogger("binning_clusterer");
 
     List<Map<String, Integer>> _clusters;
 
-    class BinningRowVisitor implements RowVisitor {
+    /**
+     * The keys computed by a keyer for the values of a column. It is kept as a precompute of the column, so that the
+     * keys are reused by the next clusterings until the column changes.
+     */
+    static class KeyMemo {
+
+        final Keyer _keyer;
+        final Map<String, String> _keys = new ConcurrentHashMap<>();
+
+        KeyMemo(Keyer keyer) {
+            _keyer = keyer;
+        }
+
+        String key(String s, Object[] params) {
+            String key = _keys.get(s);
+            if (key == null) {
+                key = _keyer.key(s, params);
+                if (_keys.size() < s_keyMemoSize) {
+                    _keys.put(s, key);
+                }
+            }
+            return key;
+        }
+    }
+
+    class BinningRowVisitor implements MergeableRowVisitor {
 
         Keyer _keyer;
         Object[] _params;
         BinningParameters _parameters;
+        KeyMemo _memo;
 
-        Map<String, Map<String, Integer>> _map = new HashMap<String, Map<String, Integer>>();
+        Map<String, Map<String, Integer>> _map;
 
         public BinningRowVisitor(Keyer k, BinningParameters parameters) {
+            this(k, parameters, null, new HashMap<String, Map<String, Integer>>());
+        }
+
+        public BinningRowVisitor(Keyer k, BinningParameters parameters, KeyMemo memo) {
+            this(k, parameters, memo, new HashMap<String, Map<String, Integer>>());
+        }
+
+        private BinningRowVisitor(Keyer k, BinningParameters parameters, KeyMemo memo, Map<String, Map<String, Integer>> map) {
+            _map = map;
             _keyer = k;
             _parameters = parameters;
+            _memo = memo;
             if (k instanceof NGramFingerprintKeyer) {
                 if (_parameters != null) {
                     _params = new Object[1];
@@ -163,7 +208,7 @@ public class BinningClusterer extends Clusterer {
             if (cell != null && cell.value != null) {
                 Object v = cell.value;
                 String s = (v instanceof String) ? ((String) v) : v.toString();
-                String key = _keyer.key(s, _params);
+                String key = _memo != null ? _memo.key(s, _params) : _keyer.key(s, _params);
                 if (_map.containsKey(key)) {
                     Map<String, Integer> m = _map.get(key);
                     if (m.containsKey(s)) {
@@ -183,6 +228,27 @@ public class BinningClusterer extends Clusterer {
         public Map<String, Map<String, Integer>> getMap() {
             return _map;
         }
+
+        @Override
+        public MergeableRowVisitor createPartialVisitor() {
+            // keyers are shared by all requests, so they can already be called concurrently.
+            // Partial maps keep insertion order so that the combined map is built in row order.
+            return new BinningRowVisitor(_keyer, _parameters, _memo, new LinkedHashMap<String, Map<String, Integer>>());
+        }
+
+        @Override
+        public void combine(MergeableRowVisitor partial) {
+            for (Entry<String, Map<String, Integer>> entry : ((BinningRowVisitor) partial)._map.entrySet()) {
+                Map<String, Integer> m = _map.get(entry.getKey());
+                if (m == null) {
+                    _map.put(entry.getKey(), entry.getValue());
+                } else {
+                    for (Entry<String, Integer> count : entry.getValue().entrySet()) {
+                        m.merge(count.getKey(), count.getValue(), Integer::sum);
+                    }
+                }
+            }
+        }
     }
 
     public static class SizeComparator implements Comparator<Map<String, Integer>>, Serializable {
@@ -222,12 +288,32 @@ public class BinningClusterer extends Clusterer {
     public void initializeFromConfig(Project project, BinningClustererConfig config) {
         super.initializeFromConfig(project, config);
         _keyer = config.getKeyer();
+        _keyerName = config.getKeyerName();
         _parameters = config.getParameters();
     }
 
+    /**
+     * @return the keys already computed by the keyer for the values of the column, or null if the column is missing
+     */
+    protected KeyMemo getKeyMemo() {
+        Column column = _project.columnModel.getColumnByCellIndex(_colindex);
+        if (column == null || _keyerName == null) {
+            return null;
+        }
+        String key = "binning-keys:" + _keyerName.toLowerCase()
+                + (_parameters != null && _keyer instanceof NGramFingerprintKeyer ? ":" + _parameters.ngramSize : "");
+        KeyMemo memo = (KeyMemo) column.getPrecompute(key);
+        // the keyer registered under this name can be replaced by an extension
+        if (memo == null || memo._keyer != _keyer) {
+            memo = new KeyMemo(_keyer);
+            column.setPrecompute(key, memo);
+        }
+        return memo;
+    }
+
     @Override
     public void computeClusters(Engine engine) {
-        BinningRowVisitor visitor = new BinningRowVisitor(_keyer, _parameters);
+        BinningRowVisitor visitor = new BinningRowVisitor(_keyer, _parameters, getKeyMemo());
         FilteredRows filteredRows = engine.getAllFilteredRows();
         filteredRows.accept(_project, visitor);
 
@@ -34,6 +34,7 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 package com.google.refine.clustering.binning;
 
 import java.text.Normalizer;
+import java.util.Arrays;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
@@ -87,14 +88,101 @@ public class FingerprintKeyer extends Keyer {
             .put("ẝ", "s")
             .build();
 
+    // For each ASCII character, whether it is whitespace, and whether it is removed from the key
+    private static final boolean[] ASCII_WHITESPACE = new boolean[128];
+    private static final boolean[] ASCII_REMOVED = new boolean[128];
+    static {
+        for (char c = 0; c < 128; c++) {
+            String character = String.valueOf(c);
+            ASCII_WHITESPACE[c] = WHITESPACE.matcher(character).matches();
+            ASCII_REMOVED[c] = punctctrl.matcher(character).matches() || DIACRITICS_AND_FRIENDS.matcher(character).matches();
+        }
+    }
+
     @Override
     public String key(String s, Object... o) {
         if (s == null || o != null && o.length > 0) {
             throw new IllegalArgumentException("Fingerprint keyer accepts a single string parameter");
         }
+        // subclasses can override the normalization, which the single pass over ASCII strings would bypass
+        if (getClass() == FingerprintKeyer.class) {
+            String key = asciiKey(s);
+            if (key != null) {
+                return key;
+            }
+        }
         return WHITESPACE.splitAsStream(normalize(s, true)).sorted().distinct().collect(Collectors.joining(" "));
     }
 
+    /**
+     * Computes the key of a string made of ASCII characters in a single pass. Such a string has no diacritics to strip
+     * and is left unchanged by the Unicode normalization, so this gives the same key as the general pipeline, including
+     * the leading space it keeps when the string starts with punctuation followed by whitespace.
+     *
+     * @return the key, or null if the string has characters outside of ASCII
+     */
+    static String asciiKey(String s) {
+        int end = s.length();
+        for (int i = 0; i < end; i++) {
+            if (s.charAt(i) >= 128) {
+                return null;
+            }
+        }
+        int start = 0;
+        while (start < end && ASCII_WHITESPACE[s.charAt(start)]) {
+            start++;
+        }
+        while (end > start && ASCII_WHITESPACE[s.charAt(end - 1)]) {
+            end--;
+        }
+
+        String[] tokens = new String[8];
+        int tokenCount = 0;
+        boolean leadingSpace = false;
+        char[] token = new char[end - start];
+        int tokenLength = 0;
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (ASCII_WHITESPACE[c]) {
+                if (tokenLength > 0) {
+                    if (tokenCount == tokens.length) {
+                        tokens = Arrays.copyOf(tokens, tokenCount * 2);
+                    }
+                    tokens[tokenCount++] = new String(token, 0, tokenLength);
+                    tokenLength = 0;
+                } else if (tokenCount == 0) {
+                    leadingSpace = true;
+                }
+            } else if (!ASCII_REMOVED[c]) {
+                token[tokenLength++] = c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+            }
+        }
+        if (tokenLength > 0) {
+            if (tokenCount == tokens.length) {
+                tokens = Arrays.copyOf(tokens, tokenCount + 1);
+            }
+            tokens[tokenCount++] = new String(token, 0, tokenLength);
+        }
+
+        if (tokenCount == 0) {
+            return "";
+        } else if (tokenCount == 1 && !leadingSpace) {
+            return tokens[0];
+        }
+        Arrays.sort(tokens, 0, tokenCount);
+        StringBuilder key = new StringBuilder(end - start + 1);
+        if (leadingSpace) {
+            key.append(' ');
+        }
+        key.append(tokens[0]);
+        for (int i = 1; i < tokenCount; i++) {
+            if (!tokens[i].equals(tokens[i - 1])) {
+                key.append(' ').append(tokens[i]);
+            }
+        }
+        return key.toString();
+    }
+
     protected String normalize(String s) {
         s = normalize(s, false); // letter transforms only for backward compatibility
         return s;
@@ -130,13 +218,23 @@ public class FingerprintKeyer extends Keyer {
 
     // Based on https://stackoverflow.com/a/1453284/167425 by Andreas Petersson
     private static String stripNonDiacritics(String orig) {
-        StringBuffer result = new StringBuffer();
+        StringBuilder result = null;
         for (int i = 0; i < orig.length(); i++) {
-            String source = orig.substring(i, i + 1);
-            String replace = NONDIACRITICS.get(source);
-            result.append(replace == null ? source : replace);
+            char c = orig.charAt(i);
+            // the copyright sign is the first character with a replacement
+            String replace = c < '\u00A9' ? null : NONDIACRITICS.get(String.valueOf(c));
+            if (replace != null && result == null) {
+                result = new StringBuilder(orig.length() + 8).append(orig, 0, i);
+            }
+            if (result != null) {
+                if (replace == null) {
+                    result.append(c);
+                } else {
+                    result.append(replace);
+                }
+            }
         }
-        return result.toString();
+        return result == null ? orig : result.toString();
     }
 
 }
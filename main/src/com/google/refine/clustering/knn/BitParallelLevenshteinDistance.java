@@ -0,0 +1,209 @@
+/*******************************************************************************
+ * Copyright (C) 2024, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.clustering.knn;
+
+/**
+ * The Levenshtein distance, counting the insertions, deletions and substitutions of characters needed to turn one
+ * string into the other, ignoring case. It gives the same distances as the Levenshtein distance of Vicino, without
+ * allocating a matrix for each pair of strings:
+ * <ul>
+ * <li>when the shorter string has at most 64 characters, the columns of the matrix are computed as bit vectors, with
+ * the algorithm of Myers as formulated by Hyyrö;</li>
+ * <li>otherwise, only the cells within the bound from the diagonal are computed, on two rows reused by each
+ * thread.</li>
+ * </ul>
+ * Both stop as soon as the distance is known to exceed the bound passed to {@link #compute(String, String, double)}.
+ */
+public class BitParallelLevenshteinDistance implements SimilarityDistance {
+
+    /**
+     * Buffers reused by the computations of a thread.
+     */
+    static final private class Buffers {
+
+        // bit masks of the positions of the characters in the shorter string, for the first 256 characters
+        final long[] latinMasks = new long[256];
+        // and for the others, looked up linearly
+        final char[] otherChars = new char[64];
+        final long[] otherMasks = new long[64];
+        int otherCount;
+
+        int[] previousRow = new int[0];
+        int[] currentRow = new int[0];
+    }
+
+    static final private ThreadLocal<Buffers> s_buffers = ThreadLocal.withInitial(Buffers::new);
+
+    @Override
+    public double compute(String a, String b) {
+        return compute(a, b, Double.POSITIVE_INFINITY);
+    }
+
+    @Override
+    public double compute(String a, String b, double max) {
+        String shorter = a.length() <= b.length() ? a : b;
+        String longer = shorter == a ? b : a;
+        int m = shorter.length();
+        int n = longer.length();
+        // the distance is between n - m and n
+        int limit = max >= n ? n : (int) Math.floor(max);
+        if (n - m > limit) {
+            return n - m;
+        } else if (m == 0) {
+            return n;
+        } else if (m <= 64) {
+            return bitParallel(shorter, longer, limit);
+        } else {
+            return banded(shorter, longer, limit);
+        }
+    }
+
+    @Override
+    public boolean isSymmetric() {
+        return true;
+    }
+
+    /**
+     * Computes the last row of the matrix, one column at a time, where the column is encoded by the positions at which
+     * its cells increase or decrease from the previous cell.
+     */
+    private static int bitParallel(String pattern, String text, int limit) {
+        Buffers buffers = s_buffers.get();
+        int m = pattern.length();
+        for (int i = 0; i < m; i++) {
+            char c = Character.toLowerCase(pattern.charAt(i));
+            if (c < 256) {
+                buffers.latinMasks[c] |= 1L << i;
+            } else {
+                int index = indexOf(buffers, c);
+                if (index < 0) {
+                    index = buffers.otherCount++;
+                    buffers.otherChars[index] = c;
+                    buffers.otherMasks[index] = 0;
+                }
+                buffers.otherMasks[index] |= 1L << i;
+            }
+        }
+
+        long last = 1L << (m - 1);
+        long pv = -1L;
+        long mv = 0L;
+        int score = m;
+        int n = text.length();
+        for (int j = 0; j < n; j++) {
+            char c = Character.toLowerCase(text.charAt(j));
+            long eq;
+            if (c < 256) {
+                eq = buffers.latinMasks[c];
+            } else {
+                int index = indexOf(buffers, c);
+                eq = index < 0 ? 0L : buffers.otherMasks[index];
+            }
+            long xv = eq | mv;
+            long xh = (((eq & pv) + pv) ^ pv) | eq;
+            long ph = mv | ~(xh | pv);
+            long mh = pv & xh;
+            if ((ph & last) != 0) {
+                score++;
+            } else if ((mh & last) != 0) {
+                score--;
+            }
+            ph = (ph << 1) | 1L;
+            mh = mh << 1;
+            pv = mh | ~(xv | ph);
+            mv = ph & xv;
+            // each remaining character lowers the distance by one at most
+            if (score - (n - j - 1) > limit) {
+                score = score - (n - j - 1);
+                break;
+            }
+        }
+
+        for (int i = 0; i < m; i++) {
+            char c = Character.toLowerCase(pattern.charAt(i));
+            if (c < 256) {
+                buffers.latinMasks[c] = 0L;
+            }
+        }
+        buffers.otherCount = 0;
+        return score;
+    }
+
+    private static int indexOf(Buffers buffers, char c) {
+        for (int i = 0; i < buffers.otherCount; i++) {
+            if (buffers.otherChars[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Computes the matrix row by row, leaving out the cells further than the limit from the diagonal: their distance
+     * exceeds the limit anyway, so they are replaced by the limit plus one.
+     */
+    private static int banded(String shorter, String longer, int limit) {
+        Buffers buffers = s_buffers.get();
+        int m = shorter.length();
+        int n = longer.length();
+        if (buffers.previousRow.length < m + 1) {
+            buffers.previousRow = new int[m + 1];
+            buffers.currentRow = new int[m + 1];
+        }
+        int[] previous = buffers.previousRow;
+        int[] current = buffers.currentRow;
+        int outside = limit + 1;
+
+        for (int i = 0; i <= m; i++) {
+            previous[i] = i <= limit ? i : outside;
+        }
+        for (int j = 1; j <= n; j++) {
+            int from = Math.max(1, j - limit);
+            int to = Math.min(m, j + limit);
+            current[from - 1] = from == 1 ? j : outside;
+            int rowMin = current[from - 1];
+            char c = Character.toLowerCase(longer.charAt(j - 1));
+            for (int i = from; i <= to; i++) {
+                int cost = Character.toLowerCase(shorter.charAt(i - 1)) == c ? 0 : 1;
+                int value = Math.min(previous[i - 1] + cost, Math.min(previous[i], current[i - 1]) + 1);
+                current[i] = value;
+                rowMin = Math.min(rowMin, value);
+            }
+            if (to < m) {
+                current[to + 1] = outside;
+            }
+            if (rowMin > limit) {
+                return rowMin;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[m];
+    }
+}
@@ -0,0 +1,319 @@
+/*******************************************************************************
+ * Copyright (C) 2024, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.clustering.knn;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import com.google.refine.browsing.util.ParallelRowVisiting;
+
+/**
+ * Clusters distinct values which are within a given distance of each other, comparing only values which share an
+ * n-gram. It finds the same clusters as the n-gram blocking clusterer of Vicino: each pair of close values is recorded
+ * once, in the cluster of the value first in alphabetical order (or of the other one, if only the distance from the
+ * other one is small enough), and each value forms a cluster with the values recorded in it. The values are split into
+ * blocks in parallel, and the pairs of values of the blocks are compared on the fork-join pool of
+ * {@link ParallelRowVisiting}. A pair of values is only compared in the first block they share, however many n-grams
+ * they have in common.
+ */
+public class NGramBlockingClusterer {
+
+    // the normalization applied by Vicino's n-gram tokenizer
+    static final private Pattern EXTRA = Pattern.compile("\\p{Cntrl}|\\p{Punct}");
+    static final private Pattern WHITESPACE = Pattern.compile("\\p{Space}+");
+
+    // number of pairs of values compared by each task, roughly
+    static final private long PAIRS_PER_TASK = 1 << 14;
+
+    private final SimilarityDistance _distance;
+    private final int _ngramSize;
+    private final double _radius;
+
+    private volatile boolean _canceled;
+    private volatile long _totalPairs;
+    private final AtomicLong _comparedPairs = new AtomicLong();
+
+    public NGramBlockingClusterer(SimilarityDistance distance, int ngramSize, double radius) {
+        _distance = distance;
+        _ngramSize = ngramSize;
+        _radius = radius;
+    }
+
+    /**
+     * @param values
+     *            distinct values
+     * @return the clusters of more than one value, largest first
+     * @throws CancellationException
+     *             if {@link #cancel()} was called meanwhile
+     */
+    public List<Set<Serializable>> getClusters(String[] values) {
+        List<IntList> blocks = buildBlocks(values);
+        int[][] valueBlocks = indexBlocks(blocks, values.length);
+
+        List<Callable<IntList>> tasks = new ArrayList<>();
+        long totalPairs = 0;
+        for (int blockID = 0; blockID < blocks.size(); blockID++) {
+            int[] block = blocks.get(blockID).toArray();
+            int from = 0;
+            long pairs = 0;
+            for (int i = 0; i < block.length; i++) {
+                pairs += block.length - 1 - i;
+                if (pairs >= PAIRS_PER_TASK || i == block.length - 1) {
+                    int id = blockID;
+                    int start = from;
+                    int end = i + 1;
+                    tasks.add(() -> compare(values, valueBlocks, block, id, start, end));
+                    totalPairs += pairs;
+                    from = end;
+                    pairs = 0;
+                }
+            }
+        }
+        _totalPairs = totalPairs;
+
+        IntList[] neighbors = new IntList[values.length];
+        try {
+            for (Future<IntList> future : ParallelRowVisiting.getPool().invokeAll(tasks)) {
+                IntList close = future.get();
+                for (int i = 0; i < close.size(); i += 2) {
+                    addNeighbor(neighbors, close.get(i), close.get(i + 1));
+                }
+            }
+        } catch (InterruptedException e) {
+            _canceled = true;
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Failed to compare values", e.getCause());
+        }
+        if (_canceled) {
+            throw new CancellationException("Clustering was canceled");
+        }
+
+        Set<Set<Serializable>> clusters = new HashSet<>();
+        for (int code = 0; code < values.length; code++) {
+            if (neighbors[code] != null) {
+                Set<Serializable> cluster = new TreeSet<>();
+                cluster.add(values[code]);
+                for (int i = 0; i < neighbors[code].size(); i++) {
+                    cluster.add(values[neighbors[code].get(i)]);
+                }
+                clusters.add(cluster);
+            }
+        }
+        List<Set<Serializable>> sorted = new ArrayList<>(clusters);
+        sorted.sort((a, b) -> b.size() - a.size());
+        return sorted;
+    }
+
+    /**
+     * Stops the comparisons in progress, making {@link #getClusters} throw a {@link CancellationException}.
+     */
+    public void cancel() {
+        _canceled = true;
+    }
+
+    /**
+     * @return the percentage of the pairs of values compared so far
+     */
+    public int getProgress() {
+        long total = _totalPairs;
+        return total == 0 ? 0 : (int) Math.min(100, _comparedPairs.get() * 100 / total);
+    }
+
+    /**
+     * Groups the values by n-gram, keeping the blocks of more than one value. The values of each block are in
+     * increasing order.
+     */
+    private List<IntList> buildBlocks(String[] values) {
+        List<Map<String, IntList>> partials = ParallelRowVisiting.runOnPartitions(values.length, (from, to) -> {
+            Map<String, IntList> partial = new HashMap<>();
+            for (int code = from; code < to && !_canceled; code++) {
+                String normalized = normalize(values[code]);
+                for (int i = 0; i + _ngramSize <= normalized.length(); i++) {
+                    IntList block = partial.computeIfAbsent(normalized.substring(i, i + _ngramSize), k -> new IntList());
+                    // the same n-gram can occur several times in a value
+                    if (block.size() == 0 || block.get(block.size() - 1) != code) {
+                        block.add(code);
+                    }
+                }
+            }
+            return partial;
+        });
+        Map<String, IntList> merged = new LinkedHashMap<>();
+        for (Map<String, IntList> partial : partials) {
+            for (Map.Entry<String, IntList> entry : partial.entrySet()) {
+                IntList block = merged.get(entry.getKey());
+                if (block == null) {
+                    merged.put(entry.getKey(), entry.getValue());
+                } else {
+                    block.addAll(entry.getValue());
+                }
+            }
+        }
+        List<IntList> blocks = new ArrayList<>();
+        for (IntList block : merged.values()) {
+            if (block.size() > 1) {
+                blocks.add(block);
+            }
+        }
+        return blocks;
+    }
+
+    /**
+     * @return for each value, the ids of the blocks it belongs to, in increasing order
+     */
+    private static int[][] indexBlocks(List<IntList> blocks, int valueCount) {
+        int[] counts = new int[valueCount];
+        for (IntList block : blocks) {
+            for (int i = 0; i < block.size(); i++) {
+                counts[block.get(i)]++;
+            }
+        }
+        int[][] valueBlocks = new int[valueCount][];
+        for (int code = 0; code < valueCount; code++) {
+            valueBlocks[code] = new int[counts[code]];
+        }
+        Arrays.fill(counts, 0);
+        for (int blockID = 0; blockID < blocks.size(); blockID++) {
+            IntList block = blocks.get(blockID);
+            for (int i = 0; i < block.size(); i++) {
+                int code = block.get(i);
+                valueBlocks[code][counts[code]++] = blockID;
+            }
+        }
+        return valueBlocks;
+    }
+
+    /**
+     * Compares the values at positions [from, to) of a block with the values after them in the block.
+     *
+     * @return the pairs of values close to each other, flattened, the value whose cluster records the pair first
+     */
+    private IntList compare(String[] values, int[][] valueBlocks, int[] block, int blockID, int from, int to) {
+        IntList close = new IntList();
+        for (int i = from; i < to && !_canceled; i++) {
+            for (int j = i + 1; j < block.length; j++) {
+                if (firstCommonBlock(valueBlocks[block[i]], valueBlocks[block[j]]) != blockID) {
+                    continue;
+                }
+                // the value first in alphabetical order records the pair, as in Vicino
+                boolean ordered = values[block[i]].compareTo(values[block[j]]) < 0;
+                int a = ordered ? block[i] : block[j];
+                int b = ordered ? block[j] : block[i];
+                if (_radius < 0 || _distance.compute(values[a], values[b], _radius) <= _radius) {
+                    close.add(a);
+                    close.add(b);
+                } else if (
+                // values are compared both ways, unless the distance is known to be symmetric
+                !_distance.isSymmetric() && _distance.compute(values[b], values[a], _radius) <= _radius) {
+                    close.add(b);
+                    close.add(a);
+                }
+            }
+            _comparedPairs.addAndGet(block.length - 1 - i);
+        }
+        return close;
+    }
+
+    private static int firstCommonBlock(int[] a, int[] b) {
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] == b[j]) {
+                return a[i];
+            } else if (a[i] < b[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return -1;
+    }
+
+    private static void addNeighbor(IntList[] neighbors, int code, int neighbor) {
+        if (neighbors[code] == null) {
+            neighbors[code] = new IntList();
+        }
+        neighbors[code].add(neighbor);
+    }
+
+    static String normalize(String value) {
+        String normalized = EXTRA.matcher(value.trim()).replaceAll("");
+        return WHITESPACE.matcher(normalized).replaceAll(" ").toLowerCase();
+    }
+
+    /**
+     * A growable list of ints, to hold value codes without boxing them.
+     */
+    static final private class IntList {
+
+        private int[] items = new int[4];
+        private int size;
+
+        void add(int item) {
+            if (size == items.length) {
+                items = Arrays.copyOf(items, size * 2);
+            }
+            items[size++] = item;
+        }
+
+        void addAll(IntList other) {
+            if (size + other.size > items.length) {
+                items = Arrays.copyOf(items, Math.max(size + other.size, size * 2));
+            }
+            System.arraycopy(other.items, 0, items, size, other.size);
+            size += other.size;
+        }
+
+        int get(int index) {
+            return items[index];
+        }
+
+        int size() {
+            return size;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(items, size);
+        }
+    }
+}
@@ -40,4 +40,22 @@ public interface SimilarityDistance {
      * their differences increase.
      */
     public double compute(String a, String b);
+
+    /**
+     * Compute the distance between two strings, when only distances up to a bound matter. Implementations can stop as
+     * soon as the distance is known to exceed the bound.
+     * 
+     * @return the distance if it does not exceed max, and otherwise any value greater than max
+     */
+    default public double compute(String a, String b, double max) {
+        return compute(a, b);
+    }
+
+    /**
+     * @return true if the distance between two strings does not depend on their order, which spares the clusterer from
+     *         computing it both ways
+     */
+    default public boolean isSymmetric() {
+        return false;
+    }
 }
@@ -28,6 +28,8 @@
 package com.google.refine.clustering.knn;
 
 import edu.mit.simile.vicino.distances.Distance;
+import edu.mit.simile.vicino.distances.MetricDistance;
+import edu.mit.simile.vicino.distances.PseudoMetricDistance;
 
 /**
  * Wrapper to expose a similarity function from the Vicino library.
@@ -47,4 +49,10 @@ public class VicinoDistance implements SimilarityDistance {
     public double compute(String a, String b) {
         return _d.d(a, b);
     }
+
+    @Override
+    public boolean isSymmetric() {
+        // pseudo-metrics are made symmetric by adding up the distance computed both ways
+        return _d instanceof MetricDistance || _d instanceof PseudoMetricDistance;
+    }
 }
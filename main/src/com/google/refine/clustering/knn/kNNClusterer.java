@@ -34,33 +34,30 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 package com.google.refine.clustering.knn;
 
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.Comparator;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
 import java.util.stream.Collectors;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonValue;
-import edu.mit.simile.vicino.clustering.NGramClusterer;
-import edu.mit.simile.vicino.clustering.VPTreeClusterer;
-import edu.mit.simile.vicino.distances.Distance;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.refine.browsing.Engine;
 import com.google.refine.browsing.FilteredRows;
-import com.google.refine.browsing.RowVisitor;
+import com.google.refine.browsing.MergeableRowVisitor;
 import com.google.refine.clustering.ClusteredEntry;
 import com.google.refine.clustering.Clusterer;
 import com.google.refine.clustering.ClustererConfig;
 import com.google.refine.model.Cell;
 import com.google.refine.model.Project;
 import com.google.refine.model.Row;
+import com.google.refine.model.columnar.StringDictionary;
 
 public class kNNClusterer extends Clusterer {
 
@@ -128,21 +125,22 @@ public class kNNClusterer extends Clusterer {
 
     List<Set<Serializable>> _clusters;
 
-    Map<Serializable, Integer> _counts = new HashMap<Serializable, Integer>();
+    // distinct values, with the number of rows of each
+    StringDictionary _values = new StringDictionary();
+    int[] _counts = new int[0];
 
-    final static Logger logger = LoggerFactory.getLogger("kNN_clusterer");
+    private volatile NGramBlockingClusterer _blockingClusterer;
+    private volatile boolean _canceled;
 
-    class VPTreeClusteringRowVisitor implements RowVisitor {
+    final static Logger logger = LoggerFactory.getLogger("kNN_clusterer");
 
-        Distance _distance;
-        kNNClustererConfigParameters _params;
-        VPTreeClusterer _clusterer;
+    /**
+     * Counts the rows of each distinct value of the column, so that each value is compared to the others only once.
+     */
+    class DistinctValueRowVisitor implements MergeableRowVisitor {
 
-        public VPTreeClusteringRowVisitor(Distance d, kNNClustererConfigParameters params) {
-            _distance = d;
-            _clusterer = new VPTreeClusterer(_distance);
-            _params = params;
-        }
+        final StringDictionary _dictionary = new StringDictionary();
+        int[] _valueCounts = new int[16];
 
         @Override
         public void start(Project project) {
@@ -160,71 +158,30 @@ public class kNNClusterer extends Clusterer {
             if (cell != null && cell.value != null) {
                 Object v = cell.value;
                 String s = (v instanceof String) ? ((String) v) : v.toString();
-                _clusterer.populate(s);
-                count(s);
+                count(s, 1);
             }
-            return false;
-        }
-
-        public List<Set<Serializable>> getClusters() {
-            return _clusterer.getClusters(_params.radius);
+            return _canceled;
         }
-    }
-
-    class BlockingClusteringRowVisitor implements RowVisitor {
-
-        SimilarityDistance _distance;
-        double _radius = 1.0d;
-        int _blockingNgramSize = 6;
-        HashSet<String> _data;
-        NGramClusterer _clusterer;
-
-        private class DistanceWrapper extends Distance {
-
-            private final SimilarityDistance _d;
 
-            protected DistanceWrapper(SimilarityDistance d) {
-                _d = d;
-            }
-
-            @Override
-            public double d(String arg0, String arg1) {
-                return _d.compute(arg0, arg1);
+        private void count(String value, int count) {
+            int code = _dictionary.encode(value);
+            if (code == _valueCounts.length) {
+                _valueCounts = Arrays.copyOf(_valueCounts, code * 2);
             }
-        }
-
-        public BlockingClusteringRowVisitor(SimilarityDistance _distance2, kNNClustererConfigParameters params) {
-            _distance = _distance2;
-            _data = new HashSet<String>();
-            _blockingNgramSize = params.blockingNgramSize;
-            _radius = params.radius;
-            _clusterer = new NGramClusterer(new DistanceWrapper(_distance), _blockingNgramSize);
+            _valueCounts[code] += count;
         }
 
         @Override
-        public void start(Project project) {
-            // nothing to do
+        public MergeableRowVisitor createPartialVisitor() {
+            return new DistinctValueRowVisitor();
         }
 
         @Override
-        public void end(Project project) {
-            // nothing to do
-        }
-
-        @Override
-        public boolean visit(Project project, int rowIndex, Row row) {
-            Cell cell = row.getCell(_colindex);
-            if (cell != null && cell.value != null) {
-                Object v = cell.value;
-                String s = (v instanceof String) ? ((String) v) : v.toString().intern();
-                _clusterer.populate(s);
-                count(s);
+        public void combine(MergeableRowVisitor partial) {
+            DistinctValueRowVisitor other = (DistinctValueRowVisitor) partial;
+            for (int code = 0; code < other._dictionary.size(); code++) {
+                count(other._dictionary.decode(code), other._valueCounts[code]);
             }
-            return false;
-        }
-
-        public List<Set<Serializable>> getClusters() {
-            return _clusterer.getClusters(_radius);
         }
     }
 
@@ -236,12 +193,40 @@ public class kNNClusterer extends Clusterer {
 
     @Override
     public void computeClusters(Engine engine) {
-        // VPTreeClusteringRowVisitor visitor = new VPTreeClusteringRowVisitor(_distance,_config);
-        BlockingClusteringRowVisitor visitor = new BlockingClusteringRowVisitor(_distance, _params);
+        DistinctValueRowVisitor visitor = new DistinctValueRowVisitor();
         FilteredRows filteredRows = engine.getAllFilteredRows();
         filteredRows.accept(_project, visitor);
+        _values = visitor._dictionary;
+        _counts = visitor._valueCounts;
 
-        _clusters = visitor.getClusters();
+        String[] values = new String[_values.size()];
+        for (int code = 0; code < values.length; code++) {
+            values[code] = _values.decode(code);
+        }
+        NGramBlockingClusterer clusterer = new NGramBlockingClusterer(_distance, _params.blockingNgramSize, _params.radius);
+        _blockingClusterer = clusterer;
+        if (_canceled) {
+            throw new CancellationException("Clustering was canceled");
+        }
+        _clusters = clusterer.getClusters(values);
+    }
+
+    @Override
+    public void cancel() {
+        _canceled = true;
+        NGramBlockingClusterer clusterer = _blockingClusterer;
+        if (clusterer != null) {
+            clusterer.cancel();
+        }
+    }
+
+    /**
+     * @return the percentage of the pairs of values compared so far
+     */
+    @Override
+    public int getProgress() {
+        NGramBlockingClusterer clusterer = _blockingClusterer;
+        return clusterer == null ? 0 : clusterer.getProgress();
     }
 
     public static class ValuesComparator implements Comparator<Entry<Serializable, Integer>>, Serializable {
@@ -256,7 +241,7 @@ public class kNNClusterer extends Clusterer {
 
     protected List<ClusteredEntry> getClusteredEntries(Set<Serializable> s) {
         return s.stream()
-                .map(e -> new ClusteredEntry(e, _counts.get(e)))
+                .map(e -> new ClusteredEntry(e, _counts[_values.lookup((String) e)]))
                 .sorted(ClusteredEntry.comparator)
                 .collect(Collectors.toList());
     }
@@ -268,12 +253,4 @@ public class kNNClusterer extends Clusterer {
                 .map(m -> getClusteredEntries(m))
                 .collect(Collectors.toList());
     }
-
-    private void count(Serializable s) {
-        if (_counts.containsKey(s)) {
-            _counts.put(s, _counts.get(s) + 1);
-        } else {
-            _counts.put(s, 1);
-        }
-    }
 }
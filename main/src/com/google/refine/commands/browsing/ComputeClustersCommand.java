@@ -34,6 +34,8 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 package com.google.refine.commands.browsing;
 
 import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
@@ -53,6 +55,16 @@ public class ComputeClustersCommand extends Command {
 
     final static Logger logger = LoggerFactory.getLogger("compute-clusters_command");
 
+    // the clusterer running for each project, so that its progress can be reported and it can be canceled
+    static private final Map<Long, Clusterer> s_running = new ConcurrentHashMap<>();
+
+    /**
+     * @return the clusterer computing clusters for the project, or null if there is none
+     */
+    static public Clusterer getRunningClusterer(long projectID) {
+        return s_running.get(projectID);
+    }
+
     /**
      * This command uses POST (probably to allow for larger parameters) but does not actually modify any state so we do
      * not add CSRF protection to it.
@@ -70,7 +82,12 @@ public class ComputeClustersCommand extends Command {
 
             Clusterer clusterer = clustererConfig.apply(project);
 
-            clusterer.computeClusters(engine);
+            s_running.put(project.id, clusterer);
+            try {
+                clusterer.computeClusters(engine);
+            } finally {
+                s_running.remove(project.id, clusterer);
+            }
 
             respondJSON(response, clusterer);
             logger.info("computed clusters [{}] in {}ms",
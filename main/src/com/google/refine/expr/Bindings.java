@@ -0,0 +1,185 @@
+/*******************************************************************************
+ * Copyright (C) 2024, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.expr;
+
+import java.util.Properties;
+
+import com.google.refine.model.Cell;
+import com.google.refine.model.Project;
+import com.google.refine.model.Row;
+
+/**
+ * The variables expressions are evaluated against, as created by {@link ExpressionUtils#createBindings}. The variables
+ * bound for each row ({@code value}, {@code cell}, {@code row}, {@code cells}, {@code rowIndex} and {@code columnName})
+ * and {@code project} are kept in fixed slots rather than in the underlying table, which GREL variables resolve when
+ * parsed. Binding a row does not allocate: the {@code cell}, {@code row} and {@code cells} wrappers are only created if
+ * an expression reads them.
+ * <p>
+ * The slots are read and written through {@link #get}, {@link #put}, {@link #remove} and {@link #containsKey} like any
+ * other variable, so that {@link Binder}s and evaluables of other languages keep working on {@link Properties}. They
+ * are not part of the enumerations of the table though. Like the rest of the evaluation state, bindings must not be
+ * shared between threads.
+ */
+public class Bindings extends Properties {
+
+    private static final long serialVersionUID = 2938046128543316410L;
+
+    static public final int VALUE = 0;
+    static public final int CELL = 1;
+    static public final int ROW = 2;
+    static public final int CELLS = 3;
+    static public final int ROW_INDEX = 4;
+    static public final int COLUMN_NAME = 5;
+    static public final int PROJECT = 6;
+
+    static private final String[] SLOT_NAMES = { "value", "cell", "row", "cells", "rowIndex", "columnName", "project" };
+
+    // marks a slot whose value is derived from the bound row when it is first read
+    static private final Object UNRESOLVED = new Object();
+
+    private final transient Object[] _slots = new Object[SLOT_NAMES.length];
+    private transient Row _row;
+    private transient int _rowIndex;
+    private transient String _cellColumnName;
+    private transient Cell _cell;
+
+    public Bindings(Project project) {
+        _slots[PROJECT] = project;
+    }
+
+    /**
+     * @return the slot holding the variable with this name, or -1 if it is kept in the table
+     */
+    static public int slotOf(String name) {
+        switch (name) {
+            case "value":
+                return VALUE;
+            case "cell":
+                return CELL;
+            case "row":
+                return ROW;
+            case "cells":
+                return CELLS;
+            case "rowIndex":
+                return ROW_INDEX;
+            case "columnName":
+                return COLUMN_NAME;
+            case "project":
+                return PROJECT;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * Binds the variables of a row, as {@link ExpressionUtils#bind} does.
+     */
+    public void bindRow(Row row, int rowIndex, String columnName, Cell cell) {
+        _row = row;
+        _rowIndex = rowIndex;
+        _cellColumnName = columnName;
+        _cell = cell;
+        _slots[ROW_INDEX] = UNRESOLVED;
+        _slots[ROW] = UNRESOLVED;
+        _slots[CELLS] = UNRESOLVED;
+        if (columnName != null) {
+            _slots[COLUMN_NAME] = columnName;
+        }
+        if (cell == null) {
+            _slots[CELL] = null;
+            _slots[VALUE] = null;
+        } else {
+            _slots[CELL] = UNRESOLVED;
+            _slots[VALUE] = cell.value;
+        }
+    }
+
+    /**
+     * @return the value of the variable in the given slot, or null if it is not bound
+     */
+    public Object getSlot(int slot) {
+        Object value = _slots[slot];
+        if (value == UNRESOLVED) {
+            value = resolve(slot);
+            _slots[slot] = value;
+        }
+        return value;
+    }
+
+    private Object resolve(int slot) {
+        Project project = (Project) getSlot(PROJECT);
+        switch (slot) {
+            case ROW_INDEX:
+                return _rowIndex;
+            case ROW:
+                return new WrappedRow(project, _rowIndex, _row);
+            case CELLS:
+                return new CellTuple(project, _row);
+            case CELL:
+                return new WrappedCell(project, _cellColumnName, _cell);
+            default:
+                throw new IllegalStateException("Slot " + SLOT_NAMES[slot] + " is not derived from the row");
+        }
+    }
+
+    @Override
+    public Object get(Object key) {
+        int slot = key instanceof String ? slotOf((String) key) : -1;
+        return slot >= 0 ? getSlot(slot) : super.get(key);
+    }
+
+    @Override
+    public Object put(Object key, Object value) {
+        int slot = key instanceof String ? slotOf((String) key) : -1;
+        if (slot < 0) {
+            return super.put(key, value);
+        } else if (value == null) {
+            throw new NullPointerException();
+        }
+        Object previous = getSlot(slot);
+        _slots[slot] = value;
+        return previous;
+    }
+
+    @Override
+    public Object remove(Object key) {
+        int slot = key instanceof String ? slotOf((String) key) : -1;
+        if (slot < 0) {
+            return super.remove(key);
+        }
+        Object previous = getSlot(slot);
+        _slots[slot] = null;
+        return previous;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        int slot = key instanceof String ? slotOf((String) key) : -1;
+        return slot >= 0 ? _slots[slot] != null : super.containsKey(key);
+    }
+}
@@ -0,0 +1,97 @@
+/*******************************************************************************
+ * Copyright (C) 2024, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.expr;
+
+import java.util.Properties;
+
+import com.google.refine.model.Cell;
+import com.google.refine.model.Project;
+import com.google.refine.model.Row;
+
+/**
+ * Evaluates an expression on rows of a project, based on a given column, reading the results from the
+ * {@link ColumnEvaluationCache} when the expression can be cached. The cached results are looked up once per project,
+ * so a single evaluator should be used for a whole pass over the rows.
+ */
+public class CachedColumnEvaluator {
+
+    final protected Evaluable _evaluable;
+    final protected String _columnName;
+    final protected int _cellIndex;
+
+    // _values is written before _project, so that seeing the project implies seeing its values
+    private volatile EvaluatedValues _values;
+    private volatile Project _project;
+
+    public CachedColumnEvaluator(Evaluable evaluable, String columnName, int cellIndex) {
+        _evaluable = evaluable;
+        _columnName = columnName;
+        _cellIndex = cellIndex;
+    }
+
+    /**
+     * Evaluates the results for all rows of the project now if they can be cached, instead of on the first call to
+     * {@link #evaluate}.
+     */
+    public void prepare(Project project) {
+        getValues(project);
+    }
+
+    /**
+     * Evaluates the expression on the given row.
+     *
+     * @param bindings
+     *            bindings created for this project, or null to create them if the result is not cached
+     */
+    public Object evaluate(Project project, int rowIndex, Row row, Properties bindings) {
+        EvaluatedValues values = getValues(project);
+        if (values != null && rowIndex < values.size()) {
+            return values.get(rowIndex);
+        }
+
+        if (bindings == null) {
+            bindings = ExpressionUtils.createBindings(project);
+        }
+        Cell cell = _cellIndex < 0 ? null : row.getCell(_cellIndex);
+        ExpressionUtils.bind(bindings, row, rowIndex, _columnName, cell);
+        return _evaluable.evaluate(bindings);
+    }
+
+    private EvaluatedValues getValues(Project project) {
+        if (_project == project) {
+            return _values;
+        }
+        synchronized (this) {
+            if (_project != project) {
+                _values = ColumnEvaluationCache.get(project, _evaluable, _columnName, _cellIndex);
+                _project = project;
+            }
+            return _values;
+        }
+    }
+}
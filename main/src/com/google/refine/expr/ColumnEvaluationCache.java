@@ -0,0 +1,207 @@
+/*******************************************************************************
+ * Copyright (C) 2024, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.expr;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinTask;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import com.google.refine.browsing.util.ParallelRowVisiting;
+import com.google.refine.model.Cell;
+import com.google.refine.model.Column;
+import com.google.refine.model.Project;
+import com.google.refine.model.Row;
+
+/**
+ * Caches the results of evaluating an expression on all rows of a project, for a given base column, so that facets and
+ * filters using the same expression do not evaluate it again. Only expressions whose column dependencies are known are
+ * cached, and cached results are dropped by {@link com.google.refine.history.History} as soon as a change modifies one
+ * of those columns.
+ * <p>
+ * The total size of the cache is bounded by the {@code refine.evaluationCache.maxBytes} system property (64 MB by
+ * default, 0 to disable the cache).
+ */
+public class ColumnEvaluationCache {
+
+    static final private long MAX_BYTES = Long.getLong("refine.evaluationCache.maxBytes", 64L * 1024 * 1024);
+
+    static final private Cache<Key, EvaluatedValues> s_cache = CacheBuilder.newBuilder()
+            .maximumWeight(MAX_BYTES)
+            .weigher((Key key, EvaluatedValues values) -> (int) Math.min(Integer.MAX_VALUE, values.estimateBytes()))
+            .build();
+
+    /**
+     * Incremented every time the cache of a project is invalidated, so that values computed from data which has changed
+     * in the meantime are not stored.
+     */
+    static final private ConcurrentHashMap<Long, long[]> s_generations = new ConcurrentHashMap<>();
+
+    static private class Key {
+
+        final long projectID;
+        final String expression;
+        final String columnName;
+        final int cellIndex;
+
+        Key(long projectID, String expression, String columnName, int cellIndex) {
+            this.projectID = projectID;
+            this.expression = expression;
+            this.columnName = columnName;
+            this.cellIndex = cellIndex;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return projectID == key.projectID && cellIndex == key.cellIndex && expression.equals(key.expression)
+                    && Objects.equals(columnName, key.columnName);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(projectID, expression, columnName, cellIndex);
+        }
+    }
+
+    /**
+     * Returns the results of evaluating the expression on every row of the project, evaluating it if they are not
+     * cached yet.
+     *
+     * @return the results, or null if they cannot be cached
+     */
+    static EvaluatedValues get(Project project, Evaluable evaluable, String columnName, int cellIndex) {
+        if (MAX_BYTES <= 0) {
+            return null;
+        }
+        Set<String> columnDependencies = evaluable.getColumnDependencies(columnName);
+        if (columnDependencies == null) {
+            return null;
+        }
+        Set<Integer> dependencies = new HashSet<>();
+        for (String dependency : columnDependencies) {
+            Column column = project.columnModel.getColumnByName(dependency);
+            if (column != null) {
+                dependencies.add(column.getCellIndex());
+            }
+        }
+        if (cellIndex >= 0) {
+            dependencies.add(cellIndex);
+        }
+
+        Key key = new Key(project.id, evaluable.toString(), columnName, cellIndex);
+        int rowCount = project.rows.size();
+        EvaluatedValues values = s_cache.getIfPresent(key);
+        if (values != null && values.size() == rowCount) {
+            return values;
+        }
+
+        long[] generation = s_generations.computeIfAbsent(project.id, id -> new long[1]);
+        long startGeneration;
+        synchronized (generation) {
+            startGeneration = generation[0];
+        }
+
+        values = evaluate(project, evaluable, columnName, cellIndex, dependencies);
+
+        synchronized (generation) {
+            if (generation[0] == startGeneration) {
+                s_cache.put(key, values);
+            }
+        }
+        return values;
+    }
+
+    static private EvaluatedValues evaluate(Project project, Evaluable evaluable, String columnName, int cellIndex,
+            Set<Integer> dependencies) {
+        int rowCount = project.rows.size();
+        EvaluatedValues values = new EvaluatedValues(project.id, dependencies, rowCount);
+        if (evaluable.isThreadSafe() && ParallelRowVisiting.isWorthParallelizing(rowCount)
+                && !ForkJoinTask.inForkJoinPool()) {
+            List<Object[]> partitions = ParallelRowVisiting.runOnPartitions(rowCount,
+                    (from, to) -> evaluate(project, evaluable, columnName, cellIndex, from, to));
+            int r = 0;
+            for (Object[] partition : partitions) {
+                for (Object value : partition) {
+                    values.set(r++, value);
+                }
+            }
+        } else {
+            Object[] partition = evaluate(project, evaluable, columnName, cellIndex, 0, rowCount);
+            for (int r = 0; r < rowCount; r++) {
+                values.set(r, partition[r]);
+            }
+        }
+        return values;
+    }
+
+    static private Object[] evaluate(Project project, Evaluable evaluable, String columnName, int cellIndex,
+            int fromRowIndex, int toRowIndex) {
+        Properties bindings = ExpressionUtils.createBindings(project);
+        Object[] results = new Object[toRowIndex - fromRowIndex];
+        for (int r = fromRowIndex; r < toRowIndex; r++) {
+            Row row = project.rows.get(r);
+            Cell cell = cellIndex < 0 ? null : row.getCell(cellIndex);
+            ExpressionUtils.bind(bindings, row, r, columnName, cell);
+            results[r - fromRowIndex] = evaluable.evaluate(bindings);
+        }
+        return results;
+    }
+
+    /**
+     * Drops the cached results which depend on any of the given cells.
+     *
+     * @param cellIndices
+     *            the indices of the modified cells, or null to drop all the results cached for the project
+     */
+    static public void invalidate(long projectID, Set<Integer> cellIndices) {
+        long[] generation = s_generations.computeIfAbsent(projectID, id -> new long[1]);
+        synchronized (generation) {
+            generation[0]++;
+            s_cache.asMap().values().removeIf(values -> values.projectID == projectID
+                    && (cellIndices == null || values.dependencies.stream().anyMatch(cellIndices::contains)));
+        }
+    }
+
+    /**
+     * Drops all the results cached for a project, when it is closed.
+     */
+    static public void invalidate(long projectID) {
+        invalidate(projectID, null);
+        s_generations.remove(projectID);
+    }
+}
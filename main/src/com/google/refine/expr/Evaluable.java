@@ -34,6 +34,7 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 package com.google.refine.expr;
 
 import java.util.Properties;
+import java.util.Set;
 
 /**
  * Interface for evaluable expressions in any arbitrary language.
@@ -47,4 +48,38 @@ public interface Evaluable {
      * @return
      */
     public Object evaluate(Properties bindings);
+
+    /**
+     * Whether this expression can be evaluated concurrently by several threads, each with its own bindings. Expressions
+     * which keep state between evaluations, or which rely on a non thread-safe interpreter, must return false.
+     *
+     * @return true if the expression can be evaluated concurrently
+     */
+    default public boolean isThreadSafe() {
+        return false;
+    }
+
+    /**
+     * Whether this expression keeps no state of its own between evaluations, so that the same instance can be handed to
+     * several callers, as the cache of parsed expressions does (see {@link ParsedExpressionCache}). Those callers may
+     * still only evaluate it concurrently if it is also thread-safe.
+     *
+     * @return true if the expression can be shared
+     */
+    default public boolean isStateless() {
+        return isThreadSafe();
+    }
+
+    /**
+     * Returns the names of the columns whose cells the result of this expression depends on, when evaluated on a row
+     * for the given base column. The result must only depend on the contents of those cells: expressions which read the
+     * whole row or record, other projects, the current time or random numbers must return null.
+     *
+     * @param baseColumn
+     *            the name of the column the expression is evaluated on, or null if there is none
+     * @return the names of the columns the expression reads, or null if they cannot be determined
+     */
+    default public Set<String> getColumnDependencies(String baseColumn) {
+        return null;
+    }
 }
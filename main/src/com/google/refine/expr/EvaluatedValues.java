@@ -0,0 +1,142 @@
+/*******************************************************************************
+ * Copyright (C) 2024, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.expr;
+
+import java.util.Set;
+
+import com.google.refine.model.columnar.StringDictionary;
+
+/**
+ * The results of evaluating an expression on every row of a project. Each row has a one-byte kind tag; strings are
+ * stored as dictionary codes and numbers as raw 64-bit values, so that the usual results of facet expressions do not
+ * cost an object per row. Other results are kept as they are.
+ */
+class EvaluatedValues {
+
+    static final private byte NULL = 0;
+    static final private byte STRING = 1;
+    static final private byte LONG = 2;
+    static final private byte DOUBLE = 3;
+    static final private byte TRUE = 4;
+    static final private byte FALSE = 5;
+    static final private byte OBJECT = 6;
+
+    final long projectID;
+    final Set<Integer> dependencies; // cell indices the values were computed from
+
+    private final byte[] kinds;
+    private final StringDictionary dictionary = new StringDictionary();
+    private int[] strings;
+    private long[] numbers;
+    private Object[] objects;
+
+    EvaluatedValues(long projectID, Set<Integer> dependencies, int rowCount) {
+        this.projectID = projectID;
+        this.dependencies = dependencies;
+        this.kinds = new byte[rowCount];
+    }
+
+    int size() {
+        return kinds.length;
+    }
+
+    void set(int row, Object value) {
+        if (value == null) {
+            kinds[row] = NULL;
+        } else if (value.getClass() == String.class) {
+            if (strings == null) {
+                strings = new int[kinds.length];
+            }
+            strings[row] = dictionary.encode((String) value);
+            kinds[row] = STRING;
+        } else if (value.getClass() == Long.class) {
+            ensureNumbers()[row] = (Long) value;
+            kinds[row] = LONG;
+        } else if (value.getClass() == Double.class) {
+            ensureNumbers()[row] = Double.doubleToRawLongBits((Double) value);
+            kinds[row] = DOUBLE;
+        } else if (value.getClass() == Boolean.class) {
+            kinds[row] = (Boolean) value ? TRUE : FALSE;
+        } else {
+            if (objects == null) {
+                objects = new Object[kinds.length];
+            }
+            objects[row] = value;
+            kinds[row] = OBJECT;
+        }
+    }
+
+    Object get(int row) {
+        switch (kinds[row]) {
+            case STRING:
+                return dictionary.decode(strings[row]);
+            case LONG:
+                return numbers[row];
+            case DOUBLE:
+                return Double.longBitsToDouble(numbers[row]);
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case OBJECT:
+                return objects[row];
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @return a rough estimate of the memory used by these values, in bytes
+     */
+    long estimateBytes() {
+        long bytes = kinds.length + dictionary.estimateBytes();
+        if (strings != null) {
+            bytes += 4L * strings.length;
+        }
+        if (numbers != null) {
+            bytes += 8L * numbers.length;
+        }
+        if (objects != null) {
+            // the objects themselves are not accounted for, assume they are small
+            bytes += 8L * objects.length;
+            for (byte kind : kinds) {
+                if (kind == OBJECT) {
+                    bytes += 64;
+                }
+            }
+        }
+        return bytes;
+    }
+
+    private long[] ensureNumbers() {
+        if (numbers == null) {
+            numbers = new long[kinds.length];
+        }
+        return numbers;
+    }
+}
@@ -56,15 +56,21 @@ public class ExpressionUtils {
         s_binders.add(binder);
     }
 
+    /**
+     * @return whether any binder was registered, in which case expressions can read variables other than the standard
+     *         ones
+     */
+    static public boolean hasBinders() {
+        return !s_binders.isEmpty();
+    }
+
     static public Properties createBindings(Project project) {
-        Properties bindings = new Properties();
+        Properties bindings = new Bindings(project);
 
         bindings.put("true", true);
         bindings.put("false", false);
         bindings.put("PI", Math.PI);
 
-        bindings.put("project", project);
-
         for (Binder binder : s_binders) {
             binder.initializeBindings(bindings, project);
         }
@@ -73,25 +79,30 @@ public class ExpressionUtils {
     }
 
     static public void bind(Properties bindings, Row row, int rowIndex, String columnName, Cell cell) {
-        Project project = (Project) bindings.get("project");
+        if (bindings instanceof Bindings) {
+            // the wrappers are created if they are read
+            ((Bindings) bindings).bindRow(row, rowIndex, columnName, cell);
+        } else {
+            Project project = (Project) bindings.get("project");
 
-        bindings.put("rowIndex", rowIndex);
-        bindings.put("row", new WrappedRow(project, rowIndex, row));
-        bindings.put("cells", new CellTuple(project, row));
+            bindings.put("rowIndex", rowIndex);
+            bindings.put("row", new WrappedRow(project, rowIndex, row));
+            bindings.put("cells", new CellTuple(project, row));
 
-        if (columnName != null) {
-            bindings.put("columnName", columnName);
-        }
+            if (columnName != null) {
+                bindings.put("columnName", columnName);
+            }
 
-        if (cell == null) {
-            bindings.remove("cell");
-            bindings.remove("value");
-        } else {
-            bindings.put("cell", new WrappedCell(project, columnName, cell));
-            if (cell.value == null) {
+            if (cell == null) {
+                bindings.remove("cell");
                 bindings.remove("value");
             } else {
-                bindings.put("value", cell.value);
+                bindings.put("cell", new WrappedCell(project, columnName, cell));
+                if (cell.value == null) {
+                    bindings.remove("value");
+                } else {
+                    bindings.put("value", cell.value);
+                }
             }
         }
 
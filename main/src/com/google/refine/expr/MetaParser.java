@@ -45,6 +45,7 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 import com.google.refine.grel.Parser;
+import com.google.refine.grel.compiler.GrelCompiler;
 
 abstract public class MetaParser {
 
@@ -117,6 +118,12 @@ abstract public class MetaParser {
                                 return new EvalError(e.getMessage());
                             }
                         }
+
+                        @Override
+                        public boolean isStateless() {
+                            // compiled Clojure functions are immutable
+                            return true;
+                        }
                     }.init(fn);
                 } catch (Exception e) {
                     throw new ParsingException(e.getMessage());
@@ -136,6 +143,7 @@ abstract public class MetaParser {
      */
     static public void registerLanguageParser(String languagePrefix, String name, LanguageSpecificParser parser, String defaultExpression) {
         s_languages.put(languagePrefix, new LanguageInfo(name, parser, defaultExpression));
+        ParsedExpressionCache.invalidateAll();
     }
 
     static public LanguageInfo getLanguageInfo(String languagePrefix) {
@@ -167,15 +175,16 @@ abstract public class MetaParser {
 
         LanguageInfo info = s_languages.get(language.toLowerCase());
         if (info != null) {
-            return info.parser.parse(s.substring(colon + 1));
+            return ParsedExpressionCache.get(language, s.substring(colon + 1), info.parser);
         } else {
-            return parseGREL(s);
+            return ParsedExpressionCache.get("grel", s, MetaParser::parseGREL);
         }
     }
 
     static protected Evaluable parseGREL(String s) throws ParsingException {
         Parser parser = new Parser(s);
 
-        return parser.getExpression();
+        Evaluable expression = parser.getExpression();
+        return GrelCompiler.s_enabled ? GrelCompiler.compile(expression) : expression;
     }
 }
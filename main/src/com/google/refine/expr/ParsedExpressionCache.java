@@ -0,0 +1,115 @@
+/*******************************************************************************
+ * Copyright (C) 2024, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.expr;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+/**
+ * Caches parsed expressions, so that facets, operations and previews evaluating the same expression over and over do
+ * not parse it (or, for Jython, compile it) again each time. Entries are keyed by the language and the source of the
+ * expression. Only expressions which are stateless (see {@link Evaluable#isStateless()}) are cached, since they are
+ * shared by all callers; the others are parsed for each caller. The number of cached expressions is bounded by the
+ * {@code refine.expressions.parsedCacheSize} system property (1000 by default).
+ */
+public class ParsedExpressionCache {
+
+    static final private long MAX_SIZE = Long.getLong("refine.expressions.parsedCacheSize", 1000L);
+
+    static final private Cache<String, Evaluable> s_cache = CacheBuilder.newBuilder()
+            .maximumSize(MAX_SIZE)
+            .recordStats()
+            .build();
+
+    /**
+     * Hit and miss counts of the cache, as reported by {@link #getStats()}.
+     */
+    static public class Stats {
+
+        @JsonProperty("size")
+        public final long size;
+        @JsonProperty("maxSize")
+        public final long maxSize;
+        @JsonProperty("hits")
+        public final long hits;
+        @JsonProperty("misses")
+        public final long misses;
+        @JsonProperty("hitRate")
+        public final double hitRate;
+        @JsonProperty("evictions")
+        public final long evictions;
+
+        Stats(long size, CacheStats stats) {
+            this.size = size;
+            this.maxSize = MAX_SIZE;
+            this.hits = stats.hitCount();
+            this.misses = stats.missCount();
+            this.hitRate = stats.hitRate();
+            this.evictions = stats.evictionCount();
+        }
+    }
+
+    /**
+     * Returns the parsed expression, parsing it if it is not cached yet.
+     *
+     * @param language
+     *            the language prefix the parser is registered with
+     * @param source
+     *            the expression, without its language prefix
+     * @param parser
+     *            the parser of the language
+     */
+    static public Evaluable get(String language, String source, LanguageSpecificParser parser) throws ParsingException {
+        if (MAX_SIZE <= 0) {
+            return parser.parse(source);
+        }
+        String key = language + ":" + source;
+        Evaluable evaluable = s_cache.getIfPresent(key);
+        if (evaluable == null) {
+            // parsing errors are not cached, and are thrown to every caller
+            evaluable = parser.parse(source);
+            if (evaluable.isStateless()) {
+                s_cache.put(key, evaluable);
+            }
+        }
+        return evaluable;
+    }
+
+    /**
+     * Forgets all parsed expressions, for instance because the parser of a language was replaced.
+     */
+    static public void invalidateAll() {
+        s_cache.invalidateAll();
+    }
+
+    static public Stats getStats() {
+        return new Stats(s_cache.size(), s_cache.stats());
+    }
+}
@@ -59,4 +59,10 @@ public class ArgsToArray implements Function {
     public String getReturns() {
         return "array";
     }
+
+    @Override
+    public boolean isThreadSafe() {
+        // array literals are parsed into calls to a fresh instance, outside of the registry
+        return true;
+    }
 }
@@ -35,6 +35,7 @@ package com.google.refine.grel;
 
 import java.util.Properties;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import com.fasterxml.jackson.annotation.JsonProperty;
@@ -62,4 +63,13 @@ public interface Control {
 
     @JsonProperty("returns")
     public String getReturns();
+
+    /**
+     * Whether this control can be called concurrently from several threads. The built-in controls are known to be, but
+     * those registered by extensions are only called concurrently if they override this method.
+     */
+    @JsonIgnore
+    default public boolean isThreadSafe() {
+        return false;
+    }
 }
@@ -35,6 +35,7 @@ package com.google.refine.grel;
 
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
@@ -171,6 +172,12 @@ public class ControlFunctionRegistry {
     static private Map<String, Control> s_nameToControl = new HashMap<String, Control>();
     static private Map<Control, String> s_controlToName = new HashMap<Control, String>();
 
+    static private Set<Function> s_pureFunctions = new HashSet<Function>();
+    static private Set<Control> s_pureControls = new HashSet<Control>();
+
+    static private Set<Function> s_coreFunctions = new HashSet<Function>();
+    static private Set<Control> s_coreControls = new HashSet<Control>();
+
     static public Function getFunction(String name) {
         return s_nameToFunction.get(name);
     }
@@ -203,6 +210,38 @@ public class ControlFunctionRegistry {
         return Collections.unmodifiableMap(s_nameToControl);
     }
 
+    /**
+     * A function is pure if its result only depends on its arguments, and not on the rest of the project, other
+     * projects, the current time or randomness. Functions registered by extensions are not considered pure.
+     */
+    static public boolean isPure(Function f) {
+        return s_pureFunctions.contains(f);
+    }
+
+    /**
+     * A control is pure if its result only depends on the evaluation of its arguments. Controls registered by
+     * extensions are not considered pure.
+     */
+    static public boolean isPure(Control c) {
+        return s_pureControls.contains(c);
+    }
+
+    /**
+     * Tells whether a function can be called concurrently from several threads: the built-in functions can, while those
+     * registered by extensions must opt in through {@link Function#isThreadSafe()}.
+     */
+    static public boolean isThreadSafe(Function f) {
+        return s_coreFunctions.contains(f) || f.isThreadSafe();
+    }
+
+    /**
+     * Tells whether a control can be called concurrently from several threads: the built-in controls can, while those
+     * registered by extensions must opt in through {@link Control#isThreadSafe()}.
+     */
+    static public boolean isThreadSafe(Control c) {
+        return s_coreControls.contains(c) || c.isThreadSafe();
+    }
+
     static public void registerFunction(String name, Function f) {
         s_nameToFunction.put(name, f);
         s_functionToName.put(f, name);
@@ -357,5 +396,16 @@ public class ControlFunctionRegistry {
         registerControl("isNonBlank", new IsNonBlank());
         registerControl("isNumeric", new IsNumeric());
         registerControl("isError", new IsError());
+
+        // built-in functions and controls are pure, except for those which look beyond their arguments
+        for (Function f : s_functionToName.keySet()) {
+            if (!(f instanceof Now || f instanceof RandomNumber || f instanceof Cross || f instanceof FacetCount
+                    || f instanceof Reinterpret)) {
+                s_pureFunctions.add(f);
+            }
+        }
+        s_pureControls.addAll(s_controlToName.keySet());
+        s_coreFunctions.addAll(s_functionToName.keySet());
+        s_coreControls.addAll(s_controlToName.keySet());
     }
 }
@@ -35,6 +35,7 @@ package com.google.refine.grel;
 
 import java.util.Properties;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import com.fasterxml.jackson.annotation.JsonProperty;
@@ -58,4 +59,13 @@ public interface Function {
 
     @JsonProperty("returns")
     public String getReturns();
+
+    /**
+     * Whether this function can be called concurrently from several threads. The built-in functions are known to be,
+     * but those registered by extensions are only called concurrently if they override this method.
+     */
+    @JsonIgnore
+    default public boolean isThreadSafe() {
+        return false;
+    }
 }
@@ -34,10 +34,12 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 package com.google.refine.grel.ast;
 
 import java.util.Properties;
+import java.util.Set;
 
 import com.google.refine.expr.EvalError;
 import com.google.refine.expr.Evaluable;
 import com.google.refine.grel.Control;
+import com.google.refine.grel.ControlFunctionRegistry;
 
 /**
  * An abstract syntax tree node encapsulating a control call, such as "if".
@@ -61,6 +63,28 @@ public class ControlCallExpr implements Evaluable {
         }
     }
 
+    /**
+     * @return the expressions passed to the control, unevaluated
+     */
+    public Evaluable[] getArgs() {
+        return _args;
+    }
+
+    public Control getControl() {
+        return _control;
+    }
+
+    @Override
+    public boolean isThreadSafe() {
+        // the built-in controls only store variables in the bindings, which are not shared between threads
+        return ControlFunctionRegistry.isThreadSafe(_control) && ThreadSafety.all(_args);
+    }
+
+    @Override
+    public Set<String> getColumnDependencies(String baseColumn) {
+        return ControlFunctionRegistry.isPure(_control) ? ColumnDependencies.union(_args, baseColumn) : null;
+    }
+
     @Override
     public String toString() {
         StringBuffer sb = new StringBuffer();
@@ -33,7 +33,9 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package com.google.refine.grel.ast;
 
+import java.util.Collections;
 import java.util.Properties;
+import java.util.Set;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
@@ -74,6 +76,31 @@ public class FieldAccessorExpr implements Evaluable {
         }
     }
 
+    /**
+     * @return the expression whose field is accessed
+     */
+    public Evaluable getInner() {
+        return _inner;
+    }
+
+    public String getFieldName() {
+        return _fieldName;
+    }
+
+    @Override
+    public boolean isThreadSafe() {
+        return _inner.isThreadSafe();
+    }
+
+    @Override
+    public Set<String> getColumnDependencies(String baseColumn) {
+        if (_inner instanceof VariableExpr && "cells".equals(((VariableExpr) _inner).getName())) {
+            // cells.columnName
+            return Collections.singleton(_fieldName);
+        }
+        return _inner.getColumnDependencies(baseColumn);
+    }
+
     @Override
     public String toString() {
         return _inner.toString() + "." + _fieldName;
@@ -33,11 +33,15 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package com.google.refine.grel.ast;
 
+import java.util.Collections;
 import java.util.Properties;
+import java.util.Set;
 
 import com.google.refine.expr.EvalError;
 import com.google.refine.expr.Evaluable;
 import com.google.refine.expr.ExpressionUtils;
+import com.google.refine.expr.functions.Get;
+import com.google.refine.grel.ControlFunctionRegistry;
 import com.google.refine.grel.Function;
 
 /**
@@ -72,6 +76,36 @@ public class FunctionCallExpr implements Evaluable {
         }
     }
 
+    /**
+     * @return the expressions of the arguments
+     */
+    public Evaluable[] getArgs() {
+        return _args;
+    }
+
+    public Function getFunction() {
+        return _function;
+    }
+
+    @Override
+    public boolean isThreadSafe() {
+        return ControlFunctionRegistry.isThreadSafe(_function) && ThreadSafety.all(_args);
+    }
+
+    @Override
+    public Set<String> getColumnDependencies(String baseColumn) {
+        if (!ControlFunctionRegistry.isPure(_function)) {
+            return null;
+        }
+        if (_function instanceof Get && _args.length == 2 && _args[0] instanceof VariableExpr
+                && "cells".equals(((VariableExpr) _args[0]).getName())
+                && _args[1] instanceof LiteralExpr && ((LiteralExpr) _args[1])._value instanceof String) {
+            // cells["column name"]
+            return Collections.singleton((String) ((LiteralExpr) _args[1])._value);
+        }
+        return ColumnDependencies.union(_args, baseColumn);
+    }
+
     @Override
     public String toString() {
         StringBuffer sb = new StringBuffer();
@@ -35,6 +35,7 @@ package com.google.refine.grel.ast;
 
 import java.text.Collator;
 import java.util.Properties;
+import java.util.Set;
 
 import com.google.refine.expr.Evaluable;
 import com.google.refine.expr.ExpressionUtils;
@@ -44,12 +45,43 @@ import com.google.refine.expr.ExpressionUtils;
  */
 public class OperatorCallExpr implements Evaluable {
 
+    /**
+     * The binary operators, so that an operator is resolved once rather than for each evaluation.
+     */
+    public enum Operator {
+
+        PLUS("+"), MINUS("-"), TIMES("*"), DIVIDE("/"), MODULO("%"), GREATER(">"), GREATER_OR_EQUAL(">="), LESS("<"), LESS_OR_EQUAL(
+                "<="), EQUAL("=="), NOT_EQUAL("!="), OTHER(null);
+
+        final private String _symbol;
+
+        Operator(String symbol) {
+            _symbol = symbol;
+        }
+
+        /**
+         * @param op
+         *            the operator, such as "+"
+         * @return the operator with this symbol, or {@link #OTHER} if there is none
+         */
+        static public Operator of(String op) {
+            for (Operator operator : values()) {
+                if (operator._symbol != null && operator._symbol.equals(op)) {
+                    return operator;
+                }
+            }
+            return OTHER;
+        }
+    }
+
     final protected Evaluable[] _args;
     final protected String _op;
+    final protected Operator _operator;
 
     public OperatorCallExpr(Evaluable[] args, String op) {
         _args = args;
         _op = op;
+        _operator = Operator.of(op);
     }
 
     @Override
@@ -64,139 +96,203 @@ public class OperatorCallExpr implements Evaluable {
         }
 
         if (args.length == 2) {
-            if (args[0] != null && args[1] != null) {
-                if (isIntegral(args[0]) && isIntegral(args[1])) {
-                    long n1 = ((Number) args[0]).longValue();
-                    long n2 = ((Number) args[1]).longValue();
-
-                    if ("+".equals(_op)) {
-                        return n1 + n2;
-                    } else if ("-".equals(_op)) {
-                        return n1 - n2;
-                    } else if ("*".equals(_op)) {
-                        return n1 * n2;
-                    } else if ("/".equals(_op)) {
-                        if (n2 == 0 && n1 == 0) {
-                            return Double.NaN;
-                        }
-                        // TODO: This will throw on divide by zero - return Double.Infinity / -Infinity instead?
-                        return n1 / n2;
-                    } else if ("%".equals(_op)) {
-                        return n1 % n2;
-                    } else if (">".equals(_op)) {
-                        return n1 > n2;
-                    } else if (">=".equals(_op)) {
-                        return n1 >= n2;
-                    } else if ("<".equals(_op)) {
-                        return n1 < n2;
-                    } else if ("<=".equals(_op)) {
-                        return n1 <= n2;
-                    } else if ("==".equals(_op)) {
-                        return n1 == n2;
-                    } else if ("!=".equals(_op)) {
-                        return n1 != n2;
-                    }
-                } else if (args[0] instanceof Number && args[1] instanceof Number) {
-                    double n1 = ((Number) args[0]).doubleValue();
-                    double n2 = ((Number) args[1]).doubleValue();
-
-                    if ("+".equals(_op)) {
-                        return n1 + n2;
-                    } else if ("-".equals(_op)) {
-                        return n1 - n2;
-                    } else if ("*".equals(_op)) {
-                        return n1 * n2;
-                    } else if ("/".equals(_op)) {
-                        if (n2 == 0 && n1 == 0) {
-                            return Double.NaN;
-                        }
-                        return n1 / n2;
-                    } else if ("%".equals(_op)) {
-                        return n1 % n2;
-                    } else if (">".equals(_op)) {
-                        return n1 > n2;
-                    } else if (">=".equals(_op)) {
-                        return n1 >= n2;
-                    } else if ("<".equals(_op)) {
-                        return n1 < n2;
-                    } else if ("<=".equals(_op)) {
-                        return n1 <= n2;
-                    } else if ("==".equals(_op)) {
-                        return n1 == n2;
-                    } else if ("!=".equals(_op)) {
-                        return n1 != n2;
-                    }
-                } else if (args[0] instanceof String && args[1] instanceof String) {
-                    String s1 = (String) args[0];
-                    String s2 = (String) args[1];
-                    Collator collator = Collator.getInstance();
-                    collator.setDecomposition(Collator.CANONICAL_DECOMPOSITION);
+            return apply(_operator, args[0], args[1]);
+        }
+        return null;
+    }
+
+    /**
+     * Applies a binary operator to the values of its operands, which are not errors.
+     *
+     * @param op
+     *            the operator
+     * @return the result, or null if the operator does not apply to such operands
+     */
+    static public Object apply(Operator op, Object left, Object right) {
+        if (left != null && right != null) {
+            if (isIntegral(left) && isIntegral(right)) {
+                return apply(op, ((Number) left).longValue(), ((Number) right).longValue());
+            } else if (left instanceof Number && right instanceof Number) {
+                return apply(op, ((Number) left).doubleValue(), ((Number) right).doubleValue());
+            } else if (left instanceof String && right instanceof String && isComparison(op)) {
+                Collator collator = Collator.getInstance();
+                collator.setDecomposition(Collator.CANONICAL_DECOMPOSITION);
 //                    collator.setStrength(Collator.SECONDARY);
 
-                    if (">".equals(_op)) {
-                        return collator.compare(s1, s2) > 0;
-                    } else if (">=".equals(_op)) {
-                        return collator.compare(s1, s2) >= 0;
-                    } else if ("<".equals(_op)) {
-                        return collator.compare(s1, s2) < 0;
-                    } else if ("<=".equals(_op)) {
-                        return collator.compare(s1, s2) <= 0;
-                    } else if ("==".equals(_op)) {
-                        return collator.compare(s1, s2) == 0;
-                    } else if ("!=".equals(_op)) {
-                        return collator.compare(s1, s2) != 0;
-                    }
-                }
+                return compare(op, collator.compare((String) left, (String) right));
+            }
 
-                if (args[0] instanceof String || args[1] instanceof String) {
-                    String s1 = args[0] instanceof String ? (String) args[0] : args[0].toString();
-                    String s2 = args[1] instanceof String ? (String) args[1] : args[1].toString();
+            if (op == Operator.PLUS && (left instanceof String || right instanceof String)) {
+                String s1 = left instanceof String ? (String) left : left.toString();
+                String s2 = right instanceof String ? (String) right : right.toString();
 
-                    if ("+".equals(_op)) {
-                        return s1 + s2;
-                    }
-                }
+                return s1 + s2;
+            }
 
-                if (args[0] instanceof Comparable && args[1] instanceof Comparable
-                        && (args[0].getClass().isAssignableFrom(args[1].getClass()) ||
-                                args[1].getClass().isAssignableFrom(args[0].getClass()))) {
-                    Comparable s1 = (Comparable) args[0];
-                    Comparable s2 = (Comparable) args[1];
-
-                    if (">".equals(_op)) {
-                        return s1.compareTo(s2) > 0;
-                    } else if (">=".equals(_op)) {
-                        return s1.compareTo(s2) >= 0;
-                    } else if ("<".equals(_op)) {
-                        return s1.compareTo(s2) < 0;
-                    } else if ("<=".equals(_op)) {
-                        return s1.compareTo(s2) <= 0;
-                    } else if ("==".equals(_op)) {
-                        return s1.compareTo(s2) == 0;
-                    } else if ("!=".equals(_op)) {
-                        return s1.compareTo(s2) != 0;
-                    }
-                }
+            if (left instanceof Comparable && right instanceof Comparable && isComparison(op)
+                    && (left.getClass().isAssignableFrom(right.getClass()) ||
+                            right.getClass().isAssignableFrom(left.getClass()))) {
+                Comparable s1 = (Comparable) left;
+                Comparable s2 = (Comparable) right;
 
+                return compare(op, s1.compareTo(s2));
             }
 
-            if ("==".equals(_op)) {
-                if (args[0] != null) {
-                    return args[0].equals(args[1]);
-                } else {
-                    return args[1] == null;
-                }
-            } else if ("!=".equals(_op)) {
-                if (args[0] != null) {
-                    return !args[0].equals(args[1]);
-                } else {
-                    return args[1] != null;
-                }
+        }
+
+        if (op == Operator.EQUAL) {
+            if (left != null) {
+                return left.equals(right);
+            } else {
+                return right == null;
+            }
+        } else if (op == Operator.NOT_EQUAL) {
+            if (left != null) {
+                return !left.equals(right);
+            } else {
+                return right != null;
             }
         }
         return null;
     }
 
+    /**
+     * Applies a binary operator to two integral numbers.
+     *
+     * @return the result, or null if the operator does not apply to numbers
+     */
+    static public Object apply(Operator op, long n1, long n2) {
+        switch (op) {
+            case PLUS:
+                return n1 + n2;
+            case MINUS:
+                return n1 - n2;
+            case TIMES:
+                return n1 * n2;
+            case DIVIDE:
+                if (n2 == 0 && n1 == 0) {
+                    return Double.NaN;
+                }
+                // TODO: This will throw on divide by zero - return Double.Infinity / -Infinity instead?
+                return n1 / n2;
+            case MODULO:
+                return n1 % n2;
+            case GREATER:
+                return n1 > n2;
+            case GREATER_OR_EQUAL:
+                return n1 >= n2;
+            case LESS:
+                return n1 < n2;
+            case LESS_OR_EQUAL:
+                return n1 <= n2;
+            case EQUAL:
+                return n1 == n2;
+            case NOT_EQUAL:
+                return n1 != n2;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Applies a binary operator to two floating point numbers.
+     *
+     * @return the result, or null if the operator does not apply to numbers
+     */
+    static public Object apply(Operator op, double n1, double n2) {
+        switch (op) {
+            case PLUS:
+                return n1 + n2;
+            case MINUS:
+                return n1 - n2;
+            case TIMES:
+                return n1 * n2;
+            case DIVIDE:
+                if (n2 == 0 && n1 == 0) {
+                    return Double.NaN;
+                }
+                return n1 / n2;
+            case MODULO:
+                return n1 % n2;
+            case GREATER:
+                return n1 > n2;
+            case GREATER_OR_EQUAL:
+                return n1 >= n2;
+            case LESS:
+                return n1 < n2;
+            case LESS_OR_EQUAL:
+                return n1 <= n2;
+            case EQUAL:
+                return n1 == n2;
+            case NOT_EQUAL:
+                return n1 != n2;
+            default:
+                return null;
+        }
+    }
+
+    static private boolean isComparison(Operator op) {
+        switch (op) {
+            case GREATER:
+            case GREATER_OR_EQUAL:
+            case LESS:
+            case LESS_OR_EQUAL:
+            case EQUAL:
+            case NOT_EQUAL:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    static private Boolean compare(Operator op, int comparison) {
+        switch (op) {
+            case GREATER:
+                return comparison > 0;
+            case GREATER_OR_EQUAL:
+                return comparison >= 0;
+            case LESS:
+                return comparison < 0;
+            case LESS_OR_EQUAL:
+                return comparison <= 0;
+            case EQUAL:
+                return comparison == 0;
+            default:
+                return comparison != 0;
+        }
+    }
+
+    /**
+     * @return the operands
+     */
+    public Evaluable[] getArgs() {
+        return _args;
+    }
+
+    /**
+     * @return the operator, such as "+"
+     */
+    public String getOperator() {
+        return _op;
+    }
+
+    /**
+     * @return the operator, resolved
+     */
+    public Operator getResolvedOperator() {
+        return _operator;
+    }
+
+    @Override
+    public boolean isThreadSafe() {
+        return ThreadSafety.all(_args);
+    }
+
+    @Override
+    public Set<String> getColumnDependencies(String baseColumn) {
+        return ColumnDependencies.union(_args, baseColumn);
+    }
+
     @Override
     public String toString() {
         StringBuffer sb = new StringBuffer();
@@ -213,7 +309,7 @@ public class OperatorCallExpr implements Evaluable {
         return sb.toString();
     }
 
-    private boolean isIntegral(Object n) {
+    static boolean isIntegral(Object n) {
         return n instanceof Long || n instanceof Integer;
     }
 }
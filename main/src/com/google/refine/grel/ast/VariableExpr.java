@@ -33,9 +33,13 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package com.google.refine.grel.ast;
 
+import java.util.Collections;
 import java.util.Properties;
+import java.util.Set;
 
+import com.google.refine.expr.Bindings;
 import com.google.refine.expr.Evaluable;
+import com.google.refine.expr.ExpressionUtils;
 
 /**
  * An abstract syntax tree node encapsulating the retrieval of a variable's content.
@@ -43,10 +47,13 @@ import com.google.refine.expr.Evaluable;
 public class VariableExpr implements Evaluable {
 
     final protected String _name;
+    // the slot of the variable if it is one of those bound for each row, resolved once
+    final protected int _slot;
 
     public VariableExpr(String name) {
         if (name != null || !name.isEmpty()) {
             _name = name;
+            _slot = Bindings.slotOf(name);
         } else {
             throw new IllegalArgumentException("Illegal variable name ");
         }
@@ -54,9 +61,40 @@ public class VariableExpr implements Evaluable {
 
     @Override
     public Object evaluate(Properties bindings) {
+        if (_slot >= 0 && bindings instanceof Bindings) {
+            return ((Bindings) bindings).getSlot(_slot);
+        }
         return bindings.get(_name);
     }
 
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
+    @Override
+    public Set<String> getColumnDependencies(String baseColumn) {
+        switch (_name) {
+            case "value":
+            case "cell":
+                return baseColumn == null ? Collections.emptySet() : Collections.singleton(baseColumn);
+            case "true":
+            case "false":
+            case "PI":
+            case "columnName":
+            case "rowIndex":
+                return Collections.emptySet();
+            case "project":
+            case "row":
+            case "record":
+            case "cells":
+                return null;
+            default:
+                // variables bound by controls, unless extensions bind their own variables
+                return ExpressionUtils.hasBinders() ? null : Collections.emptySet();
+        }
+    }
+
     @Override
     public String toString() {
         return _name;
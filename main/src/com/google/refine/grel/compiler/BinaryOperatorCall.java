@@ -0,0 +1,82 @@
+/*******************************************************************************
+ * Copyright (C) 2024, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.grel.compiler;
+
+import java.util.Properties;
+import java.util.Set;
+
+import com.google.refine.expr.Evaluable;
+import com.google.refine.expr.ExpressionUtils;
+import com.google.refine.grel.ast.OperatorCallExpr;
+
+/**
+ * A compiled binary operator. The operator is resolved once, and applied by {@link OperatorCallExpr#apply} like the
+ * interpreter does.
+ */
+class BinaryOperatorCall implements Evaluable {
+
+    final protected OperatorCallExpr _source;
+    final protected Evaluable _left;
+    final protected Evaluable _right;
+    final private OperatorCallExpr.Operator _operator;
+
+    BinaryOperatorCall(OperatorCallExpr source, Evaluable left, Evaluable right) {
+        _source = source;
+        _left = left;
+        _right = right;
+        _operator = source.getResolvedOperator();
+    }
+
+    @Override
+    public Object evaluate(Properties bindings) {
+        Object left = _left.evaluate(bindings);
+        if (ExpressionUtils.isError(left)) {
+            return left;
+        }
+        Object right = _right.evaluate(bindings);
+        if (ExpressionUtils.isError(right)) {
+            return right;
+        }
+        return OperatorCallExpr.apply(_operator, left, right);
+    }
+
+    @Override
+    public boolean isThreadSafe() {
+        return _source.isThreadSafe();
+    }
+
+    @Override
+    public Set<String> getColumnDependencies(String baseColumn) {
+        return _source.getColumnDependencies(baseColumn);
+    }
+
+    @Override
+    public String toString() {
+        return _source.toString();
+    }
+}
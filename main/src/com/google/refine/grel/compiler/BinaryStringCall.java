@@ -0,0 +1,69 @@
+/*******************************************************************************
+ * Copyright (C) 2024, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.grel.compiler;
+
+import java.util.Properties;
+import java.util.function.BiFunction;
+
+import com.google.refine.expr.Evaluable;
+import com.google.refine.expr.ExpressionUtils;
+import com.google.refine.grel.Function;
+
+/**
+ * A call to a function of two arguments, computed directly when both arguments are strings.
+ */
+class BinaryStringCall extends CompiledCall {
+
+    final protected Evaluable _first;
+    final protected Evaluable _second;
+    final protected BiFunction<String, String, Object> _fastPath;
+
+    BinaryStringCall(Evaluable source, Function function, Evaluable first, Evaluable second,
+            BiFunction<String, String, Object> fastPath) {
+        super(source, function);
+        _first = first;
+        _second = second;
+        _fastPath = fastPath;
+    }
+
+    @Override
+    public Object evaluate(Properties bindings) {
+        Object v1 = _first.evaluate(bindings);
+        if (ExpressionUtils.isError(v1)) {
+            return v1;
+        }
+        Object v2 = _second.evaluate(bindings);
+        if (ExpressionUtils.isError(v2)) {
+            return v2;
+        }
+        if (v1 instanceof String && v2 instanceof String) {
+            return _fastPath.apply((String) v1, (String) v2);
+        }
+        return call(bindings, new Object[] { v1, v2 });
+    }
+}
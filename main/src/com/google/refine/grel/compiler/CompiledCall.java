@@ -0,0 +1,76 @@
+/*******************************************************************************
+ * Copyright (C) 2024, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.grel.compiler;
+
+import java.util.Properties;
+import java.util.Set;
+
+import com.google.refine.expr.EvalError;
+import com.google.refine.expr.Evaluable;
+import com.google.refine.grel.Function;
+
+/**
+ * A compiled function call, which takes a fast path for the argument types it specializes in and otherwise calls the
+ * function as {@link com.google.refine.grel.ast.FunctionCallExpr} would.
+ */
+abstract class CompiledCall implements Evaluable {
+
+    final protected Evaluable _source;
+    final protected Function _function;
+
+    protected CompiledCall(Evaluable source, Function function) {
+        _source = source;
+        _function = function;
+    }
+
+    /**
+     * Calls the function on arguments which are not errors, as the tree-walking evaluator does.
+     */
+    protected Object call(Properties bindings, Object[] args) {
+        try {
+            return _function.call(bindings, args);
+        } catch (Exception e) {
+            return new EvalError(e);
+        }
+    }
+
+    @Override
+    public boolean isThreadSafe() {
+        return _source.isThreadSafe();
+    }
+
+    @Override
+    public Set<String> getColumnDependencies(String baseColumn) {
+        return _source.getColumnDependencies(baseColumn);
+    }
+
+    @Override
+    public String toString() {
+        return _source.toString();
+    }
+}
@@ -0,0 +1,355 @@
+/*******************************************************************************
+ * Copyright (C) 2024, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.grel.compiler;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import com.google.common.base.CharMatcher;
+
+import com.google.refine.expr.Evaluable;
+import com.google.refine.expr.functions.Length;
+import com.google.refine.expr.functions.ToString;
+import com.google.refine.expr.functions.strings.Contains;
+import com.google.refine.expr.functions.strings.EndsWith;
+import com.google.refine.expr.functions.strings.Match;
+import com.google.refine.expr.functions.strings.Replace;
+import com.google.refine.expr.functions.strings.StartsWith;
+import com.google.refine.expr.functions.strings.ToLowercase;
+import com.google.refine.expr.functions.strings.ToUppercase;
+import com.google.refine.expr.functions.strings.Trim;
+import com.google.refine.grel.Control;
+import com.google.refine.grel.ControlFunctionRegistry;
+import com.google.refine.grel.Function;
+import com.google.refine.grel.ast.ControlCallExpr;
+import com.google.refine.grel.ast.FieldAccessorExpr;
+import com.google.refine.grel.ast.FunctionCallExpr;
+import com.google.refine.grel.ast.LiteralExpr;
+import com.google.refine.grel.ast.OperatorCallExpr;
+import com.google.refine.grel.ast.VariableExpr;
+import com.google.refine.grel.controls.Filter;
+import com.google.refine.grel.controls.ForEach;
+import com.google.refine.grel.controls.ForEachIndex;
+import com.google.refine.grel.controls.ForNonBlank;
+import com.google.refine.grel.controls.ForRange;
+import com.google.refine.grel.controls.If;
+import com.google.refine.grel.controls.With;
+
+/**
+ * Compiles parsed GREL expressions into trees of closures which evaluate to the same results and errors as the
+ * tree-walking evaluator, but resolve operators once and take typed fast paths for common string functions, avoiding
+ * the allocation of argument arrays and the dispatch through {@link Function#call}.
+ * <p>
+ * Compilation also optimizes the expression: calls to pure functions and operators on literals are folded into
+ * constants, string patterns passed to {@code match} are compiled to regular expressions once, and the sub-expressions
+ * of the body of {@code forEach} and {@code filter} which do not depend on the loop variable are evaluated once per
+ * loop rather than once per element. Functions are pure as declared by {@link ControlFunctionRegistry#isPure}.
+ * <p>
+ * Variables and literals are left as they are, since controls such as {@code forEach} inspect their arguments, and the
+ * column dependencies and string representation of compiled nodes are those of the nodes they were compiled from.
+ * Expressions which are not GREL syntax tree nodes, such as those added by extensions, are not compiled.
+ */
+public class GrelCompiler {
+
+    /**
+     * Whether GREL expressions are compiled when parsed. Set the {@code refine.grel.compile} system property to
+     * {@code false} to evaluate them by walking their syntax tree instead.
+     */
+    static public boolean s_enabled = !"false".equals(System.getProperty("refine.grel.compile"));
+
+    private GrelCompiler() {
+    }
+
+    /**
+     * @return an expression evaluating as the given one does
+     */
+    static public Evaluable compile(Evaluable expression) {
+        if (expression instanceof FunctionCallExpr) {
+            return compileFunctionCall((FunctionCallExpr) expression);
+        } else if (expression instanceof OperatorCallExpr) {
+            OperatorCallExpr call = (OperatorCallExpr) expression;
+            Evaluable[] args = compile(call.getArgs());
+            if (allLiterals(args)) {
+                Evaluable folded = fold(call, new OperatorCallExpr(args, call.getOperator()));
+                if (folded != null) {
+                    return folded;
+                }
+            }
+            if (args.length == 2) {
+                return new BinaryOperatorCall(call, args[0], args[1]);
+            }
+            return new OperatorCallExpr(args, call.getOperator());
+        } else if (expression instanceof ControlCallExpr) {
+            ControlCallExpr call = (ControlCallExpr) expression;
+            Class<?> type = call.getControl().getClass();
+            if ((type == ForEach.class || type == Filter.class) && call.getArgs().length == 3
+                    && call.getArgs()[1] instanceof VariableExpr) {
+                return compileLoop(call);
+            }
+            return new ControlCallExpr(compile(call.getArgs()), call.getControl());
+        } else if (expression instanceof FieldAccessorExpr) {
+            FieldAccessorExpr accessor = (FieldAccessorExpr) expression;
+            return new FieldAccessorExpr(compile(accessor.getInner()), accessor.getFieldName());
+        }
+        return expression;
+    }
+
+    static private Evaluable[] compile(Evaluable[] expressions) {
+        Evaluable[] compiled = new Evaluable[expressions.length];
+        for (int i = 0; i < expressions.length; i++) {
+            compiled[i] = compile(expressions[i]);
+        }
+        return compiled;
+    }
+
+    static private Evaluable compileFunctionCall(FunctionCallExpr call) {
+        Evaluable[] args = compile(call.getArgs());
+        Function function = call.getFunction();
+        if (ControlFunctionRegistry.isPure(function) && allLiterals(args)) {
+            Evaluable folded = fold(call, new FunctionCallExpr(args, function));
+            if (folded != null) {
+                return folded;
+            }
+        }
+        // exact classes, as extensions may override the behaviour of subclasses
+        Class<?> type = function.getClass();
+        if (type == Match.class && args.length == 2) {
+            args[1] = compilePattern(args[1]);
+        }
+        if (args.length == 1) {
+            if (type == Trim.class) {
+                return new UnaryStringCall(call, function, args[0], s -> CharMatcher.whitespace().trimFrom(s));
+            } else if (type == ToLowercase.class) {
+                return new UnaryStringCall(call, function, args[0], String::toLowerCase);
+            } else if (type == ToUppercase.class) {
+                return new UnaryStringCall(call, function, args[0], String::toUpperCase);
+            } else if (type == Length.class) {
+                return new UnaryStringCall(call, function, args[0], String::length);
+            } else if (type == ToString.class) {
+                return new UnaryStringCall(call, function, args[0], s -> s);
+            }
+        } else if (args.length == 2) {
+            if (type == StartsWith.class) {
+                return new BinaryStringCall(call, function, args[0], args[1], String::startsWith);
+            } else if (type == EndsWith.class) {
+                return new BinaryStringCall(call, function, args[0], args[1], String::endsWith);
+            } else if (type == Contains.class) {
+                return new BinaryStringCall(call, function, args[0], args[1], (s, t) -> s.indexOf(t) > -1);
+            }
+        } else if (args.length == 3 && type == Replace.class) {
+            return new ReplaceCall(call, function, args[0], args[1], args[2]);
+        }
+        return new FunctionCallExpr(args, function);
+    }
+
+    static private boolean allLiterals(Evaluable[] args) {
+        for (Evaluable arg : args) {
+            if (!(arg instanceof LiteralExpr)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Evaluates a call whose arguments are all literals, which only depends on them.
+     *
+     * @return a literal holding the result, or null if the result is not an immutable value which can be shared by all
+     *         evaluations, such as an array or an error, or if evaluating the call throws
+     */
+    static private Evaluable fold(Evaluable source, Evaluable call) {
+        Object value;
+        try {
+            value = call.evaluate(new Properties());
+        } catch (Exception e) {
+            // such as an integer division by zero, left to fail when evaluated
+            return null;
+        }
+        if (value == null || value instanceof String || value instanceof Number || value instanceof Boolean
+                || value instanceof OffsetDateTime) {
+            return new FoldedLiteral(source, value);
+        }
+        return null;
+    }
+
+    /**
+     * Compiles a pattern given as a string literal to the regular expression it is turned into when evaluated. Invalid
+     * patterns are left as they are, to fail when evaluated.
+     */
+    static private Evaluable compilePattern(Evaluable arg) {
+        if (arg instanceof LiteralExpr && ((LiteralExpr) arg).getValue() instanceof String) {
+            try {
+                return new FoldedLiteral(arg, Pattern.compile((String) ((LiteralExpr) arg).getValue()));
+            } catch (PatternSyntaxException e) {
+                return arg;
+            }
+        }
+        return arg;
+    }
+
+    /**
+     * Compiles a loop, hoisting the sub-expressions of its body which do not depend on the variables bound within it.
+     */
+    static private Evaluable compileLoop(ControlCallExpr call) {
+        Evaluable[] args = call.getArgs();
+        Set<String> bound = new HashSet<>();
+        bound.add(((VariableExpr) args[1]).getName());
+        collectBoundVariables(args[2], bound);
+
+        Object scope = new Object();
+        List<Evaluable> hoisted = new ArrayList<>();
+        Evaluable body = hoist(args[2], bound, scope, hoisted);
+        Evaluable[] compiled = new Evaluable[] { compile(args[0]), args[1], compile(body) };
+        if (hoisted.isEmpty()) {
+            return new ControlCallExpr(compiled, call.getControl());
+        }
+        return new HoistingControlCall(compiled, call.getControl(), scope, hoisted.size());
+    }
+
+    /**
+     * Replaces the largest invariant sub-expressions by {@link HoistedExpr}s, leaving the rest to be compiled.
+     */
+    static private Evaluable hoist(Evaluable expression, Set<String> bound, Object scope, List<Evaluable> hoisted) {
+        if (expression instanceof LiteralExpr || expression instanceof VariableExpr || expression instanceof HoistedExpr) {
+            // already as cheap as a hoisted value
+            return expression;
+        } else if (isInvariant(expression, bound)) {
+            Evaluable compiled = compile(expression);
+            if (compiled instanceof LiteralExpr) {
+                return compiled;
+            }
+            hoisted.add(compiled);
+            return new HoistedExpr(scope, hoisted.size() - 1, compiled);
+        } else if (expression instanceof FunctionCallExpr) {
+            FunctionCallExpr call = (FunctionCallExpr) expression;
+            return new FunctionCallExpr(hoist(call.getArgs(), bound, scope, hoisted), call.getFunction());
+        } else if (expression instanceof OperatorCallExpr) {
+            OperatorCallExpr call = (OperatorCallExpr) expression;
+            return new OperatorCallExpr(hoist(call.getArgs(), bound, scope, hoisted), call.getOperator());
+        } else if (expression instanceof FieldAccessorExpr) {
+            FieldAccessorExpr accessor = (FieldAccessorExpr) expression;
+            return new FieldAccessorExpr(hoist(accessor.getInner(), bound, scope, hoisted), accessor.getFieldName());
+        } else if (expression instanceof ControlCallExpr && ControlFunctionRegistry.isPure(((ControlCallExpr) expression).getControl())) {
+            ControlCallExpr call = (ControlCallExpr) expression;
+            return new ControlCallExpr(hoist(call.getArgs(), bound, scope, hoisted), call.getControl());
+        }
+        return expression;
+    }
+
+    static private Evaluable[] hoist(Evaluable[] expressions, Set<String> bound, Object scope, List<Evaluable> hoisted) {
+        Evaluable[] result = new Evaluable[expressions.length];
+        for (int i = 0; i < expressions.length; i++) {
+            result[i] = hoist(expressions[i], bound, scope, hoisted);
+        }
+        return result;
+    }
+
+    /**
+     * @return whether the expression only depends on variables which are not bound within the loop, through pure
+     *         functions and operators
+     */
+    static private boolean isInvariant(Evaluable expression, Set<String> bound) {
+        if (expression instanceof LiteralExpr || expression instanceof HoistedExpr) {
+            return true;
+        } else if (expression instanceof VariableExpr) {
+            return !bound.contains(((VariableExpr) expression).getName());
+        } else if (expression instanceof FunctionCallExpr) {
+            FunctionCallExpr call = (FunctionCallExpr) expression;
+            return ControlFunctionRegistry.isPure(call.getFunction()) && isInvariant(call.getArgs(), bound);
+        } else if (expression instanceof OperatorCallExpr) {
+            return isInvariant(((OperatorCallExpr) expression).getArgs(), bound);
+        } else if (expression instanceof FieldAccessorExpr) {
+            return isInvariant(((FieldAccessorExpr) expression).getInner(), bound);
+        }
+        // controls may bind variables of their own
+        return false;
+    }
+
+    static private boolean isInvariant(Evaluable[] expressions, Set<String> bound) {
+        for (Evaluable expression : expressions) {
+            if (!isInvariant(expression, bound)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Collects the names of the variables bound by the controls within an expression.
+     */
+    static private void collectBoundVariables(Evaluable expression, Set<String> bound) {
+        if (expression instanceof ControlCallExpr) {
+            ControlCallExpr call = (ControlCallExpr) expression;
+            Control control = call.getControl();
+            Evaluable[] args = call.getArgs();
+            for (int i = 0; i < args.length; i++) {
+                if (args[i] instanceof VariableExpr && bindsArgument(control, i, args.length)) {
+                    bound.add(((VariableExpr) args[i]).getName());
+                }
+            }
+            collectBoundVariables(args, bound);
+        } else if (expression instanceof FunctionCallExpr) {
+            collectBoundVariables(((FunctionCallExpr) expression).getArgs(), bound);
+        } else if (expression instanceof OperatorCallExpr) {
+            collectBoundVariables(((OperatorCallExpr) expression).getArgs(), bound);
+        } else if (expression instanceof FieldAccessorExpr) {
+            collectBoundVariables(((FieldAccessorExpr) expression).getInner(), bound);
+        }
+    }
+
+    static private void collectBoundVariables(Evaluable[] expressions, Set<String> bound) {
+        for (Evaluable expression : expressions) {
+            collectBoundVariables(expression, bound);
+        }
+    }
+
+    /**
+     * @return whether the control may bind the variable passed as the given argument. Controls other than the built-in
+     *         ones may bind any variable they are passed.
+     */
+    static private boolean bindsArgument(Control control, int index, int argCount) {
+        Class<?> type = control.getClass();
+        if (type == ForEach.class || type == Filter.class || type == With.class || type == ForNonBlank.class) {
+            return index == 1;
+        } else if (type == ForEachIndex.class) {
+            return index == 1 || index == 2;
+        } else if (type == ForRange.class) {
+            return index == 3;
+        } else if (type == If.class || argCount == 1 && ControlFunctionRegistry.isPure(control)) {
+            // conditions, and tests such as isBlank
+            return false;
+        }
+        return true;
+    }
+}
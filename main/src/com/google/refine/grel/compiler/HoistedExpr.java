@@ -0,0 +1,84 @@
+/*******************************************************************************
+ * Copyright (C) 2024, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.grel.compiler;
+
+import java.util.Properties;
+import java.util.Set;
+
+import com.google.refine.expr.Evaluable;
+
+/**
+ * A sub-expression of the body of a loop which does not depend on the loop variables. It is evaluated the first time
+ * the body needs it and its value is reused for the other elements, until the loop completes. The values are kept in
+ * the bindings by the enclosing {@link HoistingControlCall}, under the scope they share.
+ */
+class HoistedExpr implements Evaluable {
+
+    // marks a value which has not been computed yet in the current evaluation of the loop
+    static final Object UNSET = new Object();
+
+    final protected Object _scope;
+    final protected int _index;
+    final protected Evaluable _inner;
+
+    HoistedExpr(Object scope, int index, Evaluable inner) {
+        _scope = scope;
+        _index = index;
+        _inner = inner;
+    }
+
+    @Override
+    public Object evaluate(Properties bindings) {
+        Object[] values = (Object[]) bindings.get(_scope);
+        if (values == null) {
+            // not evaluated from the loop which hoisted it
+            return _inner.evaluate(bindings);
+        }
+        Object value = values[_index];
+        if (value == UNSET) {
+            value = _inner.evaluate(bindings);
+            values[_index] = value;
+        }
+        return value;
+    }
+
+    @Override
+    public boolean isThreadSafe() {
+        return _inner.isThreadSafe();
+    }
+
+    @Override
+    public Set<String> getColumnDependencies(String baseColumn) {
+        return _inner.getColumnDependencies(baseColumn);
+    }
+
+    @Override
+    public String toString() {
+        return _inner.toString();
+    }
+}
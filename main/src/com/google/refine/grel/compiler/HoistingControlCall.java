@@ -0,0 +1,63 @@
+/*******************************************************************************
+ * Copyright (C) 2024, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.grel.compiler;
+
+import java.util.Arrays;
+import java.util.Properties;
+
+import com.google.refine.expr.Evaluable;
+import com.google.refine.grel.Control;
+import com.google.refine.grel.ast.ControlCallExpr;
+
+/**
+ * A loop, such as {@code forEach}, whose body refers to {@link HoistedExpr}s. Each evaluation of the loop starts with
+ * none of them computed, so that they are evaluated at most once per evaluation rather than once per element.
+ */
+class HoistingControlCall extends ControlCallExpr {
+
+    final protected Object _scope;
+    final protected int _hoistedCount;
+
+    HoistingControlCall(Evaluable[] args, Control control, Object scope, int hoistedCount) {
+        super(args, control);
+        _scope = scope;
+        _hoistedCount = hoistedCount;
+    }
+
+    @Override
+    public Object evaluate(Properties bindings) {
+        Object[] values = new Object[_hoistedCount];
+        Arrays.fill(values, HoistedExpr.UNSET);
+        bindings.put(_scope, values);
+        try {
+            return super.evaluate(bindings);
+        } finally {
+            bindings.remove(_scope);
+        }
+    }
+}
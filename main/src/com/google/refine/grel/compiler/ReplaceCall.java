@@ -0,0 +1,71 @@
+/*******************************************************************************
+ * Copyright (C) 2024, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.grel.compiler;
+
+import java.util.Properties;
+
+import com.google.refine.expr.Evaluable;
+import com.google.refine.expr.ExpressionUtils;
+import com.google.refine.grel.Function;
+
+/**
+ * A call to {@code replace}, computed directly when replacing a string by another in a string.
+ */
+class ReplaceCall extends CompiledCall {
+
+    final protected Evaluable _string;
+    final protected Evaluable _find;
+    final protected Evaluable _replacement;
+
+    ReplaceCall(Evaluable source, Function function, Evaluable string, Evaluable find, Evaluable replacement) {
+        super(source, function);
+        _string = string;
+        _find = find;
+        _replacement = replacement;
+    }
+
+    @Override
+    public Object evaluate(Properties bindings) {
+        Object string = _string.evaluate(bindings);
+        if (ExpressionUtils.isError(string)) {
+            return string;
+        }
+        Object find = _find.evaluate(bindings);
+        if (ExpressionUtils.isError(find)) {
+            return find;
+        }
+        Object replacement = _replacement.evaluate(bindings);
+        if (ExpressionUtils.isError(replacement)) {
+            return replacement;
+        }
+        if (string instanceof String && find instanceof String && replacement instanceof String) {
+            return ((String) string).replace((String) find, (String) replacement);
+        }
+        return call(bindings, new Object[] { string, find, replacement });
+    }
+}
@@ -36,6 +36,7 @@ package com.google.refine.history;
 import java.io.IOException;
 import java.io.Writer;
 import java.util.Properties;
+import java.util.Set;
 
 import com.google.refine.model.Project;
 
@@ -51,4 +52,22 @@ public interface Change {
     public void revert(Project project);
 
     public void save(Writer writer, Properties options) throws IOException;
+
+    /**
+     * Returns the indices of the cells this change modifies, if all it does is replace the contents of existing cells
+     * (or row flags and stars). Data derived from the other cells of the project remains valid after the change is
+     * applied or reverted.
+     *
+     * @return the modified cell indices, or null if the change can also affect rows or columns
+     */
+    default public Set<Integer> getModifiedCellIndices() {
+        return null;
+    }
+
+    /**
+     * @return a rough estimate of the heap retained by the data of this change, in bytes, or -1 if it is not known
+     */
+    default public long estimateRetainedBytes() {
+        return -1;
+    }
 }
@@ -0,0 +1,83 @@
+/*******************************************************************************
+ * Copyright (C) 2024, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.history;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Decides which changes stay in memory once they are saved to disk. The changes used most recently, across all
+ * projects, are held strongly, up to the {@code refine.history.heldChanges} system property (defaults to 16). The other
+ * saved changes are only softly reachable from their history entry, so that the garbage collector reclaims them when
+ * memory runs low, in which case they are read again from disk when they are undone or redone.
+ * <p>
+ * Set the {@code refine.history.releaseSavedChanges} system property to {@code false} to keep all changes in memory
+ * once loaded.
+ */
+public class ChangeMemoryPolicy {
+
+    static public boolean s_releaseSavedChanges = !"false".equals(System.getProperty("refine.history.releaseSavedChanges"));
+
+    static private final Cache<HistoryEntry, Change> s_heldChanges = CacheBuilder.newBuilder()
+            // history entries do not override equals, so they are compared by identity anyway
+            .weakKeys()
+            .concurrencyLevel(1)
+            .maximumSize(Math.max(0, Integer.getInteger("refine.history.heldChanges", 16)))
+            .build();
+
+    private ChangeMemoryPolicy() {
+    }
+
+    /**
+     * Records that the change of a history entry was just used.
+     */
+    static void touch(HistoryEntry entry, Change change) {
+        s_heldChanges.put(entry, change);
+    }
+
+    /**
+     * Stops holding the change of a history entry which is discarded.
+     */
+    static void forget(HistoryEntry entry) {
+        s_heldChanges.invalidate(entry);
+    }
+
+    /**
+     * @return whether the change of the history entry is among those held strongly
+     */
+    static boolean isHeld(HistoryEntry entry) {
+        return s_heldChanges.asMap().containsKey(entry);
+    }
+
+    /**
+     * Stops holding any saved change strongly, leaving them to the garbage collector.
+     */
+    static public void releaseAll() {
+        s_heldChanges.invalidateAll();
+    }
+}
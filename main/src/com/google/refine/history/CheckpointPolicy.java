@@ -0,0 +1,75 @@
+/*******************************************************************************
+ * Copyright (C) 2024, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.history;
+
+/**
+ * Decides when checkpoints of a project are taken, and when undoing or redoing goes through one. A checkpoint is taken
+ * after applying an entry once {@code refine.history.checkpointEntries} entries were applied since the closest one, or
+ * once applying entries took {@code refine.history.checkpointSeconds} seconds since the last checkpoint was taken or
+ * restored. Both are 0 by default, which disables checkpoints.
+ */
+public class CheckpointPolicy {
+
+    static public int s_entries = Integer.getInteger("refine.history.checkpointEntries", 0);
+
+    static public int s_seconds = Integer.getInteger("refine.history.checkpointSeconds", 0);
+
+    /**
+     * The number of entries a checkpoint must spare applying or reverting, for it to be worth restoring. Restoring a
+     * checkpoint reads the whole project, and then the changes held in memory have to be read again from disk.
+     */
+    static public int s_minSkippedEntries = Integer.getInteger("refine.history.checkpointMinSkippedEntries", 4);
+
+    private CheckpointPolicy() {
+    }
+
+    static public boolean isEnabled() {
+        return s_entries > 0 || s_seconds > 0;
+    }
+
+    /**
+     * @param entriesSinceCheckpoint
+     *            the number of entries applied since the closest checkpoint, or since the start of the project
+     * @param applyNanos
+     *            the time spent applying entries since the last checkpoint was taken or restored
+     */
+    static boolean isDue(int entriesSinceCheckpoint, long applyNanos) {
+        return (s_entries > 0 && entriesSinceCheckpoint >= s_entries)
+                || (s_seconds > 0 && applyNanos >= s_seconds * 1000000000L);
+    }
+
+    /**
+     * @param stepsFromCheckpoint
+     *            the number of entries to apply or revert after restoring the checkpoint
+     * @param steps
+     *            the number of entries to apply or revert without it
+     */
+    static boolean isWorthRestoring(int stepsFromCheckpoint, int steps) {
+        return steps - stepsFromCheckpoint >= Math.max(1, s_minSkippedEntries);
+    }
+}
@@ -0,0 +1,62 @@
+/*******************************************************************************
+ * Copyright (C) 2024, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.history;
+
+import java.io.IOException;
+import java.util.Set;
+
+import com.google.refine.model.Project;
+
+/**
+ * Stores checkpoints of projects: copies of the project data as it is after a given history entry, from which the
+ * history can jump to distant entries without applying or reverting every entry in between.
+ */
+public interface CheckpointStore {
+
+    /**
+     * @return the ids of the entries after which a checkpoint of the project is stored
+     */
+    public Set<Long> getCheckpoints(long projectID);
+
+    /**
+     * Stores a checkpoint of the project as it is now, after the given entry. This is called while the project and its
+     * history are locked, so the checkpoint should be written to disk in the background once copied. A store can
+     * decline to take a checkpoint, for instance if it is too large.
+     */
+    public void save(Project project, long entryID) throws IOException;
+
+    /**
+     * Replaces the data of the project with the checkpoint stored after the given entry.
+     */
+    public void restore(Project project, long entryID) throws IOException;
+
+    /**
+     * Deletes the checkpoint stored after the given entry, if any.
+     */
+    public void delete(long projectID, long entryID);
+}
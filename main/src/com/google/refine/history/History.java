@@ -45,12 +45,18 @@ import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.google.refine.ProjectManager;
 import com.google.refine.ProjectMetadata;
 import com.google.refine.RefineServlet;
+import com.google.refine.expr.ColumnEvaluationCache;
 import com.google.refine.model.Project;
 import com.google.refine.util.Pool;
 
@@ -59,9 +65,15 @@ import com.google.refine.util.Pool;
  * tracked directly but through a history entry. The history entry stores only the metadata, while the change object
  * stores the actual data, thus the history entries are much smaller and can be kept in memory, while the change objects
  * are only loaded into memory on demand.
+ * <p>
+ * Checkpoints of the project data can be taken as entries are applied, as decided by the {@link CheckpointPolicy}, so
+ * that undoing or redoing many entries at once restores the checkpoint closest to the target entry and only goes
+ * through the entries between them.
  */
 public class History {
 
+    final static Logger logger = LoggerFactory.getLogger("history");
+
     static public Change readOneChange(InputStream in, Pool pool) throws Exception {
         LineNumberReader reader = new LineNumberReader(new InputStreamReader(in, "UTF-8"));
         try {
@@ -113,12 +125,36 @@ public class History {
         return (Class<? extends Change>) RefineServlet.getClass(className);
     }
 
+    /**
+     * How much of the history of a project is held in memory, as reported in the project residency stats.
+     */
+    static public class MemoryUsage {
+
+        @JsonProperty("entries")
+        public int entries;
+        @JsonProperty("unsavedChanges")
+        public int unsavedChanges;
+        @JsonProperty("heldChanges")
+        public int heldChanges;
+        @JsonProperty("releasedChanges")
+        public int releasedChanges;
+        @JsonProperty("estimatedBytes")
+        public long estimatedBytes;
+    }
+
     protected long _projectID;
     @JsonProperty("past")
     protected List<HistoryEntry> _pastEntries; // done changes, can be undone
     @JsonProperty("future")
     protected List<HistoryEntry> _futureEntries; // undone changes, can be redone
 
+    // time spent applying entries since the last checkpoint was taken or restored
+    private long _applyNanosSinceCheckpoint;
+    // the entry after which a checkpoint was last attempted, which is not retried even if it was skipped or failed
+    private long _lastCheckpointAttempt;
+    // the number of threads applying or reverting entries, while which the project must not be evicted from memory
+    private final AtomicInteger _changesInProgress = new AtomicInteger();
+
     public History(Project project) {
         _projectID = project.id;
         _pastEntries = new ArrayList<HistoryEntry>();
@@ -131,13 +167,24 @@ public class History {
      * @param entry
      */
     public void addEntry(HistoryEntry entry) {
-        Project project = ProjectManager.singleton.getProject(_projectID);
+        _changesInProgress.incrementAndGet();
+        try {
+            addEntry(ProjectManager.singleton.getProject(_projectID), entry);
+        } finally {
+            _changesInProgress.decrementAndGet();
+        }
+    }
+
+    private void addEntry(Project project, HistoryEntry entry) {
         synchronized (project) {
             // NOTE: project lock must be acquired *first* to prevent deadlocks, so we use a
             // synchronized block instead of synchronizing the entire method.
             synchronized (this) {
+                long start = System.nanoTime();
                 entry.apply(project);
+                invalidateCachedEvaluations(entry);
                 _pastEntries.add(entry);
+                checkpointIfDue(project, System.nanoTime() - start);
 
                 setModified();
 
@@ -165,6 +212,14 @@ public class History {
         projectMetadata.updateModified(); // Redundant, but for safety in case setRowCount implementation changes
     }
 
+    /**
+     * Drops the expression results cached for the columns modified by the entry, after it was applied or reverted.
+     */
+    protected void invalidateCachedEvaluations(HistoryEntry entry) {
+        Change change = entry.getLoadedChange();
+        ColumnEvaluationCache.invalidate(_projectID, change == null ? null : change.getModifiedCellIndices());
+    }
+
     synchronized public List<HistoryEntry> getLastPastEntries(int count) {
         if (count <= 0) {
             return new LinkedList<HistoryEntry>(_pastEntries);
@@ -173,7 +228,82 @@ public class History {
         }
     }
 
+    /**
+     * @return the id of the last entry applied to the project, or 0 if the project is in its initial state. Together
+     *         with the project id, this identifies the state of the project data.
+     */
+    @JsonIgnore
+    synchronized public long getLastDoneEntryID() {
+        return _pastEntries.isEmpty() ? 0 : _pastEntries.get(_pastEntries.size() - 1).id;
+    }
+
+    /**
+     * @return all entries of the history: the done entries, oldest first, followed by the undone ones
+     */
+    @JsonIgnore
+    synchronized public List<HistoryEntry> getAllEntries() {
+        List<HistoryEntry> entries = new ArrayList<>(_pastEntries.size() + _futureEntries.size());
+        entries.addAll(_pastEntries);
+        entries.addAll(_futureEntries);
+        return entries;
+    }
+
+    /**
+     * @return the number of done entries
+     */
+    @JsonIgnore
+    synchronized public int getPastEntryCount() {
+        return _pastEntries.size();
+    }
+
+    /**
+     * Brings the project to the state described by the given entries, of which the first {@code doneCount} are done.
+     * The done entries of this history which are not among them are reverted, and the missing ones applied, so the
+     * changes of all these entries must still be on disk. This is used to replay a project journal over the snapshot it
+     * was written after.
+     *
+     * @param entries
+     *            the done entries, oldest first, followed by the undone ones
+     * @param doneCount
+     *            the number of done entries
+     */
+    public void restore(Project project, List<HistoryEntry> entries, int doneCount) {
+        synchronized (project) {
+            synchronized (this) {
+                int common = 0;
+                while (common < _pastEntries.size() && common < doneCount
+                        && _pastEntries.get(common).id == entries.get(common).id) {
+                    common++;
+                }
+                for (int i = _pastEntries.size() - 1; i >= common; i--) {
+                    HistoryEntry entry = _pastEntries.get(i);
+                    entry.revert(project);
+                    invalidateCachedEvaluations(entry);
+                }
+                for (int i = common; i < doneCount; i++) {
+                    HistoryEntry entry = entries.get(i);
+                    entry.apply(project);
+                    invalidateCachedEvaluations(entry);
+                }
+                _pastEntries = new ArrayList<>(entries.subList(0, doneCount));
+                _futureEntries = new ArrayList<>(entries.subList(doneCount, entries.size()));
+            }
+        }
+    }
+
     synchronized public void undoRedo(long lastDoneEntryID) {
+        _changesInProgress.incrementAndGet();
+        try {
+            undoRedoTo(lastDoneEntryID);
+        } finally {
+            _changesInProgress.decrementAndGet();
+        }
+    }
+
+    private void undoRedoTo(long lastDoneEntryID) {
+        if (undoRedoFromCheckpoint(lastDoneEntryID)) {
+            return;
+        }
         if (lastDoneEntryID == 0) {
             // undo all the way back to the start of the project
             undo(_pastEntries.size());
@@ -194,6 +324,122 @@ public class History {
         }
     }
 
+    /**
+     * @return whether entries are being applied or reverted, in which case the project is in use
+     */
+    @JsonIgnore
+    public boolean isChanging() {
+        return _changesInProgress.get() > 0;
+    }
+
+    /**
+     * Takes a checkpoint of the project after the entry just applied, if the {@link CheckpointPolicy} requires one.
+     *
+     * @param applyNanos
+     *            the time spent applying the entry
+     */
+    protected void checkpointIfDue(Project project, long applyNanos) {
+        CheckpointStore store = getCheckpointStore();
+        if (store == null || _pastEntries.isEmpty()) {
+            return;
+        }
+        _applyNanosSinceCheckpoint += applyNanos;
+
+        Set<Long> checkpoints = store.getCheckpoints(_projectID);
+        int last = _pastEntries.size() - 1;
+        int sinceCheckpoint = _pastEntries.size();
+        for (int i = last; i >= 0; i--) {
+            long id = _pastEntries.get(i).id;
+            if (checkpoints.contains(id) || id == _lastCheckpointAttempt) {
+                sinceCheckpoint = last - i;
+                break;
+            }
+        }
+        if (sinceCheckpoint > 0 && CheckpointPolicy.isDue(sinceCheckpoint, _applyNanosSinceCheckpoint)) {
+            _lastCheckpointAttempt = _pastEntries.get(last).id;
+            _applyNanosSinceCheckpoint = 0;
+            try {
+                store.save(project, _lastCheckpointAttempt);
+            } catch (IOException e) {
+                logger.warn("Failed to save a checkpoint of project " + _projectID, e);
+            }
+        }
+    }
+
+    /**
+     * Undoes or redoes up to the given entry by restoring the checkpoint closest to it and applying or reverting the
+     * remaining entries, if that spares enough entries compared to going through all of them.
+     *
+     * @return whether the checkpoint was restored
+     */
+    protected boolean undoRedoFromCheckpoint(long lastDoneEntryID) {
+        CheckpointStore store = getCheckpointStore();
+        if (store == null) {
+            return false;
+        }
+        List<HistoryEntry> entries = getAllEntries();
+        int target = lastDoneEntryID == 0 ? 0 : -1;
+        for (int i = 0; i < entries.size() && target < 0; i++) {
+            if (entries.get(i).id == lastDoneEntryID) {
+                target = i + 1;
+            }
+        }
+        if (target < 0) {
+            return false;
+        }
+        int steps = Math.abs(target - _pastEntries.size());
+
+        Set<Long> checkpoints = store.getCheckpoints(_projectID);
+        int closest = -1;
+        for (int i = 0; i < entries.size(); i++) {
+            if (checkpoints.contains(entries.get(i).id)
+                    && (closest < 0 || Math.abs(target - (i + 1)) < Math.abs(target - closest))) {
+                closest = i + 1;
+            }
+        }
+        if (closest < 0 || !CheckpointPolicy.isWorthRestoring(Math.abs(target - closest), steps)) {
+            return false;
+        }
+
+        ProjectManager.singleton.getHistoryEntryManager().flush(_projectID);
+        // changes hold on to the rows and columns they modify, which the project no longer has once the checkpoint is
+        // restored, so they all have to be read again from disk
+        for (HistoryEntry entry : entries) {
+            if (!entry.canDiscardLoadedChange()) {
+                return false;
+            }
+        }
+        Project project = ProjectManager.singleton.getProject(_projectID);
+        try {
+            store.restore(project, entries.get(closest - 1).id);
+        } catch (IOException e) {
+            logger.warn("Failed to restore a checkpoint of project " + _projectID, e);
+            return false;
+        }
+        for (HistoryEntry entry : entries) {
+            entry.discardLoadedChange();
+        }
+        _pastEntries = new ArrayList<>(entries.subList(0, closest));
+        _futureEntries = new ArrayList<>(entries.subList(closest, entries.size()));
+        _applyNanosSinceCheckpoint = 0;
+        setModified();
+
+        if (target > closest) {
+            redo(target - closest);
+        } else {
+            undo(closest - target);
+        }
+        return true;
+    }
+
+    protected CheckpointStore getCheckpointStore() {
+        if (!CheckpointPolicy.isEnabled()) {
+            return null;
+        }
+        HistoryEntryManager manager = ProjectManager.singleton.getHistoryEntryManager();
+        return manager != null ? manager.getCheckpointStore() : null;
+    }
+
     synchronized public long getPrecedingEntryID(long entryID) {
         if (entryID == 0) {
             return -1;
@@ -234,6 +480,32 @@ public class History {
         return null;
     }
 
+    /**
+     * Counts the changes of the history held in memory and estimates the heap they retain. Changes only reachable
+     * softly are not counted in the estimate, since the garbage collector can reclaim them at any time.
+     */
+    @JsonIgnore
+    synchronized public MemoryUsage getMemoryUsage() {
+        MemoryUsage usage = new MemoryUsage();
+        for (HistoryEntry entry : getAllEntries()) {
+            usage.entries++;
+            Change change = entry.getLoadedChange();
+            if (change == null) {
+                continue;
+            }
+            if (entry.isChangePinned()) {
+                usage.unsavedChanges++;
+            } else if (ChangeMemoryPolicy.isHeld(entry)) {
+                usage.heldChanges++;
+            } else {
+                usage.releasedChanges++;
+                continue;
+            }
+            usage.estimatedBytes += Math.max(0, change.estimateRetainedBytes());
+        }
+        return usage;
+    }
+
     protected void undo(int times) {
         Project project = ProjectManager.singleton.getProject(_projectID);
 
@@ -241,6 +513,7 @@ public class History {
             HistoryEntry entry = _pastEntries.get(_pastEntries.size() - 1);
 
             entry.revert(project);
+            invalidateCachedEvaluations(entry);
 
             setModified();
             times--;
@@ -256,13 +529,16 @@ public class History {
         while (times > 0 && _futureEntries.size() > 0) {
             HistoryEntry entry = _futureEntries.get(0);
 
+            long start = System.nanoTime();
             entry.apply(project);
+            invalidateCachedEvaluations(entry);
 
             setModified();
             times--;
 
             _pastEntries.add(entry);
             _futureEntries.remove(0);
+            checkpointIfDue(project, System.nanoTime() - start);
         }
     }
 
@@ -35,6 +35,8 @@ package com.google.refine.history;
 
 import java.io.IOException;
 import java.io.Writer;
+import java.lang.ref.Reference;
+import java.lang.ref.SoftReference;
 import java.time.Instant;
 import java.time.OffsetDateTime;
 import java.util.Properties;
@@ -80,19 +82,103 @@ public class HistoryEntry {
     @JsonView(JsonViews.SaveMode.class)
     final public AbstractOperation operation;
 
-    // the actual change, loaded on demand
+    // the actual change, loaded on demand. It is held strongly until it is saved,
+    // and then only as long as the ChangeMemoryPolicy allows, since it can be read again
     @JsonIgnore
-    private transient Change _change;
+    private transient volatile Change _change;
+    @JsonIgnore
+    private transient volatile Reference<Change> _savedChange;
+    @JsonIgnore
+    private transient volatile boolean _changeSaved;
 
     private final static String OPERATION = "operation";
 
     public void setChange(Change _change) {
         this._change = _change;
+        this._savedChange = null;
+        this._changeSaved = false;
     }
 
+    /**
+     * @return the change, read again from disk if it was released from memory since it was saved
+     */
     @JsonIgnore
     public Change getChange() {
-        return _change;
+        Change change = getLoadedChange();
+        if (change == null && _changeSaved) {
+            _manager.loadChange(this);
+            change = getLoadedChange();
+        }
+        if (change != null && _savedChange != null) {
+            ChangeMemoryPolicy.touch(this, change);
+        }
+        return change;
+    }
+
+    /**
+     * @return the change if it is in memory, without reading it from disk
+     */
+    @JsonIgnore
+    public Change getLoadedChange() {
+        Change change = _change;
+        if (change == null) {
+            Reference<Change> saved = _savedChange;
+            change = saved != null ? saved.get() : null;
+        }
+        return change;
+    }
+
+    /**
+     * Records that the change held in memory is also saved, by the history entry manager, so that it can be released
+     * from memory and read again when needed.
+     */
+    public void markChangeSaved() {
+        _changeSaved = true;
+        Change change = getLoadedChange();
+        if (change != null && ChangeMemoryPolicy.s_releaseSavedChanges) {
+            _savedChange = new SoftReference<>(change);
+            _change = null;
+            ChangeMemoryPolicy.touch(this, change);
+        }
+    }
+
+    /**
+     * @return whether the change is saved, so that it can be read again from disk
+     */
+    @JsonIgnore
+    public boolean isChangeSaved() {
+        return _changeSaved;
+    }
+
+    /**
+     * @return whether the change is held in memory only until it is saved
+     */
+    @JsonIgnore
+    public boolean isChangePinned() {
+        return _change != null;
+    }
+
+    /**
+     * Drops the change from memory, so that it is read again from disk when it is next needed. Changes can refer to
+     * rows and columns of the project, which they hold on to, so this is needed when the project data is replaced.
+     *
+     * @return false if the change is not saved yet, in which case it is kept
+     */
+    boolean discardLoadedChange() {
+        if (!canDiscardLoadedChange()) {
+            return false;
+        }
+        ChangeMemoryPolicy.forget(this);
+        _change = null;
+        _savedChange = null;
+        return true;
+    }
+
+    /**
+     * @return whether the change is either saved or not in memory, so that it can be read again from disk
+     */
+    boolean canDiscardLoadedChange() {
+        return _changeSaved || getLoadedChange() == null;
     }
 
     static public long allocateID() {
@@ -146,12 +232,18 @@ public class HistoryEntry {
      *            the project the change should be applied to
      */
     public void apply(Project project) {
-        if (getChange() == null) {
+        // the changes saved in the background may refer to rows which this change modifies
+        _manager.flush(projectID);
+        Change change = getChange();
+        if (change == null) {
             ProjectManager.singleton.getHistoryEntryManager().loadChange(this);
+            change = getChange();
         }
 
         synchronized (project) {
-            getChange().apply(project);
+            // changes modify rows in place, which requires them to be held in memory
+            project.materializeRows();
+            change.apply(project);
 
             // When a change is applied, it can hang on to old data (in order to be able
             // to revert later). Hence, we need to save the change out.
@@ -161,7 +253,7 @@ public class HistoryEntry {
             } catch (Exception e) {
                 e.printStackTrace();
 
-                getChange().revert(project);
+                change.revert(project);
 
                 throw new RuntimeException("Failed to apply change", e);
             }
@@ -169,10 +261,14 @@ public class HistoryEntry {
     }
 
     public void revert(Project project) {
-        if (getChange() == null) {
+        _manager.flush(projectID);
+        Change change = getChange();
+        if (change == null) {
             _manager.loadChange(this);
+            change = getChange();
         }
-        getChange().revert(project);
+        project.materializeRows();
+        change.revert(project);
     }
 
     static public HistoryEntry load(Project project, String s) throws IOException {
@@ -185,6 +281,7 @@ public class HistoryEntry {
     }
 
     public void delete() {
+        ChangeMemoryPolicy.forget(this);
         _manager.delete(this);
     }
 
@@ -45,4 +45,21 @@ public interface HistoryEntryManager {
     public void save(HistoryEntry historyEntry, Writer writer, Properties options);
 
     public void delete(HistoryEntry historyEntry);
+
+    /**
+     * Waits until the changes of the project submitted by {@link #saveChange} so far are saved, for managers which save
+     * them in the background.
+     *
+     * @return false if a change of the project failed to be saved in the background
+     */
+    default public boolean flush(long projectID) {
+        return true;
+    }
+
+    /**
+     * @return where checkpoints of projects are stored, or null if this manager does not store any
+     */
+    default public CheckpointStore getCheckpointStore() {
+        return null;
+    }
 }
@@ -0,0 +1,245 @@
+/*******************************************************************************
+ * Copyright (C) 2024, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.io;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.refine.ProjectManager;
+import com.google.refine.history.CheckpointStore;
+import com.google.refine.model.Project;
+
+/**
+ * Stores the checkpoints of each project in the checkpoints directory of the project, one compressed file per
+ * checkpoint in the binary project format. The checkpoints of a project are kept within a disk budget, set in megabytes
+ * by the {@code refine.history.checkpointBudgetMB} system property (256 by default): beyond it, the checkpoints least
+ * recently taken or restored are deleted, and checkpoints larger than the whole budget are not taken at all.
+ * <p>
+ * Checkpoints are taken while the project and its history are locked, so only serializing and compressing the project
+ * happens there, in memory: the resulting bytes are written to disk by the {@link HistoryWriter}, after the changes
+ * queued before them.
+ */
+public class FileCheckpointStore implements CheckpointStore {
+
+    final static Logger logger = LoggerFactory.getLogger("checkpoint_store");
+
+    public static final String CHECKPOINT_DIR = "checkpoints";
+
+    static final private String SUFFIX = ".checkpoint";
+
+    static public long s_diskBudget = Long.getLong("refine.history.checkpointBudgetMB", 256) * 1024 * 1024;
+
+    // the checkpoints of each project which are queued to be written
+    private final Map<Long, Set<Long>> pending = new ConcurrentHashMap<>();
+
+    /**
+     * Thrown when the compressed checkpoint grows past the disk budget, to stop serializing the project.
+     */
+    static private class OverBudgetException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        OverBudgetException() {
+            super("checkpoint larger than the disk budget");
+        }
+    }
+
+    /**
+     * Buffers a checkpoint in memory, up to the disk budget.
+     */
+    static private class BudgetedOutputStream extends OutputStream {
+
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(1 << 16);
+        private final long budget;
+
+        BudgetedOutputStream(long budget) {
+            this.budget = budget;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            checkBudget(1);
+            buffer.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            checkBudget(len);
+            buffer.write(b, off, len);
+        }
+
+        private void checkBudget(int len) throws OverBudgetException {
+            if (buffer.size() + (long) len > budget) {
+                throw new OverBudgetException();
+            }
+        }
+
+        byte[] toByteArray() {
+            return buffer.toByteArray();
+        }
+    }
+
+    @Override
+    public Set<Long> getCheckpoints(long projectID) {
+        Set<Long> entryIDs = new HashSet<>();
+        for (File file : listFiles(projectID)) {
+            String name = file.getName();
+            try {
+                entryIDs.add(Long.parseLong(name.substring(0, name.length() - SUFFIX.length())));
+            } catch (NumberFormatException e) {
+                // not a checkpoint
+            }
+        }
+        entryIDs.addAll(pending.getOrDefault(projectID, Collections.emptySet()));
+        return entryIDs;
+    }
+
+    @Override
+    public void save(Project project, long entryID) throws IOException {
+        BudgetedOutputStream buffer = new BudgetedOutputStream(s_diskBudget);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try (OutputStream out = new DeflaterOutputStream(buffer, deflater, 1 << 16)) {
+            project.saveDataToBinaryStream(out);
+        } catch (OverBudgetException e) {
+            // it would only make room for itself by deleting every other checkpoint, and not even fit
+            logger.debug("Skipped a checkpoint of project {} larger than the disk budget", project.id);
+            return;
+        } finally {
+            deflater.end();
+        }
+        byte[] bytes = buffer.toByteArray();
+
+        long projectID = project.id;
+        pending.computeIfAbsent(projectID, id -> ConcurrentHashMap.newKeySet()).add(entryID);
+        try {
+            HistoryWriter.submit(projectID, () -> write(projectID, entryID, bytes));
+        } catch (Exception e) {
+            pending.get(projectID).remove(entryID);
+            throw new IOException("Failed to queue a checkpoint of project " + projectID, e);
+        }
+    }
+
+    /**
+     * Writes a checkpoint queued by {@link #save(Project, long)}. Failures are only logged, since the project can do
+     * without the checkpoint.
+     */
+    private void write(long projectID, long entryID, byte[] bytes) {
+        File dir = getCheckpointDir(projectID);
+        dir.mkdirs();
+        File file = new File(dir, entryID + SUFFIX);
+        File tempFile = new File(dir, entryID + SUFFIX + ".temp");
+        try {
+            Files.write(tempFile.toPath(), bytes);
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            logger.warn("Failed to save a checkpoint of project " + projectID, e);
+            tempFile.delete();
+            pending.get(projectID).remove(entryID);
+            return;
+        }
+        if (!pending.get(projectID).remove(entryID)) {
+            // deleted while it was queued
+            file.delete();
+            return;
+        }
+        enforceBudget(projectID, file);
+    }
+
+    @Override
+    public void restore(Project project, long entryID) throws IOException {
+        HistoryWriter.flush(project.id);
+        File file = new File(getCheckpointDir(project.id), entryID + SUFFIX);
+        try (InputStream in = new InflaterInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+            project.restoreDataFromBinaryStream(in);
+        }
+        // marks the checkpoint as recently used
+        file.setLastModified(System.currentTimeMillis());
+    }
+
+    @Override
+    public void delete(long projectID, long entryID) {
+        pending.getOrDefault(projectID, Collections.emptySet()).remove(entryID);
+        File file = new File(getCheckpointDir(projectID), entryID + SUFFIX);
+        if (file.exists()) {
+            file.delete();
+        }
+    }
+
+    /**
+     * Deletes the checkpoints of the project least recently used, other than the one just written, until they fit in
+     * the disk budget.
+     */
+    private void enforceBudget(long projectID, File written) {
+        File[] files = listFiles(projectID);
+        long total = 0;
+        for (File file : files) {
+            total += file.length();
+        }
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (int i = 0; i < files.length && total > s_diskBudget; i++) {
+            if (files[i].equals(written)) {
+                continue;
+            }
+            long length = files[i].length();
+            if (files[i].delete()) {
+                logger.debug("Deleted checkpoint {} of project {} to stay within the disk budget", files[i].getName(),
+                        projectID);
+                total -= length;
+            }
+        }
+    }
+
+    private File[] listFiles(long projectID) {
+        File[] files = getCheckpointDir(projectID).listFiles((dir, name) -> name.endsWith(SUFFIX));
+        return files != null ? files : new File[0];
+    }
+
+    protected File getCheckpointDir(long projectID) {
+        return new File(((FileProjectManager) ProjectManager.singleton).getProjectDir(projectID), CHECKPOINT_DIR);
+    }
+}
@@ -33,35 +33,105 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package com.google.refine.io;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
 import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import java.util.zip.ZipOutputStream;
 
 import com.google.refine.ProjectManager;
+import com.google.refine.history.Change;
+import com.google.refine.history.CheckpointStore;
 import com.google.refine.history.History;
 import com.google.refine.history.HistoryEntry;
 import com.google.refine.history.HistoryEntryManager;
+import com.google.refine.model.changes.MassCellChangeCodec;
 import com.google.refine.util.ParsingUtilities;
 import com.google.refine.util.Pool;
 
+/**
+ * Saves the change of each history entry to its own zip file in the history directory of the project. Changes with a
+ * registered {@link ChangeCodec} are saved in binary form, in a change.bin entry. The other changes are saved in the
+ * line-based format, in change.txt and pool.txt entries. Both kinds of files can always be loaded. Entries are
+ * compressed at the fastest level, since saving changes is on the path of every operation.
+ */
 public class FileHistoryEntryManager implements HistoryEntryManager {
 
     public static final String HISTORY_DIR = "history";
 
+    static final String CHANGE_BIN_ENTRY = "change.bin";
+
+    // written at the start of binary changes, to be incremented whenever a codec changes how it encodes changes
+    static final int BINARY_CHANGE_VERSION = 2;
+
+    /**
+     * Whether changes with a registered codec are saved in binary form. Set the {@code refine.history.changeFormat}
+     * system property to {@code text} to save all changes in the line-based format, which older versions can read.
+     */
+    static public boolean s_binaryChanges = !"text".equals(System.getProperty("refine.history.changeFormat"));
+
+    static private final Map<String, ChangeCodec<?>> s_codecs = new ConcurrentHashMap<>();
+
+    static {
+        registerCodec(new MassCellChangeCodec());
+    }
+
+    /**
+     * Registers the codec used to save and load changes of a given class in binary form.
+     */
+    static public void registerCodec(ChangeCodec<?> codec) {
+        s_codecs.put(codec.getChangeClass().getName(), codec);
+    }
+
+    static private final FileCheckpointStore s_checkpointStore = new FileCheckpointStore();
+
     @Override
     public void delete(HistoryEntry historyEntry) {
-        File file = getChangeFile(historyEntry);
-        if (file.exists()) {
-            file.delete();
+        // the checkpoint after a discarded entry describes a state the project cannot get back to
+        s_checkpointStore.delete(historyEntry.projectID, historyEntry.id);
+        if (ProjectJournal.s_enabled) {
+            // the journal may need the change to be replayed, so it is deleted by the next snapshot
+            return;
+        }
+        try {
+            // queued after the write of the change, which would otherwise recreate the file
+            HistoryWriter.submit(historyEntry.projectID, () -> {
+                File file = getChangeFile(historyEntry);
+                if (file.exists()) {
+                    file.delete();
+                }
+            });
+        } catch (Exception e) {
+            e.printStackTrace();
         }
     }
 
+    @Override
+    public boolean flush(long projectID) {
+        return HistoryWriter.flush(projectID);
+    }
+
+    @Override
+    public CheckpointStore getCheckpointStore() {
+        return s_checkpointStore;
+    }
+
     @Override
     public void save(HistoryEntry historyEntry, Writer writer, Properties options) {
         try {
@@ -89,6 +159,15 @@ public class FileHistoryEntryManager implements HistoryEntryManager {
     protected void loadChange(HistoryEntry historyEntry, File file) throws Exception {
         ZipFile zipFile = new ZipFile(file);
         try {
+            ZipEntry binaryEntry = zipFile.getEntry(CHANGE_BIN_ENTRY);
+            if (binaryEntry != null) {
+                DataInputStream in = new DataInputStream(
+                        new BufferedInputStream(zipFile.getInputStream(binaryEntry), 1 << 16));
+                historyEntry.setChange(decode(in));
+                historyEntry.markChangeSaved();
+                return;
+            }
+
             Pool pool = new Pool();
             ZipEntry poolEntry = zipFile.getEntry("pool.txt");
             if (poolEntry != null) {
@@ -98,42 +177,112 @@ public class FileHistoryEntryManager implements HistoryEntryManager {
 
             historyEntry.setChange(History.readOneChange(
                     zipFile.getInputStream(zipFile.getEntry("change.txt")), pool));
+            historyEntry.markChangeSaved();
         } finally {
             zipFile.close();
         }
     }
 
+    /**
+     * Saves the change of the history entry, in the background unless {@link HistoryWriter} is disabled.
+     */
     @Override
     public void saveChange(HistoryEntry historyEntry) throws Exception {
-        File changeFile = getChangeFile(historyEntry);
-        if (!(changeFile.exists())) {
-            saveChange(historyEntry, changeFile);
-        }
+        HistoryWriter.submit(historyEntry.projectID, () -> {
+            File changeFile = getChangeFile(historyEntry);
+            // a change read back from its file, or saved before being applied again, is not written again
+            if (!historyEntry.isChangeSaved() || !changeFile.exists()) {
+                saveChange(historyEntry, changeFile);
+            }
+        });
     }
 
+    /**
+     * Writes the change to a temporary file, which is then moved into place, so that the change file is either complete
+     * or left as it was. The change is only marked as saved once the file is in place.
+     *
+     * @throws IOException
+     *             if the change could not be written, in which case it stays in memory
+     */
     protected void saveChange(HistoryEntry historyEntry, File file) throws Exception {
-        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file));
+        Change change = historyEntry.getChange();
+        ChangeCodec<?> codec = s_binaryChanges ? s_codecs.get(change.getClass().getName()) : null;
+        File tempFile = File.createTempFile(file.getName() + "-", ".tmp", file.getParentFile());
+        boolean moved = false;
         try {
-            Pool pool = new Pool();
-
-            out.putNextEntry(new ZipEntry("change.txt"));
+            ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile), 1 << 16));
             try {
-                History.writeOneChange(out, historyEntry.getChange(), pool);
-            } catch (Exception e) {
-                e.printStackTrace();
+                if (codec != null) {
+                    saveBinaryChange(out, codec, change);
+                } else {
+                    saveTextChange(out, change);
+                }
             } finally {
-                out.closeEntry();
+                out.close();
             }
-
-            out.putNextEntry(new ZipEntry("pool.txt"));
-            try {
-                pool.save(out);
-            } finally {
-                out.closeEntry();
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            moved = true;
+        } finally {
+            if (!moved) {
+                tempFile.delete();
             }
+        }
+        // the change can only be released from memory if it can be read back
+        historyEntry.markChangeSaved();
+    }
+
+    private void saveBinaryChange(ZipOutputStream out, ChangeCodec<?> codec, Change change) throws IOException {
+        // the binary form is already compact, so favour speed over compression ratio
+        out.setLevel(Deflater.BEST_SPEED);
+        out.putNextEntry(new ZipEntry(CHANGE_BIN_ENTRY));
+        try {
+            DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+            encode(codec, change, data);
+            data.flush();
         } finally {
-            out.close();
+            out.closeEntry();
+        }
+    }
+
+    private void saveTextChange(ZipOutputStream out, Change change) throws IOException {
+        Pool pool = new Pool();
+
+        out.setLevel(Deflater.BEST_SPEED);
+        out.putNextEntry(new ZipEntry("change.txt"));
+        try {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+            History.writeOneChange(writer, change, pool);
+            writer.flush();
+        } finally {
+            out.closeEntry();
+        }
+
+        out.putNextEntry(new ZipEntry("pool.txt"));
+        try {
+            pool.save(out);
+        } finally {
+            out.closeEntry();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    static private <T extends Change> void encode(ChangeCodec<T> codec, Change change, DataOutputStream out) throws IOException {
+        out.writeInt(BINARY_CHANGE_VERSION);
+        out.writeUTF(change.getClass().getName());
+        codec.encode((T) change, out);
+    }
+
+    static private Change decode(DataInputStream in) throws IOException {
+        int version = in.readInt();
+        if (version != BINARY_CHANGE_VERSION) {
+            throw new IOException("Unsupported version " + version + " of the binary change format");
+        }
+        String className = in.readUTF();
+        ChangeCodec<?> codec = s_codecs.get(className);
+        if (codec == null) {
+            throw new IOException("No codec registered for changes of class " + className);
         }
+        return codec.decode(in);
     }
 
     protected File getChangeFile(HistoryEntry historyEntry) {
@@ -41,9 +41,11 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
@@ -74,7 +76,12 @@ public class FileProjectManager extends ProjectManager {
 
     protected File _workspaceDir;
 
-    protected static boolean projectRemoved = false;
+    protected static volatile boolean projectRemoved = false;
+
+    /**
+     * Serializes workspace saves, which don't need to wait for projects being loaded, saved or deleted.
+     */
+    private final Object _workspaceLock = new Object();
 
     final static Logger logger = LoggerFactory.getLogger("FileProjectManager");
 
@@ -83,7 +90,11 @@ public class FileProjectManager extends ProjectManager {
             logger.warn("Overwriting singleton already set: " + singleton);
         }
         logger.info("Using workspace directory: {}", dir.getAbsolutePath());
+        ProjectUtilities.deleteRowFiles(dir);
         singleton = new FileProjectManager(dir);
+        ReconResultCache.singleton = ReconResultCache.s_enabled
+                ? new ReconResultCache(new File(dir, ReconResultCache.CACHE_DIR))
+                : null;
         // This needs our singleton set, thus the unconventional control flow
         ((FileProjectManager) singleton).recover();
     }
@@ -140,7 +151,7 @@ public class FileProjectManager extends ProjectManager {
      */
     @Override
     public boolean loadProjectMetadata(long projectID) {
-        synchronized (this) {
+        synchronized (lockFor(projectID)) {
             ProjectMetadata metadata = ProjectMetadataUtilities.load(getProjectDir(projectID));
             if (metadata == null) {
                 metadata = ProjectMetadataUtilities.recover(getProjectDir(projectID), projectID);
@@ -201,6 +212,7 @@ public class FileProjectManager extends ProjectManager {
 
     @Override
     public void exportProject(long projectId, TarArchiveOutputStream tos) throws IOException {
+        HistoryWriter.flush(projectId);
         File dir = this.getProjectDir(projectId);
         this.tarDir("", dir, tos);
     }
@@ -210,6 +222,10 @@ public class FileProjectManager extends ProjectManager {
         if (files == null) return;
         for (File file : files) {
             if (file == null) continue;
+            if (relative.isEmpty() && FileCheckpointStore.CHECKPOINT_DIR.equals(file.getName())) {
+                // checkpoints can be taken again from the history, so they are not worth exporting
+                continue;
+            }
             if (!file.isHidden()) {
                 String path = relative + file.getName();
 
@@ -275,7 +291,7 @@ public class FileProjectManager extends ProjectManager {
      */
     @Override
     protected void saveWorkspace() {
-        synchronized (this) {
+        synchronized (_workspaceLock) {
             List<Long> modified = getModifiedProjectIds();
             boolean saveNeeded = (modified.size() > 0) || _preferenceStore.isDirty() || projectRemoved;
             if (!saveNeeded) {
@@ -355,7 +371,7 @@ public class FileProjectManager extends ProjectManager {
 
     @Override
     public void deleteProject(long projectID) {
-        synchronized (this) {
+        synchronized (lockFor(projectID)) {
 
             // Remove this project's tags from the overall map
             ProjectMetadata metadata = getProjectMetadata(projectID);
@@ -367,6 +383,9 @@ public class FileProjectManager extends ProjectManager {
             }
 
             removeProject(projectID);
+            // or the writes would recreate the directory
+            HistoryWriter.flush(projectID);
+            HistoryWriter.clearFailures(projectID);
 
             File dir = getProjectDir(projectID);
             if (dir.exists()) {
@@ -454,6 +473,15 @@ public class FileProjectManager extends ProjectManager {
         }
     }
 
+    @Override
+    public void dispose() {
+        HistoryWriter.flushAll();
+        if (ReconResultCache.singleton != null) {
+            ReconResultCache.singleton.close();
+        }
+        super.dispose();
+    }
+
     @Override
     public HistoryEntryManager getHistoryEntryManager() {
         return new FileHistoryEntryManager();
@@ -477,22 +505,34 @@ public class FileProjectManager extends ProjectManager {
 
     @JsonProperty("projectIDs")
     protected void loadProjects(List<Long> projectIDs) {
+        // read the metadata files in parallel, then register them in order
+        List<CompletableFuture<ProjectMetadata>> loads = new ArrayList<>(projectIDs.size());
         for (Long id : projectIDs) {
-
             File projectDir = getProjectDir(id, false);
             if (projectDir == null) {
                 logger.error("Missing project directory for project {}", id);
+                loads.add(null);
                 continue;
             }
-            ProjectMetadata metadata = ProjectMetadataUtilities.load(projectDir);
+            loads.add(CompletableFuture.supplyAsync(() -> ProjectMetadataUtilities.load(projectDir), getLoaderPool()));
+        }
 
+        for (int i = 0; i < projectIDs.size(); i++) {
+            if (loads.get(i) == null) {
+                continue;
+            }
+            Long id = projectIDs.get(i);
+            ProjectMetadata metadata = loads.get(i).join();
+
+            if (metadata == null) {
+                // left out, so that it gets recovered from the project directory
+                logger.error("Missing metadata for project ID {}", id);
+                continue;
+            }
             mergeEmptyUserMetadata(metadata);
 
             _projectsMetadata.put(id, metadata);
-
-            if (metadata != null) {
-                addProjectTags(metadata.getTags());
-            }
+            addProjectTags(metadata.getTags());
         }
     }
 
@@ -0,0 +1,212 @@
+/*******************************************************************************
+ * Copyright (C) 2024, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.io;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes the change files of history entries in the background, so that applying an operation does not wait for its
+ * change to hit the disk. The writes of each project are queued and run in the order they were submitted, while those
+ * of different projects can run concurrently.
+ * <p>
+ * Changes can hold on to rows of the project, so the queue of a project is flushed before another change is applied to
+ * it or reverted. It is also flushed before the project is saved, exported or deleted, and all queues are flushed when
+ * the project manager is disposed of. Set the {@code refine.history.asyncWrites} system property to {@code false} to
+ * write changes synchronously.
+ */
+public class HistoryWriter {
+
+    final static Logger logger = LoggerFactory.getLogger("history_writer");
+
+    static public boolean s_enabled = !"false".equals(System.getProperty("refine.history.asyncWrites"));
+
+    static private final ExecutorService s_executor = Executors.newFixedThreadPool(
+            Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2)), r -> {
+                Thread thread = new Thread(r, "history-writer");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    // the last write queued for each project
+    static private final Map<Long, CompletableFuture<Void>> s_tails = new ConcurrentHashMap<>();
+    static private final Map<Long, AtomicInteger> s_queued = new ConcurrentHashMap<>();
+    // the projects with a failed write, until their failures are cleared
+    static private final Set<Long> s_failedProjects = ConcurrentHashMap.newKeySet();
+    static private final AtomicLong s_written = new AtomicLong();
+    static private final AtomicLong s_failed = new AtomicLong();
+    static private final AtomicLong s_writeNanos = new AtomicLong();
+    static private final AtomicLong s_maxWriteNanos = new AtomicLong();
+
+    /**
+     * A write of the history of a project.
+     */
+    public interface Write {
+
+        void run() throws Exception;
+    }
+
+    /**
+     * The queue depths and write latencies, as reported by
+     * {@link com.google.refine.commands.history.GetHistoryWriterStatsCommand}.
+     */
+    static public class Stats {
+
+        @JsonProperty("queued")
+        public final int queued;
+        @JsonProperty("queuedByProject")
+        public final Map<Long, Integer> queuedByProject = new TreeMap<>();
+        @JsonProperty("written")
+        public final long written;
+        @JsonProperty("failed")
+        public final long failed;
+        @JsonProperty("averageWriteMillis")
+        public final double averageWriteMillis;
+        @JsonProperty("maxWriteMillis")
+        public final double maxWriteMillis;
+
+        Stats() {
+            int total = 0;
+            for (Map.Entry<Long, AtomicInteger> entry : s_queued.entrySet()) {
+                int count = entry.getValue().get();
+                if (count > 0) {
+                    queuedByProject.put(entry.getKey(), count);
+                    total += count;
+                }
+            }
+            queued = total;
+            written = s_written.get();
+            failed = s_failed.get();
+            long count = written + failed;
+            averageWriteMillis = count == 0 ? 0 : s_writeNanos.get() / 1e6 / count;
+            maxWriteMillis = s_maxWriteNanos.get() / 1e6;
+        }
+    }
+
+    private HistoryWriter() {
+    }
+
+    /**
+     * Queues a write for a project, after the writes already queued for it. If asynchronous writes are disabled, the
+     * write is run right away instead.
+     */
+    static public void submit(long projectID, Write write) throws Exception {
+        if (!s_enabled) {
+            write.run();
+            return;
+        }
+        AtomicInteger queued = s_queued.computeIfAbsent(projectID, id -> new AtomicInteger());
+        queued.incrementAndGet();
+        s_tails.compute(projectID, (id, tail) -> {
+            CompletableFuture<Void> previous = tail != null ? tail : CompletableFuture.completedFuture(null);
+            // a failed write does not prevent the next ones
+            return previous.handle((result, error) -> null).thenRunAsync(() -> run(projectID, write, queued), s_executor);
+        });
+    }
+
+    static private void run(long projectID, Write write, AtomicInteger queued) {
+        long start = System.nanoTime();
+        try {
+            write.run();
+            s_written.incrementAndGet();
+        } catch (Exception e) {
+            s_failed.incrementAndGet();
+            s_failedProjects.add(projectID);
+            logger.error("Failed to write the history of project {}", projectID, e);
+        } finally {
+            long nanos = System.nanoTime() - start;
+            s_writeNanos.addAndGet(nanos);
+            s_maxWriteNanos.accumulateAndGet(nanos, Math::max);
+            queued.decrementAndGet();
+        }
+    }
+
+    /**
+     * Waits until the writes queued for a project so far are done.
+     *
+     * @return false if a write of the project failed since its failures were last cleared, in which case the history of
+     *         the project may refer to changes which are not saved
+     */
+    static public boolean flush(long projectID) {
+        CompletableFuture<Void> tail = s_tails.get(projectID);
+        if (tail == null) {
+            return !s_failedProjects.contains(projectID);
+        }
+        boolean interrupted = false;
+        while (true) {
+            try {
+                tail.get();
+                break;
+            } catch (InterruptedException e) {
+                // the writes must be done before going on, so the interruption is only passed on
+                interrupted = true;
+            } catch (ExecutionException e) {
+                // already logged
+                break;
+            }
+        }
+        // forgets about the project, unless more writes were queued meanwhile
+        s_tails.remove(projectID, tail);
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return !s_failedProjects.contains(projectID);
+    }
+
+    /**
+     * Forgets about the failed writes of a project, once what they wrote is written again or no longer needed.
+     */
+    static public void clearFailures(long projectID) {
+        s_failedProjects.remove(projectID);
+    }
+
+    /**
+     * Waits until the writes queued for all projects so far are done.
+     */
+    static public void flushAll() {
+        for (Long projectID : s_tails.keySet()) {
+            flush(projectID);
+        }
+    }
+
+    static public Stats getStats() {
+        return new Stats();
+    }
+}
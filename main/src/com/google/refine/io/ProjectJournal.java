@@ -0,0 +1,387 @@
+/*******************************************************************************
+ * Copyright (C) 2024, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.io;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.refine.history.History;
+import com.google.refine.history.HistoryEntry;
+import com.google.refine.model.Project;
+import com.google.refine.util.Pool;
+
+/**
+ * Journaled persistence of projects. The project data saved in data.zip is a base snapshot, and each save after it only
+ * appends to journal.txt the history entries added since the previous save, along with which of them are done. The
+ * changes of these entries are already saved in the history directory when they are applied, so the cost of a save
+ * depends on the size of the changes made rather than on the size of the project. Loading the project replays the
+ * journal over the snapshot.
+ * <p>
+ * Once the journal holds more than {@link #s_maxRecords} records or {@link #s_maxBytes} bytes, a new snapshot is saved
+ * in the background, which truncates the journal. Change files of discarded history entries are only deleted at that
+ * point, since replaying the journal may need them.
+ * <p>
+ * Each record of the journal is made of a {@code keep=} line with the number of entries of the previous state which are
+ * kept, an {@code entryCount=} line followed by the new entries, a {@code done=} line with the number of done entries
+ * and a {@code /e/} line. The journal starts with a {@code base=} line identifying the snapshot it applies to, so that
+ * a journal left over by an interrupted snapshot is ignored.
+ */
+public class ProjectJournal {
+
+    final static Logger logger = LoggerFactory.getLogger("project_journal");
+
+    static final String JOURNAL_FILE = "journal.txt";
+
+    /**
+     * Whether projects are saved as a snapshot followed by a journal. Set the {@code refine.project.journal} system
+     * property to {@code true} to enable it. Journals are replayed when loading projects in any case.
+     */
+    static public boolean s_enabled = Boolean.getBoolean("refine.project.journal");
+
+    /**
+     * The number of records after which the journal is compacted into a new snapshot.
+     */
+    static public int s_maxRecords = Integer.getInteger("refine.project.journalMaxRecords", 100);
+
+    /**
+     * The size in bytes after which the journal is compacted into a new snapshot.
+     */
+    static public long s_maxBytes = Long.getLong("refine.project.journalMaxBytes", 1 << 20);
+
+    static private final Map<Long, ProjectJournal> s_journals = new ConcurrentHashMap<>();
+
+    static private final ExecutorService s_compactor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "project-journal-compaction");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final File file;
+    private final long base;
+    private List<Long> savedEntryIDs;
+    private int savedDoneCount;
+    private int recordCount;
+    private volatile boolean compacting;
+
+    /**
+     * @param entryIDs
+     *            the ids of the entries of the history saved in the snapshot, done ones first
+     * @param doneCount
+     *            the number of done entries in the snapshot
+     */
+    private ProjectJournal(File dir, List<Long> entryIDs, int doneCount) {
+        this.file = new File(dir, JOURNAL_FILE);
+        this.base = checksum(entryIDs, doneCount);
+        this.savedEntryIDs = entryIDs;
+        this.savedDoneCount = doneCount;
+    }
+
+    /**
+     * Appends the changes made to the history of the project since it was last saved to its journal. The caller must
+     * hold the project lock.
+     *
+     * @return false if there is no snapshot to append to, in which case a full save is needed
+     */
+    static boolean append(Project project) throws IOException {
+        ProjectJournal journal = s_journals.get(project.id);
+        if (journal == null) {
+            return false;
+        }
+        journal.append(project.history);
+        if (journal.needsCompaction()) {
+            scheduleCompaction(project);
+        }
+        return true;
+    }
+
+    /**
+     * Starts a new, empty journal after a snapshot of the project was saved in the given directory, and deletes the
+     * changes no longer referred to by its history. The caller must hold the project lock.
+     */
+    static void reset(Project project, File dir) throws IOException {
+        ProjectJournal journal;
+        synchronized (project.history) {
+            journal = new ProjectJournal(dir, entryIDs(project.history.getAllEntries()),
+                    project.history.getPastEntryCount());
+        }
+        if (journal.file.exists() && !journal.file.delete()) {
+            throw new IOException("Failed to delete journal of project " + project.id);
+        }
+        s_journals.put(project.id, journal);
+        deleteUnusedChanges(dir, journal.savedEntryIDs);
+    }
+
+    /**
+     * Replays the journal found in the given directory, if any, over a project just loaded from its snapshot.
+     */
+    static void replay(Project project, File dir) throws IOException {
+        List<HistoryEntry> entries = project.history.getAllEntries();
+        int doneCount = project.history.getPastEntryCount();
+        ProjectJournal journal = new ProjectJournal(dir, entryIDs(entries), doneCount);
+        if (!journal.file.exists()) {
+            s_journals.put(project.id, journal);
+            return;
+        }
+
+        boolean complete = true;
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(journal.file), StandardCharsets.UTF_8))) {
+            String line = reader.readLine();
+            if (line == null || !line.equals("base=" + journal.base)) {
+                // left over by a snapshot interrupted before it could delete the journal
+                logger.warn("Ignoring journal of project {}, which does not match its snapshot", project.id);
+                s_journals.remove(project.id);
+                return;
+            }
+
+            Record record;
+            while ((record = Record.read(project, reader)) != null) {
+                if (!record.complete) {
+                    complete = false;
+                    break;
+                }
+                entries = new ArrayList<>(entries.subList(0, record.keep));
+                entries.addAll(record.entries);
+                doneCount = record.doneCount;
+                journal.recordCount++;
+            }
+        }
+
+        if (journal.recordCount > 0) {
+            logger.info("Replaying {} journal records of project {}", journal.recordCount, project.id);
+            project.history.restore(project, entries, doneCount);
+        }
+
+        if (complete) {
+            journal.savedEntryIDs = entryIDs(entries);
+            journal.savedDoneCount = doneCount;
+            s_journals.put(project.id, journal);
+        } else {
+            // nothing can be appended after a partially written record, so the next save is a full one
+            logger.warn("Ignoring the last record of the journal of project {}, which is incomplete", project.id);
+            s_journals.remove(project.id);
+        }
+    }
+
+    /**
+     * Saves a new snapshot of the project in the background.
+     */
+    static Future<?> scheduleCompaction(Project project) {
+        ProjectJournal journal = s_journals.get(project.id);
+        if (journal != null) {
+            journal.compacting = true;
+        }
+        return s_compactor.submit(() -> {
+            try {
+                // the project may have been unloaded or deleted in the meantime
+                if (journal != null && s_journals.get(project.id) == journal) {
+                    ProjectUtilities.saveSnapshot(project);
+                }
+            } catch (IOException e) {
+                logger.warn("Failed to compact the journal of project {}", project.id, e);
+            } finally {
+                if (journal != null) {
+                    journal.compacting = false;
+                }
+            }
+        });
+    }
+
+    /**
+     * Forgets about the journal of a project, when it is unloaded or deleted.
+     */
+    static public void forget(long projectID) {
+        s_journals.remove(projectID);
+    }
+
+    private void append(History history) throws IOException {
+        List<HistoryEntry> entries;
+        int doneCount;
+        synchronized (history) {
+            entries = history.getAllEntries();
+            doneCount = history.getPastEntryCount();
+        }
+        List<Long> entryIDs = entryIDs(entries);
+        int keep = 0;
+        while (keep < savedEntryIDs.size() && keep < entryIDs.size()
+                && savedEntryIDs.get(keep).equals(entryIDs.get(keep))) {
+            keep++;
+        }
+        if (keep == entryIDs.size() && keep == savedEntryIDs.size() && doneCount == savedDoneCount) {
+            return;
+        }
+
+        Properties options = new Properties();
+        options.setProperty("mode", "save");
+        options.put("pool", new Pool());
+        StringWriter record = new StringWriter();
+        record.write("keep=" + keep + "\n");
+        record.write("entryCount=" + (entries.size() - keep) + "\n");
+        for (HistoryEntry entry : entries.subList(keep, entries.size())) {
+            entry.save(record, options);
+            record.write('\n');
+        }
+        record.write("done=" + doneCount + "\n");
+        record.write("/e/\n");
+
+        if (!file.exists()) {
+            writeBase();
+        }
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.getChannel().write(ByteBuffer.wrap(record.toString().getBytes(StandardCharsets.UTF_8)));
+            out.getChannel().force(false);
+        }
+        savedEntryIDs = entryIDs;
+        savedDoneCount = doneCount;
+        recordCount++;
+    }
+
+    private boolean needsCompaction() {
+        return !compacting && (recordCount > s_maxRecords || file.length() > s_maxBytes);
+    }
+
+    private void writeBase() throws IOException {
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            writer.write("base=" + base + "\n");
+        }
+    }
+
+    static private List<Long> entryIDs(List<HistoryEntry> entries) {
+        List<Long> ids = new ArrayList<>(entries.size());
+        for (HistoryEntry entry : entries) {
+            ids.add(entry.id);
+        }
+        return ids;
+    }
+
+    static private long checksum(List<Long> entryIDs, int doneCount) {
+        CRC32 crc = new CRC32();
+        ByteBuffer buffer = ByteBuffer.allocate(8 * (entryIDs.size() + 1));
+        for (long id : entryIDs) {
+            buffer.putLong(id);
+        }
+        buffer.putLong(doneCount);
+        crc.update(buffer.array());
+        return crc.getValue();
+    }
+
+    static private void deleteUnusedChanges(File dir, List<Long> entryIDs) {
+        File historyDir = new File(dir, FileHistoryEntryManager.HISTORY_DIR);
+        File[] files = historyDir.listFiles((d, name) -> name.endsWith(".change.zip"));
+        if (files == null) {
+            return;
+        }
+        Set<String> used = new HashSet<>();
+        for (long id : entryIDs) {
+            used.add(id + ".change.zip");
+        }
+        for (File file : files) {
+            if (!used.contains(file.getName()) && !file.delete()) {
+                logger.warn("Failed to delete unused change {}", file);
+            }
+        }
+    }
+
+    /**
+     * A record of the journal, read back when replaying it.
+     */
+    static private class Record {
+
+        int keep;
+        List<HistoryEntry> entries = new ArrayList<>();
+        int doneCount;
+        boolean complete;
+
+        /**
+         * @return the next record, which is not complete if it was only partially written, or null at the end of the
+         *         journal
+         */
+        static Record read(Project project, BufferedReader reader) throws IOException {
+            Record record = new Record();
+            String line = reader.readLine();
+            if (line == null) {
+                return null;
+            }
+            for (; line != null; line = reader.readLine()) {
+                if ("/e/".equals(line)) {
+                    record.complete = true;
+                    return record;
+                }
+                int equal = line.indexOf('=');
+                if (equal < 0) {
+                    return record;
+                }
+                String field = line.substring(0, equal);
+                String value = line.substring(equal + 1);
+                if ("keep".equals(field)) {
+                    record.keep = Integer.parseInt(value);
+                } else if ("entryCount".equals(field)) {
+                    int count = Integer.parseInt(value);
+                    for (int i = 0; i < count; i++) {
+                        String entry = reader.readLine();
+                        if (entry == null) {
+                            return record;
+                        }
+                        try {
+                            record.entries.add(HistoryEntry.load(project, entry));
+                        } catch (IOException e) {
+                            // only the last entry can have been partially written
+                            return record;
+                        }
+                    }
+                } else if ("done".equals(field)) {
+                    record.doneCount = Integer.parseInt(value);
+                }
+            }
+            return record;
+        }
+    }
+}
@@ -33,9 +33,12 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package com.google.refine.io;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import java.util.zip.ZipOutputStream;
@@ -44,6 +47,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.refine.ProjectManager;
+import com.google.refine.history.HistoryEntry;
+import com.google.refine.history.HistoryEntryManager;
 import com.google.refine.model.Project;
 import com.google.refine.util.Pool;
 
@@ -54,7 +59,47 @@ public class ProjectUtilities {
     public static final String DATA_TEMP_ZIP = "data.temp.zip";
     public static final String DATA_OLD_ZIP = "data.old.zip";
 
-    synchronized public static void save(Project project) throws IOException {
+    static final String DATA_BIN_ENTRY = "data.bin";
+
+    /**
+     * Whether projects are saved in the binary format rather than the line-based format of data.txt, which older
+     * versions can read. Set the {@code refine.project.format} system property to {@code json} to keep the old format.
+     * Both formats can always be loaded.
+     */
+    static public boolean s_binaryFormat = !"json".equals(System.getProperty("refine.project.format"));
+
+    /**
+     * Whether projects saved in the binary format are loaded lazily, decoding their rows from a memory-mapped copy only
+     * when they are accessed, until a change is applied to them. Set the {@code refine.project.lazyLoading} system
+     * property to {@code true} to enable it.
+     */
+    static public boolean s_lazyLoading = Boolean.getBoolean("refine.project.lazyLoading");
+
+    /**
+     * The directory of the workspace holding the uncompressed row files of lazily loaded projects, outside of the
+     * project directories so that they are never exported. Its contents are deleted when the workspace is opened.
+     */
+    public static final String ROW_FILE_DIR = "lazy-rows";
+
+    public static void save(Project project) throws IOException {
+        // the saved history refers to change files, which must be written first
+        flushHistory(project);
+        synchronized (project) {
+            if (ProjectJournal.s_enabled && ProjectJournal.append(project)) {
+                project.setLastSave();
+                logger.info("Saved project '{}' to its journal", project.id);
+                return;
+            }
+            saveSnapshot(project);
+        }
+    }
+
+    /**
+     * Saves all of the project to data.zip, which also starts a new journal if journaling is enabled (see
+     * {@link ProjectJournal}).
+     */
+    static void saveSnapshot(Project project) throws IOException {
+        flushHistory(project);
         synchronized (project) {
             long id = project.id;
             File dir = ((FileProjectManager) ProjectManager.singleton).getProjectDir(id);
@@ -83,6 +128,7 @@ public class ProjectUtilities {
             if (oldFile.exists()) {
                 oldFile.delete();
             }
+            ProjectJournal.reset(project, dir);
 
             project.setLastSave();
 
@@ -90,9 +136,47 @@ public class ProjectUtilities {
         }
     }
 
+    /**
+     * Waits until the changes of the project are written. The changes which failed to be written are written again, and
+     * the project is not saved if they still cannot be, so that it stays modified.
+     */
+    static void flushHistory(Project project) throws IOException {
+        if (HistoryWriter.flush(project.id)) {
+            return;
+        }
+        HistoryWriter.clearFailures(project.id);
+        HistoryEntryManager manager = ProjectManager.singleton.getHistoryEntryManager();
+        for (HistoryEntry entry : project.history.getAllEntries()) {
+            if (!entry.isChangeSaved() && entry.getLoadedChange() != null) {
+                try {
+                    manager.saveChange(entry);
+                } catch (Exception e) {
+                    throw new IOException("Failed to write the change of history entry " + entry.id, e);
+                }
+            }
+        }
+        if (!HistoryWriter.flush(project.id)) {
+            throw new IOException("Failed to write the history of project " + project.id + ", so it is not saved");
+        }
+    }
+
     protected static void saveToFile(Project project, File file) throws IOException {
         ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file));
         try {
+            if (s_binaryFormat) {
+                // the binary format is already compact, so favour speed over compression ratio
+                out.setLevel(Deflater.BEST_SPEED);
+                out.putNextEntry(new ZipEntry(DATA_BIN_ENTRY));
+                try {
+                    BufferedOutputStream buffered = new BufferedOutputStream(out, 1 << 16);
+                    project.saveToBinaryStream(buffered);
+                    buffered.flush();
+                } finally {
+                    out.closeEntry();
+                }
+                return;
+            }
+
             Pool pool = new Pool();
 
             out.putNextEntry(new ZipEntry("data.txt"));
@@ -118,7 +202,9 @@ public class ProjectUtilities {
             try {
                 File file = new File(dir, filename);
                 if (file.exists()) {
-                    return loadFromFile(file, id);
+                    Project project = loadFromFile(file, id);
+                    ProjectJournal.replay(project, dir);
+                    return project;
                 }
             } catch (IOException e) {
                 logger.warn("Failed to load from data file {} / {}", dir, filename, e);
@@ -133,6 +219,18 @@ public class ProjectUtilities {
             long id) throws IOException {
         ZipFile zipFile = new ZipFile(file);
         try {
+            ZipEntry binaryEntry = zipFile.getEntry(DATA_BIN_ENTRY);
+            if (binaryEntry != null && s_lazyLoading) {
+                File rowFileDir = getRowFileDir(file.getParentFile());
+                rowFileDir.mkdirs();
+                File rowFile = File.createTempFile(id + "-", ".rows", rowFileDir);
+                return Project.loadLazilyFromBinaryStream(
+                        new BufferedInputStream(zipFile.getInputStream(binaryEntry), 1 << 16), id, rowFile);
+            } else if (binaryEntry != null) {
+                return Project.loadFromBinaryStream(
+                        new BufferedInputStream(zipFile.getInputStream(binaryEntry), 1 << 16), id);
+            }
+
             Pool pool = new Pool();
             ZipEntry poolEntry = zipFile.getEntry("pool.txt");
             if (poolEntry != null) {
@@ -147,4 +245,27 @@ public class ProjectUtilities {
             zipFile.close();
         }
     }
+
+    static private File getRowFileDir(File projectDir) {
+        if (ProjectManager.singleton instanceof FileProjectManager) {
+            return new File(((FileProjectManager) ProjectManager.singleton).getWorkspaceDir(), ROW_FILE_DIR);
+        }
+        return new File(projectDir.getParentFile(), ROW_FILE_DIR);
+    }
+
+    /**
+     * Deletes the row files left behind by lazily loaded projects when OpenRefine last stopped, which the projects
+     * still loaded dispose of otherwise.
+     */
+    static void deleteRowFiles(File workspaceDir) {
+        File[] files = new File(workspaceDir, ROW_FILE_DIR).listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (!file.delete()) {
+                logger.warn("Failed to delete row file {}", file);
+            }
+        }
+    }
 }
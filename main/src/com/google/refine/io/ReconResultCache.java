@@ -0,0 +1,405 @@
+/*******************************************************************************
+ * Copyright (C) 2024, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Stores the responses of reconciliation services in the recon-cache directory of the workspace, so that reconciling
+ * values already sent to a service, in any project, does not query it again. The responses are keyed by the service URL
+ * and the query sent for the value, appended to a single log file and indexed in memory when the cache is first used.
+ * <p>
+ * Responses older than the time to live, set in hours by the {@code refine.recon.cacheTTLHours} system property (30
+ * days by default), are ignored. The log is kept within a disk budget, set in megabytes by the
+ * {@code refine.recon.cacheBudgetMB} system property (128 by default): beyond it, the log is rewritten without the
+ * expired responses and those least recently used. The cache can be disabled by setting the {@code refine.recon.cache}
+ * system property to false.
+ */
+public class ReconResultCache {
+
+    final static Logger logger = LoggerFactory.getLogger("recon_cache");
+
+    public static final String CACHE_DIR = "recon-cache";
+
+    static final private String LOG_FILE = "responses.log";
+    static final private int MAX_FIELD_LENGTH = 1 << 28;
+
+    static public boolean s_enabled = Boolean.parseBoolean(System.getProperty("refine.recon.cache", "true"));
+    static public long s_diskBudget = Long.getLong("refine.recon.cacheBudgetMB", 128) * 1024 * 1024;
+    static public long s_timeToLive = Long.getLong("refine.recon.cacheTTLHours", 30 * 24) * 60 * 60 * 1000;
+
+    /**
+     * The cache of the workspace, or null if responses are not cached.
+     */
+    static public ReconResultCache singleton;
+
+    static private class Entry {
+
+        final String service;
+        final long offset;
+        final int length;
+        final long time;
+
+        Entry(String service, long offset, int length, long time) {
+            this.service = service;
+            this.offset = offset;
+            this.length = length;
+            this.time = time;
+        }
+    }
+
+    private final File _dir;
+    private final File _file;
+    // in the order the responses were last used, least recently first
+    private final LinkedHashMap<HashCode, Entry> _index = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, String> _services = new HashMap<>();
+    private RandomAccessFile _log;
+    private long _liveLength;
+    private long _hits;
+    private long _misses;
+
+    public ReconResultCache(File dir) {
+        _dir = dir;
+        _file = new File(dir, LOG_FILE);
+    }
+
+    /**
+     * @return the response of the service to the query, or null if it is not cached or has expired
+     */
+    public synchronized String get(String service, String query) {
+        try {
+            open();
+            HashCode hash = hash(service, query);
+            Entry entry = _index.get(hash);
+            if (entry != null && isExpired(entry, System.currentTimeMillis())) {
+                _index.remove(hash);
+                _liveLength -= entry.length;
+                entry = null;
+            }
+            if (entry == null) {
+                _misses++;
+                return null;
+            }
+            byte[] record = new byte[entry.length];
+            _log.seek(entry.offset);
+            _log.readFully(record);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+            String storedService = readString(in);
+            String storedQuery = readString(in);
+            in.readLong();
+            String response = readString(in);
+            if (!service.equals(storedService) || !query.equals(storedQuery)) {
+                // a hash collision, as unlikely as it is
+                _misses++;
+                return null;
+            }
+            _hits++;
+            return response;
+        } catch (IOException e) {
+            logger.warn("Failed to read from the reconciliation cache", e);
+            return null;
+        }
+    }
+
+    /**
+     * Stores the response of the service to the query, replacing any previous one.
+     */
+    public synchronized void put(String service, String query, String response) {
+        try {
+            open();
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            long time = System.currentTimeMillis();
+            writeRecord(new DataOutputStream(bytes), service, query, time, response);
+
+            long offset = _log.length();
+            _log.seek(offset);
+            _log.write(bytes.toByteArray());
+            index(service, query, offset, bytes.size(), time);
+            if (_log.length() > s_diskBudget) {
+                compact();
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to write to the reconciliation cache", e);
+        }
+    }
+
+    /**
+     * Forgets the responses of a service.
+     *
+     * @param service
+     *            the URL of the service, or null to forget the responses of all services
+     */
+    public synchronized void invalidate(String service) {
+        try {
+            open();
+            Iterator<Entry> iterator = _index.values().iterator();
+            while (iterator.hasNext()) {
+                Entry entry = iterator.next();
+                if (service == null || service.equals(entry.service)) {
+                    iterator.remove();
+                    _liveLength -= entry.length;
+                }
+            }
+            compact();
+        } catch (IOException e) {
+            logger.warn("Failed to invalidate the reconciliation cache", e);
+        }
+    }
+
+    /**
+     * @return the number of responses cached
+     */
+    public synchronized int size() {
+        try {
+            open();
+        } catch (IOException e) {
+            logger.warn("Failed to open the reconciliation cache", e);
+        }
+        return _index.size();
+    }
+
+    /**
+     * @return the number of lookups answered from the cache since it was created
+     */
+    public synchronized long getHits() {
+        return _hits;
+    }
+
+    /**
+     * @return the number of lookups not answered from the cache since it was created
+     */
+    public synchronized long getMisses() {
+        return _misses;
+    }
+
+    public synchronized void close() {
+        if (_log != null) {
+            try {
+                _log.close();
+            } catch (IOException e) {
+                logger.warn("Failed to close the reconciliation cache", e);
+            }
+            _log = null;
+        }
+    }
+
+    /**
+     * Opens the log and indexes its responses, unless already done.
+     */
+    private void open() throws IOException {
+        if (_log != null) {
+            return;
+        }
+        _dir.mkdirs();
+        _index.clear();
+        _liveLength = 0;
+        long offset = 0;
+        if (_file.exists()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(_file), 1 << 16))) {
+                while (true) {
+                    RecordHeader record = readRecordHeader(in);
+                    if (record == null) {
+                        break;
+                    }
+                    index(record.service, record.query, offset, record.length, record.time);
+                    offset += record.length;
+                }
+            }
+        }
+        _log = new RandomAccessFile(_file, "rw");
+        if (_log.length() > offset) {
+            // drops the record being written when OpenRefine stopped
+            logger.warn("Truncating the reconciliation cache after {} bytes", offset);
+            _log.setLength(offset);
+        }
+        long now = System.currentTimeMillis();
+        _index.values().removeIf(entry -> {
+            if (isExpired(entry, now)) {
+                _liveLength -= entry.length;
+                return true;
+            }
+            return false;
+        });
+        logger.info("Loaded {} cached reconciliation responses", _index.size());
+    }
+
+    /**
+     * Rewrites the log without the responses forgotten, expired or least recently used beyond three quarters of the
+     * disk budget.
+     */
+    private void compact() throws IOException {
+        long now = System.currentTimeMillis();
+        Iterator<Entry> iterator = _index.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (isExpired(entry, now) || _liveLength > s_diskBudget / 4 * 3) {
+                iterator.remove();
+                _liveLength -= entry.length;
+            }
+        }
+
+        File tempFile = new File(_dir, LOG_FILE + ".temp");
+        List<Map.Entry<HashCode, Entry>> entries = new ArrayList<>(_index.entrySet());
+        List<Entry> moved = new ArrayList<>(entries.size());
+        try (BufferedOutputStream out = new BufferedOutputStream(new FileOutputStream(tempFile), 1 << 16)) {
+            long offset = 0;
+            for (Map.Entry<HashCode, Entry> e : entries) {
+                Entry entry = e.getValue();
+                byte[] record = new byte[entry.length];
+                _log.seek(entry.offset);
+                _log.readFully(record);
+                out.write(record);
+                moved.add(new Entry(entry.service, offset, entry.length, entry.time));
+                offset += entry.length;
+            }
+        } catch (IOException e) {
+            tempFile.delete();
+            throw e;
+        }
+        _log.close();
+        _log = null;
+        Files.move(tempFile.toPath(), _file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        _log = new RandomAccessFile(_file, "rw");
+        for (int i = 0; i < entries.size(); i++) {
+            entries.get(i).setValue(moved.get(i));
+        }
+        logger.debug("Compacted the reconciliation cache to {} responses", _index.size());
+    }
+
+    private void index(String service, String query, long offset, int length, long time) {
+        String sharedService = _services.computeIfAbsent(service, s -> s);
+        Entry previous = _index.put(hash(service, query), new Entry(sharedService, offset, length, time));
+        if (previous != null) {
+            _liveLength -= previous.length;
+        }
+        _liveLength += length;
+    }
+
+    private boolean isExpired(Entry entry, long now) {
+        return now - entry.time > s_timeToLive;
+    }
+
+    static private HashCode hash(String service, String query) {
+        return Hashing.sha256().newHasher()
+                .putString(service, StandardCharsets.UTF_8)
+                .putByte((byte) 0)
+                .putString(query, StandardCharsets.UTF_8)
+                .hash();
+    }
+
+    /*
+     * Each record is made of the service, the query, the time the response was stored and the response.
+     */
+
+    static private void writeRecord(DataOutputStream out, String service, String query, long time, String response)
+            throws IOException {
+        writeString(out, service);
+        writeString(out, query);
+        out.writeLong(time);
+        writeString(out, response);
+        out.flush();
+    }
+
+    static private class RecordHeader {
+
+        String service;
+        String query;
+        long time;
+        int length;
+    }
+
+    /**
+     * Reads a record, skipping its response.
+     *
+     * @return the record, or null at the end of the log or of its last complete record
+     */
+    static private RecordHeader readRecordHeader(DataInputStream in) throws IOException {
+        RecordHeader record = new RecordHeader();
+        try {
+            byte[] service = readBytes(in);
+            byte[] query = readBytes(in);
+            record.service = new String(service, StandardCharsets.UTF_8);
+            record.query = new String(query, StandardCharsets.UTF_8);
+            record.time = in.readLong();
+            int responseLength = in.readInt();
+            if (in.skipBytes(responseLength) < responseLength) {
+                return null;
+            }
+            record.length = 4 + service.length + 4 + query.length + 8 + 4 + responseLength;
+            return record;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    static private void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static private String readString(DataInputStream in) throws IOException {
+        return new String(readBytes(in), StandardCharsets.UTF_8);
+    }
+
+    static private byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_FIELD_LENGTH) {
+            // a record only partially written
+            throw new EOFException();
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+}
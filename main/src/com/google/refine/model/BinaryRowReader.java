@@ -0,0 +1,325 @@
+/*******************************************************************************
+ * Copyright (C) 2024, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.model;
+
+import static com.google.refine.model.BinaryRowWriter.DATE;
+import static com.google.refine.model.BinaryRowWriter.DOUBLE;
+import static com.google.refine.model.BinaryRowWriter.ERROR;
+import static com.google.refine.model.BinaryRowWriter.FALSE;
+import static com.google.refine.model.BinaryRowWriter.FLAGGED;
+import static com.google.refine.model.BinaryRowWriter.JSON;
+import static com.google.refine.model.BinaryRowWriter.KIND_MASK;
+import static com.google.refine.model.BinaryRowWriter.LONG;
+import static com.google.refine.model.BinaryRowWriter.NO_CELL;
+import static com.google.refine.model.BinaryRowWriter.NULL_VALUE;
+import static com.google.refine.model.BinaryRowWriter.RECON_NEW;
+import static com.google.refine.model.BinaryRowWriter.RECON_REF;
+import static com.google.refine.model.BinaryRowWriter.STARRED;
+import static com.google.refine.model.BinaryRowWriter.STRING_INLINE;
+import static com.google.refine.model.BinaryRowWriter.STRING_NEW;
+import static com.google.refine.model.BinaryRowWriter.STRING_REF;
+import static com.google.refine.model.BinaryRowWriter.TRUE;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.refine.expr.EvalError;
+import com.google.refine.util.Pool;
+
+/**
+ * Reads rows written by {@link BinaryRowWriter}. Each row is read into a reusable buffer and decoded from there.
+ * Subclasses can resolve the strings and recons referred to by rows differently, to decode rows out of order.
+ */
+public class BinaryRowReader {
+
+    /**
+     * Notified of the strings and recons defined by a row, by {@link BinaryRowReader#skimRow}.
+     */
+    interface DefinitionListener {
+
+        /**
+         * @param offset
+         *            offset in the row of the length-prefixed string
+         */
+        void onString(int offset);
+
+        /**
+         * @param offset
+         *            offset in the row of the length-prefixed JSON of the recon
+         */
+        void onRecon(int offset);
+    }
+
+    private final InputStream in;
+    private final List<String> strings = new ArrayList<>();
+    private final List<Recon> recons = new ArrayList<>();
+    private final Pool emptyPool = new Pool();
+
+    private byte[] buffer = new byte[256];
+    private int position;
+
+    public BinaryRowReader(InputStream in) {
+        this.in = in;
+    }
+
+    public Row readRow() throws IOException {
+        readRowBytes();
+        return decodeRow(buffer);
+    }
+
+    /**
+     * Reads the next row into the buffer without decoding it.
+     *
+     * @return the length of the row
+     */
+    int readRowBytes() throws IOException {
+        int length = readStreamVarInt();
+        if (buffer.length < length) {
+            buffer = new byte[Math.max(length, buffer.length * 2)];
+        }
+        int read = 0;
+        while (read < length) {
+            int n = in.read(buffer, read, length - read);
+            if (n < 0) {
+                throw new EOFException("Truncated row");
+            }
+            read += n;
+        }
+        return length;
+    }
+
+    /**
+     * @return the buffer holding the last row read by {@link #readRowBytes}
+     */
+    byte[] getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * Decodes a row from the given bytes.
+     */
+    Row decodeRow(byte[] bytes) throws IOException {
+        buffer = bytes;
+        position = 0;
+
+        int flags = buffer[position++];
+        int cellCount = readVarInt();
+        Row row = new Row(cellCount);
+        row.flagged = (flags & FLAGGED) != 0;
+        row.starred = (flags & STARRED) != 0;
+        for (int i = 0; i < cellCount; i++) {
+            row.cells.add(readCell());
+        }
+        return row;
+    }
+
+    /**
+     * Walks through the cells of the last row read by {@link #readRowBytes}, reporting the strings and recons it
+     * defines, without decoding it.
+     *
+     * @return the number of cells in the row
+     */
+    int skimRow(DefinitionListener listener) {
+        position = 1;
+        int cellCount = readVarInt();
+        for (int i = 0; i < cellCount; i++) {
+            int tag = buffer[position++] & 0xff;
+            int kind = tag & KIND_MASK;
+            if ((tag & RECON_NEW) != 0) {
+                listener.onRecon(position);
+                skipBytes();
+            } else if ((tag & RECON_REF) != 0) {
+                readVarInt();
+            }
+            switch (kind) {
+                case STRING_NEW:
+                    listener.onString(position);
+                    skipBytes();
+                    break;
+                case STRING_REF:
+                    readVarInt();
+                    break;
+                case STRING_INLINE:
+                case ERROR:
+                case JSON:
+                    skipBytes();
+                    break;
+                case LONG:
+                case DOUBLE:
+                    position += 8;
+                    break;
+                case DATE:
+                    position += 8;
+                    readVarInt();
+                    position += 8;
+                    break;
+                default:
+                    break;
+            }
+        }
+        return cellCount;
+    }
+
+    protected String lookupString(int index) {
+        return strings.get(index);
+    }
+
+    protected void defineString(String string) {
+        strings.add(string);
+    }
+
+    protected Recon lookupRecon(int index) throws IOException {
+        return recons.get(index);
+    }
+
+    protected void defineRecon(Recon recon) {
+        recons.add(recon);
+    }
+
+    private Cell readCell() throws IOException {
+        int tag = buffer[position++] & 0xff;
+        int kind = tag & KIND_MASK;
+        if (kind == NO_CELL) {
+            return null;
+        }
+
+        Recon recon = null;
+        if ((tag & RECON_NEW) != 0) {
+            recon = Recon.loadStreaming(readString());
+            defineRecon(recon);
+        } else if ((tag & RECON_REF) != 0) {
+            recon = lookupRecon(readVarInt());
+        }
+
+        Serializable value;
+        switch (kind) {
+            case NULL_VALUE:
+                value = null;
+                break;
+            case STRING_NEW:
+                value = readString();
+                defineString((String) value);
+                break;
+            case STRING_REF:
+                value = lookupString(readVarInt());
+                break;
+            case STRING_INLINE:
+                value = readString();
+                break;
+            case LONG:
+                value = readLong();
+                break;
+            case DOUBLE:
+                value = Double.longBitsToDouble(readLong());
+                break;
+            case TRUE:
+                value = Boolean.TRUE;
+                break;
+            case FALSE:
+                value = Boolean.FALSE;
+                break;
+            case DATE:
+                long seconds = readLong();
+                int nanos = readVarInt();
+                int offset = (int) readLong();
+                value = OffsetDateTime.ofInstant(Instant.ofEpochSecond(seconds, nanos), ZoneOffset.ofTotalSeconds(offset));
+                break;
+            case ERROR:
+                value = new EvalError(readString());
+                break;
+            case JSON:
+                try {
+                    value = Cell.loadStreaming(readString(), emptyPool).value;
+                } catch (Exception e) {
+                    throw new IOException("Invalid cell", e);
+                }
+                break;
+            default:
+                throw new IOException("Unknown cell tag " + tag);
+        }
+        return new Cell(value, recon);
+    }
+
+    /**
+     * Reads an int written outside of any row by {@link BinaryRowWriter#writeVarInt(int)}.
+     */
+    public int readStreamVarInt() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException("Truncated variable-length int");
+            }
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Invalid variable-length int");
+    }
+
+    private int readVarInt() {
+        int value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = buffer[position++];
+            value |= (b & 0x7f) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private long readLong() {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (buffer[position++] & 0xff);
+        }
+        return value;
+    }
+
+    private void skipBytes() {
+        int length = readVarInt();
+        position += length;
+    }
+
+    private String readString() {
+        int length = readVarInt();
+        String string = new String(buffer, position, length, StandardCharsets.UTF_8);
+        position += length;
+        return string;
+    }
+}
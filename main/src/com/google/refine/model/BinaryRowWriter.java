@@ -0,0 +1,238 @@
+/*******************************************************************************
+ * Copyright (C) 2024, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.google.refine.expr.EvalError;
+import com.google.refine.util.ParsingUtilities;
+
+/**
+ * Writes rows in the binary project format read by {@link BinaryRowReader}. Each row is prefixed with its length in
+ * bytes. Short strings and recons are written in full the first time they occur and referred to by index afterwards, so
+ * the dictionaries are built while streaming and never need a separate pass. Besides projects, it encodes the cells of
+ * changes saved in binary form, such as by {@link com.google.refine.model.changes.MassCellChangeCodec}.
+ */
+public class BinaryRowWriter {
+
+    // cell tags: the low bits give the kind of value, the high bits how the recon is stored
+    static final int NO_CELL = 0;
+    static final int NULL_VALUE = 1;
+    static final int STRING_NEW = 2;
+    static final int STRING_REF = 3;
+    static final int STRING_INLINE = 4;
+    static final int LONG = 5;
+    static final int DOUBLE = 6;
+    static final int TRUE = 7;
+    static final int FALSE = 8;
+    static final int DATE = 9;
+    static final int ERROR = 10;
+    static final int JSON = 11; // any other value, with the same semantics as the line-based format
+    static final int KIND_MASK = 0x0f;
+    static final int RECON_NEW = 0x10;
+    static final int RECON_REF = 0x20;
+
+    static final int FLAGGED = 1;
+    static final int STARRED = 2;
+
+    // strings longer than this are unlikely to repeat, so they are not worth keeping in the dictionary
+    static final int MAX_DICTIONARY_STRING_LENGTH = 256;
+    static final int MAX_DICTIONARY_SIZE = 1 << 20;
+
+    private final OutputStream out;
+    private final Buffer rowBuffer = new Buffer();
+    private final Buffer lengthBuffer = new Buffer();
+    private final Map<String, Integer> strings = new HashMap<>();
+    private final Map<Long, Integer> recons = new HashMap<>();
+
+    public BinaryRowWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    public void writeRow(Row row) throws IOException {
+        rowBuffer.reset();
+        rowBuffer.write((row.flagged ? FLAGGED : 0) | (row.starred ? STARRED : 0));
+        rowBuffer.writeVarInt(row.cells.size());
+        for (Cell cell : row.cells) {
+            writeCell(cell);
+        }
+
+        lengthBuffer.reset();
+        lengthBuffer.writeVarInt(rowBuffer.size());
+        lengthBuffer.writeTo(out);
+        rowBuffer.writeTo(out);
+    }
+
+    /**
+     * Writes an int outside of any row, in one to five bytes depending on its magnitude, as read by
+     * {@link BinaryRowReader#readStreamVarInt()}. Non-negative values take the fewest bytes.
+     */
+    public void writeVarInt(int value) throws IOException {
+        lengthBuffer.reset();
+        lengthBuffer.writeVarInt(value);
+        lengthBuffer.writeTo(out);
+    }
+
+    private void writeCell(Cell cell) throws IOException {
+        if (cell == null) {
+            rowBuffer.write(NO_CELL);
+            return;
+        }
+
+        int reconTag = 0;
+        byte[] reconJson = null;
+        int reconIndex = 0;
+        if (cell.recon != null) {
+            Integer index = recons.get(cell.recon.id);
+            if (index != null) {
+                reconTag = RECON_REF;
+                reconIndex = index;
+            } else {
+                reconTag = RECON_NEW;
+                reconJson = ParsingUtilities.saveWriter.writeValueAsBytes(cell.recon);
+                recons.put(cell.recon.id, recons.size());
+            }
+        }
+
+        Serializable value = cell.value;
+        if (value instanceof LocalDateTime) {
+            // same conversion as the line-based format
+            value = ((LocalDateTime) value).atOffset(ZoneOffset.UTC);
+        }
+
+        int kind;
+        if (value == null) {
+            kind = NULL_VALUE;
+        } else if (value instanceof String) {
+            String string = (String) value;
+            if (strings.containsKey(string)) {
+                kind = STRING_REF;
+            } else if (string.length() <= MAX_DICTIONARY_STRING_LENGTH && strings.size() < MAX_DICTIONARY_SIZE) {
+                kind = STRING_NEW;
+            } else {
+                kind = STRING_INLINE;
+            }
+        } else if (value instanceof Long) {
+            kind = LONG;
+        } else if (value instanceof Double) {
+            kind = DOUBLE;
+        } else if (value instanceof Boolean) {
+            kind = (Boolean) value ? TRUE : FALSE;
+        } else if (value instanceof OffsetDateTime) {
+            kind = DATE;
+        } else if (value instanceof EvalError) {
+            kind = ERROR;
+        } else {
+            kind = JSON;
+        }
+
+        rowBuffer.write(kind | reconTag);
+        if (reconTag == RECON_NEW) {
+            rowBuffer.writeLengthPrefixed(reconJson);
+        } else if (reconTag == RECON_REF) {
+            rowBuffer.writeVarInt(reconIndex);
+        }
+
+        switch (kind) {
+            case STRING_NEW:
+                strings.put((String) value, strings.size());
+                rowBuffer.writeString((String) value);
+                break;
+            case STRING_REF:
+                rowBuffer.writeVarInt(strings.get(value));
+                break;
+            case STRING_INLINE:
+                rowBuffer.writeString((String) value);
+                break;
+            case LONG:
+                rowBuffer.writeLong((Long) value);
+                break;
+            case DOUBLE:
+                rowBuffer.writeLong(Double.doubleToRawLongBits((Double) value));
+                break;
+            case DATE:
+                OffsetDateTime date = (OffsetDateTime) value;
+                Instant instant = date.toInstant();
+                rowBuffer.writeLong(instant.getEpochSecond());
+                rowBuffer.writeVarInt(instant.getNano());
+                rowBuffer.writeLong(date.getOffset().getTotalSeconds());
+                break;
+            case ERROR:
+                rowBuffer.writeString(((EvalError) value).message);
+                break;
+            case JSON:
+                rowBuffer.writeLengthPrefixed(ParsingUtilities.saveWriter.writeValueAsBytes(new Cell(value, null)));
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * A byte buffer with the primitive encodings used by the format.
+     */
+    static class Buffer extends ByteArrayOutputStream {
+
+        Buffer() {
+            super(256);
+        }
+
+        void writeVarInt(int value) {
+            while ((value & ~0x7f) != 0) {
+                write((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            write(value);
+        }
+
+        void writeLong(long value) {
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                write((int) (value >>> shift));
+            }
+        }
+
+        void writeLengthPrefixed(byte[] bytes) {
+            writeVarInt(bytes.length);
+            write(bytes, 0, bytes.length);
+        }
+
+        void writeString(String string) {
+            writeLengthPrefixed(string.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,441 @@
+/*******************************************************************************
+ * Copyright (C) 2024, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.model;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.refine.model.columnar.ColumnarRowStore;
+
+/**
+ * A list of rows read from a project saved in the binary format, which decodes rows only when they are accessed.
+ * <p>
+ * When loading, the rows are copied uncompressed to a file next to the project data (the entries of data.zip are
+ * compressed and cannot be mapped themselves), which is then memory-mapped. Only the offsets of the rows and of the
+ * strings and recons they define are kept on the heap. Decoded rows are kept in a small cache, bounded by
+ * {@link #s_cacheSize}.
+ * <p>
+ * Rows returned by {@link #get(int)} must not be modified in place: changes to the project must first call
+ * {@link #materialize()}, after which this list holds all of its rows in memory and behaves like an ordinary list. Any
+ * other modification of the list materializes it first too.
+ */
+class LazyRowList extends AbstractList<Row> implements RandomAccess {
+
+    final static Logger logger = LoggerFactory.getLogger(LazyRowList.class);
+
+    /**
+     * The maximum number of decoded rows kept in memory by each lazily loaded project.
+     */
+    static public int s_cacheSize = Integer.getInteger("refine.rows.lazyCacheSize", 10000);
+
+    static private final int MAX_SEGMENT_SIZE = 1 << 30;
+
+    private final File file;
+    private int size;
+    private int maxCellCount;
+
+    private volatile Mapping mapping;
+    private volatile List<Row> materialized;
+
+    private final Map<Integer, Row> rowCache = new LinkedHashMap<>(16, 0.75f, true) {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Row> eldest) {
+            return size() > s_cacheSize;
+        }
+    };
+    private final Map<Integer, Recon> reconCache = new LinkedHashMap<>(16, 0.75f, true) {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Recon> eldest) {
+            return size() > s_cacheSize;
+        }
+    };
+    private final ThreadLocal<Decoder> decoders = ThreadLocal.withInitial(Decoder::new);
+
+    /**
+     * @param file
+     *            the file the rows are copied to, deleted when the list is materialized or disposed of
+     */
+    LazyRowList(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Copies the given number of rows from a binary project stream to the backing file and maps it.
+     */
+    void load(InputStream in, int rowCount) throws IOException {
+        BinaryRowReader reader = new BinaryRowReader(in);
+        Mapping mapping = new Mapping(rowCount);
+        List<Long> starts = new ArrayList<>();
+        starts.add(0L);
+        long offset = 0;
+        long segmentStart = 0;
+
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16);
+            for (int i = 0; i < rowCount; i++) {
+                int length = reader.readRowBytes();
+                int header = varIntSize(length);
+                if (offset + header + length - segmentStart > MAX_SEGMENT_SIZE) {
+                    segmentStart = offset;
+                    starts.add(segmentStart);
+                }
+                mapping.rowOffsets[i] = offset;
+
+                long rowStart = offset + header;
+                int cellCount = reader.skimRow(new BinaryRowReader.DefinitionListener() {
+
+                    @Override
+                    public void onString(int position) {
+                        mapping.stringOffsets.add(rowStart + position);
+                    }
+
+                    @Override
+                    public void onRecon(int position) {
+                        mapping.reconOffsets.add(rowStart + position);
+                    }
+                });
+                maxCellCount = Math.max(maxCellCount, cellCount);
+
+                writeVarInt(out, length);
+                out.write(reader.getBuffer(), 0, length);
+                offset = rowStart + length;
+            }
+            out.flush();
+
+            mapping.segmentStarts = new long[starts.size()];
+            mapping.segments = new MappedByteBuffer[starts.size()];
+            for (int s = 0; s < starts.size(); s++) {
+                long end = s + 1 < starts.size() ? starts.get(s + 1) : offset;
+                mapping.segmentStarts[s] = starts.get(s);
+                mapping.segments[s] = channel.map(FileChannel.MapMode.READ_ONLY, starts.get(s), end - starts.get(s));
+            }
+        }
+        size = rowCount;
+        this.mapping = mapping;
+    }
+
+    /**
+     * @return the largest number of cells of a row
+     */
+    int getMaxCellCount() {
+        return maxCellCount;
+    }
+
+    /**
+     * @return true if all rows have been decoded into memory
+     */
+    boolean isMaterialized() {
+        return materialized != null;
+    }
+
+    /**
+     * @return a rough estimate of the heap occupied by this list, in bytes
+     */
+    long estimateBytes() {
+        List<Row> rows = materialized;
+        if (rows != null) {
+            return rows instanceof ColumnarRowStore ? ((ColumnarRowStore) rows).estimateBytes()
+                    : Project.estimateRowBytes(rows, rows.size());
+        }
+        Mapping mapping = this.mapping;
+        long offsets = mapping == null ? 0
+                : 8L * (mapping.rowOffsets.length + mapping.stringOffsets.count + mapping.reconOffsets.count);
+        // samples the cached rows themselves: going through get() would decode rows which are not cached and evict
+        // those which are
+        List<Row> cached;
+        synchronized (rowCache) {
+            cached = new ArrayList<>(rowCache.values());
+        }
+        return offsets + Project.estimateRowBytes(cached, cached.size());
+    }
+
+    @Override
+    public int size() {
+        List<Row> rows = materialized;
+        return rows != null ? rows.size() : size;
+    }
+
+    @Override
+    public Row get(int index) {
+        List<Row> rows = materialized;
+        if (rows != null) {
+            return rows.get(index);
+        }
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        synchronized (rowCache) {
+            Row row = rowCache.get(index);
+            if (row != null) {
+                return row;
+            }
+        }
+        Mapping mapping = this.mapping;
+        if (mapping == null) {
+            return materialized.get(index);
+        }
+        Row row;
+        try {
+            row = decoders.get().decode(mapping, index);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        synchronized (rowCache) {
+            Row cached = rowCache.putIfAbsent(index, row);
+            return cached != null ? cached : row;
+        }
+    }
+
+    /**
+     * Decodes all rows into memory, and releases the backing file.
+     */
+    synchronized void materialize() {
+        if (materialized != null || mapping == null) {
+            return;
+        }
+        List<Row> rows = Project.s_columnarRows ? new ColumnarRowStore() : new ArrayList<>(size);
+        // rows are decoded in order, so that the strings and recons they define are resolved as when streaming
+        BinaryRowReader reader = new BinaryRowReader(null);
+        try {
+            for (int i = 0; i < size; i++) {
+                rows.add(reader.decodeRow(mapping.readBytes(mapping.rowOffsets[i])));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        materialized = rows;
+        release();
+    }
+
+    /**
+     * Releases the backing file, if the rows have not been materialized.
+     */
+    synchronized void dispose() {
+        release();
+    }
+
+    private void release() {
+        // decoders still running keep their own reference to the mapping
+        mapping = null;
+        synchronized (rowCache) {
+            rowCache.clear();
+        }
+        synchronized (reconCache) {
+            reconCache.clear();
+        }
+        if (file.exists() && !file.delete()) {
+            logger.warn("Failed to delete row file {}", file);
+        }
+    }
+
+    @Override
+    public void add(int index, Row element) {
+        materialize();
+        materialized.add(index, element);
+        modCount++;
+    }
+
+    @Override
+    public Row set(int index, Row element) {
+        materialize();
+        return materialized.set(index, element);
+    }
+
+    @Override
+    public Row remove(int index) {
+        materialize();
+        modCount++;
+        return materialized.remove(index);
+    }
+
+    @Override
+    public void clear() {
+        materialize();
+        modCount++;
+        materialized.clear();
+    }
+
+    static private int readVarInt(ByteBuffer buffer) {
+        int value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = buffer.get();
+            value |= (b & 0x7f) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    static private int varIntSize(int value) {
+        int size = 1;
+        while ((value & ~0x7f) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    static private void writeVarInt(OutputStream out, int value) throws IOException {
+        while ((value & ~0x7f) != 0) {
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    /**
+     * The mapped rows, along with the offsets of the rows and of the strings and recons they define.
+     */
+    static private class Mapping {
+
+        final long[] rowOffsets;
+        final OffsetList stringOffsets = new OffsetList();
+        final OffsetList reconOffsets = new OffsetList();
+        MappedByteBuffer[] segments;
+        long[] segmentStarts;
+
+        Mapping(int rowCount) {
+            rowOffsets = new long[rowCount];
+        }
+
+        /**
+         * Reads the length-prefixed bytes at the given offset. Rows never straddle two segments.
+         */
+        byte[] readBytes(long offset) {
+            int segment = Arrays.binarySearch(segmentStarts, offset);
+            if (segment < 0) {
+                segment = -segment - 2;
+            }
+            ByteBuffer buffer = segments[segment].duplicate();
+            buffer.position((int) (offset - segmentStarts[segment]));
+            byte[] bytes = new byte[readVarInt(buffer)];
+            buffer.get(bytes);
+            return bytes;
+        }
+    }
+
+    /**
+     * Decodes rows out of order, by reading the strings and recons they refer to from where they are defined in the
+     * file.
+     */
+    private class Decoder extends BinaryRowReader {
+
+        private Mapping mapping;
+
+        Decoder() {
+            super(null);
+        }
+
+        Row decode(Mapping mapping, int index) throws IOException {
+            this.mapping = mapping;
+            try {
+                return decodeRow(mapping.readBytes(mapping.rowOffsets[index]));
+            } finally {
+                this.mapping = null;
+            }
+        }
+
+        @Override
+        protected String lookupString(int index) {
+            return new String(mapping.readBytes(mapping.stringOffsets.get(index)), StandardCharsets.UTF_8);
+        }
+
+        @Override
+        protected void defineString(String string) {
+        }
+
+        @Override
+        protected Recon lookupRecon(int index) throws IOException {
+            synchronized (reconCache) {
+                Recon recon = reconCache.get(index);
+                if (recon != null) {
+                    return recon;
+                }
+            }
+            Recon recon = Recon.loadStreaming(
+                    new String(mapping.readBytes(mapping.reconOffsets.get(index)), StandardCharsets.UTF_8));
+            synchronized (reconCache) {
+                Recon cached = reconCache.putIfAbsent(index, recon);
+                return cached != null ? cached : recon;
+            }
+        }
+
+        @Override
+        protected void defineRecon(Recon recon) {
+        }
+    }
+
+    /**
+     * A growable list of offsets.
+     */
+    static private class OffsetList {
+
+        private long[] offsets = new long[16];
+        private int count;
+
+        void add(long offset) {
+            if (count == offsets.length) {
+                offsets = Arrays.copyOf(offsets, count * 2);
+            }
+            offsets[count++] = offset;
+        }
+
+        long get(int index) {
+            return offsets[index];
+        }
+    }
+}
@@ -33,12 +33,17 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package com.google.refine.model;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.LineNumberReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
 import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 import java.time.Instant;
@@ -56,7 +61,11 @@ import org.slf4j.LoggerFactory;
 import com.google.refine.ProjectManager;
 import com.google.refine.ProjectMetadata;
 import com.google.refine.RefineServlet;
+import com.google.refine.browsing.util.RowFilterBitmapCache;
+import com.google.refine.expr.ColumnEvaluationCache;
 import com.google.refine.history.History;
+import com.google.refine.io.ProjectJournal;
+import com.google.refine.model.columnar.ColumnarRowStore;
 import com.google.refine.process.ProcessManager;
 import com.google.refine.util.ParsingUtilities;
 import com.google.refine.util.Pool;
@@ -65,8 +74,21 @@ public class Project {
 
     final static protected Map<String, Class<? extends OverlayModel>> s_overlayModelClasses = new HashMap<String, Class<? extends OverlayModel>>();
 
+    /**
+     * Whether new projects store their rows column by column (see {@link ColumnarRowStore}) rather than as a list of
+     * {@link Row} objects. Enabled with the {@code refine.rows.columnar} system property.
+     */
+    static public boolean s_columnarRows = Boolean.getBoolean("refine.rows.columnar");
+
+    static final private int ROW_DEPENDENCY_BYTES = 24;
+    static final private int ROW_SAMPLE_SIZE = 1000;
+
+    // "ORPB", followed by the version of the binary format
+    static final private int BINARY_MAGIC = 0x4f525042;
+    static final private int BINARY_VERSION = 1;
+
     final public long id;
-    final public List<Row> rows = new ArrayList<>();
+    final public List<Row> rows;
     final public ColumnModel columnModel = new ColumnModel();
     final public RecordModel recordModel = new RecordModel();
     final public Map<String, OverlayModel> overlayModels = new HashMap<String, OverlayModel>();
@@ -95,7 +117,12 @@ public class Project {
      *            long ID to be assigned the new project
      */
     protected Project(long id) {
+        this(id, s_columnarRows ? new ColumnarRowStore() : new ArrayList<>());
+    }
+
+    private Project(long id, List<Row> rows) {
         this.id = id;
+        this.rows = rows;
         this.history = new History(this);
     }
 
@@ -107,6 +134,18 @@ public class Project {
      * Free/dispose of project data from memory.
      */
     public void dispose() {
+        disposeOverlayModels();
+        ProjectManager.singleton.getLookupCacheManager().flushLookupsInvolvingProject(this.id);
+        RowFilterBitmapCache.invalidate(this.id);
+        ColumnEvaluationCache.invalidate(this.id);
+        if (rows instanceof LazyRowList) {
+            ((LazyRowList) rows).dispose();
+        }
+        ProjectJournal.forget(this.id);
+        // The rest of the project should get garbage collected when we return.
+    }
+
+    private void disposeOverlayModels() {
         for (OverlayModel overlayModel : overlayModels.values()) {
             try {
                 overlayModel.dispose(this);
@@ -114,8 +153,70 @@ public class Project {
                 logger.warn("Error signaling overlay model before disposing", e);
             }
         }
-        ProjectManager.singleton.getLookupCacheManager().flushLookupsInvolvingProject(this.id);
-        // The rest of the project should get garbage collected when we return.
+    }
+
+    /**
+     * @return a rough estimate of the heap retained by the rows of the project and the models derived from them, in
+     *         bytes. Rows stored as objects are estimated from a sample of them.
+     */
+    public long estimateRetainedBytes() {
+        long bytes;
+        if (rows instanceof ColumnarRowStore) {
+            bytes = ((ColumnarRowStore) rows).estimateBytes();
+        } else if (rows instanceof LazyRowList) {
+            bytes = ((LazyRowList) rows).estimateBytes();
+        } else {
+            bytes = estimateRowBytes(rows, rows.size());
+        }
+        // the record model keeps one dependency per row
+        return bytes + ROW_DEPENDENCY_BYTES * rows.size() + history.getMemoryUsage().estimatedBytes;
+    }
+
+    /**
+     * Estimates the heap retained by a number of rows like those of the given list, from a sample of it.
+     */
+    static public long estimateRowBytes(List<Row> rows, long count) {
+        int size = rows.size();
+        if (size == 0) {
+            return 0;
+        }
+        int step = Math.max(1, size / ROW_SAMPLE_SIZE);
+        long sampleBytes = 0;
+        int sampleCount = 0;
+        for (int i = 0; i < size; i += step) {
+            sampleBytes += estimateRowBytes(rows.get(i));
+            sampleCount++;
+        }
+        return sampleBytes * count / sampleCount;
+    }
+
+    static private long estimateRowBytes(Row row) {
+        // row, list of cells and its array
+        long bytes = 16 + 24 + 16 + 4L * row.cells.size();
+        for (Cell cell : row.cells) {
+            bytes += estimateCellBytes(cell);
+        }
+        return bytes;
+    }
+
+    /**
+     * @return a rough estimate of the heap retained by a cell, in bytes
+     */
+    static public long estimateCellBytes(Cell cell) {
+        if (cell == null) {
+            return 0;
+        }
+        long bytes = 24;
+        Object value = cell.value;
+        if (value instanceof String) {
+            bytes += 40 + ((String) value).length();
+        } else if (value != null) {
+            bytes += 24;
+        }
+        if (cell.recon != null) {
+            bytes += 200;
+        }
+        return bytes;
     }
 
     public Instant getLastSave() {
@@ -134,13 +235,7 @@ public class Project {
     }
 
     public void saveToOutputStream(OutputStream out, Pool pool) throws IOException {
-        for (OverlayModel overlayModel : overlayModels.values()) {
-            try {
-                overlayModel.onBeforeSave(this);
-            } catch (Exception e) {
-                logger.warn("Error signaling overlay model before saving", e);
-            }
-        }
+        signalBeforeSave();
 
         Writer writer = new OutputStreamWriter(out, "UTF-8");
         try {
@@ -153,6 +248,62 @@ public class Project {
             writer.flush();
         }
 
+        signalAfterSave();
+    }
+
+    /**
+     * Saves the project in the binary format read by {@link #loadFromBinaryStream}. The column model, history and
+     * overlay models are written as in the line-based format, followed by the rows, each prefixed with its length.
+     * Repeated strings and recons are only written once.
+     */
+    public void saveToBinaryStream(OutputStream out) throws IOException {
+        saveToBinaryStream(out, true);
+    }
+
+    /**
+     * Saves the data of the project, without its history, in the binary format. This is what checkpoints of the history
+     * hold, and it is read back by {@link #restoreDataFromBinaryStream}.
+     */
+    public void saveDataToBinaryStream(OutputStream out) throws IOException {
+        saveToBinaryStream(out, false);
+    }
+
+    private void saveToBinaryStream(OutputStream out, boolean withHistory) throws IOException {
+        signalBeforeSave();
+
+        StringWriter models = new StringWriter();
+        Properties options = new Properties();
+        options.setProperty("mode", "save");
+        options.put("pool", new Pool());
+        saveModelsToWriter(models, options, withHistory);
+        byte[] modelBytes = models.toString().getBytes(StandardCharsets.UTF_8);
+
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(BINARY_MAGIC);
+        data.writeInt(BINARY_VERSION);
+        data.writeInt(modelBytes.length);
+        data.write(modelBytes);
+        data.writeInt(rows.size());
+        BinaryRowWriter rowWriter = new BinaryRowWriter(data);
+        for (Row row : rows) {
+            rowWriter.writeRow(row);
+        }
+        data.flush();
+
+        signalAfterSave();
+    }
+
+    private void signalBeforeSave() {
+        for (OverlayModel overlayModel : overlayModels.values()) {
+            try {
+                overlayModel.onBeforeSave(this);
+            } catch (Exception e) {
+                logger.warn("Error signaling overlay model before saving", e);
+            }
+        }
+    }
+
+    private void signalAfterSave() {
         for (OverlayModel overlayModel : overlayModels.values()) {
             try {
                 overlayModel.onAfterSave(this);
@@ -163,13 +314,31 @@ public class Project {
     }
 
     protected void saveToWriter(Writer writer, Properties options) throws IOException {
+        saveModelsToWriter(writer, options);
+
+        writer.write("rowCount=");
+        writer.write(Integer.toString(rows.size()));
+        writer.write('\n');
+        for (Row row : rows) {
+            row.save(writer, options);
+            writer.write('\n');
+        }
+    }
+
+    protected void saveModelsToWriter(Writer writer, Properties options) throws IOException {
+        saveModelsToWriter(writer, options, true);
+    }
+
+    private void saveModelsToWriter(Writer writer, Properties options, boolean withHistory) throws IOException {
         writer.write(RefineServlet.VERSION);
         writer.write('\n');
 
         writer.write("columnModel=\n");
         columnModel.save(writer, options);
-        writer.write("history=\n");
-        history.save(writer, options);
+        if (withHistory) {
+            writer.write("history=\n");
+            history.save(writer, options);
+        }
 
         for (String modelName : overlayModels.keySet()) {
             writer.write("overlayModel:");
@@ -179,30 +348,157 @@ public class Project {
             ParsingUtilities.saveWriter.writeValue(writer, overlayModels.get(modelName));
             writer.write('\n');
         }
-
-        writer.write("rowCount=");
-        writer.write(Integer.toString(rows.size()));
-        writer.write('\n');
-        for (Row row : rows) {
-            row.save(writer, options);
-            writer.write('\n');
-        }
     }
 
     static public Project loadFromInputStream(InputStream is, long id, Pool pool) throws IOException {
         return loadFromReader(new LineNumberReader(new InputStreamReader(is, StandardCharsets.UTF_8)), id, pool);
     }
 
+    /**
+     * Loads a project saved with {@link #saveToBinaryStream}.
+     */
+    static public Project loadFromBinaryStream(InputStream is, long id) throws IOException {
+        long start = System.currentTimeMillis();
+
+        DataInputStream data = new DataInputStream(is);
+        byte[] modelBytes = readBinaryHeader(data);
+
+        Project project = new Project(id);
+        int maxCellCount = loadBinaryModels(project, modelBytes);
+
+        int rowCount = data.readInt();
+        BinaryRowReader rowReader = new BinaryRowReader(data);
+        for (int i = 0; i < rowCount; i++) {
+            Row row = rowReader.readRow();
+            project.rows.add(row);
+            maxCellCount = Math.max(maxCellCount, row.cells.size());
+        }
+
+        return finishLoading(project, maxCellCount, start);
+    }
+
+    /**
+     * Loads a project saved with {@link #saveToBinaryStream}, without decoding its rows: they are copied to the given
+     * file, which is memory-mapped, and only decoded when accessed. The file is deleted when the project is disposed
+     * of, or once its rows are materialized by {@link #materializeRows()}.
+     */
+    static public Project loadLazilyFromBinaryStream(InputStream is, long id, File rowFile) throws IOException {
+        long start = System.currentTimeMillis();
+
+        DataInputStream data = new DataInputStream(is);
+        byte[] modelBytes = readBinaryHeader(data);
+
+        LazyRowList rows = new LazyRowList(rowFile);
+        Project project = new Project(id, rows);
+        int maxCellCount = loadBinaryModels(project, modelBytes);
+
+        try {
+            rows.load(data, data.readInt());
+        } catch (IOException e) {
+            rows.dispose();
+            throw e;
+        }
+        maxCellCount = Math.max(maxCellCount, rows.getMaxCellCount());
+
+        return finishLoading(project, maxCellCount, start);
+    }
+
+    /**
+     * Replaces the rows, columns and overlay models of the project with those saved by {@link #saveDataToBinaryStream},
+     * leaving its history as is. The data is read in full before the project is modified, so the project is left
+     * untouched if it cannot be read.
+     */
+    public void restoreDataFromBinaryStream(InputStream is) throws IOException {
+        DataInputStream data = new DataInputStream(is);
+        byte[] modelBytes = readBinaryHeader(data);
+
+        Project restored = new Project(id, new ArrayList<>());
+        int maxCellCount = loadBinaryModels(restored, modelBytes);
+        int rowCount = data.readInt();
+        BinaryRowReader rowReader = new BinaryRowReader(data);
+        for (int i = 0; i < rowCount; i++) {
+            Row row = rowReader.readRow();
+            restored.rows.add(row);
+            maxCellCount = Math.max(maxCellCount, row.cells.size());
+        }
+
+        synchronized (this) {
+            materializeRows();
+            rows.clear();
+            rows.addAll(restored.rows);
+
+            ColumnModel restoredColumns = restored.columnModel;
+            synchronized (columnModel) {
+                columnModel.columns.clear();
+                columnModel.columns.addAll(restoredColumns.columns);
+                columnModel.columnGroups.clear();
+                columnModel.columnGroups.addAll(restoredColumns.columnGroups);
+                columnModel.setKeyColumnIndex(restoredColumns.getKeyColumnIndex());
+                columnModel.setMaxCellIndex(Math.max(restoredColumns.getMaxCellIndex(), maxCellCount - 1));
+            }
+
+            // the current models are dropped, so they are disposed of as when the project is
+            disposeOverlayModels();
+            overlayModels.clear();
+            overlayModels.putAll(restored.overlayModels);
+
+            ProjectManager.singleton.getLookupCacheManager().flushLookupsInvolvingProject(id);
+            RowFilterBitmapCache.invalidate(id);
+            ColumnEvaluationCache.invalidate(id, null);
+            update();
+        }
+    }
+
+    static private byte[] readBinaryHeader(DataInputStream data) throws IOException {
+        if (data.readInt() != BINARY_MAGIC) {
+            throw new IOException("Not a binary project file");
+        }
+        int version = data.readInt();
+        if (version > BINARY_VERSION) {
+            throw new IOException("Unsupported version of the binary project format: " + version);
+        }
+        byte[] modelBytes = new byte[data.readInt()];
+        data.readFully(modelBytes);
+        return modelBytes;
+    }
+
+    static private int loadBinaryModels(Project project, byte[] modelBytes) throws IOException {
+        return loadFields(project,
+                new LineNumberReader(new StringReader(new String(modelBytes, StandardCharsets.UTF_8))), new Pool());
+    }
+
+    /**
+     * Makes sure all rows of the project are held in memory, so that they can be modified in place. Projects loaded
+     * with {@link #loadLazilyFromBinaryStream} only decode their rows when they are accessed, and must be materialized
+     * before any change is applied to them.
+     */
+    public void materializeRows() {
+        if (rows instanceof LazyRowList) {
+            ((LazyRowList) rows).materialize();
+        }
+    }
+
     static private Project loadFromReader(
             LineNumberReader reader,
             long id,
             Pool pool) throws IOException {
         long start = System.currentTimeMillis();
 
+        Project project = new Project(id);
+        int maxCellCount = loadFields(project, reader, pool);
+
+        return finishLoading(project, maxCellCount, start);
+    }
+
+    /**
+     * Reads the fields of the line-based format into the project.
+     *
+     * @return the largest number of cells in the rows read, if any
+     */
+    static private int loadFields(Project project, LineNumberReader reader, Pool pool) throws IOException {
         // version of Refine which wrote the file
         /* String version = */ reader.readLine();
 
-        Project project = new Project(id);
         int maxCellCount = 0;
 
         ObjectMapper mapper = ParsingUtilities.mapper.copy();
@@ -251,10 +547,15 @@ public class Project {
             }
         }
 
+        return maxCellCount;
+    }
+
+    static private Project finishLoading(Project project, int maxCellCount, long start) {
         project.columnModel.setMaxCellIndex(maxCellCount - 1);
 
         logger.info(
-                "Loaded project {} from disk in {} sec(s)", id, Long.toString((System.currentTimeMillis() - start) / 1000));
+                "Loaded project {} from disk in {} sec(s)", project.id,
+                Long.toString((System.currentTimeMillis() - start) / 1000));
 
         project.update();
 
@@ -174,6 +174,22 @@ public class Row implements HasFields {
         return starred;
     }
 
+    /**
+     * Sets the flag of this row. Prefer this over assigning the field directly, so that row implementations backed by
+     * another storage (such as {@link com.google.refine.model.columnar.ColumnarRowStore}) can record the change.
+     */
+    public void setFlagged(boolean flagged) {
+        this.flagged = flagged;
+    }
+
+    /**
+     * Sets the star of this row. Prefer this over assigning the field directly, so that row implementations backed by
+     * another storage (such as {@link com.google.refine.model.columnar.ColumnarRowStore}) can record the change.
+     */
+    public void setStarred(boolean starred) {
+        this.starred = starred;
+    }
+
     @JsonProperty("cells")
     public List<Cell> getCells() {
         return cells;
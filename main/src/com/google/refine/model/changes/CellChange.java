@@ -36,7 +36,9 @@ package com.google.refine.model.changes;
 import java.io.IOException;
 import java.io.LineNumberReader;
 import java.io.Writer;
+import java.util.Collections;
 import java.util.Properties;
+import java.util.Set;
 
 import com.google.refine.ProjectManager;
 import com.google.refine.history.Change;
@@ -77,6 +79,11 @@ public class CellChange implements Change {
         ProjectManager.singleton.getLookupCacheManager().flushLookupsInvolvingProjectColumn(project.id, column.getName());
     }
 
+    @Override
+    public Set<Integer> getModifiedCellIndices() {
+        return Collections.singleton(cellIndex);
+    }
+
     @Override
     public void save(Writer writer, Properties options) throws IOException {
         writer.write("row=");
@@ -0,0 +1,116 @@
+/*******************************************************************************
+ * Copyright (C) 2024, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.model.changes;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Base64;
+
+/**
+ * Encodes arrays of row indices on a single line of a change file. The array is split into runs of consecutive indices,
+ * or of -1, each written as the distance from the end of the previous run and its length, in variable-length integers
+ * encoded in Base64. Indices which mostly follow each other, such as those of rows kept in place, take a few bytes in
+ * total.
+ */
+final class IndexEncoding {
+
+    private IndexEncoding() {
+    }
+
+    static String encode(int[] indices) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeVarInt(out, indices.length);
+        int previous = 0;
+        int i = 0;
+        while (i < indices.length) {
+            int start = indices[i];
+            int step = start < 0 ? 0 : 1;
+            int length = 1;
+            while (i + length < indices.length && indices[i + length] == start + step * length) {
+                length++;
+            }
+            writeVarInt(out, zigzag(start - previous));
+            writeVarInt(out, length);
+            previous = start + step * length;
+            i += length;
+        }
+        return Base64.getEncoder().encodeToString(out.toByteArray());
+    }
+
+    static int[] decode(String encoded) throws IOException {
+        byte[] bytes = Base64.getDecoder().decode(encoded);
+        int[] position = new int[1];
+        int[] indices = new int[readVarInt(bytes, position)];
+        int previous = 0;
+        int i = 0;
+        while (i < indices.length) {
+            int start = previous + unzigzag(readVarInt(bytes, position));
+            int step = start < 0 ? 0 : 1;
+            int length = readVarInt(bytes, position);
+            if (length <= 0 || i + length > indices.length) {
+                throw new IOException("Invalid run of row indices");
+            }
+            for (int k = 0; k < length; k++) {
+                indices[i++] = start + step * k;
+            }
+            previous = start + step * length;
+        }
+        return indices;
+    }
+
+    static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static private void writeVarInt(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7f) != 0) {
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    static private int readVarInt(byte[] bytes, int[] position) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            if (position[0] >= bytes.length) {
+                throw new IOException("Truncated row indices");
+            }
+            int b = bytes[position[0]++];
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Invalid row index");
+    }
+}
@@ -36,8 +36,10 @@ package com.google.refine.model.changes;
 import java.io.IOException;
 import java.io.LineNumberReader;
 import java.io.Writer;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Properties;
+import java.util.Set;
 
 import com.google.refine.ProjectManager;
 import com.google.refine.history.Change;
@@ -125,6 +127,33 @@ public class MassCellChange implements Change {
         }
     }
 
+    @Override
+    public Set<Integer> getModifiedCellIndices() {
+        Set<Integer> cellIndices = new HashSet<Integer>();
+        for (CellChange cellChange : _cellChanges) {
+            cellIndices.add(cellChange.cellIndex);
+        }
+        return cellIndices;
+    }
+
+    @Override
+    public long estimateRetainedBytes() {
+        int count = _cellChanges.length;
+        if (count == 0) {
+            return 16;
+        }
+        // estimated from a sample of the changes, as for the rows of a project
+        int step = Math.max(1, count / 1000);
+        long sampleBytes = 0;
+        int sampleCount = 0;
+        for (int i = 0; i < count; i += step) {
+            CellChange cellChange = _cellChanges[i];
+            sampleBytes += 32 + Project.estimateCellBytes(cellChange.oldCell) + Project.estimateCellBytes(cellChange.newCell);
+            sampleCount++;
+        }
+        return 16 + 4L * count + sampleBytes * count / sampleCount;
+    }
+
     @Override
     public void save(Writer writer, Properties options) throws IOException {
         if (_commonColumnName != null) {
@@ -0,0 +1,89 @@
+/*******************************************************************************
+ * Copyright (C) 2024, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.model.changes;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import com.google.refine.io.ChangeCodec;
+import com.google.refine.model.BinaryRowReader;
+import com.google.refine.model.BinaryRowWriter;
+import com.google.refine.model.Row;
+
+/**
+ * Encodes {@link MassCellChange}s in binary form. Each cell change is written as the distance from the previous row
+ * index and its cell index, in variable-length integers, followed by its old and new cells, as a row of two cells in
+ * the binary project format.
+ */
+public class MassCellChangeCodec implements ChangeCodec<MassCellChange> {
+
+    @Override
+    public Class<MassCellChange> getChangeClass() {
+        return MassCellChange.class;
+    }
+
+    @Override
+    public void encode(MassCellChange change, DataOutputStream out) throws IOException {
+        out.writeBoolean(change._commonColumnName != null);
+        if (change._commonColumnName != null) {
+            out.writeUTF(change._commonColumnName);
+        }
+        out.writeBoolean(change._updateRowContextDependencies);
+        BinaryRowWriter rowWriter = new BinaryRowWriter(out);
+        rowWriter.writeVarInt(change._cellChanges.length);
+        Row cells = new Row(2);
+        int previousRow = 0;
+        for (CellChange cellChange : change._cellChanges) {
+            // cell changes are usually in row order, but not necessarily
+            rowWriter.writeVarInt(IndexEncoding.zigzag(cellChange.row - previousRow));
+            rowWriter.writeVarInt(cellChange.cellIndex);
+            cells.cells.clear();
+            cells.cells.add(cellChange.oldCell);
+            cells.cells.add(cellChange.newCell);
+            rowWriter.writeRow(cells);
+            previousRow = cellChange.row;
+        }
+    }
+
+    @Override
+    public MassCellChange decode(DataInputStream in) throws IOException {
+        String commonColumnName = in.readBoolean() ? in.readUTF() : null;
+        boolean updateRowContextDependencies = in.readBoolean();
+        BinaryRowReader rowReader = new BinaryRowReader(in);
+        CellChange[] cellChanges = new CellChange[rowReader.readStreamVarInt()];
+        int row = 0;
+        for (int i = 0; i < cellChanges.length; i++) {
+            row += IndexEncoding.unzigzag(rowReader.readStreamVarInt());
+            int cellIndex = rowReader.readStreamVarInt();
+            Row cells = rowReader.readRow();
+            cellChanges[i] = new CellChange(row, cellIndex, cells.getCell(0), cells.getCell(1));
+        }
+        return new MassCellChange(cellChanges, commonColumnName, updateRowContextDependencies);
+    }
+}
@@ -37,8 +37,10 @@ import java.io.IOException;
 import java.io.LineNumberReader;
 import java.io.Writer;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Properties;
+import java.util.Set;
 
 import com.google.common.collect.Lists;
 
@@ -83,6 +85,19 @@ public class MassChange implements Change {
         }
     }
 
+    @Override
+    public Set<Integer> getModifiedCellIndices() {
+        Set<Integer> cellIndices = new HashSet<Integer>();
+        for (Change change : _changes) {
+            Set<Integer> changeCellIndices = change.getModifiedCellIndices();
+            if (changeCellIndices == null) {
+                return null;
+            }
+            cellIndices.addAll(changeCellIndices);
+        }
+        return cellIndices;
+    }
+
     @Override
     public void save(Writer writer, Properties options) throws IOException {
         writer.write("updateRowContextDependencies=");
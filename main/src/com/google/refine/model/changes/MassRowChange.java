@@ -38,21 +38,43 @@ import java.io.LineNumberReader;
 import java.io.Writer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.Properties;
 
 import com.google.refine.ProjectManager;
 import com.google.refine.history.Change;
+import com.google.refine.model.Cell;
 import com.google.refine.model.Project;
 import com.google.refine.model.Row;
 import com.google.refine.util.Pool;
 
-// TODO: This replaces all rows in the project with a new set of rows, but if only a small percentage of the rows
-// are being changed, it'd be much more efficient to apply a change list of new/modified rows.
+/**
+ * Replaces all rows in the project with a new set of rows. Once applied, the change only keeps the difference between
+ * the old and the new rows: for each new row, the index of the old row it derives from, the cells which differ between
+ * them, and the rows which were added or removed.
+ */
 public class MassRowChange implements Change {
 
-    final protected List<Row> _newRows;
+    /**
+     * How many old rows are looked at ahead of the current one to find the row a new row derives from, when old rows
+     * were removed.
+     */
+    static final private int LOOKAHEAD = 16;
+
+    // the new rows, until the change is applied. Change files in the legacy format also hold the old rows
+    protected List<Row> _newRows;
     protected List<Row> _oldRows;
 
+    // for each new row, the index of the old row it derives from, or -1 if it was added
+    protected int[] _sources;
+    // the cells which differ between new rows and the old rows they derive from, by new row index
+    protected CellChange[] _cellChanges;
+    // the added rows, in order
+    protected List<Row> _addedRows;
+    // the old rows which no new row derives from, and their indices
+    protected int[] _removedIndices;
+    protected List<Row> _removedRows;
+
     public MassRowChange(List<Row> newRows) {
         _newRows = newRows;
     }
@@ -60,9 +82,18 @@ public class MassRowChange implements Change {
     @Override
     public void apply(Project project) {
         synchronized (project) {
-            _oldRows = new ArrayList<Row>(project.rows);
+            List<Row> newRows;
+            if (_newRows != null) {
+                // the change is applied for the first time, or was loaded in the legacy format
+                newRows = _newRows;
+                diff(new ArrayList<Row>(project.rows), newRows);
+                _newRows = null;
+                _oldRows = null;
+            } else {
+                newRows = patch(project.rows);
+            }
             project.rows.clear();
-            project.rows.addAll(_newRows);
+            project.rows.addAll(newRows);
 
             project.columnModel.clearPrecomputes();
             ProjectManager.singleton.getLookupCacheManager().flushLookupsInvolvingProject(project.id);
@@ -74,8 +105,9 @@ public class MassRowChange implements Change {
     @Override
     public void revert(Project project) {
         synchronized (project) {
+            List<Row> oldRows = _oldRows != null ? _oldRows : unpatch(project.rows);
             project.rows.clear();
-            project.rows.addAll(_oldRows);
+            project.rows.addAll(oldRows);
 
             project.columnModel.clearPrecomputes();
             ProjectManager.singleton.getLookupCacheManager().flushLookupsInvolvingProject(project.id);
@@ -84,60 +116,267 @@ public class MassRowChange implements Change {
         }
     }
 
+    /**
+     * Aligns the new rows with the old rows they derive from, in order. A new row derives from an old row if they have
+     * the same flags and number of cells, and no more differing cells than identical non-blank ones, as compared by
+     * {@link #sameCell}.
+     */
+    protected void diff(List<Row> oldRows, List<Row> newRows) {
+        int[] sources = new int[newRows.size()];
+        List<CellChange> cellChanges = new ArrayList<>();
+        List<Row> addedRows = new ArrayList<>();
+        List<Integer> removedIndices = new ArrayList<>();
+        List<Row> removedRows = new ArrayList<>();
+
+        int o = 0;
+        for (int n = 0; n < sources.length; n++) {
+            Row newRow = newRows.get(n);
+            int match = -1;
+            if (o < oldRows.size() && derives(newRow, oldRows.get(o))) {
+                match = o;
+            } else if (n + 1 == sources.length || o == oldRows.size() || !derives(newRows.get(n + 1), oldRows.get(o))) {
+                // unless the next new row derives from the current old row, in which case this one was inserted
+                for (int k = o + 1; k < oldRows.size() && k <= o + LOOKAHEAD; k++) {
+                    if (derives(newRow, oldRows.get(k))) {
+                        match = k;
+                        break;
+                    }
+                }
+            }
+            if (match < 0) {
+                sources[n] = -1;
+                addedRows.add(newRow);
+                continue;
+            }
+            for (; o < match; o++) {
+                removedIndices.add(o);
+                removedRows.add(oldRows.get(o));
+            }
+            Row oldRow = oldRows.get(o);
+            if (oldRow != newRow) {
+                for (int c = 0; c < newRow.cells.size(); c++) {
+                    Cell oldCell = oldRow.cells.get(c);
+                    Cell newCell = newRow.cells.get(c);
+                    if (!sameCell(oldCell, newCell)) {
+                        cellChanges.add(new CellChange(n, c, oldCell, newCell));
+                    }
+                }
+            }
+            sources[n] = o++;
+        }
+        for (; o < oldRows.size(); o++) {
+            removedIndices.add(o);
+            removedRows.add(oldRows.get(o));
+        }
+
+        _sources = sources;
+        _cellChanges = cellChanges.toArray(new CellChange[0]);
+        _addedRows = addedRows;
+        _removedIndices = removedIndices.stream().mapToInt(Integer::intValue).toArray();
+        _removedRows = removedRows;
+    }
+
+    static private boolean derives(Row newRow, Row oldRow) {
+        if (newRow == oldRow) {
+            return true;
+        }
+        if (newRow.flagged != oldRow.flagged || newRow.starred != oldRow.starred
+                || newRow.cells.size() != oldRow.cells.size()) {
+            return false;
+        }
+        int identical = 0;
+        int different = 0;
+        for (int c = 0; c < newRow.cells.size(); c++) {
+            Cell cell = newRow.cells.get(c);
+            if (!sameCell(cell, oldRow.cells.get(c))) {
+                different++;
+            } else if (cell != null) {
+                identical++;
+            }
+        }
+        return different == 0 || (identical > 0 && different <= identical);
+    }
+
+    /**
+     * Cells are the same if they hold equal values and the same recon object. Recons are compared by identity, since
+     * equal recons can still be distinct objects which other cells or the reconciliation stats refer to, and the delta
+     * must rebuild exactly the rows the change was made of.
+     */
+    static private boolean sameCell(Cell a, Cell b) {
+        if (a == b) {
+            return true;
+        }
+        return a != null && b != null && a.recon == b.recon && Objects.equals(a.value, b.value);
+    }
+
+    /**
+     * Rebuilds the new rows from the old ones.
+     */
+    protected List<Row> patch(List<Row> oldRows) {
+        List<Row> newRows = new ArrayList<>(_sources.length);
+        int added = 0;
+        int changed = 0;
+        for (int n = 0; n < _sources.length; n++) {
+            if (_sources[n] < 0) {
+                newRows.add(_addedRows.get(added++));
+                continue;
+            }
+            Row row = oldRows.get(_sources[n]);
+            if (changed < _cellChanges.length && _cellChanges[changed].row == n) {
+                row = row.dup();
+                for (; changed < _cellChanges.length && _cellChanges[changed].row == n; changed++) {
+                    row.setCell(_cellChanges[changed].cellIndex, _cellChanges[changed].newCell);
+                }
+            }
+            newRows.add(row);
+        }
+        return newRows;
+    }
+
+    /**
+     * Rebuilds the old rows from the new ones.
+     */
+    protected List<Row> unpatch(List<Row> newRows) {
+        int oldCount = _removedIndices.length;
+        for (int source : _sources) {
+            if (source >= 0) {
+                oldCount++;
+            }
+        }
+        Row[] oldRows = new Row[oldCount];
+        for (int i = 0; i < _removedIndices.length; i++) {
+            oldRows[_removedIndices[i]] = _removedRows.get(i);
+        }
+        int changed = 0;
+        for (int n = 0; n < _sources.length; n++) {
+            if (_sources[n] < 0) {
+                continue;
+            }
+            Row row = newRows.get(n);
+            if (changed < _cellChanges.length && _cellChanges[changed].row == n) {
+                row = row.dup();
+                for (; changed < _cellChanges.length && _cellChanges[changed].row == n; changed++) {
+                    row.setCell(_cellChanges[changed].cellIndex, _cellChanges[changed].oldCell);
+                }
+            }
+            oldRows[_sources[n]] = row;
+        }
+        List<Row> rows = new ArrayList<>(oldCount);
+        for (Row row : oldRows) {
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    @Override
+    public long estimateRetainedBytes() {
+        if (_sources == null) {
+            // either the old or the new rows are those of the project, depending on whether the change is applied
+            return estimateRowBytes(_newRows);
+        }
+        long bytes = 16 + 4L * _sources.length + 16 + 4L * _removedIndices.length;
+        for (CellChange change : _cellChanges) {
+            bytes += 32 + Project.estimateCellBytes(change.oldCell) + Project.estimateCellBytes(change.newCell);
+        }
+        return bytes + estimateRowBytes(_addedRows) + estimateRowBytes(_removedRows);
+    }
+
+    static private long estimateRowBytes(List<Row> rows) {
+        return rows == null ? 0 : 16 + 4L * rows.size() + Project.estimateRowBytes(rows, rows.size());
+    }
+
     @Override
     public void save(Writer writer, Properties options) throws IOException {
-        writer.write("newRowCount=");
-        writer.write(Integer.toString(_newRows.size()));
+        if (_sources == null) {
+            saveRows(writer, options, "newRowCount", _newRows);
+            saveRows(writer, options, "oldRowCount", _oldRows);
+            writer.write("/ec/\n"); // end of change marker
+            return;
+        }
+        writer.write("sources=");
+        writer.write(IndexEncoding.encode(_sources));
         writer.write('\n');
-        for (Row row : _newRows) {
-            row.save(writer, options);
-            writer.write('\n');
+        writer.write("cellChangeCount=");
+        writer.write(Integer.toString(_cellChanges.length));
+        writer.write('\n');
+        for (CellChange c : _cellChanges) {
+            c.save(writer, options);
         }
-        writer.write("oldRowCount=");
-        writer.write(Integer.toString(_oldRows.size()));
+        saveRows(writer, options, "addedRowCount", _addedRows);
+        writer.write("removedIndices=");
+        writer.write(IndexEncoding.encode(_removedIndices));
+        writer.write('\n');
+        saveRows(writer, options, "removedRowCount", _removedRows);
+        writer.write("/ec/\n"); // end of change marker
+    }
+
+    static private void saveRows(Writer writer, Properties options, String field, List<Row> rows) throws IOException {
+        writer.write(field);
+        writer.write('=');
+        writer.write(Integer.toString(rows.size()));
         writer.write('\n');
-        for (Row row : _oldRows) {
+        for (Row row : rows) {
             row.save(writer, options);
             writer.write('\n');
         }
-        writer.write("/ec/\n"); // end of change marker
     }
 
     static public Change load(LineNumberReader reader, Pool pool) throws Exception {
         List<Row> oldRows = null;
         List<Row> newRows = null;
+        int[] sources = null;
+        CellChange[] cellChanges = null;
+        List<Row> addedRows = null;
+        int[] removedIndices = null;
+        List<Row> removedRows = null;
 
         String line;
         while ((line = reader.readLine()) != null && !"/ec/".equals(line)) {
             int equal = line.indexOf('=');
             CharSequence field = line.subSequence(0, equal);
+            String value = line.substring(equal + 1);
 
             if ("oldRowCount".equals(field)) {
-                int count = Integer.parseInt(line.substring(equal + 1));
-
-                oldRows = new ArrayList<Row>(count);
-                for (int i = 0; i < count; i++) {
-                    line = reader.readLine();
-                    if (line != null) {
-                        oldRows.add(Row.load(line, pool));
-                    }
-                }
+                oldRows = loadRows(reader, pool, Integer.parseInt(value));
             } else if ("newRowCount".equals(field)) {
-                int count = Integer.parseInt(line.substring(equal + 1));
+                newRows = loadRows(reader, pool, Integer.parseInt(value));
+            } else if ("sources".equals(field)) {
+                sources = IndexEncoding.decode(value);
+            } else if ("cellChangeCount".equals(field)) {
+                int count = Integer.parseInt(value);
 
-                newRows = new ArrayList<Row>(count);
+                cellChanges = new CellChange[count];
                 for (int i = 0; i < count; i++) {
-                    line = reader.readLine();
-                    if (line != null) {
-                        newRows.add(Row.load(line, pool));
-                    }
+                    cellChanges[i] = CellChange.load(reader, pool);
                 }
+            } else if ("addedRowCount".equals(field)) {
+                addedRows = loadRows(reader, pool, Integer.parseInt(value));
+            } else if ("removedIndices".equals(field)) {
+                removedIndices = IndexEncoding.decode(value);
+            } else if ("removedRowCount".equals(field)) {
+                removedRows = loadRows(reader, pool, Integer.parseInt(value));
             }
         }
 
         MassRowChange change = new MassRowChange(newRows);
         change._oldRows = oldRows;
+        change._sources = sources;
+        change._cellChanges = cellChanges;
+        change._addedRows = addedRows;
+        change._removedIndices = removedIndices;
+        change._removedRows = removedRows;
 
         return change;
     }
+
+    static private List<Row> loadRows(LineNumberReader reader, Pool pool, int count) throws Exception {
+        List<Row> rows = new ArrayList<Row>(count);
+        for (int i = 0; i < count; i++) {
+            String line = reader.readLine();
+            if (line != null) {
+                rows.add(Row.load(line, pool));
+            }
+        }
+        return rows;
+    }
 }
@@ -36,7 +36,9 @@ package com.google.refine.model.changes;
 import java.io.IOException;
 import java.io.LineNumberReader;
 import java.io.Writer;
+import java.util.Collections;
 import java.util.Properties;
+import java.util.Set;
 
 import com.google.refine.history.Change;
 import com.google.refine.model.Project;
@@ -60,14 +62,19 @@ public class RowFlagChange implements Change {
         if (oldFlagged == null) {
             oldFlagged = row.flagged;
         }
-        row.flagged = newFlagged;
+        row.setFlagged(newFlagged);
     }
 
     @Override
     public void revert(Project project) {
         Row row = project.rows.get(rowIndex);
 
-        row.flagged = oldFlagged;
+        row.setFlagged(oldFlagged);
+    }
+
+    @Override
+    public Set<Integer> getModifiedCellIndices() {
+        return Collections.emptySet();
     }
 
     @Override
@@ -48,29 +48,39 @@ import com.google.refine.util.Pool;
 
 public class RowRemovalChange implements Change {
 
-    final protected List<Integer> _rowIndices;
+    // the indices of the removed rows, in increasing order
+    final protected int[] _rowIndices;
     protected List<Row> _rows;
 
     public RowRemovalChange(List<Integer> rowIndices) {
+        this(rowIndices.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    protected RowRemovalChange(int[] rowIndices) {
         _rowIndices = rowIndices;
     }
 
     @Override
     public void apply(Project project) {
         synchronized (project) {
-            int count = _rowIndices.size();
+            int count = _rowIndices.length;
 
             _rows = new ArrayList<Row>(count);
 
-            int offset = 0;
-            for (int i = 0; i < count; i++) {
-                int index = _rowIndices.get(i);
-
-                Row row = project.rows.remove(index + offset);
-                _rows.add(row);
-
-                offset--;
+            // rebuilds the rows in one pass, rather than removing them one by one
+            List<Row> keptRows = new ArrayList<Row>(Math.max(0, project.rows.size() - count));
+            int next = 0;
+            for (int r = 0; r < project.rows.size(); r++) {
+                Row row = project.rows.get(r);
+                if (next < count && _rowIndices[next] == r) {
+                    _rows.add(row);
+                    next++;
+                } else {
+                    keptRows.add(row);
+                }
             }
+            project.rows.clear();
+            project.rows.addAll(keptRows);
 
             project.columnModel.clearPrecomputes();
             ProjectManager.singleton.getLookupCacheManager().flushLookupsInvolvingProject(project.id);
@@ -82,14 +92,22 @@ public class RowRemovalChange implements Change {
     @Override
     public void revert(Project project) {
         synchronized (project) {
-            int count = _rowIndices.size();
+            int count = _rowIndices.length;
 
+            List<Row> rows = new ArrayList<Row>(project.rows.size() + count);
+            int kept = 0;
             for (int i = 0; i < count; i++) {
-                int index = _rowIndices.get(i);
-                Row row = _rows.get(i);
-
-                project.rows.add(index, row);
+                int index = _rowIndices[i];
+                while (rows.size() < index) {
+                    rows.add(project.rows.get(kept++));
+                }
+                rows.add(_rows.get(i));
             }
+            while (kept < project.rows.size()) {
+                rows.add(project.rows.get(kept++));
+            }
+            project.rows.clear();
+            project.rows.addAll(rows);
 
             project.columnModel.clearPrecomputes();
             ProjectManager.singleton.getLookupCacheManager().flushLookupsInvolvingProject(project.id);
@@ -98,15 +116,20 @@ public class RowRemovalChange implements Change {
         }
     }
 
+    @Override
+    public long estimateRetainedBytes() {
+        return 16 + 4L * _rowIndices.length + estimateRowBytes(_rows);
+    }
+
+    static private long estimateRowBytes(List<Row> rows) {
+        return rows == null ? 0 : 16 + 4L * rows.size() + Project.estimateRowBytes(rows, rows.size());
+    }
+
     @Override
     public void save(Writer writer, Properties options) throws IOException {
-        writer.write("rowIndexCount=");
-        writer.write(Integer.toString(_rowIndices.size()));
+        writer.write("rowIndices=");
+        writer.write(IndexEncoding.encode(_rowIndices));
         writer.write('\n');
-        for (Integer index : _rowIndices) {
-            writer.write(index.toString());
-            writer.write('\n');
-        }
         writer.write("rowCount=");
         writer.write(Integer.toString(_rows.size()));
         writer.write('\n');
@@ -118,7 +141,7 @@ public class RowRemovalChange implements Change {
     }
 
     static public Change load(LineNumberReader reader, Pool pool) throws Exception {
-        List<Integer> rowIndices = null;
+        int[] rowIndices = null;
         List<Row> rows = null;
 
         String line;
@@ -126,14 +149,17 @@ public class RowRemovalChange implements Change {
             int equal = line.indexOf('=');
             CharSequence field = line.subSequence(0, equal);
 
-            if ("rowIndexCount".equals(field)) {
+            if ("rowIndices".equals(field)) {
+                rowIndices = IndexEncoding.decode(line.substring(equal + 1));
+            } else if ("rowIndexCount".equals(field)) {
+                // legacy format, with one index per line
                 int count = Integer.parseInt(line.substring(equal + 1));
 
-                rowIndices = new ArrayList<Integer>(count);
+                rowIndices = new int[count];
                 for (int i = 0; i < count; i++) {
                     line = reader.readLine();
                     if (line != null) {
-                        rowIndices.add(Integer.parseInt(line));
+                        rowIndices[i] = Integer.parseInt(line);
                     }
                 }
             } else if ("rowCount".equals(field)) {
@@ -47,9 +47,14 @@ import com.google.refine.util.Pool;
 
 public class RowReorderChange implements Change {
 
-    final protected List<Integer> _rowIndices;
+    // for each new row, the index of the old row at its place
+    final protected int[] _rowIndices;
 
     public RowReorderChange(List<Integer> rowIndices) {
+        this(rowIndices.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    protected RowReorderChange(int[] rowIndices) {
         _rowIndices = rowIndices;
     }
 
@@ -59,7 +64,7 @@ public class RowReorderChange implements Change {
             List<Row> oldRows = project.rows;
             List<Row> newRows = new ArrayList<Row>(oldRows.size());
 
-            for (Integer oldIndex : _rowIndices) {
+            for (int oldIndex : _rowIndices) {
                 newRows.add(oldRows.get(oldIndex));
             }
 
@@ -82,7 +87,7 @@ public class RowReorderChange implements Change {
             }
 
             for (int newIndex = 0; newIndex < count; newIndex++) {
-                int oldIndex = _rowIndices.get(newIndex);
+                int oldIndex = _rowIndices[newIndex];
                 Row row = newRows.get(newIndex);
                 oldRows.set(oldIndex, row);
             }
@@ -93,34 +98,38 @@ public class RowReorderChange implements Change {
         }
     }
 
+    @Override
+    public long estimateRetainedBytes() {
+        return 16 + 4L * _rowIndices.length;
+    }
+
     @Override
     public void save(Writer writer, Properties options) throws IOException {
-        writer.write("rowIndexCount=");
-        writer.write(Integer.toString(_rowIndices.size()));
+        writer.write("rowIndices=");
+        writer.write(IndexEncoding.encode(_rowIndices));
         writer.write('\n');
-        for (Integer index : _rowIndices) {
-            writer.write(index.toString());
-            writer.write('\n');
-        }
         writer.write("/ec/\n"); // end of change marker
     }
 
     static public Change load(LineNumberReader reader, Pool pool) throws Exception {
-        List<Integer> rowIndices = null;
+        int[] rowIndices = null;
 
         String line;
         while ((line = reader.readLine()) != null && !"/ec/".equals(line)) {
             int equal = line.indexOf('=');
             CharSequence field = line.subSequence(0, equal);
 
-            if ("rowIndexCount".equals(field)) {
+            if ("rowIndices".equals(field)) {
+                rowIndices = IndexEncoding.decode(line.substring(equal + 1));
+            } else if ("rowIndexCount".equals(field)) {
+                // legacy format, with one index per line
                 int count = Integer.parseInt(line.substring(equal + 1));
 
-                rowIndices = new ArrayList<Integer>(count);
+                rowIndices = new int[count];
                 for (int i = 0; i < count; i++) {
                     line = reader.readLine();
                     if (line != null) {
-                        rowIndices.add(Integer.parseInt(line));
+                        rowIndices[i] = Integer.parseInt(line);
                     }
                 }
             }
@@ -0,0 +1,245 @@
+/*******************************************************************************
+ * Copyright (C) 2024, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.model.columnar;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import com.google.refine.model.Cell;
+import com.google.refine.model.Recon;
+
+/**
+ * The cells stored at a given cell index, for all rows of a {@link ColumnarRowStore}. Each row has a one-byte kind tag;
+ * the payload lives in a primitive array matching that kind. The payload arrays are only allocated once a value of the
+ * corresponding kind is stored, so a column of strings costs five bytes per row plus its dictionary.
+ * <p>
+ * Only {@link String}, {@link Long} and {@link Double} values are stored unboxed, so that the exact class of every
+ * other value (including {@link Integer}, dates and errors) is preserved when cells are read back.
+ * <p>
+ * Strings which are overwritten stay in the dictionary, so it is rebuilt from the stored strings once it holds twice as
+ * many entries as after its last rebuild. This keeps repeated transforms of a column from growing it without bound.
+ */
+class CellVector {
+
+    static final byte NO_CELL = 0;
+    static final byte NULL_VALUE = 1;
+    static final byte STRING = 2;
+    static final byte LONG = 3;
+    static final byte DOUBLE = 4;
+    static final byte OBJECT = 5;
+
+    // below this size, the dictionary is not worth rebuilding
+    static final int MIN_COMPACTION_SIZE = 1024;
+
+    private StringDictionary dictionary = new StringDictionary();
+    private int compactionSize = MIN_COMPACTION_SIZE;
+    private byte[] kinds;
+    private int[] strings;
+    private long[] longs;
+    private double[] doubles;
+    private Serializable[] objects;
+    private Recon[] recons;
+
+    CellVector(int capacity) {
+        kinds = new byte[capacity];
+    }
+
+    int capacity() {
+        return kinds.length;
+    }
+
+    void ensureCapacity(int capacity) {
+        if (capacity <= kinds.length) {
+            return;
+        }
+        kinds = Arrays.copyOf(kinds, capacity);
+        if (strings != null) {
+            strings = Arrays.copyOf(strings, capacity);
+        }
+        if (longs != null) {
+            longs = Arrays.copyOf(longs, capacity);
+        }
+        if (doubles != null) {
+            doubles = Arrays.copyOf(doubles, capacity);
+        }
+        if (objects != null) {
+            objects = Arrays.copyOf(objects, capacity);
+        }
+        if (recons != null) {
+            recons = Arrays.copyOf(recons, capacity);
+        }
+    }
+
+    boolean hasCell(int row) {
+        return kinds[row] != NO_CELL;
+    }
+
+    Cell get(int row) {
+        Recon recon = recons == null ? null : recons[row];
+        switch (kinds[row]) {
+            case NULL_VALUE:
+                return new Cell(null, recon);
+            case STRING:
+                return new Cell(dictionary.decode(strings[row]), recon);
+            case LONG:
+                return new Cell(longs[row], recon);
+            case DOUBLE:
+                return new Cell(doubles[row], recon);
+            case OBJECT:
+                return new Cell(objects[row], recon);
+            default:
+                return null;
+        }
+    }
+
+    void set(int row, Cell cell) {
+        if (objects != null) {
+            // do not retain the previous value
+            objects[row] = null;
+        }
+        if (cell == null) {
+            kinds[row] = NO_CELL;
+            setRecon(row, null);
+            return;
+        }
+        Serializable value = cell.value;
+        if (value == null) {
+            kinds[row] = NULL_VALUE;
+        } else if (value instanceof String) {
+            if (strings == null) {
+                strings = new int[kinds.length];
+            }
+            // the string being replaced is not kept if the dictionary is rebuilt
+            kinds[row] = NO_CELL;
+            if (dictionary.size() >= compactionSize && dictionary.lookup((String) value) < 0) {
+                compactDictionary();
+            }
+            strings[row] = dictionary.encode((String) value);
+            kinds[row] = STRING;
+        } else if (value instanceof Long) {
+            if (longs == null) {
+                longs = new long[kinds.length];
+            }
+            longs[row] = (Long) value;
+            kinds[row] = LONG;
+        } else if (value instanceof Double) {
+            if (doubles == null) {
+                doubles = new double[kinds.length];
+            }
+            doubles[row] = (Double) value;
+            kinds[row] = DOUBLE;
+        } else {
+            if (objects == null) {
+                objects = new Serializable[kinds.length];
+            }
+            objects[row] = value;
+            kinds[row] = OBJECT;
+        }
+        setRecon(row, cell.recon);
+    }
+
+    /**
+     * Rebuilds the dictionary from the strings currently stored, dropping those which were overwritten.
+     */
+    private void compactDictionary() {
+        StringDictionary compacted = new StringDictionary();
+        for (int row = 0; row < kinds.length; row++) {
+            if (kinds[row] == STRING) {
+                strings[row] = compacted.encode(dictionary.decode(strings[row]));
+            }
+        }
+        dictionary = compacted;
+        compactionSize = Math.max(MIN_COMPACTION_SIZE, 2 * compacted.size());
+    }
+
+    private void setRecon(int row, Recon recon) {
+        if (recons == null) {
+            if (recon == null) {
+                return;
+            }
+            recons = new Recon[kinds.length];
+        }
+        recons[row] = recon;
+    }
+
+    /**
+     * Moves the entries in [from, size) by the given offset (positive to open a gap, negative to close one).
+     */
+    void shift(int from, int size, int offset) {
+        int length = size - from;
+        System.arraycopy(kinds, from, kinds, from + offset, length);
+        if (strings != null) {
+            System.arraycopy(strings, from, strings, from + offset, length);
+        }
+        if (longs != null) {
+            System.arraycopy(longs, from, longs, from + offset, length);
+        }
+        if (doubles != null) {
+            System.arraycopy(doubles, from, doubles, from + offset, length);
+        }
+        if (objects != null) {
+            System.arraycopy(objects, from, objects, from + offset, length);
+        }
+        if (recons != null) {
+            System.arraycopy(recons, from, recons, from + offset, length);
+        }
+        if (offset < 0) {
+            // clear the slots vacated at the end
+            Arrays.fill(kinds, size + offset, size, NO_CELL);
+            if (objects != null) {
+                Arrays.fill(objects, size + offset, size, null);
+            }
+            if (recons != null) {
+                Arrays.fill(recons, size + offset, size, null);
+            }
+        }
+    }
+
+    /**
+     * @return a rough estimate of the heap occupied by this vector, in bytes
+     */
+    long estimateBytes() {
+        long bytes = kinds.length + dictionary.estimateBytes();
+        if (strings != null) {
+            bytes += 4L * strings.length;
+        }
+        if (longs != null) {
+            bytes += 8L * longs.length;
+        }
+        if (doubles != null) {
+            bytes += 8L * doubles.length;
+        }
+        if (objects != null) {
+            bytes += 8L * objects.length;
+        }
+        if (recons != null) {
+            bytes += 8L * recons.length;
+        }
+        return bytes;
+    }
+}
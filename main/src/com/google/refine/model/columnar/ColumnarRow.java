@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * Copyright (C) 2024, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.model.columnar;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+import com.google.refine.model.Cell;
+import com.google.refine.model.Row;
+
+/**
+ * A row materialized from a {@link ColumnarRowStore}. Its contents are a snapshot of the store at the time it was read;
+ * modifications are applied to the snapshot and written back to the store as long as the store has not been
+ * structurally modified in the meantime (otherwise the row index may no longer designate the same row).
+ */
+class ColumnarRow extends Row {
+
+    private final ColumnarRowStore store;
+    private final int index;
+    private final int version;
+
+    ColumnarRow(ColumnarRowStore store, int index, int version, List<Cell> cells, boolean flagged, boolean starred) {
+        super(new WriteThroughCells(store, index, version, cells), flagged, starred);
+        this.store = store;
+        this.index = index;
+        this.version = version;
+    }
+
+    @Override
+    public void setFlagged(boolean flagged) {
+        super.setFlagged(flagged);
+        if (store.structuralVersion() == version) {
+            store.writeFlagged(index, flagged);
+        }
+    }
+
+    @Override
+    public void setStarred(boolean starred) {
+        super.setStarred(starred);
+        if (store.structuralVersion() == version) {
+            store.writeStarred(index, starred);
+        }
+    }
+
+    private static class WriteThroughCells extends AbstractList<Cell> implements RandomAccess {
+
+        private final ColumnarRowStore store;
+        private final int index;
+        private final int version;
+        private final List<Cell> cells;
+
+        WriteThroughCells(ColumnarRowStore store, int index, int version, List<Cell> cells) {
+            this.store = store;
+            this.index = index;
+            this.version = version;
+            this.cells = cells;
+        }
+
+        @Override
+        public Cell get(int cellIndex) {
+            return cells.get(cellIndex);
+        }
+
+        @Override
+        public int size() {
+            return cells.size();
+        }
+
+        @Override
+        public Cell set(int cellIndex, Cell cell) {
+            Cell previous = cells.set(cellIndex, cell);
+            if (store.structuralVersion() == version) {
+                store.writeCell(index, cellIndex, cell, cells.size());
+            }
+            return previous;
+        }
+
+        @Override
+        public void add(int cellIndex, Cell cell) {
+            cells.add(cellIndex, cell);
+            modCount++;
+            if (store.structuralVersion() != version) {
+                return;
+            }
+            if (cellIndex == cells.size() - 1) {
+                store.writeCell(index, cellIndex, cell, cells.size());
+            } else {
+                store.writeCells(index, cells);
+            }
+        }
+
+        @Override
+        public Cell remove(int cellIndex) {
+            Cell previous = cells.remove(cellIndex);
+            modCount++;
+            if (store.structuralVersion() == version) {
+                store.writeCells(index, cells);
+            }
+            return previous;
+        }
+    }
+}
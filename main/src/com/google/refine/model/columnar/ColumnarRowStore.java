@@ -0,0 +1,232 @@
+/*******************************************************************************
+ * Copyright (C) 2024, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.model.columnar;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.RandomAccess;
+
+import com.google.refine.model.Cell;
+import com.google.refine.model.Row;
+
+/**
+ * A list of rows stored column by column, used as the backing store of {@link com.google.refine.model.Project#rows} for
+ * large projects. Instead of one {@link Row} and one {@link Cell} object per row and cell, cells are kept in one
+ * {@link CellVector} per cell index and flags and stars in bit sets.
+ * <p>
+ * {@link #get(int)} materializes a {@link Row} on each call. The returned row keeps its contents even if the list is
+ * later modified, so code taking copies of the row list (such as {@link com.google.refine.model.changes.MassRowChange})
+ * keeps working. As long as no row has been inserted or removed since the row was obtained, changes made to its cells,
+ * flag or star are also written back to this store, so in-place edits such as
+ * {@link com.google.refine.model.changes.MassCellChange} behave as with an {@link ArrayList}.
+ * <p>
+ * Like {@link ArrayList}, this class is not synchronized: concurrent reads are safe, writes must be guarded by the
+ * project lock.
+ */
+public class ColumnarRowStore extends AbstractList<Row> implements RandomAccess {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private CellVector[] vectors = new CellVector[0];
+    private int[] cellCounts = new int[INITIAL_CAPACITY];
+    private final BitSet flagged = new BitSet();
+    private final BitSet starred = new BitSet();
+    private int size = 0;
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Row get(int index) {
+        checkIndex(index);
+        int cellCount = cellCounts[index];
+        List<Cell> cells = new ArrayList<>(cellCount);
+        for (int c = 0; c < cellCount; c++) {
+            cells.add(vectors[c].get(index));
+        }
+        return new ColumnarRow(this, index, modCount, cells, flagged.get(index), starred.get(index));
+    }
+
+    /**
+     * Reads a single cell without materializing the whole row.
+     */
+    public Cell getCell(int index, int cellIndex) {
+        checkIndex(index);
+        if (cellIndex < 0 || cellIndex >= cellCounts[index]) {
+            return null;
+        }
+        return vectors[cellIndex].get(index);
+    }
+
+    @Override
+    public Row set(int index, Row row) {
+        Row previous = get(index);
+        write(index, row);
+        return previous;
+    }
+
+    @Override
+    public void add(int index, Row row) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        ensureCapacity(size + 1);
+        if (index < size) {
+            for (CellVector vector : vectors) {
+                vector.shift(index, size, 1);
+            }
+            System.arraycopy(cellCounts, index, cellCounts, index + 1, size - index);
+            shiftBits(flagged, index, size, 1);
+            shiftBits(starred, index, size, 1);
+        }
+        size++;
+        modCount++;
+        write(index, row);
+    }
+
+    @Override
+    public Row remove(int index) {
+        Row previous = get(index);
+        for (CellVector vector : vectors) {
+            vector.shift(index + 1, size, -1);
+        }
+        System.arraycopy(cellCounts, index + 1, cellCounts, index, size - index - 1);
+        shiftBits(flagged, index + 1, size, -1);
+        shiftBits(starred, index + 1, size, -1);
+        cellCounts[size - 1] = 0;
+        size--;
+        modCount++;
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        vectors = new CellVector[0];
+        cellCounts = new int[INITIAL_CAPACITY];
+        flagged.clear();
+        starred.clear();
+        size = 0;
+        modCount++;
+    }
+
+    /**
+     * @return a rough estimate of the heap occupied by the stored rows, in bytes
+     */
+    public long estimateBytes() {
+        long bytes = 4L * cellCounts.length + (flagged.size() + starred.size()) / 8;
+        for (CellVector vector : vectors) {
+            bytes += vector.estimateBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Number of structural modifications (insertions and removals) made so far, used by materialized rows to decide
+     * whether they can still write through to this store.
+     */
+    int structuralVersion() {
+        return modCount;
+    }
+
+    void writeCell(int index, int cellIndex, Cell cell, int cellCount) {
+        ensureVectors(cellCount);
+        vectors[cellIndex].set(index, cell);
+        updateCellCount(index, cellCount);
+    }
+
+    void writeCells(int index, List<Cell> cells) {
+        int cellCount = cells.size();
+        ensureVectors(cellCount);
+        for (int c = 0; c < cellCount; c++) {
+            vectors[c].set(index, cells.get(c));
+        }
+        updateCellCount(index, cellCount);
+    }
+
+    void writeFlagged(int index, boolean value) {
+        flagged.set(index, value);
+    }
+
+    void writeStarred(int index, boolean value) {
+        starred.set(index, value);
+    }
+
+    private void write(int index, Row row) {
+        writeCells(index, row.cells);
+        flagged.set(index, row.flagged);
+        starred.set(index, row.starred);
+    }
+
+    private void updateCellCount(int index, int cellCount) {
+        for (int c = cellCount; c < cellCounts[index]; c++) {
+            vectors[c].set(index, null);
+        }
+        cellCounts[index] = cellCount;
+    }
+
+    private void ensureVectors(int count) {
+        if (count <= vectors.length) {
+            return;
+        }
+        int oldLength = vectors.length;
+        vectors = Arrays.copyOf(vectors, count);
+        for (int c = oldLength; c < count; c++) {
+            vectors[c] = new CellVector(cellCounts.length);
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= cellCounts.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, cellCounts.length + (cellCounts.length >> 1));
+        cellCounts = Arrays.copyOf(cellCounts, newCapacity);
+        for (CellVector vector : vectors) {
+            vector.ensureCapacity(newCapacity);
+        }
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    private static void shiftBits(BitSet bits, int from, int size, int offset) {
+        BitSet moved = bits.get(from, size);
+        bits.clear(Math.min(from, from + offset), size);
+        for (int i = moved.nextSetBit(0); i >= 0; i = moved.nextSetBit(i + 1)) {
+            bits.set(from + offset + i);
+        }
+    }
+}
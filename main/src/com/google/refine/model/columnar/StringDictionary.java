@@ -0,0 +1,121 @@
+/*******************************************************************************
+ * Copyright (C) 2024, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.model.columnar;
+
+import java.util.Arrays;
+
+/**
+ * Assigns dense integer codes to distinct strings, so that a column of repeated values can be stored as an
+ * {@code int[]}. Lookups use an open-addressing table of codes rather than a {@link java.util.HashMap}, which would
+ * cost an entry object per distinct value.
+ */
+public class StringDictionary {
+
+    private String[] values = new String[16];
+    private int[] table = new int[32]; // code + 1, or 0 for an empty slot
+    private int size = 0;
+
+    /**
+     * @return the code of the given string, adding it to the dictionary if needed
+     */
+    public int encode(String value) {
+        int mask = table.length - 1;
+        int slot = mix(value.hashCode()) & mask;
+        while (table[slot] != 0) {
+            String existing = values[table[slot] - 1];
+            if (existing.equals(value)) {
+                return table[slot] - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size] = value;
+        table[slot] = ++size;
+        if (size * 2 > table.length) {
+            rehash(table.length * 2);
+        }
+        return size - 1;
+    }
+
+    /**
+     * @return the code of the given string, or -1 if it is not in the dictionary
+     */
+    public int lookup(String value) {
+        int mask = table.length - 1;
+        int slot = mix(value.hashCode()) & mask;
+        while (table[slot] != 0) {
+            if (values[table[slot] - 1].equals(value)) {
+                return table[slot] - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    public String decode(int code) {
+        return values[code];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        values = new String[16];
+        table = new int[32];
+        size = 0;
+    }
+
+    public long estimateBytes() {
+        long bytes = 4L * table.length + 8L * values.length;
+        for (int i = 0; i < size; i++) {
+            // object header, hash and array header plus the characters themselves
+            bytes += 40 + values[i].length();
+        }
+        return bytes;
+    }
+
+    private void rehash(int newLength) {
+        int[] newTable = new int[newLength];
+        int mask = newLength - 1;
+        for (int code = 0; code < size; code++) {
+            int slot = mix(values[code].hashCode()) & mask;
+            while (newTable[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            newTable[slot] = code + 1;
+        }
+        table = newTable;
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
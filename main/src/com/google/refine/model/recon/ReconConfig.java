@@ -112,6 +112,24 @@ abstract public class ReconConfig {
 
     abstract public List<Recon> batchRecon(List<ReconJob> jobs, long historyEntryID);
 
+    /**
+     * Tells whether {@link #batchRecon} can be called from several threads at once, letting the reconciliation
+     * operation keep several batches in flight.
+     */
+    @JsonIgnore
+    public boolean supportsConcurrentBatches() {
+        return false;
+    }
+
+    /**
+     * @return the number of jobs {@link #batchRecon} answered from a cache rather than by querying the service, since
+     *         this config was created
+     */
+    @JsonIgnore
+    public long getCachedJobCount() {
+        return 0;
+    }
+
     abstract public Recon createNewRecon(long historyEntryID);
 
     public void save(Writer writer) {
@@ -43,6 +43,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonIgnore;
@@ -58,6 +59,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.refine.expr.ExpressionUtils;
+import com.google.refine.io.ReconResultCache;
 import com.google.refine.model.Cell;
 import com.google.refine.model.Project;
 import com.google.refine.model.Recon;
@@ -124,6 +126,11 @@ public class StandardReconConfig extends ReconConfig {
             return code.hashCode();
         }
 
+        @Override
+        public String getStringKey() {
+            return code;
+        }
+
         @Override
         public String toString() {
             return code;
@@ -152,6 +159,8 @@ public class StandardReconConfig extends ReconConfig {
 
     // initialized lazily
     private HttpClient httpClient = null;
+    // the jobs answered from the reconciliation cache
+    private final AtomicLong _cachedJobs = new AtomicLong();
 
     @JsonCreator
     public StandardReconConfig(
@@ -426,7 +435,13 @@ public class StandardReconConfig extends ReconConfig {
         return job;
     }
 
-    private HttpClient getHttpClient() {
+    @Override
+    @JsonIgnore
+    public boolean supportsConcurrentBatches() {
+        return true;
+    }
+
+    private synchronized HttpClient getHttpClient() {
         if (httpClient == null) {
             httpClient = new HttpClient();
         }
@@ -441,12 +456,20 @@ public class StandardReconConfig extends ReconConfig {
     public List<Recon> batchRecon(List<ReconJob> jobs, long historyEntryID) {
         List<Recon> recons = new ArrayList<Recon>(jobs.size());
 
+        // only the jobs whose results are not cached are sent to the service
+        ReconResultCache cache = ReconResultCache.singleton;
+        ArrayNode[] cachedResults = new ArrayNode[jobs.size()];
         StringWriter stringWriter = new StringWriter();
+        int queries = 0;
 
         stringWriter.write("{");
         for (int i = 0; i < jobs.size(); i++) {
             StandardReconJob job = (StandardReconJob) jobs.get(i);
-            if (i > 0) {
+            cachedResults[i] = cache == null ? null : getCachedResults(cache, job);
+            if (cachedResults[i] != null) {
+                continue;
+            }
+            if (queries++ > 0) {
                 stringWriter.write(",");
             }
             stringWriter.write("\"q" + i + "\":");
@@ -454,69 +477,82 @@ public class StandardReconConfig extends ReconConfig {
         }
         stringWriter.write("}");
         String queriesString = stringWriter.toString();
+        _cachedJobs.addAndGet(jobs.size() - queries);
 
-        String responseString = "";
+        String error = null;
         ObjectNode o = null;
-        try {
-
-            responseString = postQueries(service, queriesString);
-            o = ParsingUtilities.mapper.readValue(responseString, ObjectNode.class);
-        } catch (IOException e) {
-            Recon recon = new Recon(historyEntryID, identifierSpace, schemaSpace);
-            recon.error = e.getMessage();
-            recon.judgment = Judgment.Error;
-            recons.add(recon);
+        if (queries > 0) {
+            try {
+                String responseString = postQueries(service, queriesString);
+                o = ParsingUtilities.mapper.readValue(responseString, ObjectNode.class);
+            } catch (IOException e) {
+                error = e.getMessage();
+            }
+            if (o == null && error == null) { // utility method returns null instead of throwing
+                error = "The reconciliation service returned an invalid response";
+            }
         }
 
-        if (o == null) { // utility method returns null instead of throwing
-            Recon recon = new Recon(historyEntryID, identifierSpace, schemaSpace);
-            recon.error = "The reconciliation service returned an invalid response";
-            recon.judgment = Judgment.Error;
-            recons.add(recon);
-
-        } else {
-            for (int i = 0; i < jobs.size(); i++) {
-                StandardReconJob job = (StandardReconJob) jobs.get(i);
-                Recon recon = null;
-
-                String text = job.text;
-                String key = "q" + i;
-                if (o.has(key) && o.get(key) instanceof ObjectNode) {
-                    ObjectNode o2 = (ObjectNode) o.get(key);
-                    if (o2.has("result") && o2.get("result") instanceof ArrayNode) {
-                        ArrayNode results = (ArrayNode) o2.get("result");
-
-                        recon = createReconServiceResults(text, results, historyEntryID);
-                    } else {
-                        recon = new Recon(historyEntryID, identifierSpace, schemaSpace);
-                        recon.error = "The service returned a JSON response without \"result\" field for query " + key;
-                        recon.judgment = Judgment.Error;
-
+        for (int i = 0; i < jobs.size(); i++) {
+            StandardReconJob job = (StandardReconJob) jobs.get(i);
+            Recon recon = null;
+
+            String text = job.text;
+            String key = "q" + i;
+            if (cachedResults[i] != null) {
+                recon = createReconServiceResults(text, cachedResults[i], historyEntryID);
+            } else if (error != null) {
+                recon = new Recon(historyEntryID, identifierSpace, schemaSpace);
+                recon.error = error;
+                recon.judgment = Judgment.Error;
+            } else if (o.has(key) && o.get(key) instanceof ObjectNode) {
+                ObjectNode o2 = (ObjectNode) o.get(key);
+                if (o2.has("result") && o2.get("result") instanceof ArrayNode) {
+                    ArrayNode results = (ArrayNode) o2.get("result");
+
+                    recon = createReconServiceResults(text, results, historyEntryID);
+                    if (cache != null) {
+                        cache.put(service, job.code, results.toString());
                     }
                 } else {
                     recon = new Recon(historyEntryID, identifierSpace, schemaSpace);
-                    recon.error = "The service returned a JSON response without \"" + key + "\" field ";
+                    recon.error = "The service returned a JSON response without \"result\" field for query " + key;
                     recon.judgment = Judgment.Error;
-                }
 
-                if (recon != null) {
-                    recon.service = service;
                 }
-                recons.add(recon);
+            } else {
+                recon = new Recon(historyEntryID, identifierSpace, schemaSpace);
+                recon.error = "The service returned a JSON response without \"" + key + "\" field ";
+                recon.judgment = Judgment.Error;
             }
 
-        }
-
-        while (recons.size() < jobs.size()) {
-            Recon recon = new Recon(historyEntryID, identifierSpace, schemaSpace);
-            recon.error = "No. of recon objects was less than no. of jobs";
-            recon.judgment = Judgment.Error;
+            if (recon != null) {
+                recon.service = service;
+            }
             recons.add(recon);
         }
 
         return recons;
     }
 
+    private ArrayNode getCachedResults(ReconResultCache cache, StandardReconJob job) {
+        String results = cache.get(service, job.code);
+        if (results != null) {
+            try {
+                return ParsingUtilities.mapper.readValue(results, ArrayNode.class);
+            } catch (IOException e) {
+                logger.warn("Ignoring invalid cached reconciliation results", e);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    @JsonIgnore
+    public long getCachedJobCount() {
+        return _cachedJobs.get();
+    }
+
     @Override
     public Recon createNewRecon(long historyEntryID) {
         Recon recon = new Recon(historyEntryID, identifierSpace, schemaSpace);
@@ -49,6 +49,7 @@ import com.google.refine.model.Column;
 import com.google.refine.model.Project;
 import com.google.refine.model.changes.CellChange;
 import com.google.refine.model.changes.MassCellChange;
+import com.google.refine.process.BackgroundHistoryEntryProcess;
 
 abstract public class EngineDependentMassCellOperation extends EngineDependentOperation {
 
@@ -66,6 +67,17 @@ abstract public class EngineDependentMassCellOperation extends EngineDependentOp
 
     @Override
     protected HistoryEntry createHistoryEntry(Project project, long historyEntryID) throws Exception {
+        return createHistoryEntry(project, historyEntryID, null);
+    }
+
+    /**
+     * Creates the history entry, reporting the progress of the visit of the rows to the given process.
+     *
+     * @param process
+     *            the process running the operation in the background, or null
+     */
+    protected HistoryEntry createHistoryEntry(Project project, long historyEntryID, BackgroundHistoryEntryProcess process)
+            throws Exception {
         Engine engine = createEngine(project);
 
         Column column = project.columnModel.getColumnByName(_columnName);
@@ -77,7 +89,8 @@ abstract public class EngineDependentMassCellOperation extends EngineDependentOp
 
         FilteredRows filteredRows = engine.getAllFilteredRows();
         try {
-            filteredRows.accept(project, createRowVisitor(project, cellChanges, historyEntryID));
+            RowVisitor visitor = createRowVisitor(project, cellChanges, historyEntryID);
+            filteredRows.accept(project, process != null ? process.track(visitor) : visitor);
         } catch (Exception e) {
             e.printStackTrace();
         }
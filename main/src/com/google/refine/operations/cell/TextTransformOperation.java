@@ -34,6 +34,7 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 package com.google.refine.operations.cell;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
 
@@ -41,6 +42,7 @@ import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 import com.google.refine.browsing.EngineConfig;
+import com.google.refine.browsing.MergeableRowVisitor;
 import com.google.refine.browsing.RowVisitor;
 import com.google.refine.expr.Evaluable;
 import com.google.refine.expr.ExpressionUtils;
@@ -54,6 +56,8 @@ import com.google.refine.model.changes.CellChange;
 import com.google.refine.operations.EngineDependentMassCellOperation;
 import com.google.refine.operations.OnError;
 import com.google.refine.operations.OperationDescription;
+import com.google.refine.process.BackgroundHistoryEntryProcess;
+import com.google.refine.process.Process;
 
 public class TextTransformOperation extends EngineDependentMassCellOperation {
 
@@ -113,96 +117,126 @@ public class TextTransformOperation extends EngineDependentMassCellOperation {
         return OperationDescription.cell_text_transform_desc(cellChanges.size(), column.getName(), _expression);
     }
 
+    @Override
+    public Process createProcess(Project project, Properties options) throws Exception {
+        if (BackgroundHistoryEntryProcess.isWorthRunningInBackground(project)) {
+            return new BackgroundHistoryEntryProcess(project, getBriefDescription(null),
+                    (historyEntryID, process) -> createHistoryEntry(project, historyEntryID, process));
+        }
+        return super.createProcess(project, options);
+    }
+
     @Override
     protected RowVisitor createRowVisitor(Project project, List<CellChange> cellChanges, long historyEntryID) throws Exception {
         Column column = project.columnModel.getColumnByName(_columnName);
 
         Evaluable eval = MetaParser.parse(_expression);
-        Properties bindings = ExpressionUtils.createBindings(project);
 
-        return new RowVisitor() {
+        return new TextTransformRowVisitor(project, column.getCellIndex(), eval, cellChanges);
+    }
 
-            int cellIndex;
-            Properties bindings;
-            List<CellChange> cellChanges;
-            Evaluable eval;
+    /**
+     * Evaluates the expression on the cells of the column. When the expression is thread-safe, partitions of the rows
+     * are transformed in parallel, each with its own bindings, and their cell changes are concatenated in row order.
+     */
+    protected class TextTransformRowVisitor implements MergeableRowVisitor {
+
+        final Project project;
+        final int cellIndex;
+        final Evaluable eval;
+        final List<CellChange> cellChanges;
+        final Properties bindings;
+
+        protected TextTransformRowVisitor(Project project, int cellIndex, Evaluable eval, List<CellChange> cellChanges) {
+            this.project = project;
+            this.cellIndex = cellIndex;
+            this.eval = eval;
+            this.cellChanges = cellChanges;
+            this.bindings = ExpressionUtils.createBindings(project);
+        }
 
-            public RowVisitor init(int cellIndex, Properties bindings, List<CellChange> cellChanges, Evaluable eval) {
-                this.cellIndex = cellIndex;
-                this.bindings = bindings;
-                this.cellChanges = cellChanges;
-                this.eval = eval;
-                return this;
-            }
+        @Override
+        public void start(Project project) {
+            // nothing to do
+        }
 
-            @Override
-            public void start(Project project) {
-                // nothing to do
-            }
+        @Override
+        public void end(Project project) {
+            // nothing to do
+        }
 
-            @Override
-            public void end(Project project) {
-                // nothing to do
-            }
+        @Override
+        public boolean isParallelizable() {
+            return eval.isThreadSafe();
+        }
 
-            @Override
-            public boolean visit(Project project, int rowIndex, Row row) {
-                Cell cell = row.getCell(cellIndex);
-                Cell newCell = null;
+        @Override
+        public MergeableRowVisitor createPartialVisitor() {
+            return new TextTransformRowVisitor(project, cellIndex, eval, new ArrayList<>());
+        }
 
-                Object oldValue = cell != null ? cell.value : null;
+        @Override
+        public void combine(MergeableRowVisitor partial) {
+            cellChanges.addAll(((TextTransformRowVisitor) partial).cellChanges);
+        }
 
-                ExpressionUtils.bind(bindings, row, rowIndex, _columnName, cell);
+        @Override
+        public boolean visit(Project project, int rowIndex, Row row) {
+            Cell cell = row.getCell(cellIndex);
+            Cell newCell = null;
 
-                Object o = eval.evaluate(bindings);
-                if (o == null) {
-                    if (oldValue != null) {
-                        CellChange cellChange = new CellChange(rowIndex, cellIndex, cell, null);
-                        cellChanges.add(cellChange);
-                    }
+            Object oldValue = cell != null ? cell.value : null;
+
+            ExpressionUtils.bind(bindings, row, rowIndex, _columnName, cell);
+
+            Object o = eval.evaluate(bindings);
+            if (o == null) {
+                if (oldValue != null) {
+                    CellChange cellChange = new CellChange(rowIndex, cellIndex, cell, null);
+                    cellChanges.add(cellChange);
+                }
+            } else {
+                if (o instanceof Cell) {
+                    newCell = (Cell) o;
+                } else if (o instanceof WrappedCell) {
+                    newCell = ((WrappedCell) o).cell;
                 } else {
-                    if (o instanceof Cell) {
-                        newCell = (Cell) o;
-                    } else if (o instanceof WrappedCell) {
-                        newCell = ((WrappedCell) o).cell;
-                    } else {
-                        Serializable newValue = ExpressionUtils.wrapStorable(o);
-                        if (ExpressionUtils.isError(newValue)) {
-                            if (_onError == OnError.KeepOriginal) {
-                                return false;
-                            } else if (_onError == OnError.SetToBlank) {
-                                newValue = null;
-                            }
+                    Serializable newValue = ExpressionUtils.wrapStorable(o);
+                    if (ExpressionUtils.isError(newValue)) {
+                        if (_onError == OnError.KeepOriginal) {
+                            return false;
+                        } else if (_onError == OnError.SetToBlank) {
+                            newValue = null;
                         }
+                    }
 
-                        if (!ExpressionUtils.sameValue(oldValue, newValue)) {
-                            newCell = new Cell(newValue, (cell != null) ? cell.recon : null);
-
-                            if (_repeat) {
-                                for (int i = 0; i < _repeatCount; i++) {
-                                    ExpressionUtils.bind(bindings, row, rowIndex, _columnName, newCell);
+                    if (!ExpressionUtils.sameValue(oldValue, newValue)) {
+                        newCell = new Cell(newValue, (cell != null) ? cell.recon : null);
 
-                                    newValue = ExpressionUtils.wrapStorable(eval.evaluate(bindings));
-                                    if (ExpressionUtils.isError(newValue)) {
-                                        break;
-                                    } else if (ExpressionUtils.sameValue(newCell.value, newValue)) {
-                                        break;
-                                    }
+                        if (_repeat) {
+                            for (int i = 0; i < _repeatCount; i++) {
+                                ExpressionUtils.bind(bindings, row, rowIndex, _columnName, newCell);
 
-                                    newCell = new Cell(newValue, newCell.recon);
+                                newValue = ExpressionUtils.wrapStorable(eval.evaluate(bindings));
+                                if (ExpressionUtils.isError(newValue)) {
+                                    break;
+                                } else if (ExpressionUtils.sameValue(newCell.value, newValue)) {
+                                    break;
                                 }
+
+                                newCell = new Cell(newValue, newCell.recon);
                             }
                         }
                     }
-
-                    if (newCell != null) {
-                        CellChange cellChange = new CellChange(rowIndex, cellIndex, cell, newCell);
-                        cellChanges.add(cellChange);
-                    }
                 }
 
-                return false;
+                if (newCell != null) {
+                    CellChange cellChange = new CellChange(rowIndex, cellIndex, cell, newCell);
+                    cellChanges.add(cellChange);
+                }
             }
-        }.init(column.getCellIndex(), bindings, cellChanges, eval);
+
+            return false;
+        }
     }
 }
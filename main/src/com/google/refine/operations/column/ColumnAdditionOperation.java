@@ -44,6 +44,7 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.refine.browsing.Engine;
 import com.google.refine.browsing.EngineConfig;
 import com.google.refine.browsing.FilteredRows;
+import com.google.refine.browsing.MergeableRowVisitor;
 import com.google.refine.browsing.RowVisitor;
 import com.google.refine.expr.Evaluable;
 import com.google.refine.expr.ExpressionUtils;
@@ -60,6 +61,8 @@ import com.google.refine.model.changes.ColumnAdditionChange;
 import com.google.refine.operations.EngineDependentOperation;
 import com.google.refine.operations.OnError;
 import com.google.refine.operations.OperationDescription;
+import com.google.refine.process.BackgroundHistoryEntryProcess;
+import com.google.refine.process.Process;
 
 public class ColumnAdditionOperation extends EngineDependentOperation {
 
@@ -122,8 +125,28 @@ public class ColumnAdditionOperation extends EngineDependentOperation {
         return OperationDescription.column_addition_desc(_newColumnName, column.getName(), cellsAtRows.size(), _expression);
     }
 
+    @Override
+    public Process createProcess(Project project, Properties options) throws Exception {
+        if (BackgroundHistoryEntryProcess.isWorthRunningInBackground(project)) {
+            return new BackgroundHistoryEntryProcess(project, getBriefDescription(null),
+                    (historyEntryID, process) -> createHistoryEntry(project, historyEntryID, process));
+        }
+        return super.createProcess(project, options);
+    }
+
     @Override
     protected HistoryEntry createHistoryEntry(Project project, long historyEntryID) throws Exception {
+        return createHistoryEntry(project, historyEntryID, null);
+    }
+
+    /**
+     * Creates the history entry, reporting the progress of the visit of the rows to the given process.
+     *
+     * @param process
+     *            the process running the operation in the background, or null
+     */
+    protected HistoryEntry createHistoryEntry(Project project, long historyEntryID, BackgroundHistoryEntryProcess process)
+            throws Exception {
         Engine engine = createEngine(project);
 
         Column column = project.columnModel.getColumnByName(_baseColumnName);
@@ -137,7 +160,8 @@ public class ColumnAdditionOperation extends EngineDependentOperation {
         List<CellAtRow> cellsAtRows = new ArrayList<CellAtRow>(project.rows.size());
 
         FilteredRows filteredRows = engine.getAllFilteredRows();
-        filteredRows.accept(project, createRowVisitor(project, cellsAtRows));
+        RowVisitor visitor = createRowVisitor(project, cellsAtRows);
+        filteredRows.accept(project, process != null ? process.track(visitor) : visitor);
 
         String description = createDescription(column, cellsAtRows);
 
@@ -151,68 +175,89 @@ public class ColumnAdditionOperation extends EngineDependentOperation {
         Column column = project.columnModel.getColumnByName(_baseColumnName);
 
         Evaluable eval = MetaParser.parse(_expression);
-        Properties bindings = ExpressionUtils.createBindings(project);
 
-        return new RowVisitor() {
+        return new ColumnAdditionRowVisitor(project, column.getCellIndex(), eval, cellsAtRows);
+    }
 
-            int cellIndex;
-            Properties bindings;
-            List<CellAtRow> cellsAtRows;
-            Evaluable eval;
+    /**
+     * Evaluates the expression on the cells of the base column. When the expression is thread-safe, partitions of the
+     * rows are evaluated in parallel, each with its own bindings, and their new cells are concatenated in row order.
+     */
+    protected class ColumnAdditionRowVisitor implements MergeableRowVisitor {
+
+        final Project project;
+        final int cellIndex;
+        final Evaluable eval;
+        final List<CellAtRow> cellsAtRows;
+        final Properties bindings;
+
+        protected ColumnAdditionRowVisitor(Project project, int cellIndex, Evaluable eval, List<CellAtRow> cellsAtRows) {
+            this.project = project;
+            this.cellIndex = cellIndex;
+            this.eval = eval;
+            this.cellsAtRows = cellsAtRows;
+            this.bindings = ExpressionUtils.createBindings(project);
+        }
 
-            public RowVisitor init(int cellIndex, Properties bindings, List<CellAtRow> cellsAtRows, Evaluable eval) {
-                this.cellIndex = cellIndex;
-                this.bindings = bindings;
-                this.cellsAtRows = cellsAtRows;
-                this.eval = eval;
-                return this;
-            }
+        @Override
+        public void start(Project project) {
+            // nothing to do
+        }
 
-            @Override
-            public void start(Project project) {
-                // nothing to do
-            }
+        @Override
+        public void end(Project project) {
+            // nothing to do
+        }
 
-            @Override
-            public void end(Project project) {
-                // nothing to do
-            }
+        @Override
+        public boolean isParallelizable() {
+            return eval.isThreadSafe();
+        }
 
-            @Override
-            public boolean visit(Project project, int rowIndex, Row row) {
-                Cell cell = row.getCell(cellIndex);
-                Cell newCell = null;
-
-                ExpressionUtils.bind(bindings, row, rowIndex, _baseColumnName, cell);
-
-                Object o = eval.evaluate(bindings);
-                if (o != null) {
-                    if (o instanceof Cell) {
-                        newCell = (Cell) o;
-                    } else if (o instanceof WrappedCell) {
-                        newCell = ((WrappedCell) o).cell;
-                    } else {
-                        Serializable v = ExpressionUtils.wrapStorable(o);
-                        if (ExpressionUtils.isError(v)) {
-                            if (_onError == OnError.SetToBlank) {
-                                return false;
-                            } else if (_onError == OnError.KeepOriginal) {
-                                v = cell != null ? cell.value : null;
-                            }
-                        }
+        @Override
+        public MergeableRowVisitor createPartialVisitor() {
+            return new ColumnAdditionRowVisitor(project, cellIndex, eval, new ArrayList<>());
+        }
+
+        @Override
+        public void combine(MergeableRowVisitor partial) {
+            cellsAtRows.addAll(((ColumnAdditionRowVisitor) partial).cellsAtRows);
+        }
 
-                        if (v != null) {
-                            newCell = new Cell(v, null);
+        @Override
+        public boolean visit(Project project, int rowIndex, Row row) {
+            Cell cell = row.getCell(cellIndex);
+            Cell newCell = null;
+
+            ExpressionUtils.bind(bindings, row, rowIndex, _baseColumnName, cell);
+
+            Object o = eval.evaluate(bindings);
+            if (o != null) {
+                if (o instanceof Cell) {
+                    newCell = (Cell) o;
+                } else if (o instanceof WrappedCell) {
+                    newCell = ((WrappedCell) o).cell;
+                } else {
+                    Serializable v = ExpressionUtils.wrapStorable(o);
+                    if (ExpressionUtils.isError(v)) {
+                        if (_onError == OnError.SetToBlank) {
+                            return false;
+                        } else if (_onError == OnError.KeepOriginal) {
+                            v = cell != null ? cell.value : null;
                         }
                     }
-                }
 
-                if (newCell != null) {
-                    cellsAtRows.add(new CellAtRow(rowIndex, newCell));
+                    if (v != null) {
+                        newCell = new Cell(v, null);
+                    }
                 }
+            }
 
-                return false;
+            if (newCell != null) {
+                cellsAtRows.add(new CellAtRow(rowIndex, newCell));
             }
-        }.init(column.getCellIndex(), bindings, cellsAtRows, eval);
+
+            return false;
+        }
     }
 }
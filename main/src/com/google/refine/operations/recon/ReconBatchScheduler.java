@@ -0,0 +1,268 @@
+/*******************************************************************************
+ * Copyright (C) 2024, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.operations.recon;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntConsumer;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.refine.model.Recon;
+import com.google.refine.model.Recon.Judgment;
+import com.google.refine.model.recon.ReconConfig;
+import com.google.refine.model.recon.ReconJob;
+
+/**
+ * Sends the jobs of a reconciliation operation to the service in batches, with a short pause after each batch. Services
+ * which support it can be sent several batches at once, if the {@code refine.recon.maxConcurrentBatches} system
+ * property allows more than one. The number of batches in flight then grows by one while batches come back quickly, and
+ * shrinks when they get slow. The batch size, which starts at the one of the recon config, is halved when a single
+ * batch in flight is still slow. A batch rejected because the service is overloaded (HTTP 429 or 503, once the HTTP
+ * client gave up retrying it) is sent again after a growing pause, with half as many batches in flight.
+ * <p>
+ * The recons are returned in the order of the jobs, whatever the order in which the batches complete.
+ */
+public class ReconBatchScheduler {
+
+    final static Logger logger = LoggerFactory.getLogger("recon-batch-scheduler");
+
+    /**
+     * The number of batches kept in flight at most. It is 1 by default, so that public services are not sent several
+     * requests at once unless this is enabled.
+     */
+    static public int s_maxConcurrency = Integer.getInteger("refine.recon.maxConcurrentBatches", 1);
+    // the pause after each batch before the next one is sent, which spares the service a steady stream of requests
+    static public long s_batchPause = Long.getLong("refine.recon.batchPauseMillis", 50);
+    // batches slower than this make the scheduler back off, batches twice as fast let it speed up
+    static public long s_targetLatency = Long.getLong("refine.recon.targetBatchMillis", 5000);
+    static public int s_maxRetries = Integer.getInteger("refine.recon.maxBatchRetries", 5);
+    static public long s_initialBackoff = Long.getLong("refine.recon.initialBackoffMillis", 1000);
+
+    static final private long MAX_BACKOFF = 60000;
+    static final private Pattern THROTTLED = Pattern.compile("^HTTP error (429|503)\\b");
+
+    static private final ExecutorService s_executor = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "recon-batch");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static private class Batch {
+
+        final int start;
+        final int end;
+        int attempts;
+        long latency;
+        List<Recon> recons;
+
+        Batch(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    private final ReconConfig _config;
+    private final long _historyEntryID;
+    private final int _maxBatchSize;
+    private final int _maxConcurrency;
+
+    private int _batchSize;
+    private int _concurrency = 1;
+    private long _backoff;
+    private int _throttledBatches;
+    private volatile int _jobsDone;
+
+    public ReconBatchScheduler(ReconConfig config, long historyEntryID, int batchSize) {
+        _config = config;
+        _historyEntryID = historyEntryID;
+        _maxBatchSize = Math.max(1, batchSize);
+        _maxConcurrency = config.supportsConcurrentBatches() ? Math.max(1, s_maxConcurrency) : 1;
+        _batchSize = _maxBatchSize;
+    }
+
+    /**
+     * Reconciles the jobs, returning once all batches are done or the operation is canceled.
+     *
+     * @param canceled
+     *            tells whether the operation was canceled
+     * @param progress
+     *            receives the percentage of the jobs done
+     * @return the recon of each job, in the order of the jobs, with null for the jobs the service returned no recon
+     *         for, or null if the operation was canceled
+     */
+    public List<Recon> reconcile(List<ReconJob> jobs, BooleanSupplier canceled, IntConsumer progress) {
+        Recon[] recons = new Recon[jobs.size()];
+        CompletionService<Batch> completion = new ExecutorCompletionService<>(s_executor);
+        Set<Future<Batch>> inFlight = new HashSet<>();
+        Deque<Batch> retries = new ArrayDeque<>();
+        long notBefore = 0;
+        int next = 0;
+        int done = 0;
+
+        while (next < jobs.size() || !retries.isEmpty() || !inFlight.isEmpty()) {
+            if (canceled.getAsBoolean()) {
+                for (Future<Batch> future : inFlight) {
+                    future.cancel(true);
+                }
+                return null;
+            }
+            long now = System.currentTimeMillis();
+            while (inFlight.size() < _concurrency && now >= notBefore && (next < jobs.size() || !retries.isEmpty())) {
+                Batch batch = retries.poll();
+                if (batch == null) {
+                    batch = new Batch(next, Math.min(jobs.size(), next + _batchSize));
+                    next = batch.end;
+                }
+                inFlight.add(completion.submit(send(jobs, batch)));
+            }
+
+            Batch batch;
+            try {
+                long wait = notBefore > now ? Math.max(1, Math.min(100, notBefore - now)) : 100;
+                Future<Batch> future = completion.poll(wait, TimeUnit.MILLISECONDS);
+                if (future == null) {
+                    continue;
+                }
+                inFlight.remove(future);
+                batch = future.get();
+            } catch (InterruptedException e) {
+                // the process is interrupted when canceled, which is checked above
+                continue;
+            } catch (ExecutionException e) {
+                // send() catches the failures of the recon config
+                throw new RuntimeException(e.getCause());
+            }
+
+            if (batch.recons != null && isThrottled(batch.recons) && batch.attempts < s_maxRetries) {
+                batch.attempts++;
+                retries.add(batch);
+                onThrottled();
+                notBefore = System.currentTimeMillis() + _backoff;
+                continue;
+            }
+            onCompleted(batch.latency);
+            notBefore = Math.max(notBefore, System.currentTimeMillis() + s_batchPause);
+            if (batch.recons != null) {
+                for (int i = 0; i < batch.end - batch.start && i < batch.recons.size(); i++) {
+                    recons[batch.start + i] = batch.recons.get(i);
+                }
+            }
+            done += batch.end - batch.start;
+            _jobsDone = done;
+            progress.accept(done * 100 / jobs.size());
+        }
+        return Arrays.asList(recons);
+    }
+
+    private Callable<Batch> send(List<ReconJob> jobs, Batch batch) {
+        List<ReconJob> batchJobs = new ArrayList<>(jobs.subList(batch.start, batch.end));
+        return () -> {
+            long start = System.nanoTime();
+            try {
+                batch.recons = _config.batchRecon(batchJobs, _historyEntryID);
+            } catch (RuntimeException e) {
+                // leave the cells of this batch unreconciled, as when the service returns no recon
+                logger.warn("Reconciliation batch failed", e);
+                batch.recons = null;
+            }
+            batch.latency = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            return batch;
+        };
+    }
+
+    static boolean isThrottled(List<Recon> recons) {
+        for (Recon recon : recons) {
+            if (recon != null && recon.judgment == Judgment.Error && recon.error != null
+                    && THROTTLED.matcher(recon.error).find()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void onThrottled() {
+        _throttledBatches++;
+        _concurrency = Math.max(1, _concurrency / 2);
+        _backoff = _backoff == 0 ? s_initialBackoff : Math.min(MAX_BACKOFF, _backoff * 2);
+        logger.info("Reconciliation service overloaded, retrying in " + _backoff + "ms with " + _concurrency
+                + " batches in flight");
+    }
+
+    private void onCompleted(long latency) {
+        _backoff = 0;
+        if (latency > s_targetLatency) {
+            if (_concurrency > 1) {
+                _concurrency--;
+            } else {
+                _batchSize = Math.max(1, _batchSize / 2);
+            }
+        } else if (latency < s_targetLatency / 2) {
+            if (_batchSize < _maxBatchSize) {
+                _batchSize = Math.min(_maxBatchSize, _batchSize * 2);
+            } else if (_concurrency < _maxConcurrency) {
+                _concurrency++;
+            }
+        }
+    }
+
+    public int getConcurrency() {
+        return _concurrency;
+    }
+
+    public int getBatchSize() {
+        return _batchSize;
+    }
+
+    /**
+     * @return the number of jobs reconciled so far
+     */
+    public int getJobsDone() {
+        return _jobsDone;
+    }
+
+    public int getThrottledBatches() {
+        return _throttledBatches;
+    }
+}
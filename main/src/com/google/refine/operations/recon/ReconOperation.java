@@ -35,12 +35,14 @@ package com.google.refine.operations.recon;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.JsonNode;
 import org.slf4j.Logger;
@@ -125,6 +127,7 @@ public class ReconOperation extends EngineDependentOperation {
         final public ReconJob job;
         final public List<ReconEntry> entries = new ArrayList<ReconEntry>();
         public int trials = 0;
+        public Recon recon;
 
         public JobGroup(ReconJob job) {
             this.job = job;
@@ -163,6 +166,8 @@ public class ReconOperation extends EngineDependentOperation {
                 "         \"facetType\" : \"range\"\n" +
                 "}";
         protected JsonNode _addJudgmentFacet, _addScoreFacet;
+        protected volatile ReconBatchScheduler _scheduler;
+        protected long _cachedJobsAtStart;
 
         public ReconProcess(
                 Project project,
@@ -190,6 +195,22 @@ public class ReconOperation extends EngineDependentOperation {
             return onDone;
         }
 
+        /**
+         * @return the percentage of the values reconciled so far which were answered from the reconciliation cache, or
+         *         null if none was reconciled yet
+         */
+        @JsonProperty("cacheHitRate")
+        @JsonInclude(Include.NON_NULL)
+        public Integer getCacheHitRate() {
+            ReconBatchScheduler scheduler = _scheduler;
+            if (scheduler == null || scheduler.getJobsDone() == 0) {
+                return null;
+            }
+            long cachedJobs = _reconConfig.getCachedJobCount() - _cachedJobsAtStart;
+            // jobs of the batches in flight may already be counted as cached
+            return (int) Math.min(100, cachedJobs * 100 / scheduler.getJobsDone());
+        }
+
         @Override
         protected Runnable getRunnable() {
             return this;
@@ -242,7 +263,9 @@ public class ReconOperation extends EngineDependentOperation {
                 e2.printStackTrace();
             }
 
-            Map<String, JobGroup> jobKeyToGroup = new HashMap<String, JobGroup>();
+            // groups are kept in the order of their first row, so that batches and changes are deterministic
+            Map<String, JobGroup> jobKeyToGroup = new LinkedHashMap<String, JobGroup>();
+            List<JobGroup> entryGroups = new ArrayList<JobGroup>(_entries.size());
 
             for (ReconEntry entry : _entries) {
                 ReconJob job = _reconConfig.createJob(
@@ -259,69 +282,53 @@ public class ReconOperation extends EngineDependentOperation {
                     jobKeyToGroup.put(key, group);
                 }
                 group.entries.add(entry);
+                entryGroups.add(group);
             }
 
-            int batchSize = _reconConfig.getBatchSize(_project.rows.size());
-            int done = 0;
-
-            List<CellChange> cellChanges = new ArrayList<CellChange>(_entries.size());
             List<JobGroup> groups = new ArrayList<JobGroup>(jobKeyToGroup.values());
+            List<ReconJob> jobs = new ArrayList<ReconJob>(groups.size());
+            for (JobGroup group : groups) {
+                jobs.add(group.job);
+            }
 
-            List<ReconJob> jobs = new ArrayList<ReconJob>(batchSize);
-            Map<ReconJob, JobGroup> jobToGroup = new HashMap<ReconJob, ReconOperation.JobGroup>();
-
-            for (int i = 0; i < groups.size(); /* don't increment here */) {
-                while (jobs.size() < batchSize && i < groups.size()) {
-                    JobGroup group = groups.get(i++);
-
-                    jobs.add(group.job);
-                    jobToGroup.put(group.job, group);
+            _cachedJobsAtStart = _reconConfig.getCachedJobCount();
+            ReconBatchScheduler scheduler = new ReconBatchScheduler(
+                    _reconConfig, _historyEntryID, _reconConfig.getBatchSize(_project.rows.size()));
+            _scheduler = scheduler;
+            List<Recon> recons = scheduler.reconcile(jobs, () -> _canceled, progress -> _progress = progress);
+            if (recons == null) {
+                return;
+            }
+            if (!jobs.isEmpty()) {
+                logger.info("Reconciled {} distinct values, {}% of them from the cache", jobs.size(), getCacheHitRate());
+            }
+            for (int i = 0; i < groups.size(); i++) {
+                groups.get(i).recon = recons.get(i);
+                if (recons.get(i) != null) {
+                    recons.get(i).judgmentBatchSize = groups.get(i).entries.size();
                 }
+            }
 
-                List<Recon> recons = _reconConfig.batchRecon(jobs, _historyEntryID);
-                for (int j = jobs.size() - 1; j >= 0; j--) {
-                    ReconJob job = jobs.get(j);
-                    Recon recon = j < recons.size() ? recons.get(j) : null;
-                    JobGroup group = jobToGroup.get(job);
-                    List<ReconEntry> entries = group.entries;
-
-                    jobToGroup.remove(job);
-                    jobs.remove(j);
-                    done++;
-
-                    if (recon != null) {
-                        recon.judgmentBatchSize = entries.size();
-                    }
-
-                    for (ReconEntry entry : entries) {
-                        if (recon == null) {
-                            // TODO add EvalError instead? That is not so convenient
-                            // for users because they would lose the cell contents.
-                            // Better leave the cell unreconciled so they can be reconciled again later.
-                            Cell oldCell = entry.cell;
-                            logger.warn("We have a null recon here" + " " + oldCell + " " + entry.rowIndex);
-                            continue;
-                        }
-                        Cell oldCell = entry.cell;
-                        Cell newCell = new Cell(oldCell.value, recon);
-
-                        CellChange cellChange = new CellChange(
-                                entry.rowIndex,
-                                _cellIndex,
-                                oldCell,
-                                newCell);
-                        cellChanges.add(cellChange);
-                    }
+            List<CellChange> cellChanges = new ArrayList<CellChange>(_entries.size());
+            for (int i = 0; i < _entries.size(); i++) {
+                ReconEntry entry = _entries.get(i);
+                Recon recon = entryGroups.get(i).recon;
+                if (recon == null) {
+                    // TODO add EvalError instead? That is not so convenient
+                    // for users because they would lose the cell contents.
+                    // Better leave the cell unreconciled so they can be reconciled again later.
+                    logger.warn("We have a null recon here" + " " + entry.cell + " " + entry.rowIndex);
+                    continue;
                 }
+                Cell oldCell = entry.cell;
+                Cell newCell = new Cell(oldCell.value, recon);
 
-                _progress = done * 100 / groups.size();
-                try {
-                    Thread.sleep(50);
-                } catch (InterruptedException e) {
-                    if (_canceled) {
-                        break;
-                    }
-                }
+                CellChange cellChange = new CellChange(
+                        entry.rowIndex,
+                        _cellIndex,
+                        oldCell,
+                        newCell);
+                cellChanges.add(cellChange);
             }
 
             // TODO: Option to keep partial results after cancellation?
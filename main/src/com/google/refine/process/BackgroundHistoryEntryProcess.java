@@ -0,0 +1,171 @@
+/*******************************************************************************
+ * Copyright (C) 2024, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.process;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.refine.browsing.MergeableRowVisitor;
+import com.google.refine.browsing.RowVisitor;
+import com.google.refine.history.HistoryEntry;
+import com.google.refine.model.Project;
+import com.google.refine.model.Row;
+
+/**
+ * Creates the history entry of an operation on a background thread, rather than in the request which submitted the
+ * operation, so that operations going through the rows of large projects do not hold that request. The operation
+ * reports its progress by visiting the rows with a visitor wrapped by {@link #track}, which also stops the visit once
+ * the process is canceled.
+ */
+public class BackgroundHistoryEntryProcess extends LongRunningProcess implements Runnable {
+
+    /**
+     * The number of rows from which the operations supporting it are run in the background. Set the
+     * {@code refine.process.backgroundRowCount} system property to change it.
+     */
+    static public int s_backgroundRowCount = Integer.getInteger("refine.process.backgroundRowCount", 100000);
+
+    static final private int PROGRESS_BATCH_SIZE = 1024;
+
+    /**
+     * Creates the history entry of the operation.
+     */
+    public interface HistoryEntryTask {
+
+        /**
+         * @param process
+         *            the process to report the visited rows to
+         */
+        public HistoryEntry createHistoryEntry(long historyEntryID, BackgroundHistoryEntryProcess process) throws Exception;
+    }
+
+    final protected Project _project;
+    final protected HistoryEntryTask _task;
+    final protected long _historyEntryID;
+    private final AtomicLong _visitedRows = new AtomicLong();
+
+    public BackgroundHistoryEntryProcess(Project project, String description, HistoryEntryTask task) {
+        super(description);
+        _project = project;
+        _task = task;
+        _historyEntryID = HistoryEntry.allocateID();
+    }
+
+    /**
+     * @return whether an operation going through all rows of the project should be run in the background
+     */
+    static public boolean isWorthRunningInBackground(Project project) {
+        return project.rows.size() >= s_backgroundRowCount;
+    }
+
+    /**
+     * Wraps a visitor of the rows of the project so that the progress of this process follows its visit. The wrapper
+     * can be visited in parallel if the given visitor can.
+     */
+    public RowVisitor track(RowVisitor visitor) {
+        return new TrackingRowVisitor(visitor);
+    }
+
+    @Override
+    protected Runnable getRunnable() {
+        return this;
+    }
+
+    @Override
+    public void run() {
+        try {
+            HistoryEntry historyEntry = _task.createHistoryEntry(_historyEntryID, this);
+            if (!_canceled) {
+                _project.history.addEntry(historyEntry);
+                _project.processManager.onDoneProcess(this);
+            }
+        } catch (Exception e) {
+            _project.processManager.onFailedProcess(this, e);
+        }
+    }
+
+    private void addVisitedRows(int count) {
+        long visited = _visitedRows.addAndGet(count);
+        _progress = (int) Math.min(99, visited * 100 / Math.max(1, _project.rows.size()));
+    }
+
+    /**
+     * Counts the rows spanned by the visit, including those skipped by the filters, by the distance between the indices
+     * of the visited rows.
+     */
+    private class TrackingRowVisitor implements MergeableRowVisitor {
+
+        final private RowVisitor _visitor;
+        private int _lastRowIndex = -1;
+        private int _pendingRows;
+
+        TrackingRowVisitor(RowVisitor visitor) {
+            _visitor = visitor;
+        }
+
+        @Override
+        public void start(Project project) {
+            _visitor.start(project);
+        }
+
+        @Override
+        public boolean visit(Project project, int rowIndex, Row row) {
+            if (_canceled) {
+                return true;
+            }
+            _pendingRows += _lastRowIndex < 0 ? 1 : rowIndex - _lastRowIndex;
+            _lastRowIndex = rowIndex;
+            if (_pendingRows >= PROGRESS_BATCH_SIZE) {
+                addVisitedRows(_pendingRows);
+                _pendingRows = 0;
+            }
+            return _visitor.visit(project, rowIndex, row);
+        }
+
+        @Override
+        public void end(Project project) {
+            addVisitedRows(_pendingRows);
+            _pendingRows = 0;
+            _visitor.end(project);
+        }
+
+        @Override
+        public boolean isParallelizable() {
+            return _visitor instanceof MergeableRowVisitor && ((MergeableRowVisitor) _visitor).isParallelizable();
+        }
+
+        @Override
+        public MergeableRowVisitor createPartialVisitor() {
+            return new TrackingRowVisitor(((MergeableRowVisitor) _visitor).createPartialVisitor());
+        }
+
+        @Override
+        public void combine(MergeableRowVisitor partial) {
+            ((MergeableRowVisitor) _visitor).combine((MergeableRowVisitor) ((TrackingRowVisitor) partial)._visitor);
+        }
+    }
+}
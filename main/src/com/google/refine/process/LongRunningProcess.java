@@ -49,7 +49,7 @@ abstract public class LongRunningProcess extends Process {
     @JsonProperty("progress")
     protected int _progress; // out of 100
     @JsonIgnore
-    protected boolean _canceled;
+    protected volatile boolean _canceled;
 
     protected LongRunningProcess(String description) {
         _description = description;
@@ -73,6 +73,9 @@ public class HttpClient {
 
     final static Logger logger = LoggerFactory.getLogger("http-client");
 
+    // enough for the batches a reconciliation operation keeps in flight
+    static public int s_maxConnectionsPerRoute = Integer.getInteger("refine.http.maxConnectionsPerRoute", 16);
+
     final private RequestConfig defaultRequestConfig;
     private HttpClientBuilder httpClientBuilder;
     private CloseableHttpClient httpClient;
@@ -101,6 +104,8 @@ public class HttpClient {
                 .setSoTimeout(60, TimeUnit.SECONDS)
                 .build();
         connManager.setDefaultSocketConfig(socketConfig);
+        connManager.setDefaultMaxPerRoute(s_maxConnectionsPerRoute);
+        connManager.setMaxTotal(Math.max(connManager.getMaxTotal(), s_maxConnectionsPerRoute));
 
         defaultRequestConfig = RequestConfig.custom()
                 .setConnectTimeout(60, TimeUnit.SECONDS)
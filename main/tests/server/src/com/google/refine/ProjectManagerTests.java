@@ -43,10 +43,21 @@ import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 import static org.testng.AssertJUnit.assertEquals;
 
+import java.io.Writer;
 import java.lang.reflect.Field;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.mockito.Mockito;
 import org.slf4j.LoggerFactory;
@@ -56,6 +67,8 @@ import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.BeforeTest;
 import org.testng.annotations.Test;
 
+import com.google.refine.history.Change;
+import com.google.refine.history.HistoryEntry;
 import com.google.refine.model.Project;
 import com.google.refine.model.ProjectStub;
 import com.google.refine.model.Row;
@@ -80,6 +93,8 @@ public class ProjectManagerTests extends RefineTest {
 
     @BeforeMethod
     public void SetUp() throws NoSuchFieldException, IllegalAccessException {
+        // heap usage of the test run must not trigger evictions
+        ProjectResidency.s_heapBudget = Long.MAX_VALUE;
         pm = new ProjectManagerStub();
         SUT = spy(pm);
 
@@ -105,6 +120,8 @@ public class ProjectManagerTests extends RefineTest {
 
     @AfterMethod
     public void TearDown() {
+        ProjectResidency.s_heapBudget = Runtime.getRuntime().maxMemory() / 2;
+        ProjectResidency.s_minIdleTime = Duration.ofMinutes(5);
         metadata = null;
         project = null;
         SUT = null;
@@ -180,7 +197,8 @@ public class ProjectManagerTests extends RefineTest {
 
     @Test
     public void canFlushFromCache() {
-
+        // the project is accessed below, which would otherwise keep it loaded
+        ProjectResidency.s_minIdleTime = Duration.ZERO;
         whenGetSaveTimes(project, metadata, -10);// already saved (10 seconds before)
         registerProject(project, metadata);
         Assert.assertSame(SUT.getProject(0), project);
@@ -218,6 +236,282 @@ public class ProjectManagerTests extends RefineTest {
 
     // TODO test canSaveAllModifiedWithRaceCondition
 
+    @Test
+    public void concurrentCallersShareOneLoad() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+        ProjectManager manager = new ProjectManagerStub() {
+
+            @Override
+            protected Project loadProject(long id) {
+                loads.incrementAndGet();
+                await(release);
+                return new ProjectStub(id);
+            }
+        };
+
+        ExecutorService callers = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Project>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                results.add(callers.submit(() -> manager.getProject(1234L)));
+            }
+            Thread.sleep(100);
+            release.countDown();
+
+            Project loaded = results.get(0).get(10, TimeUnit.SECONDS);
+            for (Future<Project> result : results) {
+                Assert.assertSame(result.get(10, TimeUnit.SECONDS), loaded);
+            }
+            assertEquals(loads.get(), 1);
+            Assert.assertSame(manager.getProject(1234L), loaded);
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    public void projectsLoadIndependently() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ProjectManager manager = new ProjectManagerStub() {
+
+            @Override
+            protected Project loadProject(long id) {
+                if (id == 1L) {
+                    await(release);
+                }
+                return new ProjectStub(id);
+            }
+        };
+
+        ExecutorService callers = Executors.newSingleThreadExecutor();
+        try {
+            Future<Project> slow = callers.submit(() -> manager.getProject(1L));
+            Thread.sleep(100);
+
+            // does not wait for the first project
+            assertEquals(manager.getProject(2L).id, 2L);
+            Assert.assertFalse(slow.isDone());
+
+            release.countDown();
+            assertEquals(slow.get(10, TimeUnit.SECONDS).id, 1L);
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    public void removedProjectIsNotRegisteredByPendingLoad() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ProjectManagerStub manager = new ProjectManagerStub() {
+
+            @Override
+            protected Project loadProject(long id) {
+                await(release);
+                return new ProjectStub(id);
+            }
+        };
+
+        ExecutorService callers = Executors.newSingleThreadExecutor();
+        try {
+            Future<Project> pending = callers.submit(() -> manager.getProject(1L));
+            Thread.sleep(100);
+            manager.removeProject(1L);
+            release.countDown();
+
+            Assert.assertNull(pending.get(10, TimeUnit.SECONDS));
+            Assert.assertFalse(manager._projects.containsKey(1L));
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    public void savingProjectDoesNotBlockOthers() throws Exception {
+        CountDownLatch saving = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Long> saved = Collections.synchronizedList(new ArrayList<>());
+        ProjectManagerStub manager = new ProjectManagerStub() {
+
+            @Override
+            protected Project loadProject(long id) {
+                return new ProjectStub(id);
+            }
+
+            @Override
+            public void saveProject(Project project) {
+                if (project.id == 1L) {
+                    saving.countDown();
+                    await(release);
+                }
+                saved.add(project.id);
+            }
+        };
+        for (long id = 1; id <= 2; id++) {
+            ProjectMetadata meta = mock(ProjectMetadata.class);
+            when(meta.getModified()).thenReturn(Instant.now().plusSeconds(3600));
+            manager.registerProject(new ProjectStub(id), meta);
+        }
+
+        ExecutorService autosave = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> save = autosave.submit(() -> manager.saveProjects(true));
+            Assert.assertTrue(saving.await(10, TimeUnit.SECONDS));
+
+            // the other projects can be read, saved, loaded and removed meanwhile
+            assertEquals(manager.getProject(2L).id, 2L);
+            manager.ensureProjectSaved(2L);
+            assertEquals(manager.getProject(3L).id, 3L);
+            manager.removeProject(3L);
+            // including a project guarded by the same lock as the one being saved
+            long sameLock = 4L;
+            while (manager.lockFor(sameLock) != manager.lockFor(1L)) {
+                sameLock++;
+            }
+            assertEquals(manager.getProject(sameLock).id, sameLock);
+            manager.setBusy(true);
+            manager.setBusy(false);
+            manager.addLatestExpression("value");
+            Assert.assertFalse(save.isDone());
+            Assert.assertTrue(saved.contains(2L));
+
+            release.countDown();
+            save.get(10, TimeUnit.SECONDS);
+            Assert.assertTrue(saved.contains(1L));
+            Assert.assertFalse(manager._projects.containsKey(3L));
+        } finally {
+            autosave.shutdownNow();
+        }
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedSavedProjects() {
+        ProjectResidency.s_minIdleTime = Duration.ZERO;
+        ProjectManagerStub manager = new ProjectManagerStub();
+        Project[] projects = new Project[4];
+        for (int i = 1; i <= 3; i++) {
+            projects[i] = new ProjectStub(i);
+            projects[i].rows.add(new Row(3));
+            ProjectMetadata meta = mock(ProjectMetadata.class);
+            when(meta.getTags()).thenReturn(TAGS);
+            // the second project has unsaved changes
+            when(meta.getModified()).thenReturn(i == 2 ? Instant.now().plusSeconds(3600) : BASE_DATE);
+            manager.registerProject(projects[i], meta);
+        }
+        manager.getProject(1L);
+
+        ProjectResidency.s_heapBudget = 1;
+        manager.enforceHeapBudget(0);
+
+        // the first project was used last, so the third one is evicted first
+        Assert.assertFalse(manager._projects.containsKey(3L));
+        Assert.assertFalse(manager._projects.containsKey(1L));
+        Assert.assertTrue(manager._projects.containsKey(2L));
+        List<ProjectResidency.Eviction> evictions = manager.getResidency().getEvictions();
+        assertEquals(evictions.size(), 2);
+        assertEquals(evictions.get(0).id, 3L);
+        assertEquals(evictions.get(1).id, 1L);
+        Assert.assertTrue(evictions.get(0).estimatedBytes > 0);
+
+        List<ProjectResidency.ResidentProject> resident = manager.getResidency().getProjects();
+        assertEquals(resident.size(), 1);
+        assertEquals(resident.get(0).id, 2L);
+    }
+
+    private static Project savedProject(ProjectManagerStub manager, long id) {
+        Project project = new ProjectStub(id);
+        project.rows.add(new Row(3));
+        ProjectMetadata meta = mock(ProjectMetadata.class);
+        when(meta.getTags()).thenReturn(TAGS);
+        when(meta.getModified()).thenReturn(BASE_DATE);
+        manager.registerProject(project, meta);
+        return project;
+    }
+
+    @Test
+    public void keepsRecentlyAccessedProjects() {
+        ProjectManagerStub manager = new ProjectManagerStub();
+        Project project = savedProject(manager, 1L);
+        // a request may still be about to modify the project it got
+        manager.getProject(1L);
+
+        ProjectResidency.s_heapBudget = 1;
+        manager.enforceHeapBudget(0);
+
+        Assert.assertSame(manager._projects.get(1L), project);
+    }
+
+    @Test
+    public void keepsProjectsWhileAChangeIsApplied() throws Exception {
+        ProjectResidency.s_minIdleTime = Duration.ZERO;
+        ProjectManagerStub manager = new ProjectManagerStub();
+        ProjectManager.singleton = manager;
+        Project project = savedProject(manager, 1L);
+        CountDownLatch applying = new CountDownLatch(1);
+        CountDownLatch applied = new CountDownLatch(1);
+        Change change = new Change() {
+
+            @Override
+            public void apply(Project project) {
+                applying.countDown();
+                await(applied);
+                project.rows.add(new Row(3));
+            }
+
+            @Override
+            public void revert(Project project) {
+            }
+
+            @Override
+            public void save(Writer writer, Properties options) {
+            }
+        };
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> adding = executor.submit(() -> project.history.addEntry(
+                    new HistoryEntry(HistoryEntry.allocateID(), project, "slow change", null, change)));
+            await(applying);
+
+            ProjectResidency.s_heapBudget = 1;
+            manager.enforceHeapBudget(0);
+            Assert.assertSame(manager._projects.get(1L), project);
+
+            applied.countDown();
+            adding.get(10, TimeUnit.SECONDS);
+            assertEquals(project.rows.size(), 2);
+            assertEquals(project.history.getPastEntryCount(), 1);
+        } finally {
+            applied.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void keepsProjectJustLoaded() {
+        ProjectManagerStub manager = new ProjectManagerStub() {
+
+            @Override
+            protected Project loadProject(long id) {
+                return new ProjectStub(id);
+            }
+        };
+        ProjectMetadata meta = mock(ProjectMetadata.class);
+        when(meta.getModified()).thenReturn(BASE_DATE);
+        manager._projectsMetadata.put(5L, meta);
+        ProjectResidency.s_heapBudget = 1;
+
+        Assert.assertNotNull(manager.getProject(5L));
+        Assert.assertTrue(manager._projects.containsKey(5L));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     @Test
     public void canSaveSomeModified() {
         registerProject();
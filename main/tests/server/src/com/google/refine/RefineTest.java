@@ -70,6 +70,7 @@ import com.google.refine.grel.Function;
 import com.google.refine.importing.ImportingJob;
 import com.google.refine.importing.ImportingManager;
 import com.google.refine.io.FileProjectManager;
+import com.google.refine.io.ReconResultCache;
 import com.google.refine.messages.OpenRefineMessage;
 import com.google.refine.model.AbstractOperation;
 import com.google.refine.model.Cell;
@@ -124,6 +125,7 @@ public class RefineTest {
     protected void initProjectManager() {
         servlet = new RefineServletStub();
         ProjectManager.singleton = new ProjectManagerStub();
+        ReconResultCache.singleton = null;
         ImportingManager.initialize(servlet);
     }
 
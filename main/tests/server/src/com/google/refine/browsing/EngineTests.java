@@ -29,12 +29,21 @@ package com.google.refine.browsing;
 
 import static org.mockito.Mockito.mock;
 
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import com.google.refine.RefineTest;
+import com.google.refine.browsing.facets.Facet;
+import com.google.refine.browsing.facets.ListFacet;
 import com.google.refine.model.Project;
+import com.google.refine.util.ParsingUtilities;
 import com.google.refine.util.TestUtils;
 
-public class EngineTests {
+public class EngineTests extends RefineTest {
 
     @Test
     public void serializeEngine() {
@@ -42,4 +51,67 @@ public class EngineTests {
         Engine engine = new Engine(project);
         TestUtils.isSerializedTo(engine, "{\"engine-mode\":\"row-based\",\"facets\":[]}");
     }
+
+    @Test
+    public void testComputeFacetsMatchesRowsFilteredByOtherFacets() throws Exception {
+        Project project = createProject(
+                new String[] { "letter", "number", "flag" },
+                new Serializable[][] {
+                        { "a", 1, "x" },
+                        { "b", 2, "y" },
+                        { "a", 3, "y" },
+                        { "c", 1, "x" },
+                        { "b", 1, "x" },
+                        { "a", 2, null },
+                });
+        String facetTemplate = "{\"type\":\"list\",\"name\":\"%1$s\",\"columnName\":\"%1$s\",\"expression\":\"value\","
+                + "\"omitBlank\":false,\"omitError\":false,\"selection\":[%2$s],"
+                + "\"selectBlank\":%3$s,\"selectError\":false,\"invert\":false}";
+        String engineConfig = "{\"mode\":\"row-based\",\"facets\":["
+                + String.format(facetTemplate, "letter", "{\"v\":{\"v\":\"a\",\"l\":\"a\"}}", "false") + ","
+                + String.format(facetTemplate, "number", "{\"v\":{\"v\":1,\"l\":\"1\"}}", "false") + ","
+                + String.format(facetTemplate, "flag", "{\"v\":{\"v\":\"x\",\"l\":\"x\"}}", "true")
+                + "]}";
+
+        Engine engine = new Engine(project);
+        engine.initializeFromConfig(EngineConfig.reconstruct(engineConfig));
+        engine.computeFacets();
+
+        // compare with choices computed on the rows matching all other facets' filters
+        Engine reference = new Engine(project);
+        reference.initializeFromConfig(EngineConfig.reconstruct(engineConfig));
+        for (int i = 0; i < engine._facets.size(); i++) {
+            Facet facet = reference._facets.get(i);
+            facet.computeChoices(project, reference.getFilteredRows(facet));
+            Assert.assertEquals(ParsingUtilities.mapper.writeValueAsString(engine._facets.get(i)),
+                    ParsingUtilities.mapper.writeValueAsString(facet));
+        }
+
+        // rows matching letter=a and flag in (x, blank): rows 0 and 5, with numbers 1 and 2
+        ListFacet numberFacet = (ListFacet) engine._facets.get(1);
+        Map<String, Integer> counts = new HashMap<>();
+        numberFacet.getChoices().forEach(choice -> counts.put(choice.decoratedValue.label, choice.count));
+        Assert.assertEquals(counts.get("1"), Integer.valueOf(1));
+        Assert.assertEquals(counts.get("2"), Integer.valueOf(1));
+        Assert.assertNull(counts.get("3"));
+    }
+
+    @Test
+    public void testOnlyFiltersDependingOnTheProjectAreCached() throws Exception {
+        Project project = createProject(new String[] { "letter" }, new Serializable[][] { { "a" }, { "b" } });
+        String facetTemplate = "{\"type\":\"list\",\"name\":\"letter\",\"columnName\":\"letter\",\"expression\":\"%s\","
+                + "\"omitBlank\":false,\"omitError\":false,\"selection\":[{\"v\":{\"v\":\"a\",\"l\":\"a\"}}],"
+                + "\"selectBlank\":false,\"selectError\":false,\"invert\":false}";
+        String[] expressions = { "value", "cells.letter.value.toLowercase()", "value + random()",
+                "if(now() > 0, value, 'b')", "cell.cross('other', 'letter').length()", "facetCount(value, 'value', 'letter')" };
+        boolean[] cacheable = { true, true, false, false, false, false };
+
+        for (int i = 0; i < expressions.length; i++) {
+            Engine engine = new Engine(project);
+            engine.initializeFromConfig(EngineConfig.reconstruct(
+                    "{\"mode\":\"row-based\",\"facets\":[" + String.format(facetTemplate, expressions[i]) + "]}"));
+            RowFilter rowFilter = engine._facets.get(0).getRowFilter(project);
+            Assert.assertEquals(rowFilter.isCacheable(), cacheable[i], expressions[i]);
+        }
+    }
 }
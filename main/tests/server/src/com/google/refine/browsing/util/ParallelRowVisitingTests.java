@@ -0,0 +1,148 @@
+/*******************************************************************************
+ * Copyright (C) 2024, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.browsing.util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.slf4j.LoggerFactory;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.BeforeTest;
+import org.testng.annotations.Test;
+
+import com.google.refine.RefineTest;
+import com.google.refine.browsing.filters.ExpressionEqualRowFilter;
+import com.google.refine.expr.Evaluable;
+import com.google.refine.expr.MetaParser;
+import com.google.refine.model.Cell;
+import com.google.refine.model.ModelException;
+import com.google.refine.model.Project;
+import com.google.refine.model.Row;
+
+public class ParallelRowVisitingTests extends RefineTest {
+
+    private static final int ROW_COUNT = 3 * ParallelRowVisiting.MIN_PARTITION_SIZE + 17;
+
+    Project project;
+    int previousParallelism;
+
+    @Override
+    @BeforeTest
+    public void init() {
+        logger = LoggerFactory.getLogger(this.getClass());
+    }
+
+    @BeforeMethod
+    public void setUp() throws IOException, ModelException {
+        previousParallelism = ParallelRowVisiting.getParallelism();
+        ParallelRowVisiting.setParallelism(4);
+        project = createProjectWithColumns("ParallelRowVisitingTests", "letter", "number");
+        for (int i = 0; i < ROW_COUNT; i++) {
+            Row row = new Row(2);
+            row.setCell(0, i % 13 == 0 ? null : new Cell(Character.toString((char) ('a' + i % 7)), null));
+            row.setCell(1, new Cell(i % 101 == 0 ? "not a number" : (long) (i % 1000), null));
+            project.rows.add(row);
+        }
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        ParallelRowVisiting.setParallelism(previousParallelism);
+    }
+
+    @Test
+    public void testRunOnPartitionsCoversAllRowsInOrder() {
+        List<int[]> ranges = ParallelRowVisiting.runOnPartitions(ROW_COUNT, (from, to) -> new int[] { from, to });
+        Assert.assertEquals(ranges.size(), 3);
+        int expectedFrom = 0;
+        for (int[] range : ranges) {
+            Assert.assertEquals(range[0], expectedFrom);
+            expectedFrom = range[1];
+        }
+        Assert.assertEquals(expectedFrom, ROW_COUNT);
+    }
+
+    @Test
+    public void testNominalGrouperGivesSameResultsAsSequentialVisit() throws Exception {
+        Evaluable eval = MetaParser.parse("value");
+        Evaluable filterEval = MetaParser.parse("value");
+        ConjunctiveFilteredRows filteredRows = new ConjunctiveFilteredRows();
+        filteredRows.add(new ExpressionEqualRowFilter(filterEval, "number", 1, new Object[] { 5L, 17L, 205L }, true, false, true));
+
+        ExpressionNominalValueGrouper parallel = new ExpressionNominalValueGrouper(eval, "letter", 0);
+        filteredRows.accept(project, parallel);
+
+        ExpressionNominalValueGrouper sequential = new ExpressionNominalValueGrouper(eval, "letter", 0);
+        sequential.start(project);
+        for (int i = 0; i < project.rows.size(); i++) {
+            Row row = project.rows.get(i);
+            if (filteredRows.matchRow(project, i, row)) {
+                sequential.visit(project, i, row);
+            }
+        }
+        sequential.end(project);
+
+        Assert.assertEquals(parallel.choices.keySet(), sequential.choices.keySet());
+        Assert.assertEquals(new ArrayList<>(parallel.choices.keySet()), new ArrayList<>(sequential.choices.keySet()));
+        for (Object key : sequential.choices.keySet()) {
+            Assert.assertEquals(parallel.choices.get(key).count, sequential.choices.get(key).count);
+        }
+        Assert.assertEquals(parallel.blankCount, sequential.blankCount);
+        Assert.assertEquals(parallel.errorCount, sequential.errorCount);
+    }
+
+    @Test
+    public void testNumericBinIndexGivesSameResultsAsSequentialIteration() throws Exception {
+        RowEvaluable threadSafe = new ExpressionBasedRowEvaluable("number", 1, MetaParser.parse("value"));
+        Assert.assertTrue(threadSafe.isThreadSafe());
+        RowEvaluable sequentialOnly = new RowEvaluable() {
+
+            @Override
+            public Object eval(Project project, int rowIndex, Row row, Properties bindings) {
+                return threadSafe.eval(project, rowIndex, row, bindings);
+            }
+        };
+
+        NumericBinIndex parallel = new NumericBinRowIndex(project, threadSafe);
+        NumericBinIndex sequential = new NumericBinRowIndex(project, sequentialOnly);
+
+        Assert.assertEquals(parallel.getMin(), sequential.getMin());
+        Assert.assertEquals(parallel.getMax(), sequential.getMax());
+        Assert.assertEquals(parallel.getStep(), sequential.getStep());
+        Assert.assertEquals(parallel.getBins(), sequential.getBins());
+        Assert.assertEquals(parallel.getNumericRowCount(), sequential.getNumericRowCount());
+        Assert.assertEquals(parallel.getNonNumericRowCount(), sequential.getNonNumericRowCount());
+        Assert.assertEquals(parallel.getBlankRowCount(), sequential.getBlankRowCount());
+        Assert.assertEquals(parallel.getErrorRowCount(), sequential.getErrorRowCount());
+        Assert.assertEquals(parallel.isNumeric(), sequential.isNumeric());
+    }
+}
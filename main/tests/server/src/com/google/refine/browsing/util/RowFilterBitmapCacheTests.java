@@ -0,0 +1,88 @@
+/*******************************************************************************
+ * Copyright (C) 2024, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.browsing.util;
+
+import java.io.Serializable;
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.google.refine.RefineTest;
+import com.google.refine.browsing.RowFilter;
+import com.google.refine.model.Project;
+import com.google.refine.model.Row;
+
+public class RowFilterBitmapCacheTests extends RefineTest {
+
+    static class CountingFilter implements RowFilter {
+
+        AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public boolean filterRow(Project project, int rowIndex, Row row) {
+            calls.incrementAndGet();
+            return "a".equals(row.getCellValue(0));
+        }
+    }
+
+    @Test
+    public void testFilterIsOnlyEvaluatedOncePerKey() {
+        Project project = createProject(new String[] { "letter" },
+                new Serializable[][] { { "a" }, { "b" }, { "a" } });
+        CountingFilter filter = new CountingFilter();
+
+        BitSet first = RowFilterBitmapCache.getMatchingRows(project, "facet 1", filter);
+        BitSet second = RowFilterBitmapCache.getMatchingRows(project, "facet 1", filter);
+        Assert.assertEquals(filter.calls.get(), 3);
+        Assert.assertSame(second, first);
+        Assert.assertEquals(first.cardinality(), 2);
+        Assert.assertTrue(first.get(0));
+        Assert.assertTrue(first.get(2));
+
+        RowFilterBitmapCache.getMatchingRows(project, "facet 2", filter);
+        Assert.assertEquals(filter.calls.get(), 6);
+
+        RowFilterBitmapCache.invalidate(project.id);
+        RowFilterBitmapCache.getMatchingRows(project, "facet 1", filter);
+        Assert.assertEquals(filter.calls.get(), 9);
+    }
+
+    @Test
+    public void testCountFailures() {
+        BitSet first = new BitSet();
+        first.set(0);
+        first.set(1);
+        BitSet second = new BitSet();
+        second.set(1);
+        second.set(2);
+        byte[] failures = FailureCountFilteredRows.countFailures(4, new BitSet[] { first, null, second });
+        Assert.assertEquals(failures, new byte[] { 1, 0, 1, 2 });
+    }
+}
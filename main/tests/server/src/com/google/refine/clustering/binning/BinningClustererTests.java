@@ -40,7 +40,9 @@ import org.testng.annotations.Test;
 import com.google.refine.RefineTest;
 import com.google.refine.browsing.Engine;
 import com.google.refine.clustering.binning.BinningClusterer.BinningClustererConfig;
+import com.google.refine.model.Cell;
 import com.google.refine.model.Project;
+import com.google.refine.model.changes.CellChange;
 import com.google.refine.util.ParsingUtilities;
 import com.google.refine.util.TestUtils;
 
@@ -97,6 +99,56 @@ public class BinningClustererTests extends RefineTest {
         TestUtils.isSerializedTo(clusterer, clustererJson);
     }
 
+    /**
+     * Counts the values it computes keys for.
+     */
+    static class CountingKeyer extends Keyer {
+
+        int count;
+
+        @Override
+        public String key(String string, Object... params) {
+            synchronized (this) {
+                count++;
+            }
+            return string.toLowerCase();
+        }
+    }
+
+    @Test
+    public void testKeysAreRememberedUntilColumnChanges() throws IOException {
+        CountingKeyer keyer = new CountingKeyer();
+        KeyerFactory.put("counting", keyer);
+        Project project = createProject(
+                new String[] { "column" },
+                new Serializable[][] {
+                        { "a" },
+                        { "A" },
+                        { "a" },
+                        { "b" }
+                });
+        BinningClustererConfig config = ParsingUtilities.mapper.readValue(configJson.replace("fingerprint", "counting"),
+                BinningClustererConfig.class);
+
+        BinningClusterer clusterer = config.apply(project);
+        clusterer.computeClusters(new Engine(project));
+        assertEquals(keyer.count, 3);
+        assertEquals(clusterer.getJsonRepresentation().size(), 1);
+
+        // refreshing the clusters does not compute the keys again
+        clusterer = config.apply(project);
+        clusterer.computeClusters(new Engine(project));
+        assertEquals(keyer.count, 3);
+        assertEquals(clusterer.getJsonRepresentation().size(), 1);
+
+        // until the column changes
+        new CellChange(3, 0, project.rows.get(3).getCell(0), new Cell("B", null)).apply(project);
+        clusterer = config.apply(project);
+        clusterer.computeClusters(new Engine(project));
+        assertEquals(keyer.count, 6);
+        assertEquals(clusterer.getJsonRepresentation().size(), 1);
+    }
+
     @Test
     public void testNoLonelyClusters() throws JsonParseException, JsonMappingException, IOException {
         Project project = createProject(
@@ -31,6 +31,10 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package com.google.refine.clustering.binning;
 
+import java.util.Random;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
 import org.slf4j.LoggerFactory;
 import org.testng.Assert;
 import org.testng.annotations.AfterMethod;
@@ -165,6 +169,39 @@ public class KeyerTests extends RefineTest {
         }
     }
 
+    @Test
+    public void testAsciiFingerprintKeyer() {
+        // the single pass over ASCII strings must give the keys of the general pipeline
+        Pattern whitespace = Pattern.compile("\\s+", Pattern.UNICODE_CHARACTER_CLASS);
+        FingerprintKeyer fingerprintKeyer = (FingerprintKeyer) keyer;
+        Random random = new Random(42);
+        String alphabet = "aBcD  \t\n\u000B\r\u0001\u001F\u007F.,-'\"()!?&^`~$+<=>|_{}[]@#%*/:;\\0123";
+        for (int i = 0; i < 10000; i++) {
+            StringBuilder builder = new StringBuilder();
+            int length = random.nextInt(12);
+            for (int j = 0; j < length; j++) {
+                builder.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            String s = builder.toString();
+            String expected = whitespace.splitAsStream(fingerprintKeyer.normalize(s, true)).sorted().distinct()
+                    .collect(Collectors.joining(" "));
+            Assert.assertEquals(FingerprintKeyer.asciiKey(s), expected, "Fingerprint for string: " + s + " failed");
+        }
+        Assert.assertNull(FingerprintKeyer.asciiKey("école"));
+    }
+
+    @Test
+    public void testOverriddenNormalizationAppliesToAscii() {
+        keyer = new FingerprintKeyer() {
+
+            @Override
+            protected String normalize(String s, boolean strong) {
+                return super.normalize(s, strong).replace('o', '0');
+            }
+        };
+        Assert.assertEquals(keyer.key("foo bar"), "bar f00");
+    }
+
     @Test
     public void testNGramKeyer() {
         keyer = new NGramFingerprintKeyer();
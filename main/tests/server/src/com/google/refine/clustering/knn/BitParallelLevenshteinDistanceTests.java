@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * Copyright (C) 2024, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.clustering.knn;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Random;
+
+import edu.mit.simile.vicino.distances.LevenshteinDistance;
+import org.testng.annotations.Test;
+
+public class BitParallelLevenshteinDistanceTests {
+
+    SimilarityDistance distance = new BitParallelLevenshteinDistance();
+    SimilarityDistance vicino = new VicinoDistance(new LevenshteinDistance());
+
+    private static String randomString(Random random, int maxLength) {
+        // few distinct characters, some of them outside of the first 256, so that strings share many characters
+        char[] alphabet = { 'a', 'b', 'c', 'A', ' ', 'é', 'ß', 'Ж', '中' };
+        StringBuilder builder = new StringBuilder();
+        int length = random.nextInt(maxLength + 1);
+        for (int i = 0; i < length; i++) {
+            builder.append(alphabet[random.nextInt(alphabet.length)]);
+        }
+        return builder.toString();
+    }
+
+    @Test
+    public void testKnownDistances() {
+        assertEquals(distance.compute("", ""), 0.0);
+        assertEquals(distance.compute("", "abc"), 3.0);
+        assertEquals(distance.compute("kitten", "sitting"), 3.0);
+        assertEquals(distance.compute("sitting", "kitten"), 3.0);
+        assertEquals(distance.compute("Flaw", "lawn"), 2.0);
+        assertEquals(distance.compute("Main Street", "main street"), 0.0);
+        assertEquals(distance.compute("Ärger", "ärgern"), 1.0);
+    }
+
+    @Test
+    public void testSameDistancesAsVicino() {
+        Random random = new Random(1234);
+        // long strings go over the 64 characters handled with bit vectors
+        for (int maxLength : new int[] { 8, 64, 70, 150 }) {
+            for (int i = 0; i < 500; i++) {
+                String a = randomString(random, maxLength);
+                String b = random.nextInt(4) == 0 ? a.replace('a', 'b') : randomString(random, maxLength);
+                assertEquals(distance.compute(a, b), vicino.compute(a, b), a + " / " + b);
+            }
+        }
+    }
+
+    @Test
+    public void testBoundedDistances() {
+        Random random = new Random(5678);
+        for (int maxLength : new int[] { 8, 64, 150 }) {
+            for (int i = 0; i < 500; i++) {
+                String a = randomString(random, maxLength);
+                String b = randomString(random, maxLength);
+                double exact = vicino.compute(a, b);
+                double max = random.nextInt(maxLength / 2) + (random.nextBoolean() ? 0.5 : 0.0);
+                double bounded = distance.compute(a, b, max);
+                if (exact <= max) {
+                    assertEquals(bounded, exact, a + " / " + b);
+                } else {
+                    assertTrue(bounded > max, a + " / " + b);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testBufferReuse() {
+        // characters of a previous pattern must not leak into the next computation
+        assertEquals(distance.compute("ab中", "ab中"), 0.0);
+        assertEquals(distance.compute("xy", "ab中"), 3.0);
+        assertEquals(distance.compute("kitten", "sitting", 1.0) > 1.0, true);
+        assertEquals(distance.compute("kitten", "sitting"), 3.0);
+    }
+}
@@ -0,0 +1,176 @@
+/*******************************************************************************
+ * Copyright (C) 2024, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.clustering.knn;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertThrows;
+
+import java.io.Serializable;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import edu.mit.simile.vicino.clustering.NGramClusterer;
+import edu.mit.simile.vicino.distances.Distance;
+import edu.mit.simile.vicino.distances.LevenshteinDistance;
+import edu.mit.simile.vicino.distances.PPMDistance;
+import org.testng.annotations.Test;
+
+import com.google.refine.RefineTest;
+
+public class NGramBlockingClustererTests extends RefineTest {
+
+    private static String[] randomValues(int count, long seed) {
+        Random random = new Random(seed);
+        String[] words = { "Main Street", "main st.", "Main  Str", "Maine street", "Oak Avenue", "oak ave", "OAK-AVENUE",
+                "Elm", "elm road", "Pine Road", "pine rd", "Cedar Lane" };
+        Set<String> values = new LinkedHashSet<>();
+        while (values.size() < count) {
+            StringBuilder value = new StringBuilder(words[random.nextInt(words.length)]);
+            if (random.nextBoolean()) {
+                value.append(' ').append(random.nextInt(20));
+            }
+            if (random.nextInt(4) == 0) {
+                value.setCharAt(random.nextInt(value.length()), (char) ('a' + random.nextInt(26)));
+            }
+            values.add(value.toString());
+        }
+        return values.toArray(new String[0]);
+    }
+
+    private static Set<Set<Serializable>> vicinoClusters(Distance distance, String[] values, int ngramSize, double radius) {
+        NGramClusterer clusterer = new NGramClusterer(distance, ngramSize);
+        for (String value : values) {
+            clusterer.populate(value);
+        }
+        return new HashSet<>(clusterer.getClustersSingleThread(radius));
+    }
+
+    private static Set<Set<Serializable>> clusters(Distance distance, String[] values, int ngramSize, double radius) {
+        List<Set<Serializable>> clusters = new NGramBlockingClusterer(new VicinoDistance(distance), ngramSize, radius)
+                .getClusters(values);
+        for (int i = 1; i < clusters.size(); i++) {
+            // largest first
+            assertEquals(clusters.get(i - 1).size() >= clusters.get(i).size(), true);
+        }
+        return new HashSet<>(clusters);
+    }
+
+    /**
+     * Computes the distance between two values once, since both clusterers compare the same pairs for each n-gram size.
+     * Most of the time of the comparison with Vicino is otherwise spent compressing values for PPM distances.
+     */
+    static class MemoizedPPMDistance extends PPMDistance {
+
+        final Map<List<String>, Double> distances = new ConcurrentHashMap<>();
+
+        @Override
+        public double d2(String a, String b) {
+            return distances.computeIfAbsent(List.of(a, b), pair -> super.d2(a, b));
+        }
+    }
+
+    /**
+     * Likewise, for Levenshtein distances.
+     */
+    static class MemoizedLevenshteinDistance extends LevenshteinDistance {
+
+        final Map<List<String>, Double> distances = new ConcurrentHashMap<>();
+
+        @Override
+        public double d2(String a, String b) {
+            return distances.computeIfAbsent(List.of(a, b), pair -> super.d2(a, b));
+        }
+    }
+
+    @Test
+    public void testSameClustersAsVicino() {
+        String[] values = randomValues(300, 42);
+        Distance levenshtein = new MemoizedLevenshteinDistance();
+        Distance ppm = new MemoizedPPMDistance();
+        for (int ngramSize : new int[] { 2, 4, 6 }) {
+            assertEquals(clusters(levenshtein, values, ngramSize, 2.0),
+                    vicinoClusters(levenshtein, values, ngramSize, 2.0));
+            assertEquals(clusters(ppm, values, ngramSize, 1.0),
+                    vicinoClusters(ppm, values, ngramSize, 1.0));
+        }
+    }
+
+    @Test
+    public void testNegativeRadiusClustersValuesSharingAnNgram() {
+        String[] values = randomValues(50, 7);
+        assertEquals(clusters(new LevenshteinDistance(), values, 3, -1),
+                vicinoClusters(new LevenshteinDistance(), values, 3, -1));
+    }
+
+    @Test
+    public void testAsymmetricDistanceIsComputedBothWays() {
+        // close only when the shorter value comes first
+        SimilarityDistance distance = (a, b) -> a.length() < b.length() ? 0 : 10;
+        List<Set<Serializable>> clusters = new NGramBlockingClusterer(distance, 2, 1.0)
+                .getClusters(new String[] { "abcd", "abc" });
+
+        assertEquals(clusters, List.of(Set.of("abc", "abcd")));
+    }
+
+    @Test
+    public void testPairsAreRecordedOnce() {
+        List<Set<Serializable>> clusters = new NGramBlockingClusterer(new VicinoDistance(new LevenshteinDistance()), 2, 1.0)
+                .getClusters(new String[] { "abcd", "abce", "abcf" });
+
+        // "abcd" records both of its neighbours, and "abce" is not left with "abcf" alone
+        assertEquals(clusters, List.of(Set.of("abcd", "abce", "abcf"), Set.of("abce", "abcf")));
+    }
+
+    @Test
+    public void testNormalization() {
+        assertEquals(NGramBlockingClusterer.normalize("  Main St., \tApt 4 "), "main st apt 4");
+    }
+
+    @Test
+    public void testCancel() {
+        NGramBlockingClusterer clusterer = new NGramBlockingClusterer(new VicinoDistance(new LevenshteinDistance()), 2, 1.0);
+        clusterer.cancel();
+
+        assertThrows(CancellationException.class, () -> clusterer.getClusters(randomValues(50, 3)));
+    }
+
+    @Test
+    public void testProgress() {
+        NGramBlockingClusterer clusterer = new NGramBlockingClusterer(new VicinoDistance(new LevenshteinDistance()), 2, 1.0);
+        assertEquals(clusterer.getProgress(), 0);
+
+        clusterer.getClusters(randomValues(50, 3));
+        assertEquals(clusterer.getProgress(), 100);
+    }
+}
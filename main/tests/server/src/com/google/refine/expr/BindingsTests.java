@@ -0,0 +1,138 @@
+/*******************************************************************************
+ * Copyright (C) 2024, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.expr;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.io.Serializable;
+import java.util.Properties;
+
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.BeforeTest;
+import org.testng.annotations.Test;
+
+import com.google.refine.RefineTest;
+import com.google.refine.model.Project;
+import com.google.refine.model.Row;
+
+public class BindingsTests extends RefineTest {
+
+    Project project;
+    Row row;
+
+    @Override
+    @BeforeTest
+    public void init() {
+        logger = LoggerFactory.getLogger(this.getClass());
+    }
+
+    @BeforeMethod
+    public void setUp() {
+        project = createProject(new String[] { "a", "b" },
+                new Serializable[][] {
+                        { "first", 1 },
+                        { null, "second" },
+                });
+        row = project.rows.get(0);
+    }
+
+    @Test
+    public void testBindsTheSameVariablesAsPlainProperties() {
+        Properties bindings = ExpressionUtils.createBindings(project);
+        assertTrue(bindings instanceof Bindings);
+        Properties plain = new Properties();
+        plain.put("project", project);
+
+        for (int rowIndex = 0; rowIndex < project.rows.size(); rowIndex++) {
+            Row r = project.rows.get(rowIndex);
+            ExpressionUtils.bind(bindings, r, rowIndex, "a", r.getCell(0));
+            ExpressionUtils.bind(plain, r, rowIndex, "a", r.getCell(0));
+
+            assertEquals(bindings.get("value"), plain.get("value"));
+            assertEquals(bindings.get("rowIndex"), plain.get("rowIndex"));
+            assertEquals(bindings.get("columnName"), plain.get("columnName"));
+            assertSame(bindings.get("project"), project);
+            assertEquals(bindings.containsKey("cell"), plain.containsKey("cell"));
+            if (plain.get("cell") != null) {
+                WrappedCell cell = (WrappedCell) bindings.get("cell");
+                assertSame(cell.cell, ((WrappedCell) plain.get("cell")).cell);
+                assertEquals(cell.columnName, "a");
+            }
+            assertSame(((WrappedRow) bindings.get("row")).row, r);
+            assertEquals(((WrappedRow) bindings.get("row")).rowIndex, rowIndex);
+            assertSame(((CellTuple) bindings.get("cells")).row, r);
+        }
+    }
+
+    @Test
+    public void testWrappersAreCreatedOncePerRow() {
+        Bindings bindings = (Bindings) ExpressionUtils.createBindings(project);
+        ExpressionUtils.bind(bindings, row, 0, "a", row.getCell(0));
+        Object cell = bindings.get("cell");
+        assertSame(bindings.getSlot(Bindings.CELL), cell);
+
+        ExpressionUtils.bind(bindings, row, 0, "a", row.getCell(0));
+        assertNotSame(bindings.get("cell"), cell);
+    }
+
+    @Test
+    public void testSlotsCanBeOverridden() {
+        Bindings bindings = (Bindings) ExpressionUtils.createBindings(project);
+        ExpressionUtils.bind(bindings, row, 0, "a", row.getCell(0));
+
+        assertEquals(bindings.put("value", "other"), "first");
+        assertEquals(bindings.get("value"), "other");
+        assertEquals(bindings.remove("value"), "other");
+        assertNull(bindings.get("value"));
+        assertFalse(bindings.containsKey("value"));
+
+        // other variables are kept in the table
+        bindings.put("v", 3);
+        assertEquals(bindings.get("v"), 3);
+        assertTrue(bindings.containsKey("v"));
+    }
+
+    @Test
+    public void testExpressionsReadSlots() throws ParsingException {
+        Properties bindings = ExpressionUtils.createBindings(project);
+        Evaluable eval = MetaParser.parse("grel:value + '/' + cells.b.value + '/' + rowIndex + '/' + columnName");
+        ExpressionUtils.bind(bindings, row, 0, "a", row.getCell(0));
+        assertEquals(eval.evaluate(bindings), "first/1/0/a");
+
+        Row second = project.rows.get(1);
+        ExpressionUtils.bind(bindings, second, 1, "b", second.getCell(1));
+        assertEquals(eval.evaluate(bindings), "second/second/1/b");
+        assertEquals(MetaParser.parse("grel:cell.value").evaluate(bindings), "second");
+    }
+}
@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * Copyright (C) 2024, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.expr;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+
+import java.io.Serializable;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.refine.RefineTest;
+import com.google.refine.browsing.EngineConfig;
+import com.google.refine.model.Project;
+import com.google.refine.operations.OnError;
+import com.google.refine.operations.cell.TextTransformOperation;
+
+public class ColumnEvaluationCacheTests extends RefineTest {
+
+    Project project;
+
+    @BeforeMethod
+    public void setUpProject() {
+        project = createProject(new String[] { "foo", "bar" },
+                new Serializable[][] {
+                        { "A", "x" },
+                        { "B", 1L },
+                        { null, 2.5 },
+                        { "A", true },
+                });
+    }
+
+    EvaluatedValues get(String expression, String columnName) throws ParsingException {
+        int cellIndex = project.columnModel.getColumnByName(columnName).getCellIndex();
+        return ColumnEvaluationCache.get(project, MetaParser.parse(expression), columnName, cellIndex);
+    }
+
+    void transform(String columnName, String expression) throws Exception {
+        runOperation(new TextTransformOperation(
+                EngineConfig.reconstruct("{\"mode\":\"row-based\",\"facets\":[]}"),
+                columnName, expression, OnError.KeepOriginal, false, 0), project);
+    }
+
+    @Test
+    public void testValuesAreStoredWithTheirTypes() throws Exception {
+        EvaluatedValues values = get("grel:value", "bar");
+
+        assertEquals(values.size(), 4);
+        assertEquals(values.get(0), "x");
+        assertEquals(values.get(1), 1L);
+        assertEquals(values.get(2), 2.5);
+        assertEquals(values.get(3), true);
+        assertNull(get("grel:value", "foo").get(2));
+    }
+
+    @Test
+    public void testCachedUntilDependencyChanges() throws Exception {
+        EvaluatedValues values = get("grel:value.toLowercase()", "foo");
+        assertEquals(values.get(0), "a");
+        assertSame(get("grel:value.toLowercase()", "foo"), values);
+
+        // changing another column keeps the cached values
+        transform("bar", "grel:'y'");
+        assertSame(get("grel:value.toLowercase()", "foo"), values);
+
+        transform("foo", "grel:'C'");
+        EvaluatedValues newValues = get("grel:value.toLowercase()", "foo");
+        assertNotSame(newValues, values);
+        assertEquals(newValues.get(0), "c");
+
+        // undoing the change drops the values again
+        project.history.undoRedo(0);
+        EvaluatedValues revertedValues = get("grel:value.toLowercase()", "foo");
+        assertNotSame(revertedValues, newValues);
+        assertEquals(revertedValues.get(0), "a");
+    }
+
+    @Test
+    public void testOtherColumnDependency() throws Exception {
+        EvaluatedValues values = get("grel:value + cells['bar'].value", "foo");
+        assertEquals(values.get(0), "Ax");
+
+        transform("bar", "grel:'y'");
+        values = get("grel:value + cells['bar'].value", "foo");
+        assertEquals(values.get(0), "Ay");
+    }
+
+    @Test
+    public void testUnknownDependenciesAreNotCached() throws Exception {
+        assertNull(get("grel:row.starred", "foo"));
+        assertNull(get("grel:now()", "foo"));
+        assertNull(get("grel:facetCount(value, 'value', 'foo')", "foo"));
+        assertNotNull(get("grel:forEach(value.split(''), v, v + columnName)", "foo"));
+    }
+
+    @Test
+    public void testInvalidatedWhenProjectIsDisposed() throws Exception {
+        EvaluatedValues values = get("grel:value", "foo");
+        ColumnEvaluationCache.invalidate(project.id);
+        assertNotSame(get("grel:value", "foo"), values);
+    }
+}
@@ -0,0 +1,124 @@
+/*******************************************************************************
+ * Copyright (C) 2024, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.expr;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertThrows;
+
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.BeforeTest;
+import org.testng.annotations.Test;
+
+import com.google.refine.RefineTest;
+
+public class ParsedExpressionCacheTests extends RefineTest {
+
+    @Override
+    @BeforeTest
+    public void init() {
+        logger = LoggerFactory.getLogger(this.getClass());
+    }
+
+    @BeforeMethod
+    public void setUp() {
+        ParsedExpressionCache.invalidateAll();
+    }
+
+    @Test
+    public void testParsedExpressionsAreShared() throws ParsingException {
+        long hits = ParsedExpressionCache.getStats().hits;
+        Evaluable first = MetaParser.parse("grel:value.trim()");
+        assertSame(MetaParser.parse("grel:value.trim()"), first);
+        // without prefix, the same GREL expression
+        assertSame(MetaParser.parse("value.trim()"), first);
+        assertNotSame(MetaParser.parse("grel:value.trim( )"), first);
+        assertEquals(ParsedExpressionCache.getStats().hits, hits + 2);
+    }
+
+    @Test
+    public void testStatefulExpressionsAreNotShared() throws ParsingException {
+        AtomicInteger parses = new AtomicInteger();
+        LanguageSpecificParser parser = s -> {
+            parses.incrementAndGet();
+            return new Evaluable() {
+
+                int evaluations = 0;
+
+                @Override
+                public Object evaluate(Properties bindings) {
+                    return evaluations++;
+                }
+            };
+        };
+
+        Evaluable first = ParsedExpressionCache.get("test", "counter", parser);
+        assertNotSame(ParsedExpressionCache.get("test", "counter", parser), first);
+        assertEquals(parses.get(), 2);
+    }
+
+    @Test
+    public void testParsingErrorsAreThrownEachTime() {
+        assertThrows(ParsingException.class, () -> MetaParser.parse("grel:value.trim("));
+        assertThrows(ParsingException.class, () -> MetaParser.parse("grel:value.trim("));
+        assertEquals(ParsedExpressionCache.getStats().size, 0);
+    }
+
+    @Test
+    public void testLanguagesAreDistinguished() throws ParsingException {
+        LanguageSpecificParser parser = s -> new LiteralEvaluable(s);
+        Evaluable grel = ParsedExpressionCache.get("grel", "value", parser);
+        Evaluable other = ParsedExpressionCache.get("other", "value", parser);
+        assertNotSame(grel, other);
+        assertSame(ParsedExpressionCache.get("other", "value", parser), other);
+    }
+
+    private static class LiteralEvaluable implements Evaluable {
+
+        final String value;
+
+        LiteralEvaluable(String value) {
+            this.value = value;
+        }
+
+        @Override
+        public Object evaluate(Properties bindings) {
+            return value;
+        }
+
+        @Override
+        public boolean isThreadSafe() {
+            return true;
+        }
+    }
+}
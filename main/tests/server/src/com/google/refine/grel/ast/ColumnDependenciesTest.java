@@ -0,0 +1,67 @@
+/*******************************************************************************
+ * Copyright (C) 2024, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.grel.ast;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+import java.util.Collections;
+import java.util.Set;
+
+import org.testng.annotations.Test;
+
+import com.google.refine.expr.MetaParser;
+import com.google.refine.expr.ParsingException;
+
+public class ColumnDependenciesTest {
+
+    private Set<String> dependencies(String expression) throws ParsingException {
+        return MetaParser.parse("grel:" + expression).getColumnDependencies("base");
+    }
+
+    @Test
+    public void testBaseColumn() throws ParsingException {
+        assertEquals(dependencies("value.trim().length() + 1"), Collections.singleton("base"));
+        assertEquals(dependencies("cell.recon.match.id"), Collections.singleton("base"));
+        assertEquals(dependencies("'constant'"), Collections.emptySet());
+    }
+
+    @Test
+    public void testOtherColumns() throws ParsingException {
+        assertEquals(dependencies("cells.foo.value + cells['bar'].value"), Set.of("foo", "bar"));
+        assertEquals(dependencies("if(isBlank(value), cells.foo.value, value)"), Set.of("foo", "base"));
+    }
+
+    @Test
+    public void testUnknownDependencies() throws ParsingException {
+        assertNull(dependencies("row.starred"));
+        assertNull(dependencies("cells[value].value"));
+        assertNull(dependencies("value + random()"));
+        assertNull(dependencies("cross(cell, 'other project', 'column')"));
+    }
+}
@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * Copyright (C) 2024, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.grel.ast;
+
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Properties;
+
+import org.testng.annotations.Test;
+
+import com.google.refine.expr.Evaluable;
+import com.google.refine.expr.MetaParser;
+import com.google.refine.expr.ParsingException;
+import com.google.refine.grel.ControlFunctionRegistry;
+import com.google.refine.grel.Function;
+
+public class ThreadSafetyTest {
+
+    /**
+     * A function as registered by an extension.
+     */
+    static class ExtensionFunction implements Function {
+
+        final boolean threadSafe;
+
+        ExtensionFunction(boolean threadSafe) {
+            this.threadSafe = threadSafe;
+        }
+
+        @Override
+        public Object call(Properties bindings, Object[] args) {
+            return args[0];
+        }
+
+        @Override
+        public String getDescription() {
+            return "returns its argument";
+        }
+
+        @Override
+        public String getReturns() {
+            return "any";
+        }
+
+        @Override
+        public boolean isThreadSafe() {
+            return threadSafe;
+        }
+    }
+
+    private boolean isThreadSafe(String expression) throws ParsingException {
+        return MetaParser.parse("grel:" + expression).isThreadSafe();
+    }
+
+    @Test
+    public void testBuiltInFunctionsAndControls() throws ParsingException {
+        assertTrue(isThreadSafe("value.trim().length() + 1"));
+        assertTrue(isThreadSafe("if(isBlank(value), cells.foo.value, [value, 1].join(','))"));
+        assertTrue(isThreadSafe("forEach(value.split(','), v, v.toUppercase())"));
+    }
+
+    @Test
+    public void testExtensionFunctionsMustOptIn() {
+        Evaluable value = new VariableExpr("value");
+        Evaluable unsafe = new FunctionCallExpr(new Evaluable[] { value }, new ExtensionFunction(false));
+        Evaluable safe = new FunctionCallExpr(new Evaluable[] { value }, new ExtensionFunction(true));
+
+        assertFalse(unsafe.isThreadSafe());
+        assertTrue(safe.isThreadSafe());
+        // the thread safety of the arguments is taken into account
+        Function trim = ControlFunctionRegistry.getFunction("trim");
+        assertFalse(new FunctionCallExpr(new Evaluable[] { unsafe }, trim).isThreadSafe());
+        assertFalse(new OperatorCallExpr(new Evaluable[] { value, unsafe }, "+").isThreadSafe());
+        assertFalse(new FieldAccessorExpr(unsafe, "length").isThreadSafe());
+        assertTrue(new FunctionCallExpr(new Evaluable[] { safe }, trim).isThreadSafe());
+    }
+}
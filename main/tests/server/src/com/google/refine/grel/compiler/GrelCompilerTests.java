@@ -0,0 +1,266 @@
+/*******************************************************************************
+ * Copyright (C) 2024, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.grel.compiler;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.time.OffsetDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.BeforeTest;
+import org.testng.annotations.Test;
+
+import com.google.refine.RefineTest;
+import com.google.refine.expr.EvalError;
+import com.google.refine.expr.Evaluable;
+import com.google.refine.expr.ExpressionUtils;
+import com.google.refine.expr.ParsingException;
+import com.google.refine.grel.Parser;
+import com.google.refine.grel.ast.ControlCallExpr;
+import com.google.refine.grel.ast.FunctionCallExpr;
+import com.google.refine.grel.ast.LiteralExpr;
+import com.google.refine.model.Project;
+
+public class GrelCompilerTests extends RefineTest {
+
+    static final String[] EXPRESSIONS = {
+            "value.trim()",
+            "value.trim().toLowercase().replace('a', 'b')",
+            "value.strip().toUppercase()",
+            "value.length()",
+            "value.toString()",
+            "value.replace(/[aeiou]/, '_')",
+            "value.replace('a', 1)",
+            "value.startsWith('a')",
+            "value.endsWith(value)",
+            "value.contains(/\\d/)",
+            "value.contains('a')",
+            "trim(value, value)",
+            "value + 1",
+            "value + 'suffix'",
+            "value - 1",
+            "value * 2.5",
+            "value / 2",
+            "value % 3",
+            "value > 2",
+            "value >= 'b'",
+            "value < 2.5",
+            "value <= value",
+            "value == 3",
+            "value != null",
+            "1 / 0.0",
+            "0 / 0",
+            "value.foo",
+            "value.trim().length() + value.length()",
+            "if(value.length() > 3, value.toUppercase(), value)",
+            "forEach(value.split(','), v, v.trim().toLowercase()).join('|')",
+            "value.datePart('year')",
+            "cells['a'].value.trim()",
+            "value + ('a' + 'b').toUppercase()",
+            "value.match('(\\w+)\\W*(.*)')",
+            "value.match('(unclosed')",
+            "value.replace('a' + 'b', 'c').split(', ' + '')",
+            "1 / 0 + value",
+            "forEach(value.split(','), v, v.trim() + value.length())",
+            "filter(value.split(','), v, v.trim() == value.trim().substring(0, 1))",
+            "forEach(value.split(','), v, with(v.trim(), w, w + value))",
+            "forEach(value.split(','), v, forEach(value.split(','), w, v + w + value.length()))",
+            "forEach(value.split(','), v, if(isBlank(value), v, value.toLowercase()))",
+    };
+
+    static final Object[] VALUES = {
+            "  Some Text  ",
+            "a,B , c",
+            "",
+            "123",
+            null,
+            3L,
+            7,
+            2.5,
+            Double.NaN,
+            true,
+            new EvalError("broken"),
+            new String[] { "a", "b" },
+            OffsetDateTime.parse("2024-01-02T03:04:05Z"),
+    };
+
+    Properties bindings;
+
+    @Override
+    @BeforeTest
+    public void init() {
+        logger = LoggerFactory.getLogger(this.getClass());
+    }
+
+    @BeforeMethod
+    public void setUp() {
+        bindings = ExpressionUtils.createBindings(new Project());
+    }
+
+    @Test
+    public void testCompiledExpressionsEvaluateIdentically() throws ParsingException {
+        for (String source : EXPRESSIONS) {
+            Evaluable interpreted = new Parser(source).getExpression();
+            Evaluable compiled = GrelCompiler.compile(interpreted);
+            for (Object value : VALUES) {
+                bindings.remove("value");
+                if (value != null) {
+                    bindings.put("value", value);
+                }
+                assertEquals(evaluate(compiled), evaluate(interpreted), source + " on " + describe(value));
+            }
+        }
+    }
+
+    @Test
+    public void testFastPathsAreUsed() throws ParsingException {
+        Evaluable compiled = GrelCompiler.compile(new Parser("value.trim().toLowercase().replace('a', 'b') + 1")
+                .getExpression());
+        assertTrue(compiled instanceof BinaryOperatorCall);
+        assertTrue(((BinaryOperatorCall) compiled)._left instanceof ReplaceCall);
+        ReplaceCall replace = (ReplaceCall) ((BinaryOperatorCall) compiled)._left;
+        assertTrue(replace._string instanceof UnaryStringCall);
+
+        // other functions are called as before, with compiled arguments
+        compiled = GrelCompiler.compile(new Parser("value.split(',').join(value.trim())").getExpression());
+        assertTrue(compiled instanceof FunctionCallExpr);
+        assertTrue(((FunctionCallExpr) compiled).getArgs()[1] instanceof UnaryStringCall);
+    }
+
+    @Test
+    public void testLiteralsAreFolded() throws ParsingException {
+        Evaluable compiled = GrelCompiler.compile(new Parser("value.replace('a' + 'b', 'c'.toUppercase())").getExpression());
+        assertTrue(((ReplaceCall) compiled)._find instanceof LiteralExpr);
+        assertEquals(((LiteralExpr) ((ReplaceCall) compiled)._replacement).getValue(), "C");
+
+        // the result of impure functions and mutable values are left to be computed
+        compiled = GrelCompiler.compile(new Parser("random(1, 1000) + 'a,b'.split(',').length()").getExpression());
+        assertTrue(((BinaryOperatorCall) compiled)._left instanceof FunctionCallExpr);
+        assertTrue(((BinaryOperatorCall) compiled)._right instanceof UnaryStringCall);
+
+        // folded column names are known
+        compiled = GrelCompiler.compile(new Parser("cells['a' + 'b'].value").getExpression());
+        assertEquals(compiled.getColumnDependencies("base"), Collections.singleton("ab"));
+        assertEquals(compiled.toString(), new Parser("cells['a' + 'b'].value").getExpression().toString());
+    }
+
+    @Test
+    public void testMatchPatternsArePrecompiled() throws ParsingException {
+        FunctionCallExpr compiled = (FunctionCallExpr) GrelCompiler.compile(new Parser("value.match('(a+)b')").getExpression());
+        assertTrue(((LiteralExpr) compiled.getArgs()[1]).getValue() instanceof Pattern);
+
+        compiled = (FunctionCallExpr) GrelCompiler.compile(new Parser("value.match('(a+')").getExpression());
+        assertEquals(((LiteralExpr) compiled.getArgs()[1]).getValue(), "(a+");
+    }
+
+    @Test
+    public void testLoopInvariantsAreHoisted() throws ParsingException {
+        Evaluable compiled = GrelCompiler.compile(
+                new Parser("forEach(value.split(','), v, v.trim() + value.trim().length())").getExpression());
+        assertTrue(compiled instanceof HoistingControlCall);
+        Evaluable body = ((ControlCallExpr) compiled).getArgs()[2];
+        assertTrue(((BinaryOperatorCall) body)._left instanceof UnaryStringCall);
+        assertTrue(((BinaryOperatorCall) body)._right instanceof HoistedExpr);
+
+        // variables bound within the body vary too
+        compiled = GrelCompiler.compile(new Parser("forEach(value.split(','), v, with(v, w, w.trim()))").getExpression());
+        assertFalse(compiled instanceof HoistingControlCall);
+    }
+
+    @Test
+    public void testHoistedValuesAreComputedOncePerLoop() throws ParsingException {
+        AtomicInteger reads = new AtomicInteger();
+        Properties counting = new Properties() {
+
+            @Override
+            public synchronized Object get(Object key) {
+                if ("value".equals(key)) {
+                    reads.incrementAndGet();
+                }
+                return super.get(key);
+            }
+        };
+        counting.put("value", " x ");
+        Evaluable compiled = GrelCompiler.compile(
+                new Parser("forEach('a,b,c'.split(','), v, v + value.trim()).join(',')").getExpression());
+        assertEquals(compiled.evaluate(counting), "ax,bx,cx");
+        assertEquals(reads.get(), 1);
+        assertEquals(compiled.evaluate(counting), "ax,bx,cx");
+        assertEquals(reads.get(), 2);
+    }
+
+    @Test
+    public void testDescriptionsArePreserved() throws ParsingException {
+        for (String source : new String[] { "cells['a'].value.trim() + value", "value.toUppercase()",
+                "forEach(row.columnNames, c, c.trim())", "value.match('a(b)') + (1 + 2)",
+                "forEach(value.split(','), v, v + value.trim())" }) {
+            Evaluable interpreted = new Parser(source).getExpression();
+            Evaluable compiled = GrelCompiler.compile(interpreted);
+            assertEquals(compiled.getColumnDependencies("base"), interpreted.getColumnDependencies("base"), source);
+            assertEquals(compiled.toString(), interpreted.toString(), source);
+        }
+    }
+
+    @Test
+    public void testControlsKeepTheirVariables() throws ParsingException {
+        Evaluable compiled = GrelCompiler.compile(new Parser("forEach(value.split(','), v, v.trim())").getExpression());
+        assertTrue(compiled instanceof ControlCallExpr);
+        bindings.put("value", "a, b");
+        assertEquals(evaluate(compiled), Arrays.asList("a", "b").toString());
+    }
+
+    /**
+     * Turns the outcome of an evaluation into a string which can be compared.
+     */
+    private String evaluate(Evaluable evaluable) {
+        try {
+            return describe(evaluable.evaluate(bindings));
+        } catch (Exception e) {
+            return e.getClass().getName();
+        }
+    }
+
+    private static String describe(Object value) {
+        if (value instanceof EvalError) {
+            return "error: " + ((EvalError) value).message;
+        } else if (value instanceof Object[]) {
+            return Arrays.deepToString((Object[]) value);
+        } else if (value == null) {
+            return "null";
+        }
+        return value.getClass().getSimpleName() + ": " + value;
+    }
+}
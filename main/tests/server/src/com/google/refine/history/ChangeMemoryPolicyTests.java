@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * Copyright (C) 2024, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.history;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.lang.ref.Reference;
+import java.lang.reflect.Field;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.refine.RefineTest;
+import com.google.refine.io.FileProjectManager;
+import com.google.refine.io.HistoryWriter;
+import com.google.refine.model.Cell;
+import com.google.refine.model.Project;
+import com.google.refine.model.changes.CellChange;
+import com.google.refine.model.changes.MassCellChange;
+import com.google.refine.util.TestUtils;
+
+public class ChangeMemoryPolicyTests extends RefineTest {
+
+    Project project;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        FileProjectManager.initialize(TestUtils.createTempDirectory("openrefine-change-memory-test"));
+        project = createProject(new String[] { "text" },
+                new Serializable[][] {
+                        { "a" },
+                        { "b" },
+                });
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        ChangeMemoryPolicy.s_releaseSavedChanges = true;
+        ChangeMemoryPolicy.releaseAll();
+    }
+
+    private HistoryEntry edit(int rowIndex, String value) {
+        Cell oldCell = project.rows.get(rowIndex).getCell(0);
+        Change change = new MassCellChange(new CellChange(rowIndex, 0, oldCell, new Cell(value, null)), "text", false);
+        HistoryEntry entry = new HistoryEntry(HistoryEntry.allocateID(), project, "edit", null, change);
+        project.history.addEntry(entry);
+        // the change is saved in the background
+        HistoryWriter.flush(project.id);
+        return entry;
+    }
+
+    private void collect(HistoryEntry entry) throws Exception {
+        // stands for the garbage collector reclaiming the softly reachable change
+        Field field = HistoryEntry.class.getDeclaredField("_savedChange");
+        field.setAccessible(true);
+        ((Reference<?>) field.get(entry)).clear();
+    }
+
+    @Test
+    public void testSavedChangeIsReleased() {
+        HistoryEntry entry = edit(0, "c");
+
+        assertFalse(entry.isChangePinned());
+        assertNotNull(entry.getLoadedChange());
+        assertTrue(ChangeMemoryPolicy.isHeld(entry));
+
+        ChangeMemoryPolicy.releaseAll();
+        assertFalse(ChangeMemoryPolicy.isHeld(entry));
+    }
+
+    @Test
+    public void testReleasedChangeIsReadAgainToUndoAndRedo() throws Exception {
+        HistoryEntry entry = edit(0, "c");
+        ChangeMemoryPolicy.releaseAll();
+        collect(entry);
+        assertNull(entry.getLoadedChange());
+
+        project.history.undoRedo(0);
+        assertEquals(project.rows.get(0).getCellValue(0), "a");
+        assertTrue(ChangeMemoryPolicy.isHeld(entry));
+
+        ChangeMemoryPolicy.releaseAll();
+        collect(entry);
+        project.history.undoRedo(entry.id);
+        assertEquals(project.rows.get(0).getCellValue(0), "c");
+    }
+
+    @Test
+    public void testChangesAreKeptWhenDisabled() {
+        ChangeMemoryPolicy.s_releaseSavedChanges = false;
+        HistoryEntry entry = edit(0, "c");
+
+        assertTrue(entry.isChangePinned());
+        assertFalse(ChangeMemoryPolicy.isHeld(entry));
+    }
+
+    @Test
+    public void testMemoryUsage() throws Exception {
+        HistoryEntry first = edit(0, "c");
+        edit(1, "d");
+        ChangeMemoryPolicy.releaseAll();
+        edit(0, "e");
+        collect(first);
+
+        History.MemoryUsage usage = project.history.getMemoryUsage();
+        assertEquals(usage.entries, 3);
+        assertEquals(usage.unsavedChanges, 0);
+        assertEquals(usage.heldChanges, 1);
+        assertEquals(usage.releasedChanges, 1);
+        assertTrue(usage.estimatedBytes > 0);
+    }
+}
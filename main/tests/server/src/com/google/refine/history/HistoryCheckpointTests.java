@@ -0,0 +1,286 @@
+/*******************************************************************************
+ * Copyright (C) 2024, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.history;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.refine.LookupCacheManager;
+import com.google.refine.LookupCacheManager.ProjectLookup;
+import com.google.refine.ProjectManager;
+import com.google.refine.RefineTest;
+import com.google.refine.io.FileCheckpointStore;
+import com.google.refine.io.FileProjectManager;
+import com.google.refine.model.Cell;
+import com.google.refine.model.OverlayModel;
+import com.google.refine.model.Project;
+import com.google.refine.model.Row;
+import com.google.refine.model.changes.CellAtRow;
+import com.google.refine.model.changes.CellChange;
+import com.google.refine.model.changes.ColumnAdditionChange;
+import com.google.refine.model.changes.ColumnRenameChange;
+import com.google.refine.model.changes.MassCellChange;
+import com.google.refine.model.changes.MassRowChange;
+import com.google.refine.util.TestUtils;
+
+public class HistoryCheckpointTests extends RefineTest {
+
+    Project project;
+    CheckpointStore store;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        FileProjectManager.initialize(TestUtils.createTempDirectory("openrefine-checkpoint-test"));
+        store = ProjectManager.singleton.getHistoryEntryManager().getCheckpointStore();
+        CheckpointPolicy.s_entries = 5;
+        project = createProject(new String[] { "text" },
+                new Serializable[][] {
+                        { "a" },
+                        { "b" },
+                });
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        CheckpointPolicy.s_entries = 0;
+        FileCheckpointStore.s_diskBudget = 256 * 1024 * 1024;
+    }
+
+    private HistoryEntry add(Change change) {
+        HistoryEntry entry = new HistoryEntry(HistoryEntry.allocateID(), project, "change", null, change);
+        project.history.addEntry(entry);
+        return entry;
+    }
+
+    private HistoryEntry edit(int rowIndex, String value) {
+        Cell oldCell = project.rows.get(rowIndex).getCell(0);
+        return add(new MassCellChange(new CellChange(rowIndex, 0, oldCell, new Cell(value, null)),
+                project.columnModel.columns.get(0).getName(), false));
+    }
+
+    private List<Object> column(int cellIndex) {
+        List<Object> values = new ArrayList<>();
+        for (Row row : project.rows) {
+            values.add(row.getCellValue(cellIndex));
+        }
+        return values;
+    }
+
+    @Test
+    public void testCheckpointsAreTakenPeriodically() {
+        List<HistoryEntry> entries = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            entries.add(edit(0, "v" + i));
+        }
+
+        assertEquals(store.getCheckpoints(project.id), Set.of(entries.get(4).id, entries.get(9).id));
+    }
+
+    @Test
+    public void testUndoRedoThroughCheckpoint() {
+        List<HistoryEntry> entries = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            entries.add(edit(i % 2, "v" + i));
+        }
+
+        project.history.undoRedo(entries.get(5).id);
+        assertEquals(column(0), List.of("v4", "v5"));
+        assertEquals(project.history.getLastDoneEntryID(), entries.get(5).id);
+        assertEquals(project.history.getPastEntryCount(), 6);
+        // restoring the checkpoint after the fifth entry left the later changes on disk
+        assertNull(entries.get(12).getLoadedChange());
+
+        project.history.undoRedo(0);
+        assertEquals(column(0), List.of("a", "b"));
+
+        project.history.undoRedo(entries.get(18).id);
+        assertEquals(column(0), List.of("v18", "v17"));
+        assertEquals(project.history.getPastEntryCount(), 19);
+    }
+
+    @Test
+    public void testRestoredRowsAreNotSharedWithChanges() {
+        List<Row> rows = new ArrayList<>();
+        for (Row row : project.rows) {
+            rows.add(row.dup());
+        }
+        Row added = new Row(1);
+        added.setCell(0, new Cell("added", null));
+        rows.add(added);
+        add(new MassRowChange(rows));
+        for (int i = 0; i < 9; i++) {
+            // modifies the added row in place
+            edit(2, "v" + i);
+        }
+        HistoryEntry rowChange = project.history.getLastPastEntries(10).get(0);
+
+        project.history.undoRedo(0);
+        assertEquals(column(0), List.of("a", "b"));
+        project.history.undoRedo(rowChange.id);
+        assertEquals(column(0), List.of("a", "b", "added"));
+    }
+
+    @Test
+    public void testColumnsAreRestored() {
+        List<CellAtRow> cells = List.of(new CellAtRow(0, new Cell(1L, null)), new CellAtRow(1, new Cell(2L, null)));
+        HistoryEntry first = add(new ColumnAdditionChange("number", 1, cells));
+        add(new ColumnRenameChange("text", "renamed"));
+        for (int i = 0; i < 8; i++) {
+            edit(0, "v" + i);
+        }
+
+        project.history.undoRedo(first.id);
+        assertEquals(project.columnModel.getColumnNames(), List.of("text", "number"));
+        assertEquals(column(1), List.of(1L, 2L));
+        assertEquals(column(0), List.of("a", "b"));
+    }
+
+    static public class DisposableModel implements OverlayModel {
+
+        public boolean disposed;
+
+        @Override
+        public void onBeforeSave(Project project) {
+        }
+
+        @Override
+        public void onAfterSave(Project project) {
+        }
+
+        @Override
+        public void dispose(Project project) {
+            disposed = true;
+        }
+    }
+
+    @Test
+    public void testReplacedModelsAndLookupsAreDisposedOf() throws Exception {
+        DisposableModel model = new DisposableModel();
+        project.overlayModels.put("disposable", model);
+        List<HistoryEntry> entries = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            entries.add(edit(0, "v" + i));
+        }
+        LookupCacheManager lookups = ProjectManager.singleton.getLookupCacheManager();
+        ProjectLookup lookup = lookups.getLookup(project.id, "text");
+
+        // restores the checkpoint after the fifth entry, without any change to apply after it
+        project.history.undoRedo(entries.get(4).id);
+        assertEquals(column(0), List.of("v4", "b"));
+        assertNull(entries.get(5).getLoadedChange());
+
+        assertTrue(model.disposed);
+        assertNotSame(lookups.getLookup(project.id, "text"), lookup);
+    }
+
+    @Test
+    public void testCheckpointsOfDiscardedEntriesAreDeleted() {
+        List<HistoryEntry> entries = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            entries.add(edit(0, "v" + i));
+        }
+        project.history.undoRedo(entries.get(0).id);
+        edit(1, "other");
+
+        assertEquals(store.getCheckpoints(project.id), Collections.emptySet());
+    }
+
+    @Test
+    public void testCheckpointsStayWithinDiskBudget() {
+        FileCheckpointStore.s_diskBudget = 0;
+        for (int i = 0; i < 10; i++) {
+            edit(0, "v" + i);
+        }
+
+        assertTrue(store.getCheckpoints(project.id).isEmpty());
+    }
+
+    @Test
+    public void testCheckpointsLargerThanBudgetAreSkipped() {
+        List<HistoryEntry> entries = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            entries.add(edit(0, "v" + i));
+        }
+        FileCheckpointStore.s_diskBudget = 1;
+        for (int i = 5; i < 12; i++) {
+            entries.add(edit(0, "v" + i));
+        }
+        ProjectManager.singleton.getHistoryEntryManager().flush(project.id);
+
+        // the checkpoint taken before is not deleted to make room for one which would not fit anyway
+        assertEquals(store.getCheckpoints(project.id), Set.of(entries.get(4).id));
+    }
+
+    @Test
+    public void testCheckpointJustTakenIsKept() {
+        List<HistoryEntry> entries = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            entries.add(edit(0, "v" + i));
+        }
+        ProjectManager.singleton.getHistoryEntryManager().flush(project.id);
+        File dir = new File(((FileProjectManager) ProjectManager.singleton).getProjectDir(project.id),
+                FileCheckpointStore.CHECKPOINT_DIR);
+        long size = new File(dir, entries.get(4).id + ".checkpoint").length();
+        assertTrue(size > 0);
+
+        // room for one checkpoint only
+        FileCheckpointStore.s_diskBudget = size * 3 / 2;
+        for (int i = 5; i < 10; i++) {
+            entries.add(edit(0, "v" + i));
+        }
+        ProjectManager.singleton.getHistoryEntryManager().flush(project.id);
+
+        assertEquals(store.getCheckpoints(project.id), Set.of(entries.get(9).id));
+    }
+
+    @Test
+    public void testNoCheckpointWhenDisabled() {
+        CheckpointPolicy.s_entries = 0;
+        for (int i = 0; i < 10; i++) {
+            edit(0, "v" + i);
+        }
+
+        assertFalse(CheckpointPolicy.isEnabled());
+        assertTrue(store.getCheckpoints(project.id).isEmpty());
+    }
+}
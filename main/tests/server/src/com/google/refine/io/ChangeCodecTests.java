@@ -0,0 +1,206 @@
+/*******************************************************************************
+ * Copyright (C) 2024, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.io;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.expectThrows;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.refine.RefineTest;
+import com.google.refine.history.Change;
+import com.google.refine.history.HistoryEntry;
+import com.google.refine.model.Cell;
+import com.google.refine.model.Project;
+import com.google.refine.model.Recon;
+import com.google.refine.model.changes.CellChange;
+import com.google.refine.model.changes.MassCellChange;
+import com.google.refine.model.changes.RowReorderChange;
+import com.google.refine.util.TestUtils;
+
+public class ChangeCodecTests extends RefineTest {
+
+    Project project;
+    FileHistoryEntryManager manager = new FileHistoryEntryManager();
+    File dir;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        project = createProject(new String[] { "a", "b" },
+                new Serializable[][] {
+                        { "x", 1L },
+                        { "y", null },
+                        { "z", 3.5 },
+                });
+        dir = TestUtils.createTempDirectory("openrefine-change-codec-test");
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        FileHistoryEntryManager.s_binaryChanges = true;
+    }
+
+    private MassCellChange cellChange() {
+        Recon recon = testRecon("X", "Q1", Recon.Judgment.Matched);
+        return new MassCellChange(Arrays.asList(
+                new CellChange(0, 0, project.rows.get(0).getCell(0), new Cell("X", recon)),
+                new CellChange(1, 1, null, new Cell(2L, recon)),
+                new CellChange(2, 1, project.rows.get(2).getCell(1), null)),
+                null, true);
+    }
+
+    private HistoryEntry saveAndLoad(Change change, String expectedEntry, String unexpectedEntry) throws Exception {
+        HistoryEntry entry = new HistoryEntry(HistoryEntry.allocateID(), project, "test", null, change);
+        File file = new File(dir, entry.id + ".change.zip");
+        manager.saveChange(entry, file);
+        try (ZipFile zipFile = new ZipFile(file)) {
+            assertNotNull(zipFile.getEntry(expectedEntry));
+            assertNull(zipFile.getEntry(unexpectedEntry));
+        }
+
+        HistoryEntry loaded = new HistoryEntry(entry.id, project, "test", null, null);
+        manager.loadChange(loaded, file);
+        return loaded;
+    }
+
+    private void assertAppliesAndReverts(Change change) {
+        change.apply(project);
+        assertEquals(project.rows.get(0).getCellValue(0), "X");
+        // the line-based format reads small integers back as Integers
+        assertEquals(((Number) project.rows.get(1).getCellValue(1)).longValue(), 2L);
+        assertNull(project.rows.get(2).getCell(1));
+        assertSame(project.rows.get(0).getCell(0).recon, project.rows.get(1).getCell(1).recon);
+        assertEquals(project.rows.get(0).getCell(0).recon.match.id, "Q1");
+
+        change.revert(project);
+        assertEquals(project.rows.get(0).getCellValue(0), "x");
+        assertNull(project.rows.get(1).getCell(1));
+        assertEquals(project.rows.get(2).getCellValue(1), 3.5);
+    }
+
+    @Test
+    public void testBinaryCellChanges() throws Exception {
+        HistoryEntry loaded = saveAndLoad(cellChange(), FileHistoryEntryManager.CHANGE_BIN_ENTRY, "change.txt");
+
+        assertAppliesAndReverts(loaded.getChange());
+    }
+
+    @Test
+    public void testTextCellChanges() throws Exception {
+        FileHistoryEntryManager.s_binaryChanges = false;
+        HistoryEntry loaded = saveAndLoad(cellChange(), "change.txt", FileHistoryEntryManager.CHANGE_BIN_ENTRY);
+
+        // files in the line-based format are still read when the binary format is enabled
+        FileHistoryEntryManager.s_binaryChanges = true;
+        assertAppliesAndReverts(loaded.getChange());
+    }
+
+    @Test
+    public void testBinaryCellChangesOutOfRowOrder() throws Exception {
+        MassCellChange change = new MassCellChange(Arrays.asList(
+                new CellChange(2, 0, project.rows.get(2).getCell(0), new Cell("Z", null)),
+                new CellChange(0, 0, project.rows.get(0).getCell(0), new Cell("X", null))),
+                null, false);
+        HistoryEntry loaded = saveAndLoad(change, FileHistoryEntryManager.CHANGE_BIN_ENTRY, "change.txt");
+
+        loaded.getChange().apply(project);
+        assertEquals(project.rows.get(0).getCellValue(0), "X");
+        assertEquals(project.rows.get(2).getCellValue(0), "Z");
+    }
+
+    @Test
+    public void testUnknownBinaryVersionIsRejected() throws Exception {
+        File file = new File(dir, "unknown.change.zip");
+        try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(file))) {
+            zip.putNextEntry(new ZipEntry(FileHistoryEntryManager.CHANGE_BIN_ENTRY));
+            DataOutputStream data = new DataOutputStream(zip);
+            data.writeInt(FileHistoryEntryManager.BINARY_CHANGE_VERSION + 1);
+            data.writeUTF(MassCellChange.class.getName());
+            data.flush();
+            zip.closeEntry();
+        }
+
+        HistoryEntry entry = new HistoryEntry(HistoryEntry.allocateID(), project, "test", null, null);
+        IOException e = expectThrows(IOException.class, () -> manager.loadChange(entry, file));
+        assertTrue(e.getMessage().contains("Unsupported version"), e.getMessage());
+        assertNull(entry.getLoadedChange());
+    }
+
+    @Test
+    public void testChangeWithoutCodec() throws Exception {
+        HistoryEntry loaded = saveAndLoad(new RowReorderChange(Arrays.asList(2, 1, 0)), "change.txt",
+                FileHistoryEntryManager.CHANGE_BIN_ENTRY);
+
+        loaded.getChange().apply(project);
+        assertEquals(project.rows.get(0).getCellValue(0), "z");
+    }
+
+    @Test
+    public void testFailedWriteKeepsPreviousFile() throws Exception {
+        HistoryEntry entry = new HistoryEntry(HistoryEntry.allocateID(), project, "test", null,
+                new RowReorderChange(Arrays.asList(2, 1, 0)));
+        File file = new File(dir, entry.id + ".change.zip");
+        manager.saveChange(entry, file);
+        long length = file.length();
+
+        HistoryEntry failing = new HistoryEntry(entry.id, project, "test", null, new RowReorderChange(Arrays.asList(0, 1, 2)) {
+
+            @Override
+            public void save(Writer writer, Properties options) throws IOException {
+                writer.write("partial");
+                throw new IOException("disk full");
+            }
+        });
+        IOException e = expectThrows(IOException.class, () -> manager.saveChange(failing, file));
+        assertEquals(e.getMessage(), "disk full");
+
+        assertFalse(failing.isChangeSaved());
+        assertNotNull(failing.getLoadedChange());
+        assertEquals(file.length(), length);
+        assertEquals(dir.list().length, 1);
+    }
+}
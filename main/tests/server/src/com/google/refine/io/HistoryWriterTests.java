@@ -0,0 +1,124 @@
+/*******************************************************************************
+ * Copyright (C) 2024, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.io;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import com.google.refine.RefineTest;
+
+public class HistoryWriterTests extends RefineTest {
+
+    @AfterMethod
+    public void tearDown() {
+        HistoryWriter.s_enabled = true;
+        HistoryWriter.flushAll();
+    }
+
+    @Test
+    public void testWritesOfAProjectRunInOrder() throws Exception {
+        List<Integer> written = Collections.synchronizedList(new ArrayList<>());
+        for (int i = 0; i < 100; i++) {
+            int index = i;
+            HistoryWriter.submit(1L, () -> written.add(index));
+        }
+        HistoryWriter.flush(1L);
+
+        assertEquals(written.size(), 100);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(written.get(i).intValue(), i);
+        }
+    }
+
+    @Test
+    public void testQueuedWritesAreReported() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        long writtenBefore = HistoryWriter.getStats().written;
+        HistoryWriter.submit(2L, latch::await);
+        HistoryWriter.submit(2L, () -> {
+        });
+
+        HistoryWriter.Stats stats = HistoryWriter.getStats();
+        assertEquals(stats.queuedByProject.get(2L).intValue(), 2);
+        assertTrue(stats.queued >= 2);
+
+        latch.countDown();
+        HistoryWriter.flush(2L);
+        stats = HistoryWriter.getStats();
+        assertEquals(stats.queuedByProject.get(2L), null);
+        assertEquals(stats.written, writtenBefore + 2);
+    }
+
+    @Test
+    public void testFailedWriteDoesNotBlockTheNextOnes() throws Exception {
+        List<String> written = Collections.synchronizedList(new ArrayList<>());
+        long failedBefore = HistoryWriter.getStats().failed;
+        HistoryWriter.submit(3L, () -> {
+            throw new Exception("disk full");
+        });
+        HistoryWriter.submit(3L, () -> written.add("next"));
+        HistoryWriter.flush(3L);
+
+        assertEquals(written, Collections.singletonList("next"));
+        assertEquals(HistoryWriter.getStats().failed, failedBefore + 1);
+    }
+
+    @Test
+    public void testFailedWritesAreReportedUntilCleared() throws Exception {
+        HistoryWriter.submit(5L, () -> {
+            throw new Exception("disk full");
+        });
+        HistoryWriter.submit(5L, () -> {
+        });
+
+        assertFalse(HistoryWriter.flush(5L));
+        assertFalse(HistoryWriter.flush(5L));
+        assertTrue(HistoryWriter.flush(6L));
+
+        HistoryWriter.clearFailures(5L);
+        assertTrue(HistoryWriter.flush(5L));
+    }
+
+    @Test
+    public void testWritesAreSynchronousWhenDisabled() throws Exception {
+        HistoryWriter.s_enabled = false;
+        List<String> written = new ArrayList<>();
+        HistoryWriter.submit(4L, () -> written.add("now"));
+
+        assertEquals(written, Collections.singletonList("now"));
+    }
+}
@@ -0,0 +1,176 @@
+/*******************************************************************************
+ * Copyright (C) 2024, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.io;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.Files;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.refine.ProjectManager;
+import com.google.refine.RefineTest;
+import com.google.refine.browsing.EngineConfig;
+import com.google.refine.model.Project;
+import com.google.refine.operations.OnError;
+import com.google.refine.operations.OperationRegistry;
+import com.google.refine.operations.cell.TextTransformOperation;
+import com.google.refine.util.TestUtils;
+
+public class ProjectJournalTests extends RefineTest {
+
+    Project project;
+    File dir;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        OperationRegistry.registerOperation(getCoreModule(), "text-transform", TextTransformOperation.class);
+        ProjectJournal.s_enabled = true;
+        FileProjectManager.initialize(TestUtils.createTempDirectory("openrefine-project-journal-test"));
+        project = createProject(new String[] { "text" },
+                new Serializable[][] {
+                        { "a" },
+                        { "b" },
+                });
+        dir = ((FileProjectManager) ProjectManager.singleton).getProjectDir(project.id);
+        ProjectUtilities.save(project);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        ProjectJournal.s_enabled = false;
+        ProjectJournal.s_maxRecords = 100;
+    }
+
+    @Test
+    public void testSavesAppendToJournal() throws Exception {
+        byte[] snapshot = Files.readAllBytes(new File(dir, ProjectUtilities.DATA_ZIP).toPath());
+        assertFalse(journal().exists());
+
+        transform("value + '1'");
+        ProjectUtilities.save(project);
+        transform("value + '2'");
+        ProjectUtilities.save(project);
+
+        assertEquals(Files.readAllBytes(new File(dir, ProjectUtilities.DATA_ZIP).toPath()), snapshot);
+        assertTrue(journal().exists());
+
+        Project loaded = ProjectUtilities.load(dir, project.id);
+        assertEquals(loaded.rows.get(0).getCellValue(0), "a12");
+        assertEquals(loaded.rows.get(1).getCellValue(0), "b12");
+        assertEquals(loaded.history.getPastEntryCount(), 2);
+    }
+
+    @Test
+    public void testReplaysUndoneAndDiscardedEntries() throws Exception {
+        transform("value + '1'");
+        ProjectUtilities.save(project);
+        long firstEntryID = project.history.getLastDoneEntryID();
+        project.history.undoRedo(0);
+        ProjectUtilities.save(project);
+        // discards the first entry, whose change is still needed to replay the journal
+        transform("value + '2'");
+        ProjectUtilities.save(project);
+        assertTrue(changeFile(firstEntryID).exists());
+
+        Project loaded = ProjectUtilities.load(dir, project.id);
+        assertEquals(loaded.rows.get(0).getCellValue(0), "a2");
+        assertEquals(loaded.history.getAllEntries().size(), 1);
+
+        ProjectUtilities.saveSnapshot(project);
+        assertFalse(journal().exists());
+        assertFalse(changeFile(firstEntryID).exists());
+        loaded = ProjectUtilities.load(dir, project.id);
+        assertEquals(loaded.rows.get(0).getCellValue(0), "a2");
+    }
+
+    @Test
+    public void testReplaysUndoOnly() throws Exception {
+        transform("value + '1'");
+        ProjectUtilities.saveSnapshot(project);
+        project.history.undoRedo(0);
+        ProjectUtilities.save(project);
+
+        Project loaded = ProjectUtilities.load(dir, project.id);
+        assertEquals(loaded.rows.get(0).getCellValue(0), "a");
+        assertEquals(loaded.history.getPastEntryCount(), 0);
+        assertEquals(loaded.history.getAllEntries().size(), 1);
+    }
+
+    @Test
+    public void testCompaction() throws Exception {
+        ProjectJournal.s_maxRecords = 1;
+        transform("value + '1'");
+        ProjectUtilities.save(project);
+        transform("value + '2'");
+        ProjectUtilities.save(project);
+        assertTrue(journal().exists());
+
+        ProjectJournal.scheduleCompaction(project).get();
+
+        assertFalse(journal().exists());
+        Project loaded = ProjectUtilities.load(dir, project.id);
+        assertEquals(loaded.rows.get(0).getCellValue(0), "a12");
+    }
+
+    @Test
+    public void testIgnoresJournalOfAnotherSnapshot() throws Exception {
+        transform("value + '1'");
+        ProjectUtilities.save(project);
+        File staleJournal = new File(dir, "stale.txt");
+        FileUtils.copyFile(journal(), staleJournal);
+        ProjectUtilities.saveSnapshot(project);
+        FileUtils.copyFile(staleJournal, journal());
+
+        Project loaded = ProjectUtilities.load(dir, project.id);
+        assertEquals(loaded.rows.get(0).getCellValue(0), "a1");
+        assertEquals(loaded.history.getPastEntryCount(), 1);
+    }
+
+    private void transform(String expression) throws Exception {
+        runOperation(new TextTransformOperation(
+                EngineConfig.reconstruct("{\"mode\":\"row-based\",\"facets\":[]}"),
+                "text", expression, OnError.KeepOriginal, false, 0), project);
+    }
+
+    private File journal() {
+        return new File(dir, ProjectJournal.JOURNAL_FILE);
+    }
+
+    private File changeFile(long entryID) {
+        return new File(new File(dir, FileHistoryEntryManager.HISTORY_DIR), entryID + ".change.zip");
+    }
+}
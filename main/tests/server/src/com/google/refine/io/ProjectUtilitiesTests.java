@@ -0,0 +1,286 @@
+/*******************************************************************************
+ * Copyright (C) 2024, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.io;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertThrows;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.Writer;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Properties;
+import java.util.zip.ZipFile;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.refine.ProjectManager;
+import com.google.refine.ProjectMetadata;
+import com.google.refine.RefineTest;
+import com.google.refine.browsing.EngineConfig;
+import com.google.refine.expr.EvalError;
+import com.google.refine.history.Change;
+import com.google.refine.history.HistoryEntry;
+import com.google.refine.model.Cell;
+import com.google.refine.model.Project;
+import com.google.refine.model.Recon;
+import com.google.refine.model.Row;
+import com.google.refine.operations.OnError;
+import com.google.refine.operations.cell.TextTransformOperation;
+import com.google.refine.util.TestUtils;
+
+public class ProjectUtilitiesTests extends RefineTest {
+
+    File dir;
+    File projectDir;
+    Project project;
+    Recon recon;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        dir = TestUtils.createTempDirectory("openrefine-project-utilities-test");
+        projectDir = new File(dir, "1.project");
+        projectDir.mkdir();
+        recon = testRecon("Paris", "Q90", Recon.Judgment.Matched);
+        project = createProject(new String[] { "text", "number", "other" },
+                new Serializable[][] {
+                        { "a", 1L, true },
+                        { "a", 2.5, OffsetDateTime.of(2024, 3, 1, 12, 30, 0, 0, ZoneOffset.ofHours(2)) },
+                        { new Cell("Paris", recon), Double.NaN, new EvalError("boom") },
+                        { new Cell("Paris", recon), null, new Cell(null, null) },
+                        { "x".repeat(1000), Long.MIN_VALUE, "a" },
+                });
+        project.rows.get(1).setFlagged(true);
+        project.rows.get(2).setStarred(true);
+    }
+
+    @AfterMethod
+    public void resetFormat() {
+        ProjectUtilities.s_binaryFormat = true;
+        ProjectUtilities.s_lazyLoading = false;
+    }
+
+    @Test
+    public void testBinaryRoundTrip() throws IOException {
+        File file = new File(dir, ProjectUtilities.DATA_ZIP);
+        ProjectUtilities.saveToFile(project, file);
+        try (ZipFile zipFile = new ZipFile(file)) {
+            assertNotNull(zipFile.getEntry("data.bin"));
+            assertNull(zipFile.getEntry("data.txt"));
+        }
+
+        Project loaded = ProjectUtilities.loadFromFile(file, project.id);
+
+        assertEquals(loaded.columnModel.columns.size(), 3);
+        assertEquals(loaded.rows.size(), project.rows.size());
+        for (int i = 0; i < project.rows.size(); i++) {
+            assertEquals(loaded.rows.get(i).cells, project.rows.get(i).cells, "row " + i);
+            assertEquals(loaded.rows.get(i).flagged, project.rows.get(i).flagged);
+            assertEquals(loaded.rows.get(i).starred, project.rows.get(i).starred);
+        }
+        // recons shared between cells are loaded once
+        assertSame(loaded.rows.get(2).getCell(0).recon, loaded.rows.get(3).getCell(0).recon);
+        // values keep their exact types
+        assertEquals(loaded.rows.get(0).getCellValue(1), 1L);
+        assertTrue(((Double) loaded.rows.get(2).getCellValue(1)).isNaN());
+        assertEquals(((OffsetDateTime) loaded.rows.get(1).getCellValue(2)).getOffset(), ZoneOffset.ofHours(2));
+    }
+
+    @Test
+    public void testLazyLoading() throws IOException {
+        ProjectUtilities.s_lazyLoading = true;
+        File file = new File(projectDir, ProjectUtilities.DATA_ZIP);
+        ProjectUtilities.saveToFile(project, file);
+
+        Project loaded = ProjectUtilities.loadFromFile(file, project.id);
+
+        assertEquals(loaded.columnModel.columns.size(), 3);
+        assertEquals(loaded.rows.size(), project.rows.size());
+        for (int i = project.rows.size() - 1; i >= 0; i--) {
+            assertEquals(loaded.rows.get(i).cells, project.rows.get(i).cells, "row " + i);
+            assertEquals(loaded.rows.get(i).flagged, project.rows.get(i).flagged);
+            assertEquals(loaded.rows.get(i).starred, project.rows.get(i).starred);
+        }
+        assertEquals(loaded.rows.get(4).getCellValue(2), "a");
+        assertEquals(loaded.rows.get(3).getCell(0).recon, recon);
+        assertEquals(rowFiles().length, 1);
+
+        loaded.dispose();
+        assertEquals(rowFiles().length, 0);
+    }
+
+    @Test
+    public void testLazilyLoadedProjectIsMaterializedByChanges() throws Exception {
+        ProjectUtilities.s_lazyLoading = true;
+        File file = new File(projectDir, ProjectUtilities.DATA_ZIP);
+        ProjectUtilities.saveToFile(project, file);
+        Project loaded = ProjectUtilities.loadFromFile(file, Project.generateID());
+        ProjectManager.singleton.registerProject(loaded, new ProjectMetadata());
+
+        runOperation(new TextTransformOperation(
+                EngineConfig.reconstruct("{\"mode\":\"row-based\",\"facets\":[]}"),
+                "text", "value + 'b'", OnError.KeepOriginal, false, 0), loaded);
+
+        assertEquals(rowFiles().length, 0);
+        assertEquals(loaded.rows.get(0).getCellValue(0), "ab");
+        assertEquals(loaded.rows.get(1).getCellValue(0), "ab");
+        assertEquals(loaded.rows.get(3).getCell(0).value, "Parisb");
+
+        loaded.history.undoRedo(0);
+        assertEquals(loaded.rows.get(0).getCellValue(0), "a");
+        assertEquals(loaded.rows.get(3).getCell(0).value, "Paris");
+    }
+
+    @Test
+    public void testEstimatingLazilyLoadedRowsKeepsTheCachedOnes() throws IOException {
+        ProjectUtilities.s_lazyLoading = true;
+        File file = new File(projectDir, ProjectUtilities.DATA_ZIP);
+        ProjectUtilities.saveToFile(project, file);
+        Project loaded = ProjectUtilities.loadFromFile(file, project.id);
+        Row row = loaded.rows.get(4);
+
+        long bytes = loaded.estimateRetainedBytes();
+
+        // only the cached row is measured, and it stays cached
+        assertTrue(bytes > 1000 && bytes < 4000, Long.toString(bytes));
+        assertSame(loaded.rows.get(4), row);
+        loaded.dispose();
+    }
+
+    @Test
+    public void testRowFilesLeftBehindAreDeleted() throws IOException {
+        ProjectUtilities.s_lazyLoading = true;
+        File file = new File(projectDir, ProjectUtilities.DATA_ZIP);
+        ProjectUtilities.saveToFile(project, file);
+        ProjectUtilities.loadFromFile(file, project.id);
+        assertEquals(rowFiles().length, 1);
+
+        // as when OpenRefine is killed and the workspace opened again
+        ProjectUtilities.deleteRowFiles(dir);
+        assertEquals(rowFiles().length, 0);
+    }
+
+    private File[] rowFiles() {
+        // the row files are kept in the workspace, outside of the project directory
+        assertEquals(projectDir.list().length, 1);
+        File[] files = new File(dir, ProjectUtilities.ROW_FILE_DIR).listFiles();
+        return files == null ? new File[0] : files;
+    }
+
+    /**
+     * A change which fails to be written a given number of times.
+     */
+    static class FailingChange implements Change {
+
+        int failures;
+
+        FailingChange(int failures) {
+            this.failures = failures;
+        }
+
+        @Override
+        public void apply(Project project) {
+        }
+
+        @Override
+        public void revert(Project project) {
+        }
+
+        @Override
+        public void save(Writer writer, Properties options) throws IOException {
+            if (failures > 0) {
+                failures--;
+                throw new IOException("disk full");
+            }
+            writer.write("/ec/\n");
+        }
+    }
+
+    private HistoryEntry addFailingEntry(int failures) throws IOException {
+        FileProjectManager.initialize(TestUtils.createTempDirectory("openrefine-history-failure-test"));
+        project = createProject(new String[] { "text" }, new Serializable[][] { { "a" } });
+        ProjectUtilities.save(project);
+        HistoryEntry entry = new HistoryEntry(HistoryEntry.allocateID(), project, "fail", null, new FailingChange(failures));
+        project.history.addEntry(entry);
+        assertFalse(HistoryWriter.flush(project.id));
+        return entry;
+    }
+
+    @Test
+    public void testSaveWritesChangesWhichFailedToBeWrittenAgain() throws IOException {
+        HistoryEntry entry = addFailingEntry(1);
+
+        ProjectUtilities.save(project);
+
+        assertTrue(entry.isChangeSaved());
+        assertTrue(HistoryWriter.flush(project.id));
+    }
+
+    @Test
+    public void testSaveIsRefusedWhileAChangeCannotBeWritten() throws IOException {
+        HistoryEntry entry = addFailingEntry(2);
+        Instant lastSave = project.getLastSave();
+
+        assertThrows(IOException.class, () -> ProjectUtilities.save(project));
+        assertEquals(project.getLastSave(), lastSave);
+        assertFalse(entry.isChangeSaved());
+
+        // until the change is written
+        ProjectUtilities.save(project);
+        assertTrue(entry.isChangeSaved());
+        assertTrue(project.getLastSave().isAfter(lastSave));
+    }
+
+    @Test
+    public void testLineBasedProjectsStillLoad() throws IOException {
+        ProjectUtilities.s_binaryFormat = false;
+        File file = new File(dir, ProjectUtilities.DATA_ZIP);
+        ProjectUtilities.saveToFile(project, file);
+        try (ZipFile zipFile = new ZipFile(file)) {
+            assertNotNull(zipFile.getEntry("data.txt"));
+        }
+
+        Project loaded = ProjectUtilities.loadFromFile(file, project.id);
+
+        assertEquals(loaded.rows.size(), project.rows.size());
+        assertEquals(loaded.rows.get(0).getCellValue(0), "a");
+        assertEquals(loaded.rows.get(2).getCell(0).recon, recon);
+        assertFalse(loaded.rows.get(0).flagged);
+        assertTrue(loaded.rows.get(1).flagged);
+    }
+}
@@ -0,0 +1,162 @@
+/*******************************************************************************
+ * Copyright (C) 2024, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.io;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.refine.RefineTest;
+import com.google.refine.util.TestUtils;
+
+public class ReconResultCacheTests extends RefineTest {
+
+    static final String SERVICE = "https://example.com/api";
+
+    File dir;
+    ReconResultCache cache;
+    long diskBudget;
+    long timeToLive;
+
+    @BeforeMethod
+    public void setUpCache() throws IOException {
+        dir = TestUtils.createTempDirectory("recon-cache");
+        cache = new ReconResultCache(dir);
+        diskBudget = ReconResultCache.s_diskBudget;
+        timeToLive = ReconResultCache.s_timeToLive;
+    }
+
+    @AfterMethod
+    public void tearDownCache() {
+        cache.close();
+        ReconResultCache.s_diskBudget = diskBudget;
+        ReconResultCache.s_timeToLive = timeToLive;
+    }
+
+    private static String query(int i) {
+        return "{\"query\":\"value " + i + "\",\"type_strict\":\"should\"}";
+    }
+
+    private static String response(int i) {
+        return "[{\"id\":\"Q" + i + "\",\"name\":\"value " + i + " ✓\",\"score\":100,\"match\":true,\"type\":[]}]";
+    }
+
+    @Test
+    public void testResponsesAreKeptAcrossRestarts() {
+        for (int i = 0; i < 100; i++) {
+            cache.put(SERVICE, query(i), response(i));
+        }
+        cache.put(SERVICE, query(7), response(1007));
+        assertEquals(cache.get(SERVICE, query(3)), response(3));
+        assertNull(cache.get("https://other.example.com/api", query(3)));
+        cache.close();
+
+        ReconResultCache reopened = new ReconResultCache(dir);
+        try {
+            assertEquals(reopened.size(), 100);
+            for (int i = 0; i < 100; i++) {
+                assertEquals(reopened.get(SERVICE, query(i)), response(i == 7 ? 1007 : i));
+            }
+            assertNull(reopened.get(SERVICE, query(100)));
+            assertEquals(reopened.getHits(), 100);
+            assertEquals(reopened.getMisses(), 1);
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    public void testExpiredResponsesAreIgnored() throws Exception {
+        ReconResultCache.s_timeToLive = 50;
+        cache.put(SERVICE, query(1), response(1));
+        assertEquals(cache.get(SERVICE, query(1)), response(1));
+
+        Thread.sleep(100);
+        cache.put(SERVICE, query(2), response(2));
+
+        assertNull(cache.get(SERVICE, query(1)));
+        assertEquals(cache.get(SERVICE, query(2)), response(2));
+        assertEquals(cache.size(), 1);
+    }
+
+    @Test
+    public void testInvalidation() {
+        cache.put(SERVICE, query(1), response(1));
+        cache.put("https://other.example.com/api", query(1), response(2));
+
+        cache.invalidate(SERVICE);
+        assertNull(cache.get(SERVICE, query(1)));
+        assertEquals(cache.get("https://other.example.com/api", query(1)), response(2));
+
+        cache.invalidate(null);
+        assertEquals(cache.size(), 0);
+        cache.close();
+        assertEquals(new File(dir, "responses.log").length(), 0);
+    }
+
+    @Test
+    public void testLogStaysWithinDiskBudget() {
+        ReconResultCache.s_diskBudget = 20 * 1024;
+        for (int i = 0; i < 1000; i++) {
+            cache.put(SERVICE, query(i), response(i));
+            // keeps the first response in use
+            assertEquals(cache.get(SERVICE, query(0)), response(0));
+        }
+
+        assertTrue(new File(dir, "responses.log").length() <= ReconResultCache.s_diskBudget);
+        assertEquals(cache.get(SERVICE, query(0)), response(0));
+        assertEquals(cache.get(SERVICE, query(999)), response(999));
+        assertNull(cache.get(SERVICE, query(1)));
+    }
+
+    @Test
+    public void testPartiallyWrittenResponseIsDropped() throws IOException {
+        cache.put(SERVICE, query(1), response(1));
+        cache.close();
+        try (FileOutputStream out = new FileOutputStream(new File(dir, "responses.log"), true)) {
+            out.write(new byte[] { 0, 0, 0, 23, 'h', 't', 't' });
+        }
+
+        ReconResultCache reopened = new ReconResultCache(dir);
+        try {
+            assertEquals(reopened.get(SERVICE, query(1)), response(1));
+            reopened.put(SERVICE, query(2), response(2));
+            assertEquals(reopened.get(SERVICE, query(2)), response(2));
+        } finally {
+            reopened.close();
+        }
+    }
+}
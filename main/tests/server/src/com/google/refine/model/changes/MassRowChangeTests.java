@@ -0,0 +1,207 @@
+/*******************************************************************************
+ * Copyright (C) 2024, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.model.changes;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.io.LineNumberReader;
+import java.io.Serializable;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.refine.RefineTest;
+import com.google.refine.history.Change;
+import com.google.refine.history.History;
+import com.google.refine.model.Cell;
+import com.google.refine.model.Project;
+import com.google.refine.model.Recon;
+import com.google.refine.model.Row;
+import com.google.refine.util.Pool;
+
+public class MassRowChangeTests extends RefineTest {
+
+    Project project;
+    List<List<Object>> oldValues;
+
+    @BeforeMethod
+    public void setUp() {
+        project = createProject(new String[] { "key", "value" },
+                new Serializable[][] {
+                        { "1", "a;b" },
+                        { "2", "c" },
+                        { null, "d" },
+                        { "3", "e" },
+                });
+        project.rows.get(3).starred = true;
+        oldValues = values(project.rows);
+    }
+
+    static List<List<Object>> values(List<Row> rows) {
+        List<List<Object>> values = new ArrayList<>();
+        for (Row row : rows) {
+            List<Object> rowValues = new ArrayList<>();
+            for (int c = 0; c < 2; c++) {
+                rowValues.add(row.getCellValue(c));
+            }
+            rowValues.add(row.starred);
+            values.add(rowValues);
+        }
+        return values;
+    }
+
+    private List<Row> newRows() {
+        List<Row> rows = new ArrayList<>();
+        Row first = project.rows.get(0).dup();
+        first.setCell(1, new Cell("a", null));
+        rows.add(first);
+        Row added = new Row(2);
+        added.setCell(1, new Cell("b", null));
+        rows.add(added);
+        rows.add(project.rows.get(1).dup());
+        // the third row is removed
+        rows.add(project.rows.get(3).dup());
+        return rows;
+    }
+
+    static Change roundTrip(Change change) throws Exception {
+        StringWriter writer = new StringWriter();
+        History.writeOneChange(writer, change, new Pool());
+        return History.readOneChange(new LineNumberReader(new StringReader(writer.toString())), new Pool());
+    }
+
+    @Test
+    public void testApplyRevertAndReapply() {
+        List<Row> rows = newRows();
+        List<List<Object>> newValues = values(rows);
+        MassRowChange change = new MassRowChange(rows);
+
+        change.apply(project);
+        assertEquals(values(project.rows), newValues);
+        change.revert(project);
+        assertEquals(values(project.rows), oldValues);
+        change.apply(project);
+        assertEquals(values(project.rows), newValues);
+    }
+
+    @Test
+    public void testKeepsOnlyTheDifference() {
+        MassRowChange change = new MassRowChange(newRows());
+        change.apply(project);
+
+        assertEquals(change._sources, new int[] { 0, -1, 1, 3 });
+        assertEquals(change._cellChanges.length, 1);
+        assertEquals(change._cellChanges[0].row, 0);
+        assertEquals(change._cellChanges[0].newCell.value, "a");
+        assertEquals(change._addedRows.size(), 1);
+        assertEquals(change._removedIndices, new int[] { 2 });
+        assertEquals(change._removedRows.get(0).getCellValue(1), "d");
+    }
+
+    @Test
+    public void testReapplyKeepsTheNewRecons() {
+        Recon oldRecon = testRecon("c", "Q1", Recon.Judgment.Matched);
+        project.rows.get(1).setCell(1, new Cell("c", oldRecon));
+        // an equal recon, which is still a different object
+        Recon newRecon = testRecon("c", "Q1", Recon.Judgment.Matched);
+        assertEquals(newRecon, oldRecon);
+        List<Row> rows = newRows();
+        rows.get(2).setCell(1, new Cell("c", newRecon));
+        MassRowChange change = new MassRowChange(rows);
+
+        change.apply(project);
+        change.revert(project);
+        assertSame(project.rows.get(1).getCell(1).recon, oldRecon);
+        change.apply(project);
+        assertSame(project.rows.get(2).getCell(1).recon, newRecon);
+    }
+
+    @Test
+    public void testSaveAndLoad() throws Exception {
+        List<Row> rows = newRows();
+        List<List<Object>> newValues = values(rows);
+        MassRowChange change = new MassRowChange(rows);
+        change.apply(project);
+
+        Change loaded = roundTrip(change);
+        loaded.revert(project);
+        assertEquals(values(project.rows), oldValues);
+        loaded.apply(project);
+        assertEquals(values(project.rows), newValues);
+    }
+
+    @Test
+    public void testLoadLegacyFormat() throws Exception {
+        List<Row> rows = newRows();
+        List<List<Object>> newValues = values(rows);
+        StringWriter writer = new StringWriter();
+        writer.write("newRowCount=" + rows.size() + "\n");
+        for (Row row : rows) {
+            row.save(writer, new Properties());
+            writer.write('\n');
+        }
+        writer.write("oldRowCount=" + project.rows.size() + "\n");
+        for (Row row : project.rows) {
+            row.save(writer, new Properties());
+            writer.write('\n');
+        }
+        writer.write("/ec/\n");
+        Change loaded = MassRowChange.load(new LineNumberReader(new StringReader(writer.toString())), new Pool());
+
+        loaded.apply(project);
+        assertEquals(values(project.rows), newValues);
+        loaded.revert(project);
+        assertEquals(values(project.rows), oldValues);
+    }
+
+    @Test
+    public void testIndexEncoding() throws Exception {
+        int[][] arrays = {
+                {},
+                { 0, 1, 2, 3, 4 },
+                { 0, -1, -1, 1, 2, 7, 8, -1, 3 },
+                { 5, 3, 9, 0, Integer.MAX_VALUE },
+        };
+        for (int[] indices : arrays) {
+            assertEquals(IndexEncoding.decode(IndexEncoding.encode(indices)), indices, Arrays.toString(indices));
+        }
+        int[] identity = new int[1000000];
+        for (int i = 0; i < identity.length; i++) {
+            identity[i] = i;
+        }
+        assertTrue(IndexEncoding.encode(identity).length() < 16);
+    }
+}
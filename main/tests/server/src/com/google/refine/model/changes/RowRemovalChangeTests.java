@@ -0,0 +1,93 @@
+/*******************************************************************************
+ * Copyright (C) 2024, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.model.changes;
+
+import static com.google.refine.model.changes.MassRowChangeTests.roundTrip;
+import static com.google.refine.model.changes.MassRowChangeTests.values;
+import static org.testng.Assert.assertEquals;
+
+import java.io.LineNumberReader;
+import java.io.Serializable;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.refine.RefineTest;
+import com.google.refine.history.Change;
+import com.google.refine.model.Project;
+import com.google.refine.util.Pool;
+
+public class RowRemovalChangeTests extends RefineTest {
+
+    Project project;
+    List<List<Object>> oldValues;
+
+    @BeforeMethod
+    public void setUp() {
+        project = createProject(new String[] { "key", "value" },
+                new Serializable[][] {
+                        { "1", "a" },
+                        { "2", "b" },
+                        { "3", "c" },
+                        { "4", "d" },
+                        { "5", "e" },
+                });
+        oldValues = values(project.rows);
+    }
+
+    @Test
+    public void testApplyAndRevert() throws Exception {
+        Change change = new RowRemovalChange(Arrays.asList(0, 2, 4));
+
+        change.apply(project);
+        assertEquals(values(project.rows), Arrays.asList(oldValues.get(1), oldValues.get(3)));
+        change = roundTrip(change);
+        change.revert(project);
+        assertEquals(values(project.rows), oldValues);
+        change.apply(project);
+        assertEquals(project.rows.size(), 2);
+        assertEquals(project.rows.get(1).getCellValue(1), "d");
+    }
+
+    @Test
+    public void testLoadLegacyFormat() throws Exception {
+        new RowRemovalChange(Arrays.asList(1, 2)).apply(project);
+        String saved = "rowIndexCount=2\n1\n2\n"
+                + "rowCount=2\n"
+                + "{\"flagged\":false,\"starred\":false,\"cells\":[{\"v\":\"2\"},{\"v\":\"b\"}]}\n"
+                + "{\"flagged\":false,\"starred\":false,\"cells\":[{\"v\":\"3\"},{\"v\":\"c\"}]}\n"
+                + "/ec/\n";
+        Change loaded = RowRemovalChange.load(new LineNumberReader(new StringReader(saved)), new Pool());
+
+        loaded.revert(project);
+        assertEquals(values(project.rows), oldValues);
+    }
+}
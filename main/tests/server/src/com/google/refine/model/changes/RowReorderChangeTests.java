@@ -0,0 +1,86 @@
+/*******************************************************************************
+ * Copyright (C) 2024, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.model.changes;
+
+import static com.google.refine.model.changes.MassRowChangeTests.roundTrip;
+import static org.testng.Assert.assertEquals;
+
+import java.io.LineNumberReader;
+import java.io.Serializable;
+import java.io.StringReader;
+import java.util.Arrays;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.refine.RefineTest;
+import com.google.refine.history.Change;
+import com.google.refine.model.Project;
+import com.google.refine.util.Pool;
+
+public class RowReorderChangeTests extends RefineTest {
+
+    Project project;
+
+    @BeforeMethod
+    public void setUp() {
+        project = createProject(new String[] { "value" },
+                new Serializable[][] {
+                        { "a" },
+                        { "b" },
+                        { "c" },
+                });
+    }
+
+    private String values() {
+        StringBuilder sb = new StringBuilder();
+        project.rows.forEach(row -> sb.append(row.getCellValue(0)));
+        return sb.toString();
+    }
+
+    @Test
+    public void testSaveAndLoad() throws Exception {
+        Change change = roundTrip(new RowReorderChange(Arrays.asList(2, 0, 1)));
+
+        change.apply(project);
+        assertEquals(values(), "cab");
+        change.revert(project);
+        assertEquals(values(), "abc");
+    }
+
+    @Test
+    public void testLoadLegacyFormat() throws Exception {
+        String saved = "rowIndexCount=3\n1\n2\n0\n/ec/\n";
+        Change change = RowReorderChange.load(new LineNumberReader(new StringReader(saved)), new Pool());
+
+        change.apply(project);
+        assertEquals(values(), "bca");
+        change.revert(project);
+        assertEquals(values(), "abc");
+    }
+}
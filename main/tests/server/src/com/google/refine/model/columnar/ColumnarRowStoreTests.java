@@ -0,0 +1,187 @@
+/*******************************************************************************
+ * Copyright (C) 2024, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.model.columnar;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.Serializable;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.refine.expr.EvalError;
+import com.google.refine.model.Cell;
+import com.google.refine.model.Recon;
+import com.google.refine.model.Row;
+
+public class ColumnarRowStoreTests {
+
+    ColumnarRowStore store;
+
+    @BeforeMethod
+    public void setUp() {
+        store = new ColumnarRowStore();
+    }
+
+    private static Row row(Object... values) {
+        Row row = new Row(values.length);
+        for (int i = 0; i < values.length; i++) {
+            row.setCell(i, values[i] == null ? null : new Cell((Serializable) values[i], null));
+        }
+        return row;
+    }
+
+    private static List<Object> values(Row row) {
+        List<Object> values = new ArrayList<>();
+        for (Cell cell : row.cells) {
+            values.add(cell == null ? null : cell.value);
+        }
+        return values;
+    }
+
+    @Test
+    public void testRoundTripPreservesValueTypes() {
+        OffsetDateTime date = OffsetDateTime.parse("2024-01-02T03:04:05Z");
+        Recon recon = new Recon(1L, "http://id", "http://schema");
+        Row row = row("a", 12L, 3.5, 7, true, date, new EvalError("boom"));
+        row.setCell(8, new Cell(null, recon));
+        store.add(row);
+
+        Row read = store.get(0);
+        assertEquals(read.cells.size(), 9);
+        assertEquals(read.getCellValue(0), "a");
+        assertEquals(read.getCellValue(1), 12L);
+        assertEquals(read.getCellValue(2), 3.5);
+        assertEquals(read.getCellValue(3), 7);
+        assertTrue(read.getCellValue(3) instanceof Integer);
+        assertEquals(read.getCellValue(4), true);
+        assertEquals(read.getCellValue(5), date);
+        assertTrue(read.getCellValue(6) instanceof EvalError);
+        assertNull(read.getCell(7));
+        assertNull(read.getCellValue(8));
+        assertTrue(read.getCell(8).recon == recon);
+    }
+
+    @Test
+    public void testInsertAndRemove() {
+        store.add(row("a"));
+        store.add(row("c", "d"));
+        Row flagged = row("b");
+        flagged.flagged = true;
+        store.add(1, flagged);
+
+        assertEquals(store.size(), 3);
+        assertEquals(values(store.get(0)), Arrays.asList("a"));
+        assertEquals(values(store.get(1)), Arrays.asList("b"));
+        assertTrue(store.get(1).flagged);
+        assertEquals(values(store.get(2)), Arrays.asList("c", "d"));
+        assertFalse(store.get(2).flagged);
+
+        Row removed = store.remove(1);
+        assertEquals(values(removed), Arrays.asList("b"));
+        assertEquals(store.size(), 2);
+        assertEquals(values(store.get(1)), Arrays.asList("c", "d"));
+        assertFalse(store.get(1).flagged);
+
+        store.remove(1);
+        store.add(row("e"));
+        assertEquals(values(store.get(1)), Arrays.asList("e"));
+    }
+
+    @Test
+    public void testEditsWriteThrough() {
+        store.add(row("a", "b"));
+        store.add(row("c"));
+
+        Row row = store.get(1);
+        row.setCell(2, new Cell("x", null));
+        row.setFlagged(true);
+        row.setStarred(true);
+
+        Row read = store.get(1);
+        assertEquals(values(read), Arrays.asList("c", null, "x"));
+        assertTrue(read.flagged);
+        assertTrue(read.starred);
+
+        read.cells.set(2, null);
+        assertNull(store.getCell(1, 2));
+        assertEquals(store.getCell(0, 1).value, "b");
+    }
+
+    @Test
+    public void testRowsSurviveStructuralChanges() {
+        store.add(row("a"));
+        store.add(row("b"));
+        List<Row> oldRows = new ArrayList<>(store);
+
+        store.clear();
+        store.add(row("z"));
+        // rows read before the change are neither affected nor able to corrupt the store
+        oldRows.get(0).setCell(0, new Cell("y", null));
+
+        assertEquals(store.size(), 1);
+        assertEquals(store.get(0).getCellValue(0), "z");
+        store.clear();
+        store.addAll(oldRows);
+        assertEquals(values(store.get(0)), Arrays.asList("y"));
+        assertEquals(values(store.get(1)), Arrays.asList("b"));
+    }
+
+    @Test
+    public void testDictionaryEncodesRepeatedStrings() {
+        for (int i = 0; i < 1000; i++) {
+            store.add(row("value " + (i % 10)));
+        }
+        assertEquals(store.get(999).getCellValue(0), "value 9");
+        assertTrue(store.get(3).getCellValue(0) == store.get(13).getCellValue(0));
+    }
+
+    @Test
+    public void testOverwrittenStringsAreReclaimed() {
+        for (int i = 0; i < 10000; i++) {
+            store.add(row("value " + i));
+        }
+        long initialBytes = store.estimateBytes();
+        // like repeated transforms of the column, each producing distinct values
+        for (int pass = 0; pass < 20; pass++) {
+            for (int i = 0; i < store.size(); i++) {
+                store.get(i).setCell(0, new Cell("pass " + pass + " value " + i, null));
+            }
+            assertTrue(store.estimateBytes() < 3 * initialBytes, "pass " + pass + ": " + store.estimateBytes());
+        }
+        assertEquals(store.get(1234).getCellValue(0), "pass 19 value 1234");
+        assertEquals(store.get(9999).getCellValue(0), "pass 19 value 9999");
+    }
+}
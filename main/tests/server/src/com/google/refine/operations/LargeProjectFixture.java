@@ -0,0 +1,78 @@
+/*******************************************************************************
+ * Copyright (C) 2024, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.operations;
+
+import java.io.Serializable;
+
+import com.google.refine.browsing.util.ParallelRowVisiting;
+import com.google.refine.process.BackgroundHistoryEntryProcess;
+
+/**
+ * A project large enough to be visited in several partitions, for the tests of operations run in parallel and in the
+ * background. Its first column holds the index of each row and its second a value, blank every fifth row.
+ * {@link #setUp()} and {@link #tearDown()} are meant to be called before and after each test, to make operations on
+ * such projects run in parallel and in the background, and to restore the defaults.
+ */
+public class LargeProjectFixture {
+
+    static public final int ROW_COUNT = 3 * ParallelRowVisiting.MIN_PARTITION_SIZE + 17;
+    static public final String[] COLUMNS = { "index", "value" };
+
+    // an expression which blanks every third row and changes the value of the others
+    static public final String EXPRESSION = "grel:if(cells.index.value % 3 == 0, null, value + '_' + rowIndex)";
+
+    private int previousParallelism;
+    private int previousBackgroundRowCount;
+
+    public void setUp() {
+        previousParallelism = ParallelRowVisiting.getParallelism();
+        previousBackgroundRowCount = BackgroundHistoryEntryProcess.s_backgroundRowCount;
+        ParallelRowVisiting.setParallelism(4);
+        BackgroundHistoryEntryProcess.s_backgroundRowCount = 1000;
+    }
+
+    public void tearDown() {
+        ParallelRowVisiting.setParallelism(previousParallelism);
+        BackgroundHistoryEntryProcess.s_backgroundRowCount = previousBackgroundRowCount;
+    }
+
+    static public Serializable[][] rows() {
+        Serializable[][] rows = new Serializable[ROW_COUNT][];
+        for (int i = 0; i < ROW_COUNT; i++) {
+            rows[i] = new Serializable[] { (long) i, i % 5 == 0 ? null : "v" + (i % 7) };
+        }
+        return rows;
+    }
+
+    /**
+     * @return the value of the given row once {@link #EXPRESSION} is evaluated on it
+     */
+    static public Object expectedValue(int rowIndex) {
+        return rowIndex % 3 == 0 || rowIndex % 5 == 0 ? null : "v" + (rowIndex % 7) + "_" + rowIndex;
+    }
+}
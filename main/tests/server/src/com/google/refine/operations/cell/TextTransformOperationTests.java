@@ -1,8 +1,13 @@
 
 package com.google.refine.operations.cell;
 
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+
 import java.io.Serializable;
+import java.util.Properties;
 
+import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.BeforeSuite;
 import org.testng.annotations.Test;
@@ -11,8 +16,10 @@ import com.google.refine.RefineTest;
 import com.google.refine.browsing.EngineConfig;
 import com.google.refine.expr.EvalError;
 import com.google.refine.model.Project;
+import com.google.refine.operations.LargeProjectFixture;
 import com.google.refine.operations.OnError;
 import com.google.refine.operations.OperationRegistry;
+import com.google.refine.process.Process;
 import com.google.refine.util.ParsingUtilities;
 import com.google.refine.util.TestUtils;
 
@@ -24,6 +31,17 @@ public class TextTransformOperationTests extends RefineTest {
     }
 
     protected Project project;
+    private final LargeProjectFixture largeProjectFixture = new LargeProjectFixture();
+
+    @BeforeMethod
+    public void setUpLargeProjectFixture() {
+        largeProjectFixture.setUp();
+    }
+
+    @AfterMethod
+    public void tearDownLargeProjectFixture() {
+        largeProjectFixture.tearDown();
+    }
 
     @BeforeMethod
     public void setUpInitialState() {
@@ -172,4 +190,23 @@ public class TextTransformOperationTests extends RefineTest {
         assertProjectEquals(project, expected);
     }
 
+    @Test
+    public void testTransformLargeProjectInParallelInBackground() throws Exception {
+        Project large = createProject(LargeProjectFixture.COLUMNS, LargeProjectFixture.rows());
+        TextTransformOperation operation = new TextTransformOperation(
+                EngineConfig.reconstruct("{\"mode\":\"row-based\",\"facets\":[]}"),
+                "value",
+                LargeProjectFixture.EXPRESSION,
+                OnError.SetToBlank,
+                false, 0);
+        Process process = operation.createProcess(large, new Properties());
+        assertFalse(process.isImmediate());
+
+        runOperation(operation, large);
+
+        assertEquals(large.history.getLastPastEntries(1).size(), 1);
+        for (int i = 0; i < LargeProjectFixture.ROW_COUNT; i++) {
+            assertEquals(large.rows.get(i).getCellValue(1), LargeProjectFixture.expectedValue(i), "row " + i);
+        }
+    }
 }
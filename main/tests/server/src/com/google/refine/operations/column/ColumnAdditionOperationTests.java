@@ -27,9 +27,14 @@
 
 package com.google.refine.operations.column;
 
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+
 import java.io.Serializable;
 import java.util.Collections;
+import java.util.Properties;
 
+import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.BeforeSuite;
 import org.testng.annotations.Test;
@@ -41,20 +46,33 @@ import com.google.refine.browsing.EngineConfig;
 import com.google.refine.browsing.facets.ListFacet;
 import com.google.refine.expr.EvalError;
 import com.google.refine.model.Project;
+import com.google.refine.operations.LargeProjectFixture;
 import com.google.refine.operations.OnError;
 import com.google.refine.operations.OperationRegistry;
+import com.google.refine.process.Process;
 import com.google.refine.util.ParsingUtilities;
 import com.google.refine.util.TestUtils;
 
 public class ColumnAdditionOperationTests extends RefineTest {
 
     protected Project project;
+    private final LargeProjectFixture largeProjectFixture = new LargeProjectFixture();
 
     @BeforeSuite
     public void registerOperation() {
         OperationRegistry.registerOperation(getCoreModule(), "column-addition", ColumnAdditionOperation.class);
     }
 
+    @BeforeMethod
+    public void setUpLargeProjectFixture() {
+        largeProjectFixture.setUp();
+    }
+
+    @AfterMethod
+    public void tearDownLargeProjectFixture() {
+        largeProjectFixture.tearDown();
+    }
+
     @BeforeMethod
     public void setUpInitialState() {
         project = createProject(new String[] { "foo", "bar", "hello" },
@@ -271,4 +289,25 @@ public class ColumnAdditionOperationTests extends RefineTest {
                 });
         assertProjectEquals(project, expected);
     }
+
+    @Test
+    public void testAddColumnToLargeProjectInParallelInBackground() throws Exception {
+        Project large = createProject(LargeProjectFixture.COLUMNS, LargeProjectFixture.rows());
+        ColumnAdditionOperation operation = new ColumnAdditionOperation(
+                EngineConfig.reconstruct("{\"mode\":\"row-based\",\"facets\":[]}"),
+                "value",
+                LargeProjectFixture.EXPRESSION,
+                OnError.SetToBlank,
+                "added",
+                1);
+        Process process = operation.createProcess(large, new Properties());
+        assertFalse(process.isImmediate());
+
+        runOperation(operation, large);
+
+        int cellIndex = large.columnModel.getColumnByName("added").getCellIndex();
+        for (int i = 0; i < LargeProjectFixture.ROW_COUNT; i++) {
+            assertEquals(large.rows.get(i).getCellValue(cellIndex), LargeProjectFixture.expectedValue(i), "row " + i);
+        }
+    }
 }
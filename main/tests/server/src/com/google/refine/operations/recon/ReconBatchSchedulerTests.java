@@ -0,0 +1,302 @@
+/*******************************************************************************
+ * Copyright (C) 2024, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.operations.recon;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.Serializable;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.BeforeSuite;
+import org.testng.annotations.Test;
+
+import com.google.refine.RefineTest;
+import com.google.refine.browsing.EngineConfig;
+import com.google.refine.io.ReconResultCache;
+import com.google.refine.model.Project;
+import com.google.refine.model.Recon;
+import com.google.refine.model.recon.ReconConfig;
+import com.google.refine.model.recon.ReconJob;
+import com.google.refine.model.recon.StandardReconConfig;
+import com.google.refine.operations.OperationRegistry;
+import com.google.refine.util.ParsingUtilities;
+import com.google.refine.util.TestUtils;
+
+public class ReconBatchSchedulerTests extends RefineTest {
+
+    /**
+     * A reconciliation service matching each query to an entity whose id is the query, after a short delay. The first
+     * requests can be rejected as if the service was overloaded.
+     */
+    static class StubService extends Dispatcher {
+
+        final AtomicInteger requests = new AtomicInteger();
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        final int rejected;
+        final int rejectionCode;
+
+        StubService(int rejected, int rejectionCode) {
+            this.rejected = rejected;
+            this.rejectionCode = rejectionCode;
+        }
+
+        @Override
+        public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+            if (requests.incrementAndGet() <= rejected) {
+                return new MockResponse().setResponseCode(rejectionCode);
+            }
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(20);
+                String body = request.getBody().readUtf8();
+                JsonNode queries = ParsingUtilities.mapper.readTree(
+                        URLDecoder.decode(body.substring("queries=".length()), StandardCharsets.UTF_8));
+                ObjectNode response = ParsingUtilities.mapper.createObjectNode();
+                for (Iterator<Map.Entry<String, JsonNode>> it = queries.fields(); it.hasNext();) {
+                    Map.Entry<String, JsonNode> query = it.next();
+                    String text = query.getValue().get("query").asText();
+                    ObjectNode candidate = response.putObject(query.getKey()).putArray("result").addObject();
+                    candidate.put("id", text);
+                    candidate.put("name", text);
+                    candidate.put("score", 100);
+                    candidate.put("match", true);
+                    candidate.putArray("type");
+                }
+                return new MockResponse().setBody(response.toString());
+            } catch (Exception e) {
+                return new MockResponse().setResponseCode(500);
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }
+    }
+
+    long initialBackoff;
+    int maxConcurrency;
+
+    @BeforeSuite
+    public void registerOperation() {
+        OperationRegistry.registerOperation(getCoreModule(), "recon", ReconOperation.class);
+        ReconConfig.registerReconConfig(getCoreModule(), "standard-service", StandardReconConfig.class);
+    }
+
+    @BeforeMethod
+    public void setUpBackoff() {
+        initialBackoff = ReconBatchScheduler.s_initialBackoff;
+        ReconBatchScheduler.s_initialBackoff = 10;
+        maxConcurrency = ReconBatchScheduler.s_maxConcurrency;
+    }
+
+    @AfterMethod
+    public void restoreBackoff() {
+        ReconBatchScheduler.s_initialBackoff = initialBackoff;
+        ReconBatchScheduler.s_maxConcurrency = maxConcurrency;
+    }
+
+    private static StandardReconConfig config(MockWebServer server, int batchSize) throws Exception {
+        return StandardReconConfig.reconstruct("{"
+                + "\"mode\":\"standard-service\","
+                + "\"service\":\"" + server.url("/api") + "\","
+                + "\"identifierSpace\":\"http://example.com/entity/\","
+                + "\"schemaSpace\":\"http://example.com/prop/\","
+                + "\"autoMatch\":true,"
+                + "\"batchSize\":" + batchSize + ","
+                + "\"columnDetails\":[]}");
+    }
+
+    private static List<ReconJob> jobs(StandardReconConfig config, int count) {
+        List<ReconJob> jobs = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            jobs.add(config.createSimpleJob("value" + i));
+        }
+        return jobs;
+    }
+
+    @Test
+    public void testOneBatchAtATimeByDefault() throws Exception {
+        StubService service = new StubService(0, 0);
+        try (MockWebServer server = new MockWebServer()) {
+            server.setDispatcher(service);
+            server.start();
+            StandardReconConfig config = config(server, 5);
+            ReconBatchScheduler scheduler = new ReconBatchScheduler(config, 1234L, 5);
+            long start = System.currentTimeMillis();
+
+            List<Recon> recons = scheduler.reconcile(jobs(config, 20), () -> false, progress -> {
+            });
+
+            assertEquals(recons.size(), 20);
+            assertEquals(service.requests.get(), 4);
+            assertEquals(service.maxInFlight.get(), 1);
+            assertEquals(scheduler.getConcurrency(), 1);
+            // with a pause between batches
+            assertTrue(System.currentTimeMillis() - start >= 3 * ReconBatchScheduler.s_batchPause);
+        }
+    }
+
+    @Test
+    public void testBatchesInFlight() throws Exception {
+        ReconBatchScheduler.s_maxConcurrency = 8;
+        StubService service = new StubService(0, 0);
+        try (MockWebServer server = new MockWebServer()) {
+            server.setDispatcher(service);
+            server.start();
+            StandardReconConfig config = config(server, 5);
+            ReconBatchScheduler scheduler = new ReconBatchScheduler(config, 1234L, 5);
+            List<Integer> progress = new ArrayList<>();
+
+            List<Recon> recons = scheduler.reconcile(jobs(config, 200), () -> false, progress::add);
+
+            assertEquals(recons.size(), 200);
+            for (int i = 0; i < recons.size(); i++) {
+                assertEquals(recons.get(i).getBestCandidate().id, "value" + i);
+            }
+            assertEquals(service.requests.get(), 40);
+            assertTrue(service.maxInFlight.get() > 1);
+            assertTrue(scheduler.getConcurrency() > 1);
+            assertEquals((int) progress.get(progress.size() - 1), 100);
+        }
+    }
+
+    @Test
+    public void testOverloadedServiceIsRetried() throws Exception {
+        // the HTTP client retries 3 times by itself, so the fourth rejection reaches the scheduler
+        StubService service = new StubService(4, 429);
+        try (MockWebServer server = new MockWebServer()) {
+            server.setDispatcher(service);
+            server.start();
+            StandardReconConfig config = config(server, 10);
+            ReconBatchScheduler scheduler = new ReconBatchScheduler(config, 1234L, 10);
+
+            List<Recon> recons = scheduler.reconcile(jobs(config, 10), () -> false, progress -> {
+            });
+
+            assertEquals(scheduler.getThrottledBatches(), 1);
+            for (int i = 0; i < recons.size(); i++) {
+                assertEquals(recons.get(i).getBestCandidate().id, "value" + i);
+            }
+        }
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        StubService service = new StubService(0, 0);
+        try (MockWebServer server = new MockWebServer()) {
+            server.setDispatcher(service);
+            server.start();
+            StandardReconConfig config = config(server, 5);
+            ReconBatchScheduler scheduler = new ReconBatchScheduler(config, 1234L, 5);
+
+            assertNull(scheduler.reconcile(jobs(config, 20), () -> true, progress -> {
+            }));
+        }
+    }
+
+    @Test
+    public void testOperationAgainstStubService() throws Exception {
+        Serializable[][] rows = new Serializable[300][];
+        for (int i = 0; i < rows.length; i++) {
+            // each value appears on several rows
+            rows[i] = new Serializable[] { "value" + (i % 70) };
+        }
+        Project project = createProject(new String[] { "column" }, rows);
+        StubService service = new StubService(0, 0);
+        try (MockWebServer server = new MockWebServer()) {
+            server.setDispatcher(service);
+            server.start();
+            ReconOperation operation = new ReconOperation(EngineConfig.reconstruct("{}"), "column", config(server, 10));
+
+            runOperation(operation, project, 10000);
+
+            for (int i = 0; i < rows.length; i++) {
+                Recon recon = project.rows.get(i).getCell(0).recon;
+                assertEquals(recon.getBestCandidate().id, "value" + (i % 70));
+                assertEquals(recon.judgmentBatchSize, i % 70 < 300 % 70 ? 5 : 4);
+            }
+            assertEquals(service.requests.get(), 7);
+        }
+    }
+
+    @Test
+    public void testRerunIsAnsweredFromCache() throws Exception {
+        ReconResultCache.singleton = new ReconResultCache(TestUtils.createTempDirectory("recon-cache"));
+        StubService service = new StubService(0, 0);
+        try (MockWebServer server = new MockWebServer()) {
+            server.setDispatcher(service);
+            server.start();
+            Project project = createProject(new String[] { "column" }, values(0, 100));
+            runOperation(new ReconOperation(EngineConfig.reconstruct("{}"), "column", config(server, 10)), project, 10000);
+            assertEquals(service.requests.get(), 10);
+
+            // a refreshed export of the same data, with a few new values
+            Project refreshed = createProject(new String[] { "column" }, values(5, 105));
+            ReconOperation operation = new ReconOperation(EngineConfig.reconstruct("{}"), "column", config(server, 10));
+            ReconOperation.ReconProcess process = (ReconOperation.ReconProcess) operation.createProcess(refreshed,
+                    new Properties());
+            process.startPerforming(refreshed.getProcessManager());
+            for (int time = 0; process.isRunning() && time < 10000; time += 50) {
+                Thread.sleep(50);
+            }
+
+            assertEquals(service.requests.get(), 11);
+            assertEquals((int) process.getCacheHitRate(), 95);
+            for (int i = 0; i < 100; i++) {
+                assertEquals(refreshed.rows.get(i).getCell(0).recon.getBestCandidate().id, "value" + (i + 5));
+            }
+        } finally {
+            ReconResultCache.singleton.close();
+            ReconResultCache.singleton = null;
+        }
+    }
+
+    private static Serializable[][] values(int from, int to) {
+        Serializable[][] rows = new Serializable[to - from][];
+        for (int i = from; i < to; i++) {
+            rows[i - from] = new Serializable[] { "value" + i };
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,110 @@
+/*******************************************************************************
+ * Copyright (C) 2024, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+
+package com.google.refine.process;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.io.Serializable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.Test;
+
+import com.google.refine.RefineTest;
+import com.google.refine.browsing.RowVisitor;
+import com.google.refine.history.HistoryEntry;
+import com.google.refine.model.Project;
+import com.google.refine.model.Row;
+import com.google.refine.model.changes.ColumnRenameChange;
+
+public class BackgroundHistoryEntryProcessTests extends RefineTest {
+
+    @Test
+    public void testCancelStopsProcessWithoutHistoryEntry() throws Exception {
+        Serializable[][] grid = new Serializable[100][];
+        for (int i = 0; i < grid.length; i++) {
+            grid[i] = new Serializable[] { "v" + i };
+        }
+        Project project = createProject(new String[] { "value" }, grid);
+        CountDownLatch visiting = new CountDownLatch(1);
+        CountDownLatch canceled = new CountDownLatch(1);
+        AtomicInteger visited = new AtomicInteger();
+
+        RowVisitor blocking = new RowVisitor() {
+
+            @Override
+            public void start(Project project) {
+            }
+
+            @Override
+            public boolean visit(Project project, int rowIndex, Row row) {
+                visited.incrementAndGet();
+                visiting.countDown();
+                try {
+                    canceled.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    // interrupted by the cancellation
+                }
+                return false;
+            }
+
+            @Override
+            public void end(Project project) {
+            }
+        };
+        BackgroundHistoryEntryProcess process = new BackgroundHistoryEntryProcess(project, "slow rename",
+                (historyEntryID, self) -> {
+                    RowVisitor visitor = self.track(blocking);
+                    visitor.start(project);
+                    for (int i = 0; i < project.rows.size(); i++) {
+                        if (visitor.visit(project, i, project.rows.get(i))) {
+                            break;
+                        }
+                    }
+                    visitor.end(project);
+                    return new HistoryEntry(historyEntryID, project, "slow rename", null,
+                            new ColumnRenameChange("value", "renamed"));
+                });
+
+        project.processManager.queueProcess(process);
+        assertTrue(visiting.await(10, TimeUnit.SECONDS));
+        assertTrue(process.isRunning());
+        project.processManager.cancelAll();
+        canceled.countDown();
+        process._thread.join(10000);
+
+        assertTrue(process.isDone());
+        assertEquals(visited.get(), 1);
+        assertEquals(project.history.getPastEntryCount(), 0);
+        assertEquals(project.columnModel.getColumnNames().get(0), "value");
+        assertFalse(project.processManager.hasPending());
+    }
+}
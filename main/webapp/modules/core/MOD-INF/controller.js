@@ -71,6 +71,7 @@ function registerCommands() {
   RS.registerCommand(module, "get-all-project-metadata", new Packages.com.google.refine.commands.workspace.GetAllProjectMetadataCommand());
   RS.registerCommand(module, "set-project-metadata", new Packages.com.google.refine.commands.project.SetProjectMetadataCommand());
   RS.registerCommand(module, "get-all-project-tags", new Packages.com.google.refine.commands.workspace.GetAllProjectTagsCommand());
+  RS.registerCommand(module, "get-project-residency", new Packages.com.google.refine.commands.workspace.GetProjectResidencyCommand());
   RS.registerCommand(module, "set-project-tags", new Packages.com.google.refine.commands.project.SetProjectTagsCommand());
 
   RS.registerCommand(module, "delete-project", new Packages.com.google.refine.commands.project.DeleteProjectCommand());
@@ -81,6 +82,7 @@ function registerCommands() {
   RS.registerCommand(module, "get-processes", new Packages.com.google.refine.commands.history.GetProcessesCommand());
   RS.registerCommand(module, "get-history", new Packages.com.google.refine.commands.history.GetHistoryCommand());
   RS.registerCommand(module, "get-operations", new Packages.com.google.refine.commands.history.GetOperationsCommand());
+  RS.registerCommand(module, "get-history-writer-stats", new Packages.com.google.refine.commands.history.GetHistoryWriterStatsCommand());
   RS.registerCommand(module, "get-columns-info", new Packages.com.google.refine.commands.column.GetColumnsInfoCommand());
   RS.registerCommand(module, "get-scatterplot", new Packages.com.google.refine.commands.browsing.GetScatterplotCommand());
 
@@ -90,6 +92,8 @@ function registerCommands() {
 
   RS.registerCommand(module, "compute-facets", new Packages.com.google.refine.commands.browsing.ComputeFacetsCommand());
   RS.registerCommand(module, "compute-clusters", new Packages.com.google.refine.commands.browsing.ComputeClustersCommand());
+  RS.registerCommand(module, "get-clustering-progress", new Packages.com.google.refine.commands.browsing.GetClusteringProgressCommand());
+  RS.registerCommand(module, "cancel-clustering", new Packages.com.google.refine.commands.browsing.CancelClusteringCommand());
   RS.registerCommand(module, "get-clustering-functions-and-distances", new Packages.com.google.refine.commands.browsing.GetClusteringFunctionsAndDistancesCommand());
 
   RS.registerCommand(module, "edit-one-cell", new Packages.com.google.refine.commands.cell.EditOneCellCommand());
@@ -129,6 +133,7 @@ function registerCommands() {
   RS.registerCommand(module, "extend-data", new Packages.com.google.refine.commands.recon.ExtendDataCommand());
 
   RS.registerCommand(module, "guess-types-of-column", new Packages.com.google.refine.commands.recon.GuessTypesOfColumnCommand());
+  RS.registerCommand(module, "clear-recon-cache", new Packages.com.google.refine.commands.recon.ClearReconCacheCommand());
 
   RS.registerCommand(module, "annotate-one-row", new Packages.com.google.refine.commands.row.AnnotateOneRowCommand());
   RS.registerCommand(module, "annotate-rows", new Packages.com.google.refine.commands.row.AnnotateRowsCommand());
@@ -141,6 +146,7 @@ function registerCommands() {
   RS.registerCommand(module, "toggle-starred-expression", new Packages.com.google.refine.commands.expr.ToggleStarredExpressionCommand());
   RS.registerCommand(module, "log-expression", new Packages.com.google.refine.commands.expr.LogExpressionCommand());
   RS.registerCommand(module, "preview-expression", new Packages.com.google.refine.commands.expr.PreviewExpressionCommand());
+  RS.registerCommand(module, "get-expression-cache-stats", new Packages.com.google.refine.commands.expr.GetExpressionCacheStatsCommand());
 
   RS.registerCommand(module, "get-preference", new Packages.com.google.refine.commands.GetPreferenceCommand());
   RS.registerCommand(module, "get-all-preferences", new Packages.com.google.refine.commands.GetAllPreferencesCommand());
@@ -335,7 +341,7 @@ function registerExporters() {
 function registerDistances() {
    var DF = Packages.com.google.refine.clustering.knn.DistanceFactory;
    var VicinoDistance = Packages.com.google.refine.clustering.knn.VicinoDistance;
-   DF.put("levenshtein", new VicinoDistance(new Packages.edu.mit.simile.vicino.distances.LevenshteinDistance()));
+   DF.put("levenshtein", new Packages.com.google.refine.clustering.knn.BitParallelLevenshteinDistance());
    DF.put("ppm", new VicinoDistance(new Packages.edu.mit.simile.vicino.distances.PPMDistance()));
 }
 
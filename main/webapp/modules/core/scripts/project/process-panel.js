@@ -155,7 +155,11 @@ ProcessPanel.prototype._render = function(newData) {
         // TODO: We should be using formatting, not string concatenation here
         Refine.setTitle($.i18n('core-project/percent-complete', process.progress));
         this._elmts.progressDescription.text(process.description);
-        this._elmts.progressSpan.text($.i18n('core-project/percent-complete', process.progress));
+        var progress = $.i18n('core-project/percent-complete', process.progress);
+        if ("cacheHitRate" in process) {
+          progress += " (" + $.i18n('core-project/from-cache', process.cacheHitRate) + ")";
+        }
+        this._elmts.progressSpan.text(progress);
       }
       if ("onDone" in process) {
         newProcessMap[process.id] = process;